@@ -0,0 +1,55 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.insider;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+
+/**
+ * Runs the JMH benchmarks of the project and stores the results in JSON format so that they can be compared between
+ * releases (e.g. with the JMH Visualizer)
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class BenchmarkRunner {
+
+    private static final String DEFAULT_INCLUDE = ".*";
+    private static final String DEFAULT_RESULT = "target/jmh-result.json";
+
+    /**
+     * The entry point of the benchmark run
+     * @param args Optional arguments: a regular expression matching the benchmarks to run, and the path to the result
+     *             file
+     * @throws RunnerException If the benchmarks could not be run
+     */
+    public static void main(String[] args) throws RunnerException {
+        String include = args.length > 0 ? args[0] : DEFAULT_INCLUDE;
+        File result = new File(args.length > 1 ? args[1] : DEFAULT_RESULT);
+        if (result.getParentFile() != null && !result.getParentFile().exists() && !result.getParentFile().mkdirs()) {
+            throw new RunnerException("Could not create directory for " + result);
+        }
+        Options options = new OptionsBuilder()
+                .include(include)
+                .resultFormat(ResultFormatType.JSON)
+                .result(result.getAbsolutePath())
+                .build();
+        new Runner(options).run();
+    }
+}
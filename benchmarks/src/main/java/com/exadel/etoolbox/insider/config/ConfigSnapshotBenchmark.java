@@ -0,0 +1,130 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.insider.config;
+
+import com.exadel.etoolbox.insider.util.Constants;
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.testing.mock.osgi.MockOsgi;
+import org.apache.sling.testing.mock.sling.MockSling;
+import org.apache.sling.testing.mock.sling.ResourceResolverType;
+import org.apache.sling.testing.mock.sling.builder.ContentBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.osgi.framework.BundleContext;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how a {@link ConfigSnapshot} is built up from a configuration tree containing a large number of tools and
+ * providers, and how it is updated when a single item changes
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConfigSnapshotBenchmark {
+
+    @Param({"100", "500"})
+    private int itemCount;
+
+    private BundleContext bundleContext;
+    private ResourceResolver resourceResolver;
+    private Resource configRoot;
+    private ConfigIndex index;
+    private List<ResourceChange> singleChange;
+
+    @Setup
+    public void setUp() throws PersistenceException {
+        bundleContext = MockOsgi.newBundleContext();
+        resourceResolver = MockSling.newResourceResolver(ResourceResolverType.RESOURCERESOLVER_MOCK, bundleContext);
+        ContentBuilder builder = new ContentBuilder(resourceResolver);
+        StringJoiner disabledTools = new StringJoiner(";");
+        for (int i = 0; i < itemCount; i++) {
+            if (i % 10 == 0) {
+                disabledTools.add("tool." + i);
+            }
+        }
+        builder.resource(
+                Constants.PATH_CONFIG,
+                "disabledTools", disabledTools.toString(),
+                "disabledProviders", "provider.1;provider.own");
+        for (int i = 0; i < itemCount; i++) {
+            builder.resource(
+                    Constants.PATH_CONFIG + "/tools/item" + i,
+                    "type", "tool." + i,
+                    "title", "Tool #" + i,
+                    "icon", "edit",
+                    Constants.PROP_DETAILS, getToolDetails(i));
+            builder.resource(
+                    Constants.PATH_CONFIG + "/providers/item" + i,
+                    "type", "provider." + i,
+                    "title", "Provider #" + i,
+                    Constants.PROP_DETAILS, getProviderDetails(i));
+        }
+        resourceResolver.commit();
+        configRoot = resourceResolver.getResource(Constants.PATH_CONFIG);
+        index = new ConfigIndex();
+        index.rebuild(configRoot);
+        singleChange = Collections.singletonList(new ResourceChange(
+                ResourceChange.ChangeType.CHANGED,
+                Constants.PATH_CONFIG + "/tools/item" + (itemCount / 2),
+                false));
+    }
+
+    @TearDown
+    public void tearDown() {
+        resourceResolver.close();
+        MockOsgi.shutdown(bundleContext);
+    }
+
+    @Benchmark
+    public ConfigSnapshot createSnapshot() {
+        return ConfigSnapshot.from(configRoot);
+    }
+
+    @Benchmark
+    public ConfigSnapshot applySingleChange() {
+        index.apply(singleChange, resourceResolver);
+        return index.getSnapshot();
+    }
+
+    private static String getToolDetails(int index) {
+        return "{\"prompt\":\"Rewrite the text #" + index + " to make it more concise\","
+                + "\"temperature\":\"{Double}0.7\",\"maxTokens\":\"{Long}1024\",\"enabled\":\"true\","
+                + "\"_hidden\":\"value\",\"selectors\":\"p, h1, h2, .cmp-text\"}";
+    }
+
+    private static String getProviderDetails(int index) {
+        return "{\"model\":\"model-" + index + "\",\"url\":\"https://llm.example.com/v1/chat/completions\","
+                + "\"_token\":\"enc_ZG9sb3JTaXRBbWV0\",\"streaming\":\"{Boolean}false\",\"imageSupport\":\"true\"}";
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.insider.servlet;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of {@link Cache} when deferred responses are stored, polled, and removed by concurrent
+ * threads, as it happens in {@link RelayServlet} under load. The {@code keyed} group exercises the overload of
+ * {@code put()} that triggers cleanup of expired entries on every call
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Group)
+public class CacheBenchmark {
+
+    private static final String VALUE = "{\"choices\":[{\"message\":{\"content\":\"Lorem ipsum\"}}]}";
+
+    @Param({"100", "10000"})
+    private int prefilled;
+
+    private Cache<String> cache;
+    private String[] keys;
+
+    @Setup
+    public void setUp() {
+        cache = new Cache<>(120_000);
+        keys = new String[prefilled];
+        for (int i = 0; i < prefilled; i++) {
+            keys[i] = cache.put(VALUE);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        cache.close();
+    }
+
+    @Benchmark
+    @Group("generated")
+    @GroupThreads(2)
+    public String putGenerated() {
+        String key = cache.put(VALUE);
+        cache.remove(key);
+        return key;
+    }
+
+    @Benchmark
+    @Group("generated")
+    @GroupThreads(6)
+    public String getGenerated() {
+        return cache.get(keys[ThreadLocalRandom.current().nextInt(keys.length)]);
+    }
+
+    @Benchmark
+    @Group("keyed")
+    @GroupThreads(2)
+    public void putKeyed() {
+        String key = keys[ThreadLocalRandom.current().nextInt(keys.length)];
+        cache.put(key, VALUE);
+    }
+
+    @Benchmark
+    @Group("keyed")
+    @GroupThreads(6)
+    public String getKeyed() {
+        return cache.get(keys[ThreadLocalRandom.current().nextInt(keys.length)]);
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.insider.servlet.media;
+
+import com.day.cq.dam.api.Asset;
+import com.day.cq.dam.api.Rendition;
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceWrapper;
+import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.testing.mock.osgi.MockOsgi;
+import org.apache.sling.testing.mock.sling.MockSling;
+import org.apache.sling.testing.mock.sling.ResourceResolverType;
+import org.apache.sling.testing.mock.sling.builder.ContentBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.osgi.framework.BundleContext;
+
+import javax.jcr.Binary;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures parsing of the rendition size constraints by {@link BoundariesPredicate} and matching of the constraints
+ * against the renditions of an asset. Part of the renditions carry their dimensions in the name while the rest
+ * require a metadata lookup
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BoundariesPredicateBenchmark {
+
+    private static final String ASSET_PATH = "/content/dam/benchmark/image.jpg";
+    private static final String[] CONSTRAINTS = {
+            "",
+            "200",
+            "200x150",
+            "100x100-600x600",
+            "100:600",
+            ">=320x240",
+            ">640",
+            "<=1280x720",
+            "<48"
+    };
+
+    @Param({"10", "200"})
+    private int renditionCount;
+
+    private BundleContext bundleContext;
+    private ResourceResolver resourceResolver;
+    private List<Rendition> renditions;
+    private BoundariesPredicate predicate;
+
+    @Setup
+    public void setUp() throws PersistenceException {
+        bundleContext = MockOsgi.newBundleContext();
+        resourceResolver = MockSling.newResourceResolver(ResourceResolverType.RESOURCERESOLVER_MOCK, bundleContext);
+        ContentBuilder builder = new ContentBuilder(resourceResolver);
+        renditions = new ArrayList<>();
+        for (int i = 0; i < renditionCount; i++) {
+            int width = 48 + i * 16;
+            int height = 48 + i * 9;
+            String name = i % 4 == 3
+                    ? "custom-" + i + ".png"
+                    : "cq5dam.thumbnail." + width + "." + height + ".png";
+            String path = ASSET_PATH + "/jcr:content/renditions/" + name;
+            Resource resource = builder.resource(path);
+            if (i % 4 == 3) {
+                builder.resource(
+                        path + "/jcr:content/metadata",
+                        "tiff:ImageWidth", width,
+                        "tiff:ImageLength", height);
+            }
+            renditions.add(new BenchmarkRendition(resource));
+        }
+        resourceResolver.commit();
+        predicate = new BoundariesPredicate("100x100-600x600");
+    }
+
+    @TearDown
+    public void tearDown() {
+        resourceResolver.close();
+        MockOsgi.shutdown(bundleContext);
+    }
+
+    @Benchmark
+    public void parse(Blackhole blackhole) {
+        for (String constraint : CONSTRAINTS) {
+            blackhole.consume(new BoundariesPredicate(constraint));
+        }
+    }
+
+    @Benchmark
+    public void test(Blackhole blackhole) {
+        for (Rendition rendition : renditions) {
+            blackhole.consume(predicate.test(rendition));
+        }
+    }
+
+    /**
+     * A lightweight {@link Rendition} implementation that exposes the name, path, and resource resolver of a resource
+     */
+    private static class BenchmarkRendition extends ResourceWrapper implements Rendition {
+
+        BenchmarkRendition(Resource resource) {
+            super(resource);
+        }
+
+        @Override
+        public String getMimeType() {
+            return "image/png";
+        }
+
+        @Override
+        public ValueMap getProperties() {
+            return getValueMap();
+        }
+
+        @Override
+        public long getSize() {
+            return 0;
+        }
+
+        @Override
+        public InputStream getStream() {
+            return null;
+        }
+
+        @Override
+        public Binary getBinary() {
+            return null;
+        }
+
+        @Override
+        public Asset getAsset() {
+            return null;
+        }
+    }
+}
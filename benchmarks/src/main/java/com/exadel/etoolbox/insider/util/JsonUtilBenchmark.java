@@ -0,0 +1,121 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.insider.util;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.HttpStatus;
+import org.apache.sling.testing.mock.sling.servlet.MockSlingHttpServletResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link JsonUtil} (de)serialization of payloads resembling the chat completion requests and responses that
+ * pass through the relay servlet
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonUtilBenchmark {
+
+    private static final String SENTENCE = "The quick brown fox jumps over the lazy dog while the author reviews "
+            + "the page \\\"Summer campaign\\\" and asks for a shorter, friendlier teaser. ";
+
+    @Param({"5", "25"})
+    private int messageCount;
+
+    private String request;
+    private String completion;
+    private Map<String, Object> requestMap;
+
+    @Setup
+    public void setUp() {
+        StringBuilder messages = new StringBuilder();
+        for (int i = 0; i < messageCount; i++) {
+            if (i > 0) {
+                messages.append(',');
+            }
+            messages
+                    .append("{\"role\":\"")
+                    .append(i == 0 ? "system" : (i % 2 == 1 ? "user" : "assistant"))
+                    .append("\",\"content\":\"")
+                    .append(StringUtils.repeat(SENTENCE, 4))
+                    .append("\"}");
+        }
+        request = "{\"model\":\"gpt-4o-mini\",\"temperature\":0.7,\"max_tokens\":1024,\"messages\":[" + messages + "]}";
+        completion = "{\"id\":\"chatcmpl-8x1\",\"object\":\"chat.completion\",\"created\":1718000000,"
+                + "\"model\":\"gpt-4o-mini\",\"choices\":[{\"index\":0,\"message\":{\"role\":\"assistant\","
+                + "\"content\":\"" + StringUtils.repeat(SENTENCE, 12) + "\"},\"finish_reason\":\"stop\"}],"
+                + "\"usage\":{\"prompt_tokens\":512,\"completion_tokens\":256,\"total_tokens\":768}}";
+
+        requestMap = new LinkedHashMap<>(JsonUtil.getMap(request));
+        List<Object> extraMessages = new ArrayList<>();
+        extraMessages.add(JsonUtil.getMap(completion));
+        requestMap.put("history", extraMessages);
+    }
+
+    @Benchmark
+    public Map<String, Object> getMapRequest() {
+        return JsonUtil.getMap(request);
+    }
+
+    @Benchmark
+    public Map<String, Object> getMapCompletion() {
+        return JsonUtil.getMap(completion);
+    }
+
+    @Benchmark
+    public String toJson() {
+        return JsonUtil.toJson(requestMap);
+    }
+
+    @Benchmark
+    public MockSlingHttpServletResponse writeObject() throws IOException {
+        MockSlingHttpServletResponse response = new MockSlingHttpServletResponse();
+        JsonUtil.writeTo(response, requestMap);
+        return response;
+    }
+
+    @Benchmark
+    public MockSlingHttpServletResponse writeRawString() throws IOException {
+        MockSlingHttpServletResponse response = new MockSlingHttpServletResponse();
+        JsonUtil.writeTo(response, HttpStatus.SC_OK, completion);
+        return response;
+    }
+
+    @Benchmark
+    public MockSlingHttpServletResponse writeKeyValuePairs() throws IOException {
+        MockSlingHttpServletResponse response = new MockSlingHttpServletResponse();
+        JsonUtil.writeTo(response, HttpStatus.SC_NOT_FOUND, Constants.PROP_ERROR, "Service provider is not found");
+        return response;
+    }
+}
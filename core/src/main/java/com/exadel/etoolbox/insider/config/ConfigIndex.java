@@ -0,0 +1,237 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.insider.config;
+
+import com.exadel.etoolbox.insider.util.Constants;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Maintains the configuration items indexed by their relative paths, such as {@code tools/item0}. A change to a
+ * single item is applied by re-reading only this item and reassigning the ordinals and enabled states in memory, so
+ * that the cost of an update does not depend on the number of items. This class is not thread-safe
+ */
+@Slf4j
+class ConfigIndex {
+
+    private static final Pattern SEMICOLON = Pattern.compile(";");
+    private static final String PREFIX_DISABLED = "disabled";
+
+    private final Map<String, Namespace> namespaces = new LinkedHashMap<>();
+
+    private boolean built;
+    private ConfigSnapshot snapshot = ConfigSnapshot.EMPTY;
+
+    ConfigIndex() {
+        namespaces.put(ConfigSnapshot.NODE_TOOLS, new Namespace(ConfigSnapshot.NODE_TOOLS));
+        namespaces.put(ConfigSnapshot.NODE_PROVIDERS, new Namespace(ConfigSnapshot.NODE_PROVIDERS));
+    }
+
+    /**
+     * Gets whether the index has been populated from the repository
+     * @return True or false
+     */
+    boolean isBuilt() {
+        return built;
+    }
+
+    /**
+     * Retrieves the snapshot that reflects the current state of the index
+     * @return A {@link ConfigSnapshot} instance
+     */
+    @NotNull
+    ConfigSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Populates the index from scratch
+     * @param configRoot The configuration root resource; can be {@code null}
+     */
+    void rebuild(Resource configRoot) {
+        built = configRoot != null;
+        for (Namespace namespace : namespaces.values()) {
+            namespace.rebuild(configRoot);
+        }
+        publish();
+    }
+
+    /**
+     * Applies the given changes to the index
+     * @param changes  The collection of {@link ResourceChange} objects reported for the configuration tree
+     * @param resolver The {@link ResourceResolver} used to read the changed resources
+     */
+    void apply(Iterable<ResourceChange> changes, ResourceResolver resolver) {
+        Set<Namespace> modified = new LinkedHashSet<>();
+        for (ResourceChange change : changes) {
+            if (!apply(change, resolver, modified)) {
+                log.debug("Change at {} requires full rebuild", change.getPath());
+                rebuild(resolver.getResource(Constants.PATH_CONFIG));
+                return;
+            }
+        }
+        if (!modified.isEmpty()) {
+            modified.forEach(Namespace::refresh);
+            publish();
+        }
+    }
+
+    private boolean apply(ResourceChange change, ResourceResolver resolver, Set<Namespace> modified) {
+        String relativePath = StringUtils.removeStart(change.getPath(), Constants.PATH_CONFIG);
+        if (!relativePath.isEmpty() && !relativePath.startsWith(Constants.SEPARATOR_SLASH)) {
+            // Belongs to a sibling node, such as "/conf/etoolbox/authoring-insider-backup"
+            return true;
+        }
+        String[] chunks = StringUtils.split(relativePath, Constants.SEPARATOR_SLASH);
+
+        if (chunks.length == 0) {
+            // The root node itself: either the lists of disabled items have changed, or the whole tree is affected
+            Resource configRoot = resolver.getResource(Constants.PATH_CONFIG);
+            if (change.getType() != ResourceChange.ChangeType.CHANGED || configRoot == null) {
+                return false;
+            }
+            for (Namespace namespace : namespaces.values()) {
+                if (namespace.updateDisabledTypes(configRoot.getValueMap())) {
+                    modified.add(namespace);
+                }
+            }
+            return true;
+        }
+
+        Namespace namespace = namespaces.get(chunks[0]);
+        if (namespace == null) {
+            return true;
+        }
+        if (chunks.length == 1) {
+            // The collection node has been added, removed, or reordered
+            Resource configRoot = resolver.getResource(Constants.PATH_CONFIG);
+            namespace.rebuild(configRoot);
+            modified.add(namespace);
+            return true;
+        }
+
+        String key = chunks[0] + Constants.SEPARATOR_SLASH + chunks[1];
+        boolean isItemRemoved = chunks.length == 2 && change.getType() == ResourceChange.ChangeType.REMOVED;
+        Resource itemResource = isItemRemoved ? null : resolver.getResource(Constants.PATH_CONFIG + "/" + key);
+        namespace.update(key, itemResource);
+        modified.add(namespace);
+        return true;
+    }
+
+    private void publish() {
+        snapshot = new ConfigSnapshot(
+                namespaces.get(ConfigSnapshot.NODE_TOOLS).getEntries(),
+                namespaces.get(ConfigSnapshot.NODE_PROVIDERS).getEntries());
+    }
+
+    /**
+     * Represents the items of the same kind, such as tools or providers
+     */
+    private static class Namespace {
+
+        private final String name;
+        private final Map<String, ItemConfig> items = new LinkedHashMap<>();
+        private List<String> disabledTypes = Collections.emptyList();
+        private List<ItemConfig> entries = Collections.emptyList();
+        private boolean present;
+
+        Namespace(String name) {
+            this.name = name;
+        }
+
+        List<ItemConfig> getEntries() {
+            return entries;
+        }
+
+        void rebuild(Resource configRoot) {
+            items.clear();
+            Resource childrenRoot = configRoot != null ? configRoot.getChild(name) : null;
+            present = childrenRoot != null;
+            if (childrenRoot != null) {
+                for (Resource child : childrenRoot.getChildren()) {
+                    ItemConfig itemConfig = ItemConfig.from(child);
+                    items.put(itemConfig.getPath(), itemConfig);
+                }
+            }
+            // Without the collection node, the namespace has no entries at all, including the disabled ones
+            disabledTypes = present ? getDisabledTypes(configRoot.getValueMap()) : Collections.emptyList();
+            refresh();
+        }
+
+        void update(String key, Resource resource) {
+            if (resource == null) {
+                items.remove(key);
+            } else {
+                // A new item is appended to the end, which matches the default ordering of child nodes in JCR
+                items.put(key, ItemConfig.from(resource));
+            }
+        }
+
+        boolean updateDisabledTypes(ValueMap rootProperties) {
+            if (!present) {
+                return false;
+            }
+            List<String> newDisabledTypes = getDisabledTypes(rootProperties);
+            if (newDisabledTypes.equals(disabledTypes)) {
+                return false;
+            }
+            disabledTypes = newDisabledTypes;
+            return true;
+        }
+
+        /**
+         * Reassigns ordinals and enabled states. Items whose state does not change are reused as they are, together
+         * with their serialized JSON
+         */
+        void refresh() {
+            Set<String> exclusions = new LinkedHashSet<>(disabledTypes);
+            List<ItemConfig> newEntries = new ArrayList<>(items.size() + exclusions.size());
+            int ordinal = 0;
+            for (Map.Entry<String, ItemConfig> item : items.entrySet()) {
+                boolean enabled = !exclusions.remove(item.getValue().getType());
+                ItemConfig itemConfig = item.getValue().withState(ordinal++, enabled);
+                item.setValue(itemConfig);
+                newEntries.add(itemConfig);
+            }
+            for (String disabledType : exclusions) {
+                newEntries.add(ItemConfig.disabled(name + "/item" + ordinal, disabledType, ordinal));
+                ordinal++;
+            }
+            entries = Collections.unmodifiableList(newEntries);
+        }
+
+        private List<String> getDisabledTypes(ValueMap rootProperties) {
+            String value = rootProperties.get(PREFIX_DISABLED + StringUtils.capitalize(name), StringUtils.EMPTY);
+            return SEMICOLON.splitAsStream(value)
+                    .filter(StringUtils::isNotBlank)
+                    .distinct()
+                    .collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.insider.config;
+
+import com.exadel.etoolbox.insider.util.HttpCacheUtil;
+import lombok.Getter;
+import org.apache.sling.api.resource.Resource;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Represents an immutable state of the Authoring Insider configuration: the lists of tools and providers together
+ * with their JSON representation and the entity tag of the latter. A snapshot is serialized once and then can be
+ * served to any number of clients
+ */
+@Getter
+public final class ConfigSnapshot {
+
+    public static final String NODE_PROVIDERS = "providers";
+    public static final String NODE_TOOLS = "tools";
+
+    /**
+     * A snapshot representing the absence of configuration
+     */
+    public static final ConfigSnapshot EMPTY = new ConfigSnapshot(Collections.emptyList(), Collections.emptyList());
+
+    private final List<ItemConfig> tools;
+    private final List<ItemConfig> providers;
+    private final String json;
+    private final String eTag;
+
+    /**
+     * Creates a new snapshot. The JSON representation is assembled from the JSON strings of the particular items which
+     * are computed only once per item
+     * @param tools     The list of tools
+     * @param providers The list of providers
+     */
+    ConfigSnapshot(List<ItemConfig> tools, List<ItemConfig> providers) {
+        this.tools = tools;
+        this.providers = providers;
+        StringBuilder builder = new StringBuilder("{");
+        appendList(builder, NODE_TOOLS, tools);
+        builder.append(',');
+        appendList(builder, NODE_PROVIDERS, providers);
+        this.json = builder.append('}').toString();
+        this.eTag = HttpCacheUtil.getETag(json);
+    }
+
+    /**
+     * Creates a snapshot from the given configuration root resource
+     * @param configRoot A {@link Resource} that contains the {@code tools} and {@code providers} children; can be
+     *                   {@code null}
+     * @return A new {@code ConfigSnapshot} instance
+     */
+    @NotNull
+    public static ConfigSnapshot from(Resource configRoot) {
+        if (configRoot == null) {
+            return EMPTY;
+        }
+        ConfigIndex index = new ConfigIndex();
+        index.rebuild(configRoot);
+        return index.getSnapshot();
+    }
+
+    private static void appendList(StringBuilder builder, String name, List<ItemConfig> items) {
+        builder.append('"').append(name).append("\":[");
+        for (int i = 0; i < items.size(); i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append(items.get(i).toJson());
+        }
+        builder.append(']');
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.insider.config;
+
+import com.exadel.etoolbox.insider.util.Constants;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChangeListener;
+import org.jetbrains.annotations.NotNull;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Reference;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Keeps the current {@link ConfigSnapshot} in memory. The snapshot is created lazily upon the first request. Changes
+ * reported under the configuration root are queued and applied to the {@link ConfigIndex} upon the next request so
+ * that only the affected items are re-read. Since the snapshot is shared by all users, the configuration is read on
+ * behalf of a service user rather than the requesting user
+ */
+@Component(
+        service = {ConfigSnapshotCache.class, ResourceChangeListener.class},
+        property = {
+                ResourceChangeListener.PATHS + "=" + Constants.PATH_CONFIG,
+                ResourceChangeListener.CHANGES + "=ADDED",
+                ResourceChangeListener.CHANGES + "=CHANGED",
+                ResourceChangeListener.CHANGES + "=REMOVED"
+        }
+)
+@Slf4j
+public class ConfigSnapshotCache implements ResourceChangeListener {
+
+    private static final int MAX_PENDING_CHANGES = 1000;
+    private static final String SUBSERVICE = "config";
+
+    @Reference
+    private ResourceResolverFactory resolverFactory;
+
+    private final Queue<ResourceChange> pendingChanges = new ConcurrentLinkedQueue<>();
+    private final Object lock = new Object();
+
+    private ConfigIndex index = new ConfigIndex();
+    private volatile ConfigSnapshot snapshot;
+
+    @Deactivate
+    private void deactivate() {
+        invalidate();
+    }
+
+    /**
+     * Retrieves the current configuration snapshot. If there is no snapshot yet, or there are changes that have not
+     * been applied, the snapshot is updated on behalf of the service user
+     * @return A {@link ConfigSnapshot} instance
+     */
+    @NotNull
+    public ConfigSnapshot getSnapshot() {
+        ConfigSnapshot result = snapshot;
+        if (result != null && pendingChanges.isEmpty()) {
+            return result;
+        }
+        synchronized (lock) {
+            try (ResourceResolver resolver = resolverFactory.getServiceResourceResolver(
+                    Collections.singletonMap(ResourceResolverFactory.SUBSERVICE, SUBSERVICE))) {
+                update(resolver);
+            } catch (LoginException e) {
+                log.error("Could not read the configuration on behalf of the service user", e);
+                return result != null ? result : ConfigSnapshot.EMPTY;
+            }
+            result = index.getSnapshot();
+            // A snapshot is not retained if the configuration could not be read
+            snapshot = index.isBuilt() ? result : null;
+        }
+        return result;
+    }
+
+    private void update(ResourceResolver resolver) {
+        if (!index.isBuilt()) {
+            pendingChanges.clear();
+            index.rebuild(resolver.getResource(Constants.PATH_CONFIG));
+            return;
+        }
+        List<ResourceChange> changes = new ArrayList<>();
+        ResourceChange change;
+        while ((change = pendingChanges.poll()) != null) {
+            changes.add(change);
+        }
+        index.apply(changes, resolver);
+    }
+
+    /**
+     * Discards the current snapshot so that it is recreated from scratch upon the next request
+     */
+    public void invalidate() {
+        synchronized (lock) {
+            pendingChanges.clear();
+            index = new ConfigIndex();
+            snapshot = null;
+        }
+    }
+
+    /**
+     * Processes the changes reported under the configuration root
+     * @param changes The list of {@link ResourceChange} objects
+     */
+    @Override
+    public void onChange(@NotNull List<ResourceChange> changes) {
+        log.debug("{} configuration change(-s) reported", changes.size());
+        if (pendingChanges.size() + changes.size() > MAX_PENDING_CHANGES) {
+            // Too many changes at once, e.g. due to a package installation. Starting over is cheaper
+            invalidate();
+            return;
+        }
+        pendingChanges.addAll(changes);
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.insider.config;
+
+import com.exadel.etoolbox.insider.util.Constants;
+import com.exadel.etoolbox.insider.util.JsonUtil;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonSerializationContext;
+import com.google.gson.JsonSerializer;
+import com.google.gson.annotations.JsonAdapter;
+import lombok.AccessLevel;
+import lombok.Getter;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceUtil;
+import org.apache.sling.api.resource.ValueMap;
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.reflect.Type;
+import java.util.Map;
+
+/**
+ * Represents a tool or provider configuration item as it is exposed to the client side. Instances are immutable; the
+ * ordinal and the enabled state that depend on the item's position and on the list of disabled items are assigned
+ * by creating a modified copy
+ */
+@Getter
+@JsonAdapter(ItemConfig.Serializer.class)
+public final class ItemConfig {
+
+    private static final String PROP_ENABLED = "enabled";
+    private static final String PROP_ICON = "icon";
+    private static final String PROP_ORDINAL = "ordinal";
+    private static final String PROP_TITLE = "title";
+    private static final String PROP_TYPE = "type";
+
+    private final String path;
+    private final String type;
+    private final boolean enabled;
+    private final String title;
+    private final String icon;
+    private final int ordinal;
+    private final ItemDetails details;
+
+    @Getter(AccessLevel.NONE)
+    private volatile String json;
+
+    private ItemConfig(String path, String type, boolean enabled, String title, String icon, int ordinal, ItemDetails details) {
+        this.path = path;
+        this.type = type;
+        this.enabled = enabled;
+        this.title = title;
+        this.icon = icon;
+        this.ordinal = ordinal;
+        this.details = details;
+    }
+
+    /**
+     * Retrieves the JSON representation of the current instance. The value is computed once and then reused
+     * @return A JSON string
+     */
+    @NotNull
+    public String toJson() {
+        String result = json;
+        if (result == null) {
+            result = JsonUtil.toJson(this);
+            json = result;
+        }
+        return result;
+    }
+
+    /**
+     * Creates a copy of the current instance with the given ordinal and enabled state
+     * @param ordinal The position of the item in the list
+     * @param enabled Whether the item is enabled
+     * @return A new {@code ItemConfig} instance, or the current one if nothing has changed
+     */
+    @NotNull
+    public ItemConfig withState(int ordinal, boolean enabled) {
+        if (this.ordinal == ordinal && this.enabled == enabled) {
+            return this;
+        }
+        return new ItemConfig(path, type, enabled, title, icon, ordinal, details);
+    }
+
+    /**
+     * Creates an {@code ItemConfig} instance from the given configuration resource
+     * @param resource A {@link Resource} representing a tool or provider
+     * @return A new {@code ItemConfig} instance
+     */
+    @NotNull
+    public static ItemConfig from(@NotNull Resource resource) {
+        ValueMap valueMap = ResourceUtil.getValueMap(resource);
+        return new ItemConfig(
+                getLastTwoChunks(resource.getPath()),
+                valueMap.get(PROP_TYPE, StringUtils.EMPTY),
+                true,
+                StringUtils.defaultIfEmpty(valueMap.get(PROP_TITLE, String.class), null),
+                StringUtils.defaultIfEmpty(valueMap.get(PROP_ICON, String.class), null),
+                0,
+                ItemDetails.parse(valueMap.get(Constants.PROP_DETAILS, String.class)));
+    }
+
+    /**
+     * Creates an {@code ItemConfig} instance representing a disabled item which is not stored in the repository
+     * @param path    The relative path of the item, such as {@code tools/item5}
+     * @param type    The type of the item
+     * @param ordinal The position of the item in the list
+     * @return A new {@code ItemConfig} instance
+     */
+    @NotNull
+    public static ItemConfig disabled(String path, String type, int ordinal) {
+        return new ItemConfig(path, type, false, null, null, ordinal, ItemDetails.EMPTY);
+    }
+
+    private static String getLastTwoChunks(String value) {
+        String[] chunks = value.split(Constants.SEPARATOR_SLASH);
+        return chunks.length > 1 ? chunks[chunks.length - 2] + Constants.SEPARATOR_SLASH + chunks[chunks.length - 1] : value;
+    }
+
+    /**
+     * Writes an {@link ItemConfig} as a flat JSON object in which the exposed details follow the item's own properties.
+     * A detail value takes precedence over an own property with the same name. Only serialization is provided since
+     * instances are created from repository resources
+     */
+    static class Serializer implements JsonSerializer<ItemConfig> {
+
+        @Override
+        public JsonElement serialize(ItemConfig value, Type type, JsonSerializationContext context) {
+            Map<String, Object> details = value.getDetails().getExposedValues();
+            JsonObject result = new JsonObject();
+            addUnlessOverridden(result, Constants.PROP_PATH, value.getPath(), details, context);
+            addUnlessOverridden(result, PROP_TYPE, value.getType(), details, context);
+            addUnlessOverridden(result, PROP_ENABLED, value.isEnabled(), details, context);
+            addUnlessOverridden(result, PROP_TITLE, value.getTitle(), details, context);
+            addUnlessOverridden(result, PROP_ICON, value.getIcon(), details, context);
+            addUnlessOverridden(result, PROP_ORDINAL, value.getOrdinal(), details, context);
+            for (Map.Entry<String, Object> entry : details.entrySet()) {
+                result.add(entry.getKey(), context.serialize(entry.getValue()));
+            }
+            return result;
+        }
+
+        private static void addUnlessOverridden(
+                JsonObject target,
+                String name,
+                Object value,
+                Map<String, Object> details,
+                JsonSerializationContext context) {
+
+            if (value == null || details.containsKey(name)) {
+                return;
+            }
+            target.add(name, context.serialize(value));
+        }
+    }
+}
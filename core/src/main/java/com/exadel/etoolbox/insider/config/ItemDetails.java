@@ -0,0 +1,279 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.insider.config;
+
+import com.exadel.etoolbox.insider.util.JsonUtil;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Represents the content of the {@code details} property of a tool or provider configuration item. The JSON string
+ * stored in the property is parsed once per revision: instances are immutable and are shared between all the
+ * consumers of the same JSON string. Values prefixed with {@code {Boolean}}, {@code {Long}}, or {@code {Double}} are
+ * converted to typed values upfront
+ */
+@JsonAdapter(ItemDetails.AdapterFactory.class)
+@Slf4j
+public final class ItemDetails {
+
+    /**
+     * An instance representing the absence of details
+     */
+    public static final ItemDetails EMPTY = new ItemDetails(Collections.emptyMap());
+
+    private static final String TYPE_BOOLEAN = "{Boolean}";
+    private static final String TYPE_DOUBLE = "{Double}";
+    private static final String TYPE_LONG = "{Long}";
+
+    private static final Gson GSON = new Gson();
+
+    private static final int CACHE_SIZE = 500;
+    private static final Map<String, ItemDetails> CACHE = Collections.synchronizedMap(
+            new LinkedHashMap<String, ItemDetails>(CACHE_SIZE, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, ItemDetails> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            });
+
+    private final Map<String, Object> values;
+    private final Map<String, Object> exposedValues;
+
+    private ItemDetails(Map<String, Object> values) {
+        this.values = Collections.unmodifiableMap(values);
+        this.exposedValues = Collections.unmodifiableMap(getExposedValues(values));
+    }
+
+    /**
+     * Retrieves the values stored in the details as they were parsed from JSON
+     * @return An unmodifiable {@code Map} object
+     */
+    @NotNull
+    public Map<String, Object> getValues() {
+        return values;
+    }
+
+    /**
+     * Retrieves the values that are exposed to the client side. Hidden values (the ones with keys starting with an
+     * underscore or a dot) are skipped, and stringified booleans and numbers are converted into typed values
+     * @return An unmodifiable {@code Map} object
+     */
+    @NotNull
+    public Map<String, Object> getExposedValues() {
+        return exposedValues;
+    }
+
+    /**
+     * Retrieves a string value by its key
+     * @param key The key of the value
+     * @return A string value, or {@code null} if the key is missing or the value is not a string
+     */
+    public String getString(String key) {
+        Object value = values.get(key);
+        return value instanceof String ? (String) value : null;
+    }
+
+    /**
+     * Gets whether the current instance contains no values
+     * @return True or false
+     */
+    public boolean isEmpty() {
+        return values.isEmpty();
+    }
+
+    /**
+     * Creates a copy of the current instance in which the given key is assigned the given value
+     * @param key   The key to assign
+     * @param value The value to assign
+     * @return A new {@code ItemDetails} instance
+     */
+    @NotNull
+    public ItemDetails with(String key, Object value) {
+        Map<String, Object> newValues = new LinkedHashMap<>(values);
+        newValues.put(key, value);
+        return new ItemDetails(newValues);
+    }
+
+    /**
+     * Serializes the current instance to a JSON string
+     * @return A JSON string
+     */
+    @NotNull
+    public String toJson() {
+        return JsonUtil.toJson(this);
+    }
+
+    /**
+     * Retrieves an {@code ItemDetails} instance for the given JSON string. Instances are cached so that every JSON
+     * string is parsed only once. Use this method for the values stored in the repository
+     * @param json A JSON string; can be {@code null}
+     * @return An {@code ItemDetails} instance. If the string is blank or cannot be parsed, {@link #EMPTY} is returned
+     */
+    @NotNull
+    public static ItemDetails parse(String json) {
+        if (StringUtils.isBlank(json)) {
+            return EMPTY;
+        }
+        ItemDetails result = CACHE.get(json);
+        if (result == null) {
+            result = parseUncached(json);
+            CACHE.put(json, result);
+        }
+        return result;
+    }
+
+    /**
+     * Creates an {@code ItemDetails} instance for the given JSON string bypassing the cache. Use this method for the
+     * values submitted by a user, since they can contain secrets that are not encrypted yet. The JSON string itself is
+     * never logged
+     * @param json A JSON string; can be {@code null}
+     * @return An {@code ItemDetails} instance. If the string is blank or cannot be parsed, {@link #EMPTY} is returned
+     */
+    @NotNull
+    public static ItemDetails parseUncached(String json) {
+        if (StringUtils.isBlank(json)) {
+            return EMPTY;
+        }
+        try {
+            ItemDetails result = GSON.fromJson(json, ItemDetails.class);
+            return result != null ? result : EMPTY;
+        } catch (JsonParseException | IllegalStateException e) {
+            log.error("Could not parse item details: {}", e.getClass().getSimpleName());
+            return EMPTY;
+        }
+    }
+
+    private static Map<String, Object> getExposedValues(Map<String, Object> values) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        values.forEach((key, value) -> {
+            boolean isHidden = !key.isEmpty() && (key.charAt(0) == '_' || key.charAt(0) == '.');
+            if (!isHidden) {
+                result.put(key, value instanceof String ? getTypedValue((String) value) : value);
+            }
+        });
+        return result;
+    }
+
+    private static Object getTypedValue(String value) {
+        if (value.startsWith(TYPE_BOOLEAN)) {
+            return Boolean.parseBoolean(value.substring(TYPE_BOOLEAN.length()));
+        } else if (StringUtils.equalsAny(value, "true", "false")) {
+            return Boolean.parseBoolean(value);
+        }
+        try {
+            if (value.startsWith(TYPE_LONG)) {
+                return Long.parseLong(value.substring(TYPE_LONG.length()));
+            } else if (value.startsWith(TYPE_DOUBLE)) {
+                return Double.parseDouble(value.substring(TYPE_DOUBLE.length()));
+            }
+        } catch (NumberFormatException e) {
+            // A malformed typed value is exposed as it is stored
+            return value;
+        }
+        return value;
+    }
+
+    /**
+     * Creates the {@link TypeAdapter} that reads and writes {@link ItemDetails} in a single pass. Primitive values are
+     * processed directly while nested objects and arrays are delegated to the default Gson adapter
+     */
+    static class AdapterFactory implements TypeAdapterFactory {
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+            if (!ItemDetails.class.equals(type.getRawType())) {
+                return null;
+            }
+            return (TypeAdapter<T>) new Adapter(gson.getAdapter(Object.class));
+        }
+    }
+
+    private static class Adapter extends TypeAdapter<ItemDetails> {
+
+        private final TypeAdapter<Object> objectAdapter;
+
+        Adapter(TypeAdapter<Object> objectAdapter) {
+            this.objectAdapter = objectAdapter;
+        }
+
+        @Override
+        public void write(JsonWriter out, ItemDetails value) throws IOException {
+            if (value == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            for (Map.Entry<String, Object> entry : value.getValues().entrySet()) {
+                out.name(entry.getKey());
+                writeValue(out, entry.getValue(), objectAdapter);
+            }
+            out.endObject();
+        }
+
+        @Override
+        public ItemDetails read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return EMPTY;
+            }
+            Map<String, Object> values = new LinkedHashMap<>();
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                JsonToken token = in.peek();
+                if (token == JsonToken.STRING) {
+                    values.put(name, in.nextString());
+                } else if (token == JsonToken.BOOLEAN) {
+                    values.put(name, in.nextBoolean());
+                } else if (token == JsonToken.NUMBER) {
+                    values.put(name, in.nextDouble());
+                } else if (token == JsonToken.NULL) {
+                    in.nextNull();
+                } else {
+                    values.put(name, objectAdapter.read(in));
+                }
+            }
+            in.endObject();
+            return values.isEmpty() ? EMPTY : new ItemDetails(values);
+        }
+    }
+
+    private static void writeValue(JsonWriter out, Object value, TypeAdapter<Object> objectAdapter) throws IOException {
+        if (value instanceof String) {
+            out.value((String) value);
+        } else if (value instanceof Boolean) {
+            out.value((Boolean) value);
+        } else if (value instanceof Number) {
+            out.value((Number) value);
+        } else {
+            objectAdapter.write(out, value);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.insider.job;
+
+import com.day.crx.JcrConstants;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.apache.sling.api.resource.ModifiableValueMap;
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceUtil;
+import org.apache.sling.api.resource.ValueMap;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Stores the progress of a {@link CaptioningJob} in the repository so that the job can resume from the last committed
+ * batch after a restart. The assets are processed in the order of their paths, so the progress is represented by the
+ * path of the last asset that has been processed together with the counts of succeeded and failed assets
+ */
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+@Getter
+class CaptioningCheckpoint {
+
+    static final String PATH_ROOT = "/var/etoolbox/authoring-insider/captioning";
+
+    private static final String PROP_FAILED = "failed";
+    private static final String PROP_LAST_PATH = "lastPath";
+    private static final String PROP_SUCCEEDED = "succeeded";
+
+    private static final Map<String, Object> NODE_PROPERTIES =
+            Collections.singletonMap(JcrConstants.JCR_PRIMARYTYPE, JcrConstants.NT_UNSTRUCTURED);
+
+    private final String path;
+    private String lastPath;
+    private long succeeded;
+    private long failed;
+
+    /**
+     * Retrieves the checkpoint of the given job or creates an empty one
+     * @param resolver The {@link ResourceResolver} used to access the repository
+     * @param jobId    The identifier of the job
+     * @return A {@code CaptioningCheckpoint} instance
+     */
+    static CaptioningCheckpoint load(ResourceResolver resolver, String jobId) {
+        CaptioningCheckpoint result = new CaptioningCheckpoint(PATH_ROOT + "/" + jobId.replaceAll("[^\\w-]", "-"));
+        Resource resource = resolver.getResource(result.path);
+        if (resource != null) {
+            ValueMap properties = resource.getValueMap();
+            result.lastPath = properties.get(PROP_LAST_PATH, String.class);
+            result.succeeded = properties.get(PROP_SUCCEEDED, 0L);
+            result.failed = properties.get(PROP_FAILED, 0L);
+        }
+        return result;
+    }
+
+    /**
+     * Registers a processed batch and stores the progress. The changes are not committed
+     * @param resolver  The {@link ResourceResolver} used to access the repository
+     * @param lastPath  The path of the last asset in the batch
+     * @param succeeded The number of assets that have been captioned
+     * @param failed    The number of assets that could not be captioned
+     * @throws PersistenceException If the progress could not be stored
+     */
+    void update(ResourceResolver resolver, String lastPath, long succeeded, long failed) throws PersistenceException {
+        this.lastPath = lastPath;
+        this.succeeded += succeeded;
+        this.failed += failed;
+        Resource resource = ResourceUtil.getOrCreateResource(resolver, path, NODE_PROPERTIES, null, false);
+        ModifiableValueMap properties = resource.adaptTo(ModifiableValueMap.class);
+        if (properties == null) {
+            throw new PersistenceException("Could not modify checkpoint at " + path);
+        }
+        Map<String, Object> values = new HashMap<>();
+        values.put(PROP_LAST_PATH, lastPath);
+        values.put(PROP_SUCCEEDED, this.succeeded);
+        values.put(PROP_FAILED, this.failed);
+        properties.putAll(values);
+    }
+
+    /**
+     * Removes the stored progress. The changes are not committed
+     * @param resolver The {@link ResourceResolver} used to access the repository
+     * @throws PersistenceException If the progress could not be removed
+     */
+    void remove(ResourceResolver resolver) throws PersistenceException {
+        Resource resource = resolver.getResource(path);
+        if (resource != null) {
+            resolver.delete(resource);
+        }
+    }
+}
@@ -0,0 +1,515 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.insider.job;
+
+import com.day.cq.dam.api.Asset;
+import com.day.cq.dam.api.DamConstants;
+import com.day.crx.JcrConstants;
+import com.exadel.etoolbox.insider.service.ServiceException;
+import com.exadel.etoolbox.insider.service.ServiceProvider;
+import com.exadel.etoolbox.insider.servlet.media.CaptionIndex;
+import com.exadel.etoolbox.insider.servlet.media.ImageHash;
+import com.exadel.etoolbox.insider.util.Constants;
+import com.exadel.etoolbox.insider.util.JsonUtil;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.collections4.ListUtils;
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.ModifiableValueMap;
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.event.jobs.Job;
+import org.apache.sling.event.jobs.consumer.JobExecutionContext;
+import org.apache.sling.event.jobs.consumer.JobExecutionResult;
+import org.apache.sling.event.jobs.consumer.JobExecutor;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Modified;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.annotations.ReferenceCardinality;
+import org.osgi.service.component.annotations.ReferencePolicy;
+import org.osgi.service.metatype.annotations.Designate;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates captions for the image assets of a DAM folder, or for a list of assets, in the background. The assets that
+ * already have a caption are skipped. Every asset is passed to a service provider as a reference, so the provider sends
+ * the rendition that matches the requested size (see
+ * {@link ServiceProvider#getResponse(String, ResourceResolver, String)}). The assets are split into batches that are
+ * processed in parallel and committed one by one. After every batch, the progress is saved (see
+ * {@link CaptioningCheckpoint}), so that a job interrupted by a restart continues from the last committed batch. An
+ * asset that is nearly identical to an image captioned before reuses its caption without calling the provider (see
+ * {@link CaptionIndex})
+ */
+@Component(
+        service = JobExecutor.class,
+        property = JobExecutor.PROPERTY_TOPICS + "=" + CaptioningJob.TOPIC
+)
+@Designate(ocd = CaptioningJobConfig.class)
+@Slf4j
+public class CaptioningJob implements JobExecutor {
+
+    public static final String TOPIC = "etoolbox/authoring-insider/captioning";
+
+    public static final String PROP_ASSETS = "assets";
+    public static final String PROP_DETAIL = "detail";
+    public static final String PROP_FOLDER = "folder";
+    public static final String PROP_MODEL = "model";
+    public static final String PROP_PROMPT = "prompt";
+    public static final String PROP_PROVIDER = "provider";
+    public static final String PROP_SIZE = "size";
+
+    static final String PROP_CAPTION = CaptionIndex.PROP_CAPTION;
+    static final String SUBSERVICE = "captioning";
+
+    private static final String DEFAULT_DETAIL = "low";
+    private static final String DEFAULT_PROMPT =
+            "Provide the phrase that can be used as the title and/or alt text for the given image";
+
+    private static final String PROP_MESSAGE = "message";
+
+    private static final String PATH_DAM = "/content/dam/";
+    private static final String PATH_METADATA = "jcr:content/metadata";
+    private static final String PREFIX_IMAGE = "image/";
+    private static final String THREAD_NAME_PREFIX = "eai-captioning-";
+
+    @Reference
+    private ResourceResolverFactory resolverFactory;
+
+    @Reference(cardinality = ReferenceCardinality.MULTIPLE, policy = ReferencePolicy.DYNAMIC)
+    private volatile List<ServiceProvider> providers;
+
+    @Reference
+    private CaptionIndex captionIndex;
+
+    private int threads;
+    private int batchSize;
+    private RateLimiter rateLimiter;
+
+    @Activate
+    @Modified
+    private void activate(CaptioningJobConfig config) {
+        threads = Math.max(config.threads(), 1);
+        batchSize = Math.max(config.batchSize(), 1);
+        rateLimiter = new RateLimiter(config.rateLimit());
+    }
+
+    /**
+     * Processes a captioning job. The job is expected to have the {@code provider} property and either the
+     * {@code folder} property or the {@code assets} property that lists asset paths. Optional properties are
+     * {@code model}, {@code prompt}, {@code size}, {@code detail}, and {@code _path} that points to the user-authored
+     * provider settings
+     * @param job     The {@link Job} to process
+     * @param context The {@link JobExecutionContext} used to report the progress
+     * @return A {@link JobExecutionResult} instance
+     */
+    @Override
+    public JobExecutionResult process(Job job, JobExecutionContext context) {
+        String folder = job.getProperty(PROP_FOLDER, String.class);
+        String[] assets = job.getProperty(PROP_ASSETS, String[].class);
+        ServiceProvider provider = getProvider(job.getProperty(PROP_PROVIDER, String.class));
+        if ((!StringUtils.startsWith(folder, PATH_DAM) && ArrayUtils.isEmpty(assets)) || provider == null) {
+            return context.result().message("Assets or service provider are not valid").cancelled();
+        }
+        String scope = assets != null ? "a list of " + assets.length + " assets" : folder;
+        Task task = new Task(job, provider, context);
+
+        try (ResourceResolver resolver = getResolver()) {
+            List<String> paths = new ArrayList<>();
+            if (assets != null) {
+                Arrays.stream(assets)
+                        .filter(path -> StringUtils.startsWith(path, PATH_DAM))
+                        .map(resolver::getResource)
+                        .filter(resource -> resource != null && isEligible(resource))
+                        .forEach(resource -> paths.add(resource.getPath()));
+            } else {
+                Resource folderResource = resolver.getResource(folder);
+                if (folderResource == null) {
+                    return context.result().message("Folder " + folder + " is not found").cancelled();
+                }
+                collectAssets(folderResource, paths);
+            }
+            Collections.sort(paths);
+            CaptioningCheckpoint checkpoint = CaptioningCheckpoint.load(resolver, job.getId());
+            if (checkpoint.getLastPath() != null) {
+                paths.removeIf(path -> path.compareTo(checkpoint.getLastPath()) <= 0);
+            }
+            context.initProgress(paths.size(), -1);
+            log.info("Captioning {} assets from {}", paths.size(), scope);
+
+            boolean complete = run(ListUtils.partition(paths, batchSize), task, checkpoint, resolver);
+            if (!complete) {
+                // The job is left for the job manager to run again; it will continue from the checkpoint
+                return context.result().message("Captioning of " + scope + " has been stopped").failed();
+            }
+            String message = String.format(
+                    "Captioned %d assets from %s, %d failed",
+                    checkpoint.getSucceeded(),
+                    scope,
+                    checkpoint.getFailed());
+            checkpoint.remove(resolver);
+            resolver.commit();
+            log.info(message);
+            return context.result().message(message).succeeded();
+
+        } catch (LoginException | PersistenceException e) {
+            log.error("Captioning of {} failed", scope, e);
+            return context.result().message(e.getMessage()).failed();
+        }
+    }
+
+    private boolean run(
+            List<List<String>> batches,
+            Task task,
+            CaptioningCheckpoint checkpoint,
+            ResourceResolver resolver) throws PersistenceException {
+
+        // With a single thread, batches are processed right in the job thread
+        ExecutorService executor = threads > 1 && batches.size() > 1 ? createExecutor(batches.size()) : null;
+        // Batches are processed in parallel but registered in order so that the checkpoint never skips an asset
+        Deque<Future<BatchResult>> pending = new ArrayDeque<>();
+        boolean complete = true;
+        try {
+            for (List<String> batch : batches) {
+                if (task.isStopped()) {
+                    complete = false;
+                    break;
+                }
+                pending.add(executor != null
+                        ? executor.submit(() -> processBatch(batch, task))
+                        : CompletableFuture.completedFuture(processBatch(batch, task)));
+                if (pending.size() >= threads) {
+                    complete = register(pending.poll(), task, checkpoint, resolver) && complete;
+                }
+            }
+            while (!pending.isEmpty()) {
+                complete = register(pending.poll(), task, checkpoint, resolver) && complete;
+            }
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+        return complete;
+    }
+
+    private ExecutorService createExecutor(int batchCount) {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, THREAD_NAME_PREFIX + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return Executors.newFixedThreadPool(Math.min(threads, batchCount), threadFactory);
+    }
+
+    private boolean register(
+            Future<BatchResult> future,
+            Task task,
+            CaptioningCheckpoint checkpoint,
+            ResourceResolver resolver) throws PersistenceException {
+
+        BatchResult result;
+        try {
+            result = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            log.error("Could not process a batch of assets", e);
+            return false;
+        }
+        boolean complete = !result.stopped && !result.uncommitted;
+        // Once a batch has been stopped halfway, or its captions could not be stored, the checkpoint must not move
+        // past it, so that the batch is processed again when the job is resumed
+        if (result.lastPath != null) {
+            if (!task.stopped && !result.uncommitted) {
+                checkpoint.update(resolver, result.lastPath, result.succeeded, result.failed);
+                resolver.commit();
+            }
+            task.context.incrementProgressCount(result.succeeded + result.failed);
+        }
+        task.stopped |= !complete;
+        return complete;
+    }
+
+    private BatchResult processBatch(List<String> batch, Task task) {
+        BatchResult result = new BatchResult();
+        try (ResourceResolver resolver = getResolver()) {
+            for (String path : batch) {
+                if (task.isStopped()) {
+                    result.stopped = true;
+                    break;
+                }
+                if (caption(path, task, resolver, result)) {
+                    result.succeeded++;
+                } else {
+                    result.failed++;
+                }
+                result.lastPath = path;
+            }
+            resolver.commit();
+            // The captions are offered for reuse only after they have been stored
+            result.captions.forEach(entry -> captionIndex.put(entry.path, entry.hash, entry.caption));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.stopped = true;
+        } catch (LoginException | PersistenceException e) {
+            log.error("Could not store the captions of assets starting with {}", batch.get(0), e);
+            result.failed += result.succeeded;
+            result.succeeded = 0;
+            result.uncommitted = true;
+        }
+        return result;
+    }
+
+    private boolean caption(
+            String path,
+            Task task,
+            ResourceResolver resolver,
+            BatchResult result) throws InterruptedException {
+
+        Resource asset = resolver.getResource(path);
+        Resource metadata = asset != null ? asset.getChild(PATH_METADATA) : null;
+        ModifiableValueMap values = metadata != null ? metadata.adaptTo(ModifiableValueMap.class) : null;
+        if (values == null) {
+            log.warn("Could not modify the metadata of {}", path);
+            return false;
+        }
+        Long hash = captionIndex.getHash(asset.adaptTo(Asset.class));
+        String similarCaption = hash != null ? findSimilarCaption(path, hash, result) : null;
+        if (similarCaption != null) {
+            log.debug("Reused the caption of a near-identical image for {}", path);
+            storeCaption(path, similarCaption, hash, values, result);
+            return true;
+        }
+        // Only the requests that actually reach the provider count against the rate limit
+        rateLimiter.acquire();
+        try {
+            String response = task.provider.getResponse(task.getPayload(path), resolver, task.settingsPath);
+            Object caption = JsonUtil.getMap(response).get(PROP_MESSAGE);
+            if (!(caption instanceof String) || StringUtils.isBlank((String) caption)) {
+                log.warn("No caption received for {}: {}", path, response);
+                return false;
+            }
+            storeCaption(path, ((String) caption).trim(), hash, values, result);
+            return true;
+        } catch (ServiceException e) {
+            log.warn("Could not create a caption for {}", path, e);
+            return false;
+        }
+    }
+
+    private String findSimilarCaption(String path, long hash, BatchResult result) {
+        // The captions of the current batch are not in the index until the batch is committed
+        return result.captions
+                .stream()
+                .filter(entry -> captionIndex.isSimilar(hash, entry.hash))
+                .map(entry -> entry.caption)
+                .findFirst()
+                .orElseGet(() -> captionIndex.find(path, hash));
+    }
+
+    private static void storeCaption(
+            String path,
+            String caption,
+            Long hash,
+            ModifiableValueMap values,
+            BatchResult result) {
+
+        values.put(PROP_CAPTION, caption);
+        if (hash != null) {
+            values.put(CaptionIndex.PROP_HASH, ImageHash.toString(hash));
+            result.captions.add(new CaptionEntry(path, hash, caption));
+        }
+    }
+
+    /* ---------------
+       Utility methods
+       --------------- */
+
+    private void collectAssets(Resource resource, List<String> paths) {
+        for (Resource child : resource.getChildren()) {
+            if (child.isResourceType(DamConstants.NT_DAM_ASSET)) {
+                if (isEligible(child)) {
+                    paths.add(child.getPath());
+                } else {
+                    indexCaption(child);
+                }
+            } else if (!JcrConstants.JCR_CONTENT.equals(child.getName())) {
+                collectAssets(child, paths);
+            }
+        }
+    }
+
+    /**
+     * Gets whether the given asset is an image that has no caption yet
+     * @param asset The {@link Resource} representing a DAM asset
+     * @return True or false
+     */
+    static boolean isEligible(Resource asset) {
+        Resource metadata = asset.getChild(PATH_METADATA);
+        if (metadata == null) {
+            return false;
+        }
+        ValueMap properties = metadata.getValueMap();
+        return StringUtils.startsWith(properties.get(DamConstants.DC_FORMAT, String.class), PREFIX_IMAGE)
+                && StringUtils.isBlank(properties.get(PROP_CAPTION, String.class));
+    }
+
+    private void indexCaption(Resource asset) {
+        // The captions created earlier are fed to the index so that near-identical images can reuse them
+        Resource metadata = asset.getChild(PATH_METADATA);
+        ValueMap properties = metadata != null ? metadata.getValueMap() : ValueMap.EMPTY;
+        Long hash = ImageHash.parse(properties.get(CaptionIndex.PROP_HASH, String.class));
+        String caption = properties.get(PROP_CAPTION, String.class);
+        if (hash != null && StringUtils.isNotBlank(caption)) {
+            captionIndex.put(asset.getPath(), hash, caption);
+        }
+    }
+
+    private ServiceProvider getProvider(String id) {
+        if (StringUtils.isEmpty(id) || providers == null) {
+            return null;
+        }
+        return providers.stream().filter(provider -> id.equals(provider.getId())).findFirst().orElse(null);
+    }
+
+    private ResourceResolver getResolver() throws LoginException {
+        return getResolver(resolverFactory);
+    }
+
+    /**
+     * Retrieves a resource resolver on behalf of the captioning service user
+     * @param resolverFactory The {@link ResourceResolverFactory} instance
+     * @return A {@link ResourceResolver} object that must be closed by the caller
+     * @throws LoginException If the service user is not available
+     */
+    static ResourceResolver getResolver(ResourceResolverFactory resolverFactory) throws LoginException {
+        Map<String, Object> authInfo = Collections.singletonMap(ResourceResolverFactory.SUBSERVICE, SUBSERVICE);
+        return resolverFactory.getServiceResourceResolver(authInfo);
+    }
+
+    /* ---------------
+       Utility classes
+       --------------- */
+
+    private static class Task {
+        private final ServiceProvider provider;
+        private final JobExecutionContext context;
+        private final String model;
+        private final String prompt;
+        private final String size;
+        private final String detail;
+        private final String settingsPath;
+        // Set when a batch has been stopped or could not be stored. The rest of the job is not processed then, since
+        // it would be processed again after the checkpoint anyway
+        private volatile boolean stopped;
+
+        Task(Job job, ServiceProvider provider, JobExecutionContext context) {
+            this.provider = provider;
+            this.context = context;
+            this.model = job.getProperty(PROP_MODEL, String.class);
+            this.prompt = StringUtils.defaultIfBlank(job.getProperty(PROP_PROMPT, String.class), DEFAULT_PROMPT);
+            this.size = job.getProperty(PROP_SIZE, String.class);
+            this.detail = StringUtils.defaultIfBlank(job.getProperty(PROP_DETAIL, String.class), DEFAULT_DETAIL);
+            this.settingsPath = job.getProperty(Constants.PROP_PATH, String.class);
+        }
+
+        boolean isStopped() {
+            return stopped || context.isStopped();
+        }
+
+        String getPayload(String path) {
+            JsonObject imageUrl = new JsonObject();
+            imageUrl.addProperty("url", getReference(path));
+            imageUrl.addProperty(PROP_DETAIL, detail);
+
+            JsonObject text = new JsonObject();
+            text.addProperty("type", "text");
+            text.addProperty("text", prompt);
+            JsonObject image = new JsonObject();
+            image.addProperty("type", "image_url");
+            image.add("image_url", imageUrl);
+            JsonArray content = new JsonArray();
+            content.add(text);
+            content.add(image);
+
+            JsonObject message = new JsonObject();
+            message.addProperty("role", "user");
+            message.add("content", content);
+            JsonArray messages = new JsonArray();
+            messages.add(message);
+
+            JsonObject result = new JsonObject();
+            result.addProperty("stream", false);
+            if (StringUtils.isNotBlank(model)) {
+                result.addProperty(PROP_MODEL, model);
+            }
+            result.add("messages", messages);
+            return JsonUtil.toJson(result);
+        }
+
+        private String getReference(String path) {
+            if (StringUtils.isBlank(size)) {
+                return path;
+            }
+            try {
+                return path + "?size=" + URLEncoder.encode(size, StandardCharsets.UTF_8.name());
+            } catch (UnsupportedEncodingException e) {
+                return path;
+            }
+        }
+    }
+
+    private static class BatchResult {
+        private final List<CaptionEntry> captions = new ArrayList<>();
+        private String lastPath;
+        private int succeeded;
+        private int failed;
+        private boolean stopped;
+        private boolean uncommitted;
+    }
+
+    @RequiredArgsConstructor
+    private static class CaptionEntry {
+        private final String path;
+        private final long hash;
+        private final String caption;
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.insider.job;
+
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.AttributeType;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+
+/**
+ * Defines the configuration for the {@link CaptioningJob}
+ */
+@ObjectClassDefinition(name="EToolbox Authoring Insider - Captioning Job Config")
+public @interface CaptioningJobConfig {
+
+    int DEFAULT_THREADS = 2;
+    int DEFAULT_RATE_LIMIT = 60;
+    int DEFAULT_BATCH_SIZE = 20;
+
+    @AttributeDefinition(
+            name = "Threads",
+            description = "Specify the number of assets that are captioned at the same time. Set to 1 to caption assets "
+                    + "one by one in the job thread",
+            type = AttributeType.INTEGER
+    )
+    int threads() default DEFAULT_THREADS;
+
+    @AttributeDefinition(
+            name = "Rate Limit (requests per minute)",
+            description = "Specify how many requests may be sent to a service provider per minute. Set to 0 to send "
+                    + "requests without a limit",
+            type = AttributeType.INTEGER
+    )
+    int rateLimit() default DEFAULT_RATE_LIMIT;
+
+    @AttributeDefinition(
+            name = "Batch Size",
+            description = "Specify the number of assets whose captions are committed to the repository at once. The "
+                    + "progress of a job is saved after every batch so that the job resumes from there after a restart",
+            type = AttributeType.INTEGER
+    )
+    int batchSize() default DEFAULT_BATCH_SIZE;
+}
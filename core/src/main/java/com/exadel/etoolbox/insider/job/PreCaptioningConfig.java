@@ -0,0 +1,81 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.insider.job;
+
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.AttributeType;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+
+/**
+ * Defines the configuration for the {@link PreCaptioningListener}
+ */
+@ObjectClassDefinition(name="EToolbox Authoring Insider - Pre-captioning Config")
+public @interface PreCaptioningConfig {
+
+    int DEFAULT_DELAY = 30;
+
+    @AttributeDefinition(
+            name = "Enabled",
+            description = "Check to create captions for new and updated image assets in the background",
+            type = AttributeType.BOOLEAN
+    )
+    boolean enabled() default false;
+
+    @AttributeDefinition(
+            name = "Service Provider (ID)",
+            description = "Specify the ID of the service provider that creates captions"
+    )
+    String provider() default "";
+
+    @AttributeDefinition(
+            name = "Provider Settings",
+            description = "Specify the path to the user-authored provider settings relative to the Authoring "
+                    + "Insider's configuration root, such as \"providers/item0\". Leave blank to use the token from "
+                    + "the service provider config"
+    )
+    String settings() default "";
+
+    @AttributeDefinition(
+            name = "Model",
+            description = "Specify the model to request. Leave blank to use the default model of the service"
+    )
+    String model() default "";
+
+    @AttributeDefinition(
+            name = "Prompt",
+            description = "Specify the prompt. Leave blank to use the default prompt of the \"Image caption\" tool"
+    )
+    String prompt() default "";
+
+    @AttributeDefinition(
+            name = "Image Size",
+            description = "Specify the size of the rendition passed to the service provider, such as "
+                    + "\"100x100-600x600\". Leave blank to use the default size"
+    )
+    String size() default "";
+
+    @AttributeDefinition(
+            name = "Image Detail",
+            description = "Specify the level of image detail requested from the service provider"
+    )
+    String detail() default "low";
+
+    @AttributeDefinition(
+            name = "Delay (s)",
+            description = "Specify how long to collect changed assets before they are queued for captioning in a "
+                    + "single job. A longer delay allows the DAM workflow to complete and groups bulk uploads",
+            type = AttributeType.INTEGER
+    )
+    int delay() default DEFAULT_DELAY;
+}
@@ -0,0 +1,197 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.insider.job;
+
+import com.exadel.etoolbox.insider.util.Constants;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChangeListener;
+import org.apache.sling.event.jobs.Job;
+import org.apache.sling.event.jobs.JobManager;
+import org.jetbrains.annotations.NotNull;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceRegistration;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Modified;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.metatype.annotations.Designate;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Queues new and updated image assets for captioning so that the caption is ready by the time an author opens the
+ * "Image caption" tool. The listener reacts to changes of asset metadata, which happen both on upload and when the
+ * DAM workflow extracts metadata. Changed assets are collected for a configurable delay and then passed to a single
+ * {@link CaptioningJob}. The assets that are not images or already have a caption are skipped. An asset stays tracked
+ * until its job is finished, so that a later change of the same asset, such as the metadata extraction following the
+ * upload, does not send it to the provider once more. The listener is registered only while pre-captioning is
+ * enabled, so that the changes of the DAM are not delivered to it otherwise
+ */
+@Component(service = {})
+@Designate(ocd = PreCaptioningConfig.class)
+@Slf4j
+public class PreCaptioningListener implements ResourceChangeListener {
+
+    private static final String SUFFIX_METADATA = "/jcr:content/metadata";
+    private static final String THREAD_NAME = "eai-pre-captioning";
+    private static final String PATH_DAM = "/content/dam";
+
+    private static final Set<Job.JobState> UNFINISHED_STATES = EnumSet.of(Job.JobState.QUEUED, Job.JobState.ACTIVE);
+
+    @Reference
+    private JobManager jobManager;
+
+    @Reference
+    private ResourceResolverFactory resolverFactory;
+
+    private final Set<String> pendingAssets = ConcurrentHashMap.newKeySet();
+    // Maps the paths of the assets passed to a job to the job identifiers
+    private final Map<String, String> queuedAssets = new ConcurrentHashMap<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    private volatile ScheduledExecutorService scheduler;
+    private ServiceRegistration<ResourceChangeListener> registration;
+    private Map<String, Object> jobProperties;
+    private int delay;
+
+    @Activate
+    @Modified
+    private void activate(BundleContext bundleContext, PreCaptioningConfig config) {
+        deactivate();
+        if (!config.enabled() || StringUtils.isBlank(config.provider())) {
+            return;
+        }
+        jobProperties = new HashMap<>();
+        jobProperties.put(CaptioningJob.PROP_PROVIDER, config.provider());
+        jobProperties.put(Constants.PROP_PATH, config.settings());
+        jobProperties.put(CaptioningJob.PROP_MODEL, config.model());
+        jobProperties.put(CaptioningJob.PROP_PROMPT, config.prompt());
+        jobProperties.put(CaptioningJob.PROP_SIZE, config.size());
+        jobProperties.put(CaptioningJob.PROP_DETAIL, config.detail());
+        jobProperties.values().removeIf(value -> StringUtils.isBlank((String) value));
+        delay = Math.max(config.delay(), 0);
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, THREAD_NAME);
+            thread.setDaemon(true);
+            return thread;
+        });
+        Hashtable<String, Object> properties = new Hashtable<>();
+        properties.put(ResourceChangeListener.PATHS, PATH_DAM);
+        properties.put(
+                ResourceChangeListener.CHANGES,
+                new String[] {ResourceChange.ChangeType.ADDED.name(), ResourceChange.ChangeType.CHANGED.name()});
+        registration = bundleContext.registerService(ResourceChangeListener.class, this, properties);
+    }
+
+    @Deactivate
+    private void deactivate() {
+        if (registration != null) {
+            registration.unregister();
+            registration = null;
+        }
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+        pendingAssets.clear();
+        queuedAssets.clear();
+        scheduled.set(false);
+    }
+
+    /**
+     * Collects the assets whose metadata has been created or modified and schedules queueing them for captioning
+     * @param changes The list of {@link ResourceChange} objects
+     */
+    @Override
+    public void onChange(@NotNull List<ResourceChange> changes) {
+        ScheduledExecutorService effectiveScheduler = scheduler;
+        if (effectiveScheduler == null) {
+            return;
+        }
+        for (ResourceChange change : changes) {
+            if (change.getPath().endsWith(SUFFIX_METADATA)) {
+                pendingAssets.add(StringUtils.removeEnd(change.getPath(), SUFFIX_METADATA));
+            }
+        }
+        if (!pendingAssets.isEmpty() && scheduled.compareAndSet(false, true)) {
+            effectiveScheduler.schedule(this::queue, delay, TimeUnit.SECONDS);
+        }
+    }
+
+    private void queue() {
+        scheduled.set(false);
+        releaseFinishedJobs();
+        List<String> assets = new ArrayList<>();
+        try (ResourceResolver resolver = CaptioningJob.getResolver(resolverFactory)) {
+            for (Iterator<String> iterator = pendingAssets.iterator(); iterator.hasNext(); ) {
+                String path = iterator.next();
+                iterator.remove();
+                if (queuedAssets.containsKey(path)) {
+                    log.debug("Asset {} is already queued for captioning", path);
+                    continue;
+                }
+                Resource asset = resolver.getResource(path);
+                if (asset != null && CaptioningJob.isEligible(asset)) {
+                    assets.add(asset.getPath());
+                }
+            }
+        } catch (LoginException e) {
+            log.error("Could not check assets for captioning", e);
+            return;
+        }
+        if (assets.isEmpty()) {
+            return;
+        }
+        Map<String, Object> properties = new HashMap<>(jobProperties);
+        properties.put(CaptioningJob.PROP_ASSETS, assets.toArray(new String[0]));
+        Job job = jobManager.addJob(CaptioningJob.TOPIC, properties);
+        if (job == null) {
+            log.warn("Could not queue {} assets for captioning", assets.size());
+            return;
+        }
+        assets.forEach(asset -> queuedAssets.put(asset, job.getId()));
+        log.info("Queued {} assets for captioning in job {}", assets.size(), job.getId());
+    }
+
+    private void releaseFinishedJobs() {
+        Set<String> finishedJobIds = new HashSet<>();
+        for (String jobId : new HashSet<>(queuedAssets.values())) {
+            Job job = jobManager.getJobById(jobId);
+            if (job == null || !UNFINISHED_STATES.contains(job.getJobState())) {
+                finishedJobIds.add(jobId);
+            }
+        }
+        queuedAssets.values().removeIf(finishedJobIds::contains);
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.insider.job;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spreads the calls made from several threads evenly in time so that no more than the given number of calls per minute
+ * is made
+ */
+class RateLimiter {
+
+    private final long interval;
+    private long nextSlot;
+
+    /**
+     * Creates a new instance
+     * @param callsPerMinute The number of calls allowed per minute. A value that is less than {@code 1} disables the
+     *                       limit
+     */
+    RateLimiter(int callsPerMinute) {
+        this.interval = callsPerMinute > 0 ? TimeUnit.MINUTES.toNanos(1) / callsPerMinute : 0;
+        // The values of System.nanoTime() may be negative, so the first slot cannot be zero
+        this.nextSlot = System.nanoTime();
+    }
+
+    /**
+     * Waits until the next call is allowed
+     * @throws InterruptedException If the waiting has been interrupted
+     */
+    void acquire() throws InterruptedException {
+        if (interval == 0) {
+            return;
+        }
+        long slot;
+        synchronized (this) {
+            long now = System.nanoTime();
+            slot = nextSlot - now > 0 ? nextSlot : now;
+            nextSlot = slot + interval;
+        }
+        TimeUnit.NANOSECONDS.sleep(slot - System.nanoTime());
+    }
+}
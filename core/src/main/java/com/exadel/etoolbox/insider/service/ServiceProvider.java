@@ -14,7 +14,9 @@
 package com.exadel.etoolbox.insider.service;
 
 import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.api.resource.ResourceResolver;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * Defines an interface for a component that answers to a request from the Authoring Insider's UI relayed via
@@ -39,4 +41,22 @@ public interface ServiceProvider {
     @NotNull
     String getResponse(SlingHttpServletRequest request) throws ServiceException;
 
+    /**
+     * Retrieves the response to a request that originates on the server side, such as from a background job. The
+     * response is reduced to the {@code {"message": "..."}} envelope with the answer text if the provider supports it
+     * @param payload  The request payload
+     * @param resolver The {@link ResourceResolver} used to access the settings of the provider
+     * @param path     An optional path to the user-authored provider settings relative to the Authoring Insider's
+     *                 configuration root, such as {@code providers/item0}
+     * @return String value; a non-null string is expected
+     * @throws ServiceException If an error occurs during the operation or if server-side requests are not supported
+     */
+    @NotNull
+    default String getResponse(
+            @NotNull String payload,
+            @NotNull ResourceResolver resolver,
+            @Nullable String path) throws ServiceException {
+        throw new ServiceException("Service provider " + getId() + " does not support server-side requests");
+    }
+
 }
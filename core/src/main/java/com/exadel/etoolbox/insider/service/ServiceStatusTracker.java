@@ -0,0 +1,81 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.insider.service;
+
+import lombok.RequiredArgsConstructor;
+import org.jetbrains.annotations.NotNull;
+import org.osgi.service.component.annotations.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps track of the recent outcomes of calls to {@link ServiceProvider}s so that the UI can learn which providers are
+ * currently available without probing them. A provider is considered unavailable after several consecutive failures
+ * within a limited time span; a single successful call makes it available again
+ */
+@Component(service = ServiceStatusTracker.class)
+public class ServiceStatusTracker {
+
+    private static final int FAILURE_THRESHOLD = 3;
+    private static final long FAILURE_WINDOW = TimeUnit.MINUTES.toMillis(5);
+
+    private final Map<String, Record> records = new ConcurrentHashMap<>();
+
+    /**
+     * Registers the outcome of a call to a service provider
+     * @param id      The identifier of the service provider
+     * @param success True if the call succeeded; otherwise, false
+     */
+    public void record(@NotNull String id, boolean success) {
+        long now = System.currentTimeMillis();
+        records.compute(id, (key, existing) -> {
+            if (success) {
+                return new Record(0, now);
+            }
+            int failures = existing != null && now - existing.timestamp <= FAILURE_WINDOW ? existing.failures + 1 : 1;
+            return new Record(failures, now);
+        });
+    }
+
+    /**
+     * Retrieves the status of a service provider based on the recent calls
+     * @param id The identifier of the service provider
+     * @return A {@link Status} value
+     */
+    @NotNull
+    public Status getStatus(@NotNull String id) {
+        Record record = records.get(id);
+        if (record == null) {
+            return Status.UNKNOWN;
+        }
+        boolean isFailing = record.failures >= FAILURE_THRESHOLD
+                && System.currentTimeMillis() - record.timestamp <= FAILURE_WINDOW;
+        return isFailing ? Status.UNAVAILABLE : Status.AVAILABLE;
+    }
+
+    /**
+     * Enumerates the possible statuses of a service provider
+     */
+    public enum Status {
+        AVAILABLE, UNAVAILABLE, UNKNOWN
+    }
+
+    @RequiredArgsConstructor
+    private static class Record {
+        private final int failures;
+        private final long timestamp;
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.insider.service.impl;
+
+import com.day.cq.dam.api.Asset;
+import com.exadel.etoolbox.insider.service.ServiceException;
+import com.exadel.etoolbox.insider.servlet.media.RenditionService;
+import com.exadel.etoolbox.insider.util.JsonUtil;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Replaces asset references in a request payload with the base64-encoded content of the matching renditions. A
+ * reference is an {@code image_url} whose {@code url} is a DAM path, optionally followed by the {@code size} parameter,
+ * such as {@code /content/dam/image.png?size=100x100-600x600}. This way, the browser does not need to download an image
+ * and upload it back just to pass it to a service provider
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+@Slf4j
+class AssetInliner {
+
+    private static final String PARAM_SIZE = "size=";
+    private static final String PREFIX_DAM = "/content/dam/";
+    private static final String PROP_IMAGE_URL = "image_url";
+    private static final String PROP_URL = "url";
+
+    private static final String SEPARATOR_AMPERSAND = "&";
+    private static final String SEPARATOR_QUESTION = "?";
+
+    /**
+     * Replaces asset references in the given payload
+     * @param payload    A JSON string
+     * @param resolver   The {@link ResourceResolver} used to access assets on behalf of the current user
+     * @param service    The {@link RenditionService} that produces asset renditions
+     * @param background True if the payload is prepared in the background, such as in a job, rather than for a
+     *                   waiting author
+     * @return The payload with the references replaced. If there are no references, the payload is returned as is
+     * @throws ServiceException If a referenced asset cannot be resolved or rendered
+     */
+    static String inline(
+            String payload,
+            ResourceResolver resolver,
+            RenditionService service,
+            boolean background) throws ServiceException {
+        // A quick check to skip parsing payloads that have no references
+        if (!StringUtils.contains(payload, PREFIX_DAM) || !StringUtils.contains(payload, PROP_IMAGE_URL)) {
+            return payload;
+        }
+        JsonElement root;
+        try {
+            root = JsonParser.parseString(payload);
+        } catch (JsonParseException e) {
+            log.debug("Could not parse payload to inline asset references", e);
+            return payload;
+        }
+        if (!inline(root, resolver, service, background)) {
+            return payload;
+        }
+        return JsonUtil.toJson(root);
+    }
+
+    private static boolean inline(
+            JsonElement element,
+            ResourceResolver resolver,
+            RenditionService service,
+            boolean background) throws ServiceException {
+
+        boolean result = false;
+        if (element.isJsonArray()) {
+            for (JsonElement item : (JsonArray) element) {
+                result |= inline(item, resolver, service, background);
+            }
+        } else if (element.isJsonObject()) {
+            JsonObject object = element.getAsJsonObject();
+            for (Map.Entry<String, JsonElement> entry : object.entrySet()) {
+                if (PROP_IMAGE_URL.equals(entry.getKey()) && entry.getValue().isJsonObject()) {
+                    result |= inlineReference(entry.getValue().getAsJsonObject(), resolver, service, background);
+                } else {
+                    result |= inline(entry.getValue(), resolver, service, background);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static boolean inlineReference(
+            JsonObject imageUrl,
+            ResourceResolver resolver,
+            RenditionService service,
+            boolean background) throws ServiceException {
+
+        JsonElement url = imageUrl.get(PROP_URL);
+        if (url == null || !url.isJsonPrimitive() || !StringUtils.startsWith(url.getAsString(), PREFIX_DAM)) {
+            return false;
+        }
+        String path = StringUtils.substringBefore(url.getAsString(), SEPARATOR_QUESTION);
+        String size = getSize(StringUtils.substringAfter(url.getAsString(), SEPARATOR_QUESTION));
+
+        Resource resource = resolver.getResource(path);
+        Asset asset = resource != null ? resource.adaptTo(Asset.class) : null;
+        RenditionService.Selection selection = service.select(asset, size);
+        if (selection == null) {
+            throw new ServiceException("Could not find a rendition for asset " + path);
+        }
+        try (RenditionService.EncodedRendition rendition = service.render(selection, background)) {
+            imageUrl.addProperty(PROP_URL, toDataUri(rendition));
+        } catch (IOException | RejectedExecutionException e) {
+            throw new ServiceException("Could not create a rendition for asset " + path, e);
+        }
+        return true;
+    }
+
+    private static String getSize(String query) {
+        for (String parameter : StringUtils.split(query, SEPARATOR_AMPERSAND)) {
+            if (parameter.startsWith(PARAM_SIZE)) {
+                try {
+                    return URLDecoder.decode(parameter.substring(PARAM_SIZE.length()), StandardCharsets.UTF_8.name());
+                } catch (UnsupportedEncodingException e) {
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static String toDataUri(RenditionService.EncodedRendition rendition) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        buffer.write(("data:" + rendition.getMimeType() + ";base64,").getBytes(StandardCharsets.US_ASCII));
+        try (OutputStream encodingOutput = Base64.getEncoder().wrap(buffer)) {
+            rendition.writeTo(encodingOutput);
+        }
+        return new String(buffer.toByteArray(), StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,303 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.insider.service.impl;
+
+import com.exadel.etoolbox.insider.util.Constants;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.sling.api.SlingHttpServletRequest;
+
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+/**
+ * Extracts the answer text and, optionally, the token usage from a response of an OpenAI-compatible endpoint and
+ * packs them into a compact envelope such as {@code {"message":"...","usage":{...}}}. The upstream response is read
+ * with a streaming parser: the fields that are not needed, such as additional choices, log probabilities, or
+ * metadata, are skipped without being materialized. Both plain JSON responses and server-sent event streams are
+ * supported. An upstream error is passed on as {@code {"error": ...}}
+ */
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+@Slf4j
+class ResponseProjection {
+
+    static final String PARAM_PROJECTION = "projection";
+
+    private static final String OPTION_TEXT = "text";
+    private static final String OPTION_USAGE = "usage";
+
+    private static final String PROP_CHOICES = "choices";
+    private static final String PROP_CONTENT = "content";
+    private static final String PROP_DELTA = "delta";
+    private static final String PROP_MESSAGE = "message";
+    private static final String PROP_TEXT = "text";
+    private static final String PROP_USAGE = "usage";
+
+    private static final String CONTENT_TYPE_EVENT_STREAM = "text/event-stream";
+
+    private static final String SSE_DATA = "data:";
+    private static final String SSE_DONE = "[DONE]";
+    private static final String[] SSE_FIELDS = {"data", "event", "id", "retry"};
+    private static final int SSE_FIELD_MAX_LENGTH = 5;
+    private static final int SSE_PEEK_LIMIT = 1024;
+
+    private final boolean includeUsage;
+
+    /**
+     * Creates a projection matching the {@code projection} parameter of the given request
+     * @param request The {@link SlingHttpServletRequest} object
+     * @return A {@code ResponseProjection} instance, or {@code null} if the projection is not requested. The parameter
+     * accepts a comma-separated list of the values {@code text} and {@code usage}
+     */
+    static ResponseProjection from(SlingHttpServletRequest request) {
+        String[] options = StringUtils.split(StringUtils.lowerCase(request.getParameter(PARAM_PROJECTION)), ", ");
+        if (!ArrayUtils.contains(options, OPTION_TEXT)) {
+            return null;
+        }
+        return new ResponseProjection(ArrayUtils.contains(options, OPTION_USAGE));
+    }
+
+    /**
+     * Creates a projection that produces the answer text without the token usage
+     * @return A {@code ResponseProjection} instance
+     */
+    static ResponseProjection text() {
+        return new ResponseProjection(false);
+    }
+
+    /**
+     * Reads the upstream response and produces the projected JSON envelope. Whether the response is a server-sent event
+     * stream is detected from its content
+     * @param source A {@code Reader} providing the upstream response
+     * @return A JSON string
+     * @throws IOException If the response could not be read
+     */
+    String apply(Reader source) throws IOException {
+        return apply(source, null);
+    }
+
+    /**
+     * Reads the upstream response and produces the projected JSON envelope
+     * @param source      A {@code Reader} providing the upstream response
+     * @param contentType The value of the upstream {@code Content-Type} header. If it is missing or is neither JSON
+     *                    nor {@code text/event-stream}, the kind of the response is detected from its content
+     * @return A JSON string
+     * @throws IOException If the response could not be read
+     */
+    String apply(Reader source, String contentType) throws IOException {
+        BufferedReader reader = source instanceof BufferedReader ? (BufferedReader) source : new BufferedReader(source);
+        Result result = new Result();
+        try {
+            if (isEventStream(reader, contentType)) {
+                readEventStream(reader, result);
+            } else {
+                readResponse(new JsonReader(reader), result);
+            }
+        } catch (JsonParseException | IllegalStateException | MalformedJsonException | EOFException e) {
+            log.error("Could not parse upstream response", e);
+            if (result.isEmpty()) {
+                result.error = new JsonPrimitive("Invalid response");
+            }
+        }
+        return result.toJson(includeUsage);
+    }
+
+    /* ---------------
+       Reading methods
+       --------------- */
+
+    private static boolean isEventStream(BufferedReader reader, String contentType) throws IOException {
+        String mimeType = StringUtils.lowerCase(StringUtils.trim(StringUtils.substringBefore(contentType, ";")));
+        if (CONTENT_TYPE_EVENT_STREAM.equals(mimeType)) {
+            return true;
+        } else if (StringUtils.endsWith(mimeType, "json")) {
+            return false;
+        }
+        // An event stream starts with either a comment line (":...") or a field line such as "data:", "event:",
+        // "id:", or "retry:". A JSON response starts with a bracket
+        reader.mark(SSE_PEEK_LIMIT);
+        try {
+            int character;
+            do {
+                character = reader.read();
+            } while (character != -1 && Character.isWhitespace(character));
+            StringBuilder field = new StringBuilder();
+            while (character != -1 && character != ':' && field.length() <= SSE_FIELD_MAX_LENGTH) {
+                field.append((char) character);
+                character = reader.read();
+            }
+            return character == ':' && (field.length() == 0 || StringUtils.equalsAny(field, SSE_FIELDS));
+        } finally {
+            reader.reset();
+        }
+    }
+
+    private void readEventStream(BufferedReader reader, Result result) throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (!line.startsWith(SSE_DATA)) {
+                continue;
+            }
+            String data = line.substring(SSE_DATA.length()).trim();
+            if (SSE_DONE.equals(data)) {
+                break;
+            }
+            readResponse(new JsonReader(new StringReader(data)), result);
+        }
+    }
+
+    private void readResponse(JsonReader reader, Result result) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (PROP_CHOICES.equals(name) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                readChoices(reader, result);
+            } else if (PROP_MESSAGE.equals(name)) {
+                readMessage(reader, result);
+            } else if (PROP_USAGE.equals(name) && includeUsage && reader.peek() != JsonToken.NULL) {
+                result.usage = JsonParser.parseReader(reader);
+            } else if (Constants.PROP_ERROR.equals(name)) {
+                result.error = JsonParser.parseReader(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private static void readChoices(JsonReader reader, Result result) throws IOException {
+        reader.beginArray();
+        boolean isFirst = true;
+        while (reader.hasNext()) {
+            if (!isFirst || reader.peek() != JsonToken.BEGIN_OBJECT) {
+                reader.skipValue();
+                continue;
+            }
+            isFirst = false;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (PROP_MESSAGE.equals(name) || PROP_DELTA.equals(name)) {
+                    readMessage(reader, result);
+                } else if (PROP_TEXT.equals(name) && reader.peek() == JsonToken.STRING) {
+                    result.append(reader.nextString());
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        reader.endArray();
+    }
+
+    private static void readMessage(JsonReader reader, Result result) throws IOException {
+        JsonToken token = reader.peek();
+        if (token == JsonToken.STRING) {
+            result.append(reader.nextString());
+            return;
+        }
+        if (token != JsonToken.BEGIN_OBJECT) {
+            reader.skipValue();
+            return;
+        }
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (PROP_CONTENT.equals(name)) {
+                readContent(reader, result);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private static void readContent(JsonReader reader, Result result) throws IOException {
+        JsonToken token = reader.peek();
+        if (token == JsonToken.STRING) {
+            result.append(reader.nextString());
+            return;
+        }
+        if (token != JsonToken.BEGIN_ARRAY) {
+            reader.skipValue();
+            return;
+        }
+        // Content can be split into parts, such as {"type": "text", "text": "..."}
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                reader.skipValue();
+                continue;
+            }
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (PROP_TEXT.equals(reader.nextName()) && reader.peek() == JsonToken.STRING) {
+                    result.append(reader.nextString());
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        reader.endArray();
+    }
+
+    /**
+     * Accumulates the parts of the projected response
+     */
+    private static class Result {
+        private StringBuilder text;
+        private JsonElement usage;
+        private JsonElement error;
+
+        void append(String value) {
+            if (text == null) {
+                text = new StringBuilder(value.length());
+            }
+            text.append(value);
+        }
+
+        boolean isEmpty() {
+            return text == null && usage == null && error == null;
+        }
+
+        String toJson(boolean includeUsage) {
+            JsonObject envelope = new JsonObject();
+            if (text != null || error == null) {
+                envelope.addProperty(PROP_MESSAGE, text != null ? text.toString() : StringUtils.EMPTY);
+            }
+            if (includeUsage && usage != null) {
+                envelope.add(PROP_USAGE, usage);
+            }
+            if (error != null) {
+                envelope.add(Constants.PROP_ERROR, error);
+            }
+            return envelope.toString();
+        }
+    }
+}
@@ -15,15 +15,19 @@ package com.exadel.etoolbox.insider.service.impl;
 
 import com.adobe.granite.crypto.CryptoException;
 import com.adobe.granite.crypto.CryptoSupport;
+import com.exadel.etoolbox.insider.config.ItemDetails;
 import com.exadel.etoolbox.insider.service.ServiceException;
 import com.exadel.etoolbox.insider.service.ServiceProvider;
 import com.exadel.etoolbox.insider.service.ServiceProviderConfig;
+import com.exadel.etoolbox.insider.servlet.media.RenditionService;
 import com.exadel.etoolbox.insider.util.Constants;
-import com.exadel.etoolbox.insider.util.JsonUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.ObjectUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.http.Header;
 import org.apache.http.HttpHeaders;
+import org.apache.http.HttpStatus;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.entity.ContentType;
@@ -33,24 +37,30 @@ import org.apache.http.util.EntityUtils;
 import org.apache.sling.api.SlingHttpServletRequest;
 import org.apache.sling.api.request.RequestParameter;
 import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.api.resource.ValueMap;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.Modified;
 import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.annotations.ReferenceCardinality;
+import org.osgi.service.component.annotations.ReferencePolicy;
 import org.osgi.service.metatype.annotations.Designate;
 
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.net.SocketTimeoutException;
 import java.nio.charset.StandardCharsets;
 import java.util.Base64;
-import java.util.Map;
 
 /**
  * Default implementation of the {@link ServiceProvider} interface aimed at communicating with third-party data
  * providers. This implementation allows creating multiple instances for various endpoints, etc. via the OSGi config
- * factory mechanism
+ * factory mechanism. If the request contains the {@code projection} parameter, the upstream response is reduced to
+ * a compact envelope with the answer text (see {@link ResponseProjection}). Asset references in the request payload are
+ * replaced with the content of the matching renditions (see {@link AssetInliner})
  */
 @Component(service = ServiceProvider.class)
 @Designate(ocd = ServiceProviderConfig.class, factory = true)
@@ -60,6 +70,7 @@ public class ServiceProviderImpl implements ServiceProvider {
     private static final String HTTP_HEADER_BEARER = "Bearer ";
 
     private static final String PARAM_DRY_RUN = "dryRun";
+    private static final String PROP_TOKEN = "_token";
 
     private String id;
     private String url;
@@ -72,6 +83,9 @@ public class ServiceProviderImpl implements ServiceProvider {
     @Reference
     private CryptoSupport cryptoSupport;
 
+    @Reference(cardinality = ReferenceCardinality.OPTIONAL, policy = ReferencePolicy.DYNAMIC)
+    private volatile RenditionService renditionService;
+
     @Activate
     @Modified
     private void activate(ServiceProviderConfig config) {
@@ -110,8 +124,50 @@ public class ServiceProviderImpl implements ServiceProvider {
             return Constants.EMPTY_JSON;
         }
 
+        return execute(
+                requestPayload,
+                request.getResourceResolver(),
+                request.getParameter(Constants.PROP_PATH),
+                ResponseProjection.from(request),
+                false);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public @NotNull String getResponse(
+            @NotNull String payload,
+            @NotNull ResourceResolver resolver,
+            @Nullable String path) throws ServiceException {
+
+        if (StringUtils.isBlank(payload)) {
+            throw new ServiceException("Request payload is empty or invalid");
+        }
+        log.info("Performing request to {}", url);
+        log.debug("Sending payload to {}: {}", url, payload);
+        // A server-side request is not awaited by an author, so its images are processed in the background
+        return execute(payload, resolver, path, ResponseProjection.text(), true);
+    }
+
+    private String execute(
+            String requestPayload,
+            ResourceResolver resolver,
+            String path,
+            ResponseProjection projection,
+            boolean background) throws ServiceException {
+
+        RenditionService effectiveRenditionService = renditionService;
+        if (effectiveRenditionService != null) {
+            requestPayload = AssetInliner.inline(
+                    requestPayload,
+                    resolver,
+                    effectiveRenditionService,
+                    background);
+        }
+
         HttpPost httpPost = new HttpPost(url);
-        String effectiveToken = getToken(request);
+        String effectiveToken = getToken(resolver, path);
         if (StringUtils.isNotBlank(effectiveToken)) {
             httpPost.setHeader(HttpHeaders.AUTHORIZATION, HTTP_HEADER_BEARER + effectiveToken);
         }
@@ -130,7 +186,18 @@ public class ServiceProviderImpl implements ServiceProvider {
                             .get();
                     CloseableHttpResponse response = client.execute(httpPost)
             ) {
-                String responseContent = IOUtils.toString(response.getEntity().getContent(), StandardCharsets.UTF_8);
+                // An error status, such as 401 or 429, means that the provider is not available to the user. It is not
+                // retried at once, and it is reported as a failure so that it is not taken for a valid response
+                int status = response.getStatusLine().getStatusCode();
+                if (status >= HttpStatus.SC_BAD_REQUEST) {
+                    log.error("Request to {} failed with status {}", url, status);
+                    throw new ServiceException("Request to " + url + " failed with status " + status);
+                }
+                String responseContent = projection != null
+                        ? projection.apply(
+                                new InputStreamReader(response.getEntity().getContent(), StandardCharsets.UTF_8),
+                                getContentType(response))
+                        : IOUtils.toString(response.getEntity().getContent(), StandardCharsets.UTF_8);
                 EntityUtils.consume(response.getEntity());
                 log.info("Request to {} succeeded", url);
                 log.debug("Got response from {}: {}", url, responseContent);
@@ -150,15 +217,14 @@ public class ServiceProviderImpl implements ServiceProvider {
        Token logic
        ----------- */
 
-    private String getToken(SlingHttpServletRequest request) {
-        String path = request.getParameter(Constants.PROP_PATH);
+    private String getToken(ResourceResolver resolver, String path) {
         if (StringUtils.isEmpty(path)) {
             return token;
         }
-        Resource itemResource = request.getResourceResolver().getResource("/conf/etoolbox/authoring-insider/" + path);
+        Resource itemResource = resolver.getResource("/conf/etoolbox/authoring-insider/" + path);
         ValueMap itemProperties = itemResource != null ? itemResource.getValueMap() : ValueMap.EMPTY;
-        Map<String, Object> itemPropertiesDetails = JsonUtil.getMap(itemProperties.get(Constants.PROP_DETAILS, String.class));
-        String effectiveToken = itemPropertiesDetails.getOrDefault("_token", token).toString();
+        ItemDetails itemDetails = ItemDetails.parse(itemProperties.get(Constants.PROP_DETAILS, String.class));
+        String effectiveToken = ObjectUtils.defaultIfNull(itemDetails.getString(PROP_TOKEN), token);
         if (StringUtils.startsWith(effectiveToken, Constants.PREFIX_ENCRYPT)) {
             return decrypt(effectiveToken);
         }
@@ -194,4 +260,9 @@ public class ServiceProviderImpl implements ServiceProvider {
         RequestParameter dryRun = request.getRequestParameter(PARAM_DRY_RUN);
         return dryRun != null && Boolean.parseBoolean(dryRun.getString());
     }
+
+    private static String getContentType(CloseableHttpResponse response) {
+        Header header = response.getEntity().getContentType();
+        return header != null ? header.getValue() : null;
+    }
 }
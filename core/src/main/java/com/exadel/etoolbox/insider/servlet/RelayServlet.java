@@ -15,6 +15,7 @@ package com.exadel.etoolbox.insider.servlet;
 
 import com.exadel.etoolbox.insider.service.ServiceException;
 import com.exadel.etoolbox.insider.service.ServiceProvider;
+import com.exadel.etoolbox.insider.service.ServiceStatusTracker;
 import com.exadel.etoolbox.insider.util.Constants;
 import com.exadel.etoolbox.insider.util.JsonUtil;
 import lombok.Getter;
@@ -72,6 +73,9 @@ public class RelayServlet extends SlingAllMethodsServlet {
     @Reference(cardinality = ReferenceCardinality.MULTIPLE, policy = ReferencePolicy.DYNAMIC)
     private volatile List<ServiceProvider> providers;
 
+    @Reference
+    private transient ServiceStatusTracker statusTracker;
+
     private Cache<Future<StatusResponse>> responseCache;
     private int waitTimeout;
 
@@ -187,8 +191,10 @@ public class RelayServlet extends SlingAllMethodsServlet {
             try {
                 responseString = provider.getResponse(request);
                 waiting.countDown();
+                statusTracker.record(provider.getId(), true);
                 return new StatusResponse(HttpStatus.SC_OK, responseString);
             } catch (ServiceException e) {
+                statusTracker.record(provider.getId(), false);
                 return new StatusResponse(HttpStatus.SC_INTERNAL_SERVER_ERROR, e.getMessage());
             }
         };
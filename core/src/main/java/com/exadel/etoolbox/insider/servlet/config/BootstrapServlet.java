@@ -0,0 +1,135 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.insider.servlet.config;
+
+import com.exadel.etoolbox.insider.config.ConfigSnapshot;
+import com.exadel.etoolbox.insider.config.ConfigSnapshotCache;
+import com.exadel.etoolbox.insider.service.ServiceProvider;
+import com.exadel.etoolbox.insider.service.ServiceStatusTracker;
+import com.exadel.etoolbox.insider.util.Constants;
+import com.exadel.etoolbox.insider.util.HttpCacheUtil;
+import com.exadel.etoolbox.insider.util.JsonUtil;
+import com.google.gson.stream.JsonWriter;
+import org.apache.http.HttpHeaders;
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.api.SlingHttpServletResponse;
+import org.apache.sling.api.servlets.ServletResolverConstants;
+import org.apache.sling.api.servlets.SlingSafeMethodsServlet;
+import org.jetbrains.annotations.NotNull;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.annotations.ReferenceCardinality;
+import org.osgi.service.component.annotations.ReferencePolicy;
+
+import javax.servlet.Servlet;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+/**
+ * A Sling Servlet implementation that returns in a single response everything the Authoring Insider's UI needs to
+ * start up: the configuration data for tools and providers, the list of registered {@link ServiceProvider}s with their
+ * recent availability, and the hints on capabilities supported by the server. The response is served with an
+ * {@code ETag} so that clients can revalidate their copy with a conditional request
+ */
+@Component(
+        service = Servlet.class,
+        property = {
+                ServletResolverConstants.SLING_SERVLET_METHODS + "=GET",
+                ServletResolverConstants.SLING_SERVLET_RESOURCE_TYPES + "=/bin/etoolbox/authoring-insider/config",
+                ServletResolverConstants.SLING_SERVLET_SELECTORS + "=bootstrap",
+                ServletResolverConstants.SLING_SERVLET_EXTENSIONS + "=json"
+        }
+)
+public class BootstrapServlet extends SlingSafeMethodsServlet {
+
+    static final List<String> CAPABILITIES = Arrays.asList(
+            "config.dialog-schema",
+            "config.etag",
+            "media.base64",
+            "media.metadata",
+            "relay.asset-reference",
+            "relay.projection");
+
+    private static final String PROP_CAPABILITIES = "capabilities";
+    private static final String PROP_CONFIG = "config";
+    private static final String PROP_ID = "id";
+    private static final String PROP_SERVICES = "services";
+    private static final String PROP_STATUS = "status";
+
+    @Reference(cardinality = ReferenceCardinality.MULTIPLE, policy = ReferencePolicy.DYNAMIC)
+    private volatile List<ServiceProvider> providers;
+
+    @Reference
+    private transient ConfigSnapshotCache snapshotCache;
+
+    @Reference
+    private transient ServiceStatusTracker statusTracker;
+
+    /**
+     * Processes a GET request targeted at a configuration resource with the {@code bootstrap} selector
+     * @param request  The {@link SlingHttpServletRequest} object
+     * @param response The {@link SlingHttpServletResponse} object
+     * @throws IOException If an I/O error occurs
+     */
+    @Override
+    protected void doGet(
+            @NotNull SlingHttpServletRequest request,
+            @NotNull SlingHttpServletResponse response) throws IOException {
+
+        response.setHeader(HttpHeaders.CACHE_CONTROL, Constants.HEADER_NO_CACHE);
+        ConfigSnapshot snapshot = snapshotCache.getSnapshot();
+        String content = getContent(snapshot);
+        if (HttpCacheUtil.checkNotModified(request, response, HttpCacheUtil.getETag(content))) {
+            return;
+        }
+        JsonUtil.writeTo(response, content);
+    }
+
+    private String getContent(ConfigSnapshot snapshot) throws IOException {
+        StringWriter stringWriter = new StringWriter();
+        JsonWriter jsonWriter = new JsonWriter(stringWriter);
+        jsonWriter.setHtmlSafe(true);
+        jsonWriter.beginObject();
+        jsonWriter.name(PROP_CONFIG).jsonValue(snapshot.getJson());
+
+        jsonWriter.name(PROP_SERVICES).beginArray();
+        // Providers are sorted so that the same set of services always produces the same entity tag
+        List<ServiceProvider> sortedProviders = providers
+                .stream()
+                .sorted(Comparator.comparing(ServiceProvider::getId))
+                .collect(Collectors.toList());
+        for (ServiceProvider provider : sortedProviders) {
+            jsonWriter.beginObject();
+            jsonWriter.name(PROP_ID).value(provider.getId());
+            jsonWriter.name(PROP_STATUS).value(statusTracker.getStatus(provider.getId()).name().toLowerCase(Locale.ROOT));
+            jsonWriter.endObject();
+        }
+        jsonWriter.endArray();
+
+        jsonWriter.name(PROP_CAPABILITIES).beginArray();
+        for (String capability : CAPABILITIES) {
+            jsonWriter.value(capability);
+        }
+        jsonWriter.endArray();
+
+        jsonWriter.endObject();
+        jsonWriter.flush();
+        return stringWriter.toString();
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.insider.servlet.config;
+
+import com.exadel.etoolbox.insider.util.Constants;
+import com.exadel.etoolbox.insider.util.JsonUtil;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.HttpHeaders;
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.api.SlingHttpServletResponse;
+import org.apache.sling.api.servlets.ServletResolverConstants;
+import org.apache.sling.api.servlets.SlingAllMethodsServlet;
+import org.jetbrains.annotations.NotNull;
+import org.osgi.service.component.annotations.Component;
+
+import javax.servlet.Servlet;
+import java.io.IOException;
+
+/**
+ * A Sling Servlet implementation that processes POST requests targeted at Granite UI dialogs with a specific selector
+ * and returns the dialog structure as compact JSON. Unlike {@link ConfigDialogServlet}, this one does not forward the
+ * request to the server-side rendering: the field definitions are merged with the default fields and the current
+ * values of the tool or provider, and the dialog is rendered by the client
+ */
+@Component(
+        service = Servlet.class,
+        property = {
+                ServletResolverConstants.SLING_SERVLET_METHODS + "=POST",
+                ServletResolverConstants.SLING_SERVLET_RESOURCE_TYPES + "=granite/ui/components/coral/foundation/dialog",
+                ServletResolverConstants.SLING_SERVLET_SELECTORS + "=eai",
+                ServletResolverConstants.SLING_SERVLET_EXTENSIONS + "=json",
+        }
+)
+public class ConfigDialogSchemaServlet extends SlingAllMethodsServlet {
+
+    /**
+     * Processes a POST request that targets at a Granite UI dialog resource and contains the {@code .eai.} selector
+     * and the {@code json} extension
+     * @param request  The {@link SlingHttpServletRequest} object
+     * @param response The {@link SlingHttpServletResponse} object
+     * @throws IOException If an I/O error occurs
+     */
+    @Override
+    protected void doPost(
+            @NotNull SlingHttpServletRequest request,
+            @NotNull SlingHttpServletResponse response) throws IOException {
+
+        response.setHeader(HttpHeaders.CACHE_CONTROL, Constants.HEADER_NO_CACHE);
+        String fields = IOUtils.toString(request.getReader());
+        JsonUtil.writeTo(response, DialogSchema.from(request, fields));
+    }
+}
@@ -20,6 +20,7 @@ import com.exadel.etoolbox.insider.util.JsonUtil;
 import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.sling.api.SlingHttpServletRequest;
@@ -31,9 +32,11 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 /**
  * A helper class that processes a {@link SlingHttpServletRequest} object to build a Granite {@link DataSource} object
@@ -58,42 +61,64 @@ class DatasourceHelper {
     private static final String RESTYPE_MULTIFIELD = "granite/ui/components/coral/foundation/form/multifield";
     private static final String RESTYPE_TEXT_FIELD = "granite/ui/components/coral/foundation/form/textfield";
 
-    private static final List<String> DEFAULT_FIELDS  = Arrays.asList("enabled", PROP_TYPE, PROP_TITLE, PROP_ICON);
+    static final List<String> DEFAULT_FIELDS  = Arrays.asList("enabled", PROP_TYPE, PROP_TITLE, PROP_ICON);
+
+    private static final int CACHE_SIZE = 100;
+    private static final Map<String, List<Resource>> CACHE = Collections.synchronizedMap(
+            new LinkedHashMap<String, List<Resource>>(CACHE_SIZE, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, List<Resource>> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            });
 
     /**
-     * Processes a {@link SlingHttpServletRequest} object to build a {@link DataSource} object
+     * Processes a {@link SlingHttpServletRequest} object to build a {@link DataSource} object. The structure of dialog
+     * fields is built once per distinct set of field definitions and is then reused; only the resource resolver and
+     * the paths of the current request are bound to it
      * @param request The {@code SlingHttpServletRequest} object that contains the dialog field definitions
      */
     static void process(SlingHttpServletRequest request) {
-        List<Resource> resources = new ArrayList<>();
-
-        List<FieldDefinition> customFields = Collections.emptyList();
         Object customFieldsAttr = request.getAttribute(Constants.PROP_FIELDS);
-        if (customFieldsAttr != null) {
-            customFields = JsonUtil.getList(customFieldsAttr.toString(), FieldDefinition.class);
-        }
+        String customFields = customFieldsAttr != null ? customFieldsAttr.toString() : StringUtils.EMPTY;
+        List<Resource> templates = CACHE.computeIfAbsent(DigestUtils.sha256Hex(customFields), key -> createTemplates(customFields));
 
-        appendDefaultFields(
-                resources,
-                request.getResourceResolver(),
-                request.getRequestPathInfo().getResourcePath() + "/items");
-
-        if (!customFields.isEmpty()) {
-            AtomicInteger index = new AtomicInteger(DEFAULT_FIELDS.size());
-            customFields
-                    .stream()
-                    .filter(field -> StringUtils.isNotBlank(field.getName()))
-                    .filter(field -> !DEFAULT_FIELDS.contains(field.getName()))
-                    .forEach(field -> field.appendTo(
-                            resources,
-                            request.getResourceResolver(),
-                            request.getRequestPathInfo().getResourcePath() + "/items/item" + index.getAndIncrement()));
+        ResourceResolver resolver = request.getResourceResolver();
+        String rootPath = request.getRequestPathInfo().getResourcePath();
+        List<Resource> resources = new ArrayList<>(templates.size());
+        for (Resource template : templates) {
+            resources.add(VirtualResourceHelper.bind(template, resolver, rootPath));
         }
 
         DataSource dataSource = new SimpleDataSource(resources.iterator());
         request.setAttribute(DataSource.class.getName(), dataSource);
     }
 
+    private static List<Resource> createTemplates(String fields) {
+        // Templates are not bound to a resolver and have their paths relative to the dialog resource
+        List<Resource> resources = new ArrayList<>();
+        appendDefaultFields(resources, null, "/items");
+
+        AtomicInteger index = new AtomicInteger(DEFAULT_FIELDS.size());
+        getFieldDefinitions(fields)
+                .forEach(field -> field.appendTo(resources, null, "/items/item" + index.getAndIncrement()));
+        return Collections.unmodifiableList(resources);
+    }
+
+    /**
+     * Parses the given JSON string into a list of custom dialog field definitions. Definitions that have no name or
+     * else duplicate one of the default fields are skipped
+     * @param fields A JSON string containing an array of field definitions
+     * @return A non-null list of {@link FieldDefinition} objects
+     */
+    static List<FieldDefinition> getFieldDefinitions(String fields) {
+        return JsonUtil.getList(fields, FieldDefinition.class)
+                .stream()
+                .filter(field -> StringUtils.isNotBlank(field.getName()))
+                .filter(field -> !DEFAULT_FIELDS.contains(field.getName()))
+                .collect(Collectors.toList());
+    }
+
     private static void appendDefaultFields(
             List<Resource> collection,
             ResourceResolver resolver,
@@ -138,11 +163,11 @@ class DatasourceHelper {
      */
     @Getter
     @SuppressWarnings("unused")
-    private static class FieldDefinition {
+    static class FieldDefinition {
 
-        private static final String TYPE_CHECKBOX = "checkbox";
-        private static final String TYPE_ENCRYPTED = "encrypted";
-        private static final String TYPE_SELECT = "select";
+        static final String TYPE_CHECKBOX = "checkbox";
+        static final String TYPE_ENCRYPTED = "encrypted";
+        static final String TYPE_SELECT = "select";
 
         private String defaultValue;
         private boolean multi;
@@ -168,21 +193,12 @@ class DatasourceHelper {
                 if (TYPE_SELECT.equals(type) && ArrayUtils.isNotEmpty(options)) {
                     Resource[] optionsItems = new Resource[options.length];
                     for (int i = 0; i < options.length; i++) {
-                        String optionContent = options[i];
-                        String optionLabel = optionContent.trim();
-                        String optionValue = optionContent.trim();
-                        if (StringUtils.contains(optionContent, Constants.SEPARATOR_COLON)) {
-                            optionLabel = StringUtils.substringBefore(optionContent, Constants.SEPARATOR_COLON).trim();
-                            optionValue = StringUtils.substringAfter(optionContent, Constants.SEPARATOR_COLON).trim();
-                        } else if (StringUtils.contains(optionContent, Constants.SEPARATOR_PIPE)) {
-                            optionLabel = StringUtils.substringBefore(optionContent, Constants.SEPARATOR_PIPE).trim();
-                            optionValue = StringUtils.substringAfter(optionContent, Constants.SEPARATOR_PIPE).trim();
-                        }
+                        String[] option = splitOption(options[i]);
                         optionsItems[i] = VirtualResourceHelper.newResource(
                                 resolver,
                                 path + "/items/item" + i,
-                                PROP_TEXT, optionLabel,
-                                PROP_VALUE, optionValue);
+                                PROP_TEXT, option[0],
+                                PROP_VALUE, option[1]);
                     }
                     collection.add(VirtualResourceHelper.newContainer(resolver, path, properties, optionsItems));
                 } else {
@@ -199,6 +215,28 @@ class DatasourceHelper {
             }
         }
 
+        /**
+         * Splits an option definition such as {@code "Label: value"} or {@code "Label|value"} into the label and the
+         * value. If there is no separator, the whole string is used for both
+         * @param option A string representing an option of a select field
+         * @return A two-element array containing the label and the value
+         */
+        static String[] splitOption(String option) {
+            String separator = null;
+            if (StringUtils.contains(option, Constants.SEPARATOR_COLON)) {
+                separator = Constants.SEPARATOR_COLON;
+            } else if (StringUtils.contains(option, Constants.SEPARATOR_PIPE)) {
+                separator = Constants.SEPARATOR_PIPE;
+            }
+            if (separator == null) {
+                return new String[]{option.trim(), option.trim()};
+            }
+            return new String[]{
+                    StringUtils.substringBefore(option, separator).trim(),
+                    StringUtils.substringAfter(option, separator).trim()
+            };
+        }
+
         private void populateCasualProperties(Map<String, Object> properties) {
             String resourceType = getResourceType(this.type);
             properties.put(JcrResourceConstants.SLING_RESOURCE_TYPE_PROPERTY, resourceType);
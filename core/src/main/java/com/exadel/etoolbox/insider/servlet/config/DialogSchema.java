@@ -0,0 +1,109 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.insider.servlet.config;
+
+import com.exadel.etoolbox.insider.servlet.config.DatasourceHelper.FieldDefinition;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.sling.api.SlingHttpServletRequest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * A simple data class representing the compact definition of a TouchUI dialog that manages properties of a tool or a
+ * provider. It contains the merged list of default and custom fields together with the current values so that the
+ * dialog can be rendered on the client side
+ */
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+@Getter
+class DialogSchema {
+
+    private static final String SUFFIX_STORE = ".eai.store.html";
+
+    private final String action;
+    private final List<Field> fields;
+    private final Map<String, Object> values;
+
+    /**
+     * Creates a new {@link DialogSchema} instance for the given request
+     * @param request The {@link SlingHttpServletRequest} object; its suffix points to the tool or provider node
+     * @param fields  A JSON string containing an array of custom field definitions
+     * @return A {@code DialogSchema} object
+     */
+    static DialogSchema from(SlingHttpServletRequest request, String fields) {
+        List<Field> schemaFields = new ArrayList<>();
+        schemaFields.add(new Field("title", null, "Title", true, false, false, null, null, null));
+        schemaFields.add(new Field("icon", null, "Icon", false, false, false, "If not specified, default will apply", null, null));
+        schemaFields.add(new Field("type", null, "Type:", false, false, true, null, null, null));
+        DatasourceHelper.getFieldDefinitions(fields).forEach(definition -> schemaFields.add(Field.from(definition)));
+        return new DialogSchema(
+                StringUtils.defaultString(request.getRequestPathInfo().getSuffix()) + SUFFIX_STORE,
+                schemaFields,
+                FormDataHelper.getValues(request));
+    }
+
+    /**
+     * Represents a single dialog field
+     */
+    @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+    @Getter
+    static class Field {
+        private final String name;
+        private final String type;
+        private final String title;
+        private final boolean required;
+        private final boolean multi;
+        private final boolean disabled;
+        private final String placeholder;
+        private final String defaultValue;
+        private final List<Option> options;
+
+        private static Field from(FieldDefinition definition) {
+            List<Option> options = null;
+            if (FieldDefinition.TYPE_SELECT.equals(definition.getType()) && ArrayUtils.isNotEmpty(definition.getOptions())) {
+                options = Arrays.stream(definition.getOptions())
+                        .map(FieldDefinition::splitOption)
+                        .map(parts -> new Option(parts[0], parts[1]))
+                        .collect(Collectors.toList());
+            }
+            return new Field(
+                    definition.getName(),
+                    definition.getType(),
+                    definition.getTitle(),
+                    definition.isRequired(),
+                    definition.isMulti(),
+                    false,
+                    definition.getPlaceholder(),
+                    definition.getDefaultValue(),
+                    options);
+        }
+    }
+
+    /**
+     * Represents an option of a select field
+     */
+    @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+    @Getter
+    static class Option {
+        private final String text;
+        private final String value;
+    }
+}
@@ -15,8 +15,8 @@ package com.exadel.etoolbox.insider.servlet.config;
 
 import com.adobe.granite.crypto.CryptoException;
 import com.adobe.granite.crypto.CryptoSupport;
+import com.exadel.etoolbox.insider.config.ItemDetails;
 import com.exadel.etoolbox.insider.util.Constants;
-import com.exadel.etoolbox.insider.util.JsonUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -32,7 +32,6 @@ import javax.servlet.ServletRequest;
 import java.nio.charset.StandardCharsets;
 import java.util.Base64;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -58,13 +57,13 @@ public class EncryptionPostProcessor implements SlingPostProcessor {
             return;
         }
         Set<String> encryptableFields = getEncryptableFields(request);
-        Map<String, Object> detailsMap = JsonUtil.getMap(request.getParameter(Constants.PROP_DETAILS));
+        ItemDetails details = ItemDetails.parseUncached(request.getParameter(Constants.PROP_DETAILS));
         boolean detailsModified = false;
         for (String key : encryptableFields) {
-            if (detailsMap.containsKey(key)) {
-                String value = (String) detailsMap.get(key);
+            String value = details.getString(key);
+            if (value != null) {
                 String modifiedValue = ensureEncrypted(key, value);
-                detailsMap.put(key, modifiedValue);
+                details = details.with(key, modifiedValue);
                 detailsModified |= !StringUtils.equals(value, modifiedValue);
             }
         }
@@ -77,7 +76,7 @@ public class EncryptionPostProcessor implements SlingPostProcessor {
             log.error("Failed to adapt {} to ModifiableValueMap", resource.getPath());
             return;
         }
-        properties.put(Constants.PROP_DETAILS, JsonUtil.toJson(detailsMap));
+        properties.put(Constants.PROP_DETAILS, details.toJson());
         modifications.add(Modification.onModified(resource.getPath()));
     }
 
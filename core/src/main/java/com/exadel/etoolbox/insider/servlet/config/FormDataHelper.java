@@ -14,8 +14,8 @@
 package com.exadel.etoolbox.insider.servlet.config;
 
 import com.adobe.granite.ui.components.FormData;
+import com.exadel.etoolbox.insider.config.ItemDetails;
 import com.exadel.etoolbox.insider.util.Constants;
-import com.exadel.etoolbox.insider.util.JsonUtil;
 import lombok.AccessLevel;
 import lombok.NoArgsConstructor;
 import org.apache.commons.collections4.MapUtils;
@@ -26,6 +26,7 @@ import org.apache.sling.api.resource.ValueMap;
 import org.apache.sling.api.wrappers.ValueMapDecorator;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
@@ -41,7 +42,7 @@ class FormDataHelper {
      * @param request The {@link SlingHttpServletRequest} object
      */
     static void process(SlingHttpServletRequest request) {
-        Map<String, Object> unpackedDetails = unpackDetails(request);
+        Map<String, Object> unpackedDetails = unpackDetails(getTargetResource(request));
         if (MapUtils.isEmpty(unpackedDetails)) {
             return;
         }
@@ -56,12 +57,38 @@ class FormDataHelper {
         FormData.push(request, valueMap, FormData.NameNotFoundMode.IGNORE_FRESHNESS);
     }
 
-    private static Map<String, Object> unpackDetails(SlingHttpServletRequest request) {
+    /**
+     * Retrieves the values to be displayed in a dialog for a tool or a provider. These are the default properties of
+     * the target resource merged with the key-value pairs unpacked from its {@code details} property. Encrypted values
+     * are returned as they are stored so that they can be sent back without change
+     * @param request The {@link SlingHttpServletRequest} object
+     * @return A non-null {@code Map} object
+     */
+    static Map<String, Object> getValues(SlingHttpServletRequest request) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        Resource targetResource = getTargetResource(request);
+        if (targetResource != null) {
+            ValueMap properties = targetResource.getValueMap();
+            for (String key : DatasourceHelper.DEFAULT_FIELDS) {
+                Object value = properties.get(key);
+                if (value != null) {
+                    values.put(key, value);
+                }
+            }
+        }
+        values.putAll(unpackDetails(targetResource));
+        return values;
+    }
+
+    private static Map<String, Object> unpackDetails(Resource targetResource) {
+        String details = targetResource != null ? targetResource.getValueMap().get(Constants.PROP_DETAILS, String.class) : null;
+        return ItemDetails.parse(details).getValues();
+    }
+
+    private static Resource getTargetResource(SlingHttpServletRequest request) {
         String targetResourcePath = request.getRequestPathInfo().getSuffix();
-        Resource targetResource = StringUtils.isNotEmpty(targetResourcePath)
+        return StringUtils.isNotEmpty(targetResourcePath)
                 ? request.getResourceResolver().getResource(targetResourcePath)
                 : null;
-        String details = targetResource != null ? targetResource.getValueMap().get(Constants.PROP_DETAILS, String.class) : null;
-        return JsonUtil.getMap(details);
     }
 }
@@ -25,6 +25,7 @@ import org.apache.sling.api.resource.ValueMap;
 import org.apache.sling.api.wrappers.ValueMapDecorator;
 import org.apache.sling.jcr.resource.api.JcrResourceConstants;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
@@ -108,6 +109,26 @@ class VirtualResourceHelper {
                 child != null ? Collections.singletonList(child) : Collections.emptyList());
     }
 
+    /**
+     * Creates a copy of the given virtual resource and its descendants bound to the provided {@link ResourceResolver}.
+     * The source resource is treated as a template: its path is considered relative and is prefixed with the given root
+     * path. Property maps are shared between the template and the copy
+     * @param template A {@code Resource} object created by one of the methods of this class
+     * @param resolver A {@code ResourceResolver} object used to create the resource
+     * @param rootPath The path to prepend to the paths of the template resource and its descendants
+     * @return A {@code Resource} object
+     */
+    static Resource bind(Resource template, ResourceResolver resolver, String rootPath) {
+        List<Resource> children = new ArrayList<>();
+        template.listChildren().forEachRemaining(child -> children.add(bind(child, resolver, rootPath)));
+        return new ValueMapResource(
+                resolver,
+                rootPath + template.getPath(),
+                template.getResourceType(),
+                template.getValueMap(),
+                children);
+    }
+
     private static Resource newResource(
             ResourceResolver resolver,
             String path,
@@ -117,7 +138,7 @@ class VirtualResourceHelper {
                 .stream()
                 .filter(e -> e.getValue() != null && StringUtils.isNotBlank(e.getValue().toString()))
                 .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
-        ValueMap valueMap = new ValueMapDecorator(filteredProperties);
+        ValueMap valueMap = new ValueMapDecorator(Collections.unmodifiableMap(filteredProperties));
         return new ValueMapResource(
                 resolver,
                 path,
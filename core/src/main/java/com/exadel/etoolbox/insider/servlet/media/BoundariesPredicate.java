@@ -18,6 +18,7 @@ import com.exadel.etoolbox.insider.util.Constants;
 import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
+import lombok.ToString;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceResolver;
@@ -60,7 +61,13 @@ class BoundariesPredicate implements Predicate<Rendition> {
         return boundaries.contains(size);
     }
 
-    private static Size getSize(Rendition rendition, ResourceResolver resolver) {
+    /**
+     * Retrieves the dimensions of the given rendition from its name or else from its metadata
+     * @param rendition The {@link Rendition} object
+     * @param resolver  The {@link ResourceResolver} object used to access the metadata
+     * @return A non-null {@link Size} object. Might be {@link Size#EMPTY} if the dimensions are unknown
+     */
+    static Size getSize(Rendition rendition, ResourceResolver resolver) {
         Matcher matcher = SIZE_PATTERN.matcher(rendition.getName());
         if (matcher.find()) {
             int width = Integer.parseInt(matcher.group(1));
@@ -140,7 +147,7 @@ class BoundariesPredicate implements Predicate<Rendition> {
     /**
      * A simple data class representing the size of an image
      */
-    @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+    @RequiredArgsConstructor(access = AccessLevel.PACKAGE)
     @Getter
     static class Size {
 
@@ -160,6 +167,7 @@ class BoundariesPredicate implements Predicate<Rendition> {
      */
     @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
     @Getter
+    @ToString
     static class Boundaries {
 
         static final Boundaries DEFAULT = new Boundaries(100, 100, 600, 600);
@@ -173,6 +181,27 @@ class BoundariesPredicate implements Predicate<Rendition> {
             this(left.getWidth(), left.getHeight(), right.getWidth(), right.getHeight());
         }
 
+        /**
+         * Calculates the factor by which an image of the given size should be scaled to fit the boundaries. The
+         * aspect ratio is retained, so the greater boundary is preferred when both dimensions cannot fit
+         * @param size The {@link Size} object
+         * @return A positive number. Values less than 1 mean downscaling
+         */
+        float getScale(Size size) {
+            if (size.isEmpty() || contains(size)) {
+                return 1.0f;
+            }
+            float downScale = Math.min((float) maxWidth / size.getWidth(), (float) maxHeight / size.getHeight());
+            if (downScale < 1.0f) {
+                return downScale;
+            }
+            float upScale = Math.max((float) minWidth / size.getWidth(), (float) minHeight / size.getHeight());
+            if (upScale > 1.0f) {
+                return Math.min(upScale, downScale);
+            }
+            return 1.0f;
+        }
+
         boolean contains(Size size) {
             if (size.isEmpty() || minWidth >= maxWidth || minHeight >= maxHeight) {
                 return true;
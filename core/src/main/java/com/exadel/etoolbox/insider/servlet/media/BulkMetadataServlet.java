@@ -0,0 +1,166 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.insider.servlet.media;
+
+import com.exadel.etoolbox.insider.util.Constants;
+import com.exadel.etoolbox.insider.util.JsonUtil;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpStatus;
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.api.SlingHttpServletResponse;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.servlets.ServletResolverConstants;
+import org.apache.sling.api.servlets.SlingAllMethodsServlet;
+import org.jetbrains.annotations.NotNull;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.annotations.ReferenceCardinality;
+import org.osgi.service.component.annotations.ReferencePolicy;
+
+import javax.servlet.Servlet;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A Sling Servlet implementation that retrieves or updates the metadata of several image assets in one request. For
+ * retrieval, the assets are specified with the repeated {@code path} parameter, and the output is limited to the
+ * metadata keys specified with the {@code keys} parameter. The response is a map of asset paths to metadata. Assets
+ * that are not found or not accessible are omitted. For an update, the payload is a map of asset paths to metadata
+ * values, and all the values are written with a single commit
+ * @see ImageMetadataServlet
+ */
+@Component(
+        service = Servlet.class,
+        property = {
+                ServletResolverConstants.SLING_SERVLET_METHODS + "=GET",
+                ServletResolverConstants.SLING_SERVLET_METHODS + "=POST",
+                ServletResolverConstants.SLING_SERVLET_RESOURCE_TYPES + "=/bin/etoolbox/authoring-insider/metadata",
+                ServletResolverConstants.SLING_SERVLET_EXTENSIONS + "=json"
+        }
+)
+public class BulkMetadataServlet extends SlingAllMethodsServlet {
+
+    private static final String PARAM_PATH = "path";
+
+    private static final String PROP_MISSING = "missing";
+    private static final String PROP_UPDATED = "updated";
+    private static final String PREFIX_DAM = "/content/dam/";
+
+    private static final int MAX_PATHS = 100;
+
+    @Reference(cardinality = ReferenceCardinality.OPTIONAL, policy = ReferencePolicy.DYNAMIC)
+    private transient volatile CaptionIndex captionIndex;
+
+    @Reference(cardinality = ReferenceCardinality.OPTIONAL, policy = ReferencePolicy.DYNAMIC)
+    private transient volatile MetadataWriteQueue writeQueue;
+
+    /**
+     * Processes a GET request targeted at a resource with the {@code /bin/etoolbox/authoring-insider/metadata}
+     * resource type
+     * @param request  The {@link SlingHttpServletRequest} object
+     * @param response The {@link SlingHttpServletResponse} object
+     * @throws IOException If an I/O error occurs
+     */
+    @Override
+    protected void doGet(
+            @NotNull SlingHttpServletRequest request,
+            @NotNull SlingHttpServletResponse response) throws IOException {
+
+        response.setHeader(HttpHeaders.CACHE_CONTROL, Constants.HEADER_NO_CACHE);
+        String[] pathParameters = ArrayUtils.nullToEmpty(request.getParameterValues(PARAM_PATH));
+        Set<String> paths = new LinkedHashSet<>(Arrays.asList(pathParameters));
+        Set<String> keys = MetadataHelper.getKeys(request);
+        if (paths.isEmpty() || keys.isEmpty()) {
+            JsonUtil.writeTo(response, HttpStatus.SC_BAD_REQUEST, Constants.PROP_ERROR, "Paths or keys are missing");
+            return;
+        }
+        if (paths.size() > MAX_PATHS) {
+            JsonUtil.writeTo(response, HttpStatus.SC_BAD_REQUEST, Constants.PROP_ERROR, "Too many paths");
+            return;
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (String path : paths) {
+            Resource resource = getAsset(request.getResourceResolver(), path);
+            Map<String, Object> metadata = resource != null
+                    ? MetadataHelper.getMetadata(resource, keys, captionIndex, writeQueue)
+                    : null;
+            if (metadata != null) {
+                result.put(path, metadata);
+            }
+        }
+        JsonUtil.writeTo(response, result);
+    }
+
+    /**
+     * Processes a POST request targeted at a resource with the {@code /bin/etoolbox/authoring-insider/metadata}
+     * resource type. The payload is a JSON object such as {@code {"/content/dam/image.png": {"eai.caption": "..."}}}.
+     * The response reports the number of updated assets and lists the assets that are not found
+     * @param request  The {@link SlingHttpServletRequest} object
+     * @param response The {@link SlingHttpServletResponse} object
+     * @throws IOException If an I/O error occurs
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void doPost(
+            @NotNull SlingHttpServletRequest request,
+            @NotNull SlingHttpServletResponse response) throws IOException {
+
+        Map<String, Object> payload = JsonUtil.getMap(IOUtils.toString(request.getReader()));
+        if (payload.isEmpty() || !payload.values().stream().allMatch(value -> value instanceof Map
+                && MetadataHelper.isWritable((Map<String, Object>) value))) {
+            JsonUtil.writeTo(response, HttpStatus.SC_BAD_REQUEST, Constants.PROP_ERROR, "Invalid payload");
+            return;
+        }
+        if (payload.size() > MAX_PATHS) {
+            JsonUtil.writeTo(response, HttpStatus.SC_BAD_REQUEST, Constants.PROP_ERROR, "Too many paths");
+            return;
+        }
+
+        ResourceResolver resolver = request.getResourceResolver();
+        int updated = 0;
+        List<String> missing = new ArrayList<>();
+        for (Map.Entry<String, Object> entry : payload.entrySet()) {
+            Resource resource = getAsset(resolver, entry.getKey());
+            Map<String, Object> values = (Map<String, Object>) entry.getValue();
+            if (resource != null && !values.isEmpty() && MetadataHelper.setMetadata(resource, values, captionIndex)) {
+                updated++;
+            } else {
+                missing.add(entry.getKey());
+            }
+        }
+        if (updated > 0) {
+            resolver.commit();
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put(PROP_UPDATED, updated);
+        result.put(PROP_MISSING, missing);
+        JsonUtil.writeTo(response, result);
+    }
+
+    private static Resource getAsset(ResourceResolver resolver, String path) {
+        return StringUtils.startsWith(path, PREFIX_DAM) ? resolver.getResource(path) : null;
+    }
+}
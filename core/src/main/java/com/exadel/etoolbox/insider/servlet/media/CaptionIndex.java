@@ -0,0 +1,308 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.insider.servlet.media;
+
+import com.day.cq.dam.api.Asset;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.ModifiableValueMap;
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.jetbrains.annotations.Nullable;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Modified;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.metatype.annotations.Designate;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps a bounded least-recently-used index of image captions addressed by the perceptual hashes of the images (see
+ * {@link ImageHash}). Near-identical images, such as re-exports, resized copies, or copies in other folders, reuse a
+ * caption from the index instead of requesting a new one from a service provider. The hash of a captioned image is
+ * stored in the asset metadata, so the index can be refilled without processing the images again. The hashes computed
+ * for uncaptioned images are kept in memory per asset revision, so that an image is not processed on every lookup. A
+ * caption saved by an author for an image with no known hash is indexed later, when the hash has been computed in the
+ * background
+ */
+@Component(service = CaptionIndex.class)
+@Designate(ocd = CaptionIndexConfig.class)
+@Slf4j
+public class CaptionIndex {
+
+    public static final String PROP_CAPTION = "eai.caption";
+    public static final String PROP_HASH = "eai.hash";
+
+    private static final String PATH_METADATA = "jcr:content/metadata";
+    private static final String SUBSERVICE = "metadata";
+    private static final String THREAD_NAME = "eai-caption-index";
+    private static final int QUEUE_SIZE = 1_000;
+
+    @Reference
+    private RenditionService renditionService;
+
+    @Reference
+    private ResourceResolverFactory resolverFactory;
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Long> hashes = new LinkedHashMap<>(16, 0.75f, true);
+    private final Set<String> indexedPaths = ConcurrentHashMap.newKeySet();
+
+    private ExecutorService executor;
+
+    private boolean enabled;
+    private int capacity;
+    private int maxDistance;
+
+    @Activate
+    @Modified
+    private synchronized void activate(CaptionIndexConfig config) {
+        enabled = config.enabled();
+        capacity = Math.max(config.capacity(), 0);
+        maxDistance = Math.max(config.maxDistance(), 0);
+        entries.clear();
+        hashes.clear();
+        if (executor == null) {
+            // The queue is bounded; the captions that do not fit are indexed when the assets are captioned in bulk
+            executor = new ThreadPoolExecutor(
+                    1,
+                    1,
+                    0L,
+                    TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(QUEUE_SIZE),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, THREAD_NAME);
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+        }
+    }
+
+    @Deactivate
+    private synchronized void deactivate() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    /**
+     * Gets whether the index is enabled
+     * @return True or false
+     */
+    public synchronized boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Gets whether the index contains no captions
+     * @return True or false
+     */
+    public synchronized boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * Retrieves the perceptual hash of the given asset. The hash stored in the asset metadata is used if present.
+     * Otherwise, the hash is computed by the {@link RenditionService} once per asset revision
+     * @param asset The {@link Asset} object
+     * @return A hash value, or {@code null} if the index is disabled or the hash could not be computed
+     */
+    @Nullable
+    public Long getHash(Asset asset) {
+        if (asset == null || !isEnabled()) {
+            return null;
+        }
+        Long result = getKnownHash(asset);
+        if (result != null) {
+            return result;
+        }
+        try {
+            result = renditionService.getHash(asset);
+        } catch (IOException | RejectedExecutionException e) {
+            log.debug("Could not compute the hash of {}", asset.getPath(), e);
+            return null;
+        }
+        synchronized (this) {
+            hashes.put(getKey(asset), result);
+            while (hashes.size() > capacity) {
+                hashes.remove(hashes.keySet().iterator().next());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Retrieves the perceptual hash of the given asset if it is already known, that is, stored in the asset metadata
+     * or computed before. The image is not processed
+     * @param asset The {@link Asset} object
+     * @return A hash value, or {@code null} if the index is disabled or the hash is not known
+     */
+    @Nullable
+    public Long getKnownHash(Asset asset) {
+        if (asset == null || !isEnabled()) {
+            return null;
+        }
+        Long result = ImageHash.parse(asset.getMetadataValue(PROP_HASH));
+        if (result != null) {
+            return result;
+        }
+        synchronized (this) {
+            return hashes.get(getKey(asset));
+        }
+    }
+
+    private static String getKey(Asset asset) {
+        return asset.getPath() + "@" + asset.getLastModified();
+    }
+
+    /**
+     * Stores the caption of an image in the index in the background. The hash of the image is computed and stored in
+     * the asset metadata, so that the caller does not wait for the image to be processed
+     * @param path    The path of the asset
+     * @param caption The caption
+     */
+    public void putLater(String path, String caption) {
+        ExecutorService effectiveExecutor;
+        synchronized (this) {
+            effectiveExecutor = enabled && capacity > 0 && StringUtils.isNotBlank(caption) ? executor : null;
+        }
+        if (effectiveExecutor == null || !indexedPaths.add(path)) {
+            return;
+        }
+        try {
+            effectiveExecutor.execute(() -> {
+                try {
+                    index(path, caption);
+                } finally {
+                    indexedPaths.remove(path);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            indexedPaths.remove(path);
+            log.debug("Could not index the caption of {}", path);
+        }
+    }
+
+    private void index(String path, String caption) {
+        try (ResourceResolver resolver = resolverFactory.getServiceResourceResolver(
+                Collections.singletonMap(ResourceResolverFactory.SUBSERVICE, SUBSERVICE))) {
+            Resource resource = resolver.getResource(path);
+            Asset asset = resource != null ? resource.adaptTo(Asset.class) : null;
+            Resource metadataResource = resource != null ? resource.getChild(PATH_METADATA) : null;
+            ModifiableValueMap metadata = metadataResource != null
+                    ? metadataResource.adaptTo(ModifiableValueMap.class)
+                    : null;
+            Long hash = asset != null && metadata != null ? getHash(asset) : null;
+            if (hash == null) {
+                return;
+            }
+            metadata.put(PROP_HASH, ImageHash.toString(hash));
+            resolver.commit();
+            put(path, hash, caption);
+        } catch (LoginException | PersistenceException e) {
+            log.warn("Could not store the hash of {}", path, e);
+        }
+    }
+
+    /**
+     * Finds the caption of an image near-identical to the given asset. The image is not processed if the index is
+     * disabled or empty
+     * @param asset The {@link Asset} object
+     * @return A caption, or {@code null} if there is no near-identical image in the index
+     */
+    @Nullable
+    public String findSimilar(Asset asset) {
+        if (asset == null || !isEnabled() || isEmpty()) {
+            return null;
+        }
+        Long hash = getHash(asset);
+        return hash != null ? find(asset.getPath(), hash) : null;
+    }
+
+    /**
+     * Finds the caption of the image most similar to the one with the given hash
+     * @param path The path of the asset being captioned. The entry of this asset is not considered
+     * @param hash The hash of the image
+     * @return A caption, or {@code null} if there is no near-identical image in the index
+     */
+    @Nullable
+    public synchronized String find(String path, long hash) {
+        if (!enabled) {
+            return null;
+        }
+        Entry result = null;
+        int resultDistance = Integer.MAX_VALUE;
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            int distance = ImageHash.distance(hash, entry.getValue().hash);
+            if (distance <= maxDistance && distance < resultDistance && !entry.getKey().equals(path)) {
+                result = entry.getValue();
+                resultDistance = distance;
+            }
+        }
+        if (result == null) {
+            return null;
+        }
+        log.debug("Found a caption for {} at distance {}", path, resultDistance);
+        return result.caption;
+    }
+
+    /**
+     * Gets whether the images with the given hashes are considered near-identical
+     * @param first  The hash of the first image
+     * @param second The hash of the second image
+     * @return True or false. If the index is disabled, {@code false} is returned
+     */
+    public synchronized boolean isSimilar(long first, long second) {
+        return enabled && ImageHash.distance(first, second) <= maxDistance;
+    }
+
+    /**
+     * Stores the caption of an image in the index
+     * @param path    The path of the asset
+     * @param hash    The hash of the image
+     * @param caption The caption
+     */
+    public synchronized void put(String path, long hash, String caption) {
+        if (!enabled || capacity == 0 || StringUtils.isBlank(caption)) {
+            return;
+        }
+        entries.put(path, new Entry(hash, caption));
+        while (entries.size() > capacity) {
+            entries.remove(entries.keySet().iterator().next());
+        }
+    }
+
+    @RequiredArgsConstructor
+    private static class Entry {
+        private final long hash;
+        private final String caption;
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.insider.servlet.media;
+
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.AttributeType;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+
+/**
+ * Defines the configuration for the {@link CaptionIndex}
+ */
+@ObjectClassDefinition(name="EToolbox Authoring Insider - Caption Index Config")
+public @interface CaptionIndexConfig {
+
+    int DEFAULT_CAPACITY = 10_000;
+    int DEFAULT_MAX_DISTANCE = 4;
+
+    @AttributeDefinition(
+            name = "Enabled",
+            description = "Check to reuse the captions of near-identical images instead of requesting new ones",
+            type = AttributeType.BOOLEAN
+    )
+    boolean enabled() default true;
+
+    @AttributeDefinition(
+            name = "Capacity",
+            description = "Specify the number of captioned images kept in the index",
+            type = AttributeType.INTEGER
+    )
+    int capacity() default DEFAULT_CAPACITY;
+
+    @AttributeDefinition(
+            name = "Max Distance",
+            description = "Specify the number of bits (out of 64) in which the perceptual hashes of two images may "
+                    + "differ for the images to be considered near-identical",
+            type = AttributeType.INTEGER
+    )
+    int maxDistance() default DEFAULT_MAX_DISTANCE;
+}
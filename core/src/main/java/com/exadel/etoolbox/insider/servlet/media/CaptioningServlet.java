@@ -0,0 +1,131 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.insider.servlet.media;
+
+import com.exadel.etoolbox.insider.job.CaptioningJob;
+import com.exadel.etoolbox.insider.util.Constants;
+import com.exadel.etoolbox.insider.util.JsonUtil;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpStatus;
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.api.SlingHttpServletResponse;
+import org.apache.sling.api.servlets.ServletResolverConstants;
+import org.apache.sling.api.servlets.SlingAllMethodsServlet;
+import org.apache.sling.event.jobs.Job;
+import org.apache.sling.event.jobs.JobManager;
+import org.jetbrains.annotations.NotNull;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+
+import javax.servlet.Servlet;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A Sling Servlet implementation that starts bulk captioning of the image assets in a DAM folder and reports the
+ * progress of a started job
+ * @see CaptioningJob
+ */
+@Component(
+        service = Servlet.class,
+        property = {
+                ServletResolverConstants.SLING_SERVLET_METHODS + "=GET",
+                ServletResolverConstants.SLING_SERVLET_METHODS + "=POST",
+                ServletResolverConstants.SLING_SERVLET_RESOURCE_TYPES + "=/bin/etoolbox/authoring-insider/captioning",
+                ServletResolverConstants.SLING_SERVLET_EXTENSIONS + "=json"
+        }
+)
+public class CaptioningServlet extends SlingAllMethodsServlet {
+
+    private static final String PARAM_JOB = "job";
+
+    private static final String[] JOB_PROPERTIES = {
+            CaptioningJob.PROP_FOLDER,
+            CaptioningJob.PROP_PROVIDER,
+            CaptioningJob.PROP_MODEL,
+            CaptioningJob.PROP_PROMPT,
+            CaptioningJob.PROP_SIZE,
+            CaptioningJob.PROP_DETAIL,
+            Constants.PROP_PATH
+    };
+
+    @Reference
+    private transient JobManager jobManager;
+
+    /**
+     * Processes a GET request that retrieves the state of a captioning job specified by the {@code job} parameter
+     * @param request  The {@link SlingHttpServletRequest} object
+     * @param response The {@link SlingHttpServletResponse} object
+     * @throws IOException If an I/O error occurs
+     */
+    @Override
+    protected void doGet(
+            @NotNull SlingHttpServletRequest request,
+            @NotNull SlingHttpServletResponse response) throws IOException {
+
+        response.setHeader(HttpHeaders.CACHE_CONTROL, Constants.HEADER_NO_CACHE);
+        String jobId = request.getParameter(PARAM_JOB);
+        Job job = StringUtils.isNotEmpty(jobId) ? jobManager.getJobById(jobId) : null;
+        if (job == null || !CaptioningJob.TOPIC.equals(job.getTopic())) {
+            JsonUtil.writeTo(response, HttpStatus.SC_NOT_FOUND, Constants.PROP_ERROR, "Job is not found");
+            return;
+        }
+        Map<String, Object> result = new HashMap<>();
+        result.put(PARAM_JOB, job.getId());
+        result.put("state", job.getJobState().name());
+        result.put("total", job.getProgressStepCount());
+        result.put("finished", job.getFinishedProgressStep());
+        result.put("message", job.getResultMessage());
+        JsonUtil.writeTo(response, result);
+    }
+
+    /**
+     * Processes a POST request that starts a captioning job. The request must contain the {@code folder} and
+     * {@code provider} parameters. Optional parameters are {@code model}, {@code prompt}, {@code size},
+     * {@code detail}, and {@code _path}
+     * @param request  The {@link SlingHttpServletRequest} object
+     * @param response The {@link SlingHttpServletResponse} object
+     * @throws IOException If an I/O error occurs
+     */
+    @Override
+    protected void doPost(
+            @NotNull SlingHttpServletRequest request,
+            @NotNull SlingHttpServletResponse response) throws IOException {
+
+        String folder = request.getParameter(CaptioningJob.PROP_FOLDER);
+        if (!StringUtils.startsWith(folder, "/content/dam/") || request.getResourceResolver().getResource(folder) == null) {
+            JsonUtil.writeTo(response, HttpStatus.SC_BAD_REQUEST, Constants.PROP_ERROR, "Folder is not valid");
+            return;
+        }
+        if (StringUtils.isBlank(request.getParameter(CaptioningJob.PROP_PROVIDER))) {
+            JsonUtil.writeTo(response, HttpStatus.SC_BAD_REQUEST, Constants.PROP_ERROR, "Provider is not specified");
+            return;
+        }
+        Map<String, Object> properties = new HashMap<>();
+        for (String name : JOB_PROPERTIES) {
+            String value = request.getParameter(name);
+            if (StringUtils.isNotBlank(value)) {
+                properties.put(name, value);
+            }
+        }
+        Job job = jobManager.addJob(CaptioningJob.TOPIC, properties);
+        if (job == null) {
+            JsonUtil.writeTo(response, HttpStatus.SC_SERVICE_UNAVAILABLE, Constants.PROP_ERROR, "Could not start job");
+            return;
+        }
+        JsonUtil.writeTo(response, HttpStatus.SC_ACCEPTED, PARAM_JOB, job.getId());
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.insider.servlet.media;
+
+import com.day.cq.dam.api.Rendition;
+import com.day.image.Layer;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.imageio.IIOException;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+
+/**
+ * A helper class that decodes images which are going to be scaled down. The dimensions of an image are read first, and
+ * if the image is much larger than needed, it is decoded with source subsampling so that the full-resolution raster
+ * is never held in memory. The final resize is still done in high quality
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+@Slf4j
+class DecodingHelper {
+
+    // The image is decoded at least twice as large as the target size so that the final resize has enough detail to
+    // produce a smooth result
+    private static final int OVERSAMPLING = 2;
+
+    /**
+     * Decodes the given rendition into a {@link Layer} that is not less than twice the size required by the boundaries.
+     * If the rendition cannot be handled by ImageIO, it is decoded at full resolution
+     * @param rendition  The {@link Rendition} object
+     * @param boundaries The {@link BoundariesPredicate.Boundaries} object
+     * @return A {@link Layer} object
+     * @throws IOException If the rendition cannot be read or decoded
+     */
+    static Layer decode(Rendition rendition, BoundariesPredicate.Boundaries boundaries) throws IOException {
+        try (
+                InputStream input = getStream(rendition);
+                ImageInputStream imageInput = ImageIO.createImageInputStream(input)) {
+            Iterator<ImageReader> readers = imageInput != null
+                    ? ImageIO.getImageReaders(imageInput)
+                    : null;
+            if (readers != null && readers.hasNext()) {
+                return decode(readers.next(), imageInput, boundaries);
+            }
+        } catch (IIOException e) {
+            // ImageIO does not handle some variants of the formats, such as CMYK JPEG images, that Layer can decode
+            log.debug("Could not decode rendition {} with ImageIO", rendition.getPath(), e);
+        }
+        try (InputStream input = getStream(rendition)) {
+            return new Layer(input);
+        }
+    }
+
+    /**
+     * Calculates the subsampling factor with which an image of the given size is decoded to fit the boundaries
+     * @param size       The {@link BoundariesPredicate.Size} of the image
+     * @param boundaries The {@link BoundariesPredicate.Boundaries} object
+     * @return A positive integer value. 1 means that the image is decoded at full resolution
+     */
+    static int getSubsampling(BoundariesPredicate.Size size, BoundariesPredicate.Boundaries boundaries) {
+        float scale = boundaries.getScale(size);
+        if (scale >= 1.0f) {
+            return 1;
+        }
+        return Math.max((int) (1 / (scale * OVERSAMPLING)), 1);
+    }
+
+    private static Layer decode(
+            ImageReader reader,
+            ImageInputStream input,
+            BoundariesPredicate.Boundaries boundaries) throws IOException {
+        try {
+            reader.setInput(input, true, true);
+            BoundariesPredicate.Size size = new BoundariesPredicate.Size(reader.getWidth(0), reader.getHeight(0));
+            int subsampling = getSubsampling(size, boundaries);
+            ImageReadParam param = reader.getDefaultReadParam();
+            if (subsampling > 1) {
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+            }
+            BufferedImage image = reader.read(0, param);
+            return new Layer(image);
+        } finally {
+            reader.dispose();
+        }
+    }
+
+    private static InputStream getStream(Rendition rendition) throws IOException {
+        InputStream result = rendition.getStream();
+        if (result == null) {
+            throw new IOException("Could not read rendition stream");
+        }
+        return result;
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.insider.servlet.media;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import org.apache.commons.lang3.StringUtils;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Computes difference hashes (dHash) of images. An image is reduced to a 9 x 8 grid of average luminance values, and
+ * every bit of the 64-bit hash tells whether a cell is brighter than its right neighbor. The hash barely depends on
+ * the size, the format, or the compression of an image, so re-exports and differently sized renditions of the same
+ * picture produce hashes that differ in a few bits at most. Since the grid covers the whole frame, a cropped or
+ * shifted picture is not considered near-identical
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class ImageHash {
+
+    private static final int GRID_WIDTH = 9;
+    private static final int GRID_HEIGHT = 8;
+    private static final int HEX_RADIX = 16;
+
+    /**
+     * Computes the hash of the given image. Transparent pixels are considered to lie on a white background
+     * @param image The {@link BufferedImage} object
+     * @return A 64-bit hash value
+     */
+    static long compute(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        double[][] luminance = new double[GRID_HEIGHT][GRID_WIDTH];
+        int[][] counts = new int[GRID_HEIGHT][GRID_WIDTH];
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            int cellY = (int) ((long) y * GRID_HEIGHT / height);
+            image.getRGB(0, y, width, 1, row, 0, width);
+            for (int x = 0; x < width; x++) {
+                int cellX = (int) ((long) x * GRID_WIDTH / width);
+                luminance[cellY][cellX] += getLuminance(row[x]);
+                counts[cellY][cellX]++;
+            }
+        }
+        long result = 0;
+        for (int y = 0; y < GRID_HEIGHT; y++) {
+            for (int x = 0; x < GRID_WIDTH - 1; x++) {
+                result <<= 1;
+                if (getAverage(luminance, counts, x, y) > getAverage(luminance, counts, x + 1, y)) {
+                    result |= 1;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Retrieves the number of bits in which the given hashes differ
+     * @param first  A hash value
+     * @param second Another hash value
+     * @return A value from {@code 0} (same images) to {@code 64}
+     */
+    public static int distance(long first, long second) {
+        return Long.bitCount(first ^ second);
+    }
+
+    /**
+     * Converts the given hash to a string that can be stored in asset metadata
+     * @param hash A hash value
+     * @return A hexadecimal string
+     */
+    public static String toString(long hash) {
+        return StringUtils.leftPad(Long.toHexString(hash), Long.SIZE / 4, '0');
+    }
+
+    /**
+     * Parses a hash from a string produced by {@link ImageHash#toString(long)}
+     * @param value A string value
+     * @return A hash value, or {@code null} if the string is not a valid hash
+     */
+    public static Long parse(String value) {
+        if (StringUtils.length(value) != Long.SIZE / 4) {
+            return null;
+        }
+        try {
+            return Long.parseUnsignedLong(value, HEX_RADIX);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static double getLuminance(int argb) {
+        double alpha = ((argb >>> 24) & 0xFF) / 255.0;
+        double value = 0.299 * ((argb >> 16) & 0xFF) + 0.587 * ((argb >> 8) & 0xFF) + 0.114 * (argb & 0xFF);
+        return value * alpha + 255 * (1 - alpha);
+    }
+
+    private static double getAverage(double[][] luminance, int[][] counts, int x, int y) {
+        return counts[y][x] > 0 ? luminance[y][x] / counts[y][x] : 0;
+    }
+}
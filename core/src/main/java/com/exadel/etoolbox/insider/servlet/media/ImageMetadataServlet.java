@@ -1,28 +1,28 @@
 package com.exadel.etoolbox.insider.servlet.media;
 
-import com.day.cq.dam.api.Asset;
 import com.exadel.etoolbox.insider.util.Constants;
 import com.exadel.etoolbox.insider.util.JsonUtil;
-import org.apache.commons.collections4.MapUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.http.HttpStatus;
 import org.apache.sling.api.SlingHttpServletRequest;
 import org.apache.sling.api.SlingHttpServletResponse;
-import org.apache.sling.api.resource.ModifiableValueMap;
 import org.apache.sling.api.resource.Resource;
-import org.apache.sling.api.resource.ValueMap;
 import org.apache.sling.api.servlets.ServletResolverConstants;
 import org.apache.sling.api.servlets.SlingAllMethodsServlet;
 import org.jetbrains.annotations.NotNull;
 import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.annotations.ReferenceCardinality;
+import org.osgi.service.component.annotations.ReferencePolicy;
 
 import javax.servlet.Servlet;
 import java.io.IOException;
-import java.util.HashMap;
 import java.util.Map;
 
 /**
- * A Sling Servlet implementation that provides access to the metadata of an image asset.
+ * A Sling Servlet implementation that provides access to the metadata of an image asset. The {@code keys} parameter
+ * limits the output to the given metadata keys. If the asset has no caption, the caption of a near-identical image is
+ * offered as a suggestion (see {@link CaptionIndex})
  */
 @Component(
         service = Servlet.class,
@@ -37,8 +37,15 @@ public class ImageMetadataServlet extends SlingAllMethodsServlet {
 
     private static final String PROP_STATUS = "status";
 
+    @Reference(cardinality = ReferenceCardinality.OPTIONAL, policy = ReferencePolicy.DYNAMIC)
+    private transient volatile CaptionIndex captionIndex;
+
+    @Reference(cardinality = ReferenceCardinality.OPTIONAL, policy = ReferencePolicy.DYNAMIC)
+    private transient volatile MetadataWriteQueue writeQueue;
+
     /**
-     * Processes a GET request targeted at an image asset resource to retrieve its metadata.
+     * Processes a GET request targeted at an image asset resource to retrieve its metadata. If the request contains
+     * the {@code keys} parameter, only the listed keys are returned.
      * @param request The {@link SlingHttpServletRequest} object
      * @param response The {@link SlingHttpServletResponse} object
      * @throws IOException If an I/O error occurs
@@ -48,24 +55,21 @@ public class ImageMetadataServlet extends SlingAllMethodsServlet {
             @NotNull SlingHttpServletRequest request,
             @NotNull SlingHttpServletResponse response) throws IOException {
 
-        Resource resource = request.getResource();
-        Asset asset = resource.adaptTo(Asset.class);
-        if (asset == null) {
+        Map<String, Object> metadata = MetadataHelper.getMetadata(
+                request.getResource(),
+                MetadataHelper.getKeys(request),
+                captionIndex,
+                writeQueue);
+        if (metadata == null) {
             response.setStatus(HttpStatus.SC_NOT_FOUND);
             return;
         }
-        Map<String, Object> cqMetadata = MapUtils.emptyIfNull(asset.getMetadata());
-        Map<String, Object> fullMetadata = new HashMap<>(cqMetadata);
-        Resource metadataResource = resource.getChild("jcr:content/metadata");
-        if (metadataResource != null) {
-            ValueMap metadataValueMap = metadataResource.getValueMap();
-            fullMetadata.putAll(metadataValueMap);
-        }
-        JsonUtil.writeTo(response, fullMetadata);
+        JsonUtil.writeTo(response, metadata);
     }
 
     /**
-     * Processes a POST request to update the metadata of an image asset.
+     * Processes a POST request to update the metadata of an image asset. If the {@link MetadataWriteQueue} is enabled
+     * and the user is allowed to modify the metadata, the update is queued, and the response has the 202 status
      * @param request The {@link SlingHttpServletRequest} object
      * @param response The {@link SlingHttpServletResponse} object
      * @throws IOException If an I/O error occurs
@@ -77,21 +81,25 @@ public class ImageMetadataServlet extends SlingAllMethodsServlet {
 
         String payload = IOUtils.toString(request.getReader());
         Map<String, Object> values = JsonUtil.getMap(payload);
-        if (values.isEmpty()) {
+        if (values.isEmpty() || !MetadataHelper.isWritable(values)) {
             JsonUtil.writeTo(response, HttpStatus.SC_BAD_REQUEST, Constants.PROP_ERROR, "Invalid payload");
             return;
         }
 
 
         Resource resource = request.getResource();
-        Resource metadataResource = resource.getChild("jcr:content/metadata");
-        ModifiableValueMap metadata = metadataResource != null ? metadataResource.adaptTo(ModifiableValueMap.class) : null;
-
-        if (metadata == null) {
+        MetadataWriteQueue effectiveWriteQueue = writeQueue;
+        if (effectiveWriteQueue != null
+                && effectiveWriteQueue.isEnabled()
+                && MetadataHelper.canWrite(request.getResourceResolver(), resource.getPath(), values.keySet())
+                && effectiveWriteQueue.offer(resource.getPath(), values)) {
+            JsonUtil.writeTo(response, HttpStatus.SC_ACCEPTED, PROP_STATUS, "queued");
+            return;
+        }
+        if (!MetadataHelper.setMetadata(resource, values, captionIndex)) {
             response.setStatus(HttpStatus.SC_NOT_FOUND);
             return;
         }
-        metadata.putAll(values);
         request.getResourceResolver().commit();
 
         JsonUtil.writeTo(response, HttpStatus.SC_OK, PROP_STATUS, "ok");
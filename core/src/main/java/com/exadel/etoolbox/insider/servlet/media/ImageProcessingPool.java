@@ -0,0 +1,203 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.insider.servlet.media;
+
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.metatype.annotations.Designate;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs image decoding, resizing, and encoding on a dedicated pool of threads. A task is admitted only when the memory
+ * it is expected to take fits the configured budget together with the tasks already running. Otherwise, the caller
+ * waits for a limited time and then gets a {@link RejectedExecutionException}. Background tasks, such as prefetching
+ * or bulk captioning, are limited to a share of the budget and do not queue up with interactive ones: they only take
+ * the budget when it is free and no interactive task is waiting for it
+ */
+@Component(service = ImageProcessingPool.class)
+@Designate(ocd = ImageProcessingPoolConfig.class)
+public class ImageProcessingPool {
+
+    private static final String THREAD_NAME_PREFIX = "eai-image-processing-";
+    private static final int KILOBYTE = 1024;
+    private static final int PERCENT = 100;
+    private static final long POLL_INTERVAL = 50;
+
+    private ExecutorService executor;
+    private Semaphore budget;
+    private Semaphore backgroundBudget;
+    private int backgroundBudgetSize;
+    private int budgetSize;
+    private long maxWait;
+
+    @Activate
+    private void activate(ImageProcessingPoolConfig config) {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, THREAD_NAME_PREFIX + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        executor = Executors.newFixedThreadPool(Math.max(config.threads(), 1), threadFactory);
+        // The budget is counted in kilobytes so that a few gigabytes still fit the range of permits
+        budgetSize = Math.max(config.memoryBudget(), 1) * KILOBYTE;
+        budget = new Semaphore(budgetSize, true);
+        int backgroundShare = Math.min(Math.max(config.backgroundShare(), 0), PERCENT);
+        backgroundBudgetSize = (int) ((long) budgetSize * backgroundShare / PERCENT);
+        backgroundBudget = new Semaphore(backgroundBudgetSize);
+        maxWait = Math.max(config.maxWait(), 0);
+    }
+
+    @Deactivate
+    private void deactivate() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Runs the given task in the pool and waits for its result
+     * @param memory The estimated amount of memory in bytes the task is going to take. A task that needs more than the
+     *               whole budget is admitted when no other task is running
+     * @param task   The routine to run
+     * @param <T>    The type of the result
+     * @return The result of the task
+     * @throws IOException                If the task has failed or the waiting has been interrupted
+     * @throws RejectedExecutionException If the memory budget has not become available in time
+     */
+    public <T> T execute(long memory, Callable<T> task) throws IOException {
+        int permits = getPermits(memory);
+        try {
+            if (!budget.tryAcquire(permits, maxWait, TimeUnit.MILLISECONDS)) {
+                throw new RejectedExecutionException("Image processing memory budget is exhausted");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for image processing", e);
+        }
+        return run(task, () -> budget.release(permits));
+    }
+
+    /**
+     * Runs the given background task in the pool and waits for its result. The task is admitted only if it fits the
+     * background share of the budget. It waits for a limited time until the budget is free and no interactive task is
+     * waiting for it
+     * @param memory The estimated amount of memory in bytes the task is going to take
+     * @param task   The routine to run
+     * @param <T>    The type of the result
+     * @return The result of the task
+     * @throws IOException                If the task has failed or the waiting has been interrupted
+     * @throws RejectedExecutionException If the memory budget has not become available in time
+     */
+    public <T> T executeInBackground(long memory, Callable<T> task) throws IOException {
+        int permits = getPermits(memory);
+        if (permits > backgroundBudgetSize) {
+            throw new RejectedExecutionException("Image processing memory budget for background tasks is exceeded");
+        }
+        long deadline = System.currentTimeMillis() + maxWait;
+        try {
+            // The budget is polled rather than waited for, so that a background task never queues up ahead of
+            // interactive ones
+            while (!tryAcquireInBackground(permits)) {
+                if (System.currentTimeMillis() >= deadline) {
+                    throw new RejectedExecutionException("Image processing memory budget is exhausted");
+                }
+                Thread.sleep(POLL_INTERVAL);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for image processing", e);
+        }
+        return run(task, () -> {
+            budget.release(permits);
+            backgroundBudget.release(permits);
+        });
+    }
+
+    private boolean tryAcquireInBackground(int permits) throws InterruptedException {
+        if (!backgroundBudget.tryAcquire(permits)) {
+            return false;
+        }
+        // A timed attempt with no waiting respects the threads that are already waiting for the budget, unlike the
+        // untimed one
+        if (budget.tryAcquire(permits, 0, TimeUnit.MILLISECONDS)) {
+            return true;
+        }
+        backgroundBudget.release(permits);
+        return false;
+    }
+
+    private int getPermits(long memory) {
+        return (int) Math.min(Math.max(memory / KILOBYTE, 1), budgetSize);
+    }
+
+    private <T> T run(Callable<T> task, Runnable release) throws IOException {
+        AtomicBoolean claimed = new AtomicBoolean();
+        Future<T> future;
+        try {
+            // The budget is returned by the thread that runs the task, so that it is not released while the task is
+            // still running after the caller has been interrupted. A task that has not started by then is skipped,
+            // and the budget is returned by the caller
+            future = executor.submit(() -> {
+                if (!claimed.compareAndSet(false, true)) {
+                    return null;
+                }
+                try {
+                    return task.call();
+                } finally {
+                    release.run();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            release.run();
+            throw e;
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            if (claimed.compareAndSet(false, true)) {
+                release.run();
+            }
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for image processing", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Could not process image", e.getCause());
+        }
+    }
+
+    /**
+     * Retrieves the number of seconds after which a rejected request may be retried
+     * @return A positive integer value
+     */
+    public int getRetryAfter() {
+        return (int) Math.max(TimeUnit.MILLISECONDS.toSeconds(maxWait), 1);
+    }
+}
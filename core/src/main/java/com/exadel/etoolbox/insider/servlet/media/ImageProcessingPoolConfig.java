@@ -0,0 +1,62 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.insider.servlet.media;
+
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.AttributeType;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+
+/**
+ * Defines the configuration for the {@link ImageProcessingPool}
+ */
+@ObjectClassDefinition(name="EToolbox Authoring Insider - Image Processing Pool Config")
+public @interface ImageProcessingPoolConfig {
+
+    int DEFAULT_THREADS = 2;
+    int DEFAULT_MEMORY_BUDGET = 512;
+    int DEFAULT_MAX_WAIT = 5_000;
+    int DEFAULT_BACKGROUND_SHARE = 50;
+
+    @AttributeDefinition(
+            name = "Threads",
+            description = "Specify the number of threads that decode, resize, and encode images",
+            type = AttributeType.INTEGER
+    )
+    int threads() default DEFAULT_THREADS;
+
+    @AttributeDefinition(
+            name = "Memory Budget (MB)",
+            description = "Specify the amount of memory that images being processed at the same time may take. The "
+                    + "memory is estimated as width * height * 4 bytes per image",
+            type = AttributeType.INTEGER
+    )
+    int memoryBudget() default DEFAULT_MEMORY_BUDGET;
+
+    @AttributeDefinition(
+            name = "Max Waiting Time (ms)",
+            description = "Specify how long a request may wait for the memory budget before it is rejected with "
+                    + "the \"503 Service Unavailable\" status. Set to 0 to reject over-budget requests at once",
+            type = AttributeType.INTEGER
+    )
+    int maxWait() default DEFAULT_MAX_WAIT;
+
+    @AttributeDefinition(
+            name = "Background Share (%)",
+            description = "Specify the part of the memory budget that background tasks, such as prefetching "
+                    + "renditions or bulk captioning, may take. Background tasks only take the budget when no request "
+                    + "of an author is waiting for it",
+            type = AttributeType.INTEGER
+    )
+    int backgroundShare() default DEFAULT_BACKGROUND_SHARE;
+}
@@ -0,0 +1,61 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.insider.servlet.media;
+
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.AttributeType;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+import org.osgi.service.metatype.annotations.Option;
+
+/**
+ * Defines the configuration for the {@link RenditionService} that produces renditions for the
+ * {@link ImageRenditionServlet} and for asset references inlined into upstream requests
+ */
+@ObjectClassDefinition(name="EToolbox Authoring Insider - Image Rendition Config")
+public @interface ImageRenditionConfig {
+
+    String FORMAT_AUTO = "auto";
+    String FORMAT_JPEG = "jpeg";
+    String FORMAT_PNG = "png";
+
+    int DEFAULT_MAX_SIZE = 256;
+    int DEFAULT_QUALITY = 85;
+
+    @AttributeDefinition(
+            name = "Output Format",
+            description = "Specify the format of on-the-fly renditions. \"Auto\" stands for JPEG for photos and PNG "
+                    + "for line art and images with transparency",
+            options = {
+                    @Option(label = "Auto", value = FORMAT_AUTO),
+                    @Option(label = "JPEG", value = FORMAT_JPEG),
+                    @Option(label = "PNG", value = FORMAT_PNG)
+            }
+    )
+    String outputFormat() default FORMAT_AUTO;
+
+    @AttributeDefinition(
+            name = "Max Size (KB)",
+            description = "Specify the maximal size of a rendition. Bigger renditions are re-encoded with lower quality "
+                    + "or scaled down to fit. Set to 0 to disable the limit",
+            type = AttributeType.INTEGER
+    )
+    int maxSize() default DEFAULT_MAX_SIZE;
+
+    @AttributeDefinition(
+            name = "JPEG Quality (%)",
+            description = "Specify the initial quality of JPEG renditions",
+            type = AttributeType.INTEGER
+    )
+    int quality() default DEFAULT_QUALITY;
+}
@@ -14,10 +14,10 @@
 package com.exadel.etoolbox.insider.servlet.media;
 
 import com.day.cq.dam.api.Asset;
-import com.day.cq.dam.api.Rendition;
-import com.day.image.Layer;
+import com.exadel.etoolbox.insider.util.HttpCacheUtil;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.CloseShieldOutputStream;
+import org.apache.http.HttpHeaders;
 import org.apache.http.HttpStatus;
 import org.apache.sling.api.SlingHttpServletRequest;
 import org.apache.sling.api.SlingHttpServletResponse;
@@ -26,19 +26,19 @@ import org.apache.sling.api.servlets.ServletResolverConstants;
 import org.apache.sling.api.servlets.SlingSafeMethodsServlet;
 import org.jetbrains.annotations.NotNull;
 import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
 
 import javax.servlet.Servlet;
-import java.awt.Color;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.util.Arrays;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Base64;
-import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
- * A Sling Servlet implementation that returns a base64-encoded rendition of an image asset
+ * A Sling Servlet implementation that returns a base64-encoded rendition of an image asset. The response is served with
+ * the {@code ETag} and {@code Last-Modified} validators so that the browser can revalidate its private copy with a
+ * conditional request. The renditions are selected and produced by the {@link RenditionService}
  */
 @Component(
         service = Servlet.class,
@@ -51,14 +51,12 @@ import java.util.stream.Collectors;
 @Slf4j
 public class ImageRenditionServlet extends SlingSafeMethodsServlet {
 
-    private static final String MIME_TYPE_PNG = "image/png";
-    private static final String MIME_TYPE_JPEG = "image/jpeg";
+    // Renditions are served to authors only, so they must not be stored in shared caches. The browser is allowed to keep
+    // a copy but must revalidate it with a conditional request
+    private static final String HEADER_PRIVATE_CACHE = "private, no-cache";
 
-    private static final List<String> SUPPORTED_MIME_TYPES = Arrays.asList(
-            MIME_TYPE_PNG,
-            MIME_TYPE_JPEG,
-            "image/webp",
-            "image/gif");
+    @Reference
+    private transient RenditionService renditionService;
 
     /**
      * Processes a GET request targeted at an image asset resource
@@ -73,114 +71,50 @@ public class ImageRenditionServlet extends SlingSafeMethodsServlet {
 
         Resource resource = request.getResource();
         Asset asset = resource.adaptTo(Asset.class);
-        BoundariesPredicate boundaries = new BoundariesPredicate(request.getParameter("size"));
-        Rendition rendition = getFitRendition(asset, boundaries);
-        if (rendition == null) {
-            log.error("Could not retrieve a rendition for asset {}", request.getResource().getPath());
+        RenditionService.Selection selection = renditionService.select(asset, request.getParameter("size"));
+        if (selection == null) {
+            log.error("Could not retrieve a rendition for asset {}", resource.getPath());
             response.setStatus(HttpStatus.SC_NOT_FOUND);
             return;
         }
 
-        byte[] payload;
-        String payloadMimeType = rendition.getMimeType();
-        if (SUPPORTED_MIME_TYPES.contains(rendition.getMimeType())) {
-            if (MIME_TYPE_JPEG.equals(rendition.getMimeType())) {
-                payload = IOUtils.toByteArray(rendition.getStream());
-            } else {
-                payload = getOpaqueRendition(rendition);
-            }
-        } else {
-            try {
-                payload = createFitRendition(rendition, boundaries);
-                payloadMimeType = MIME_TYPE_PNG;
-            } catch (IOException e) {
-                log.error("Could not create on-the-fly rendition for asset {}", request.getResource().getPath(), e);
-                response.setStatus(HttpStatus.SC_NOT_FOUND);
-                return;
-            }
-        }
-        String encodedPayload = Base64.getEncoder().encodeToString(payload);
-
-        response.setContentType("text/plain");
-        response.setHeader("X-Rendition", rendition.getName());
-        response.getWriter().write("data:" + payloadMimeType + ";base64," + encodedPayload);
-    }
-
-    private static byte[] getOpaqueRendition(Rendition rendition) throws IOException {
-        try (InputStream input = rendition.getStream(); ByteArrayOutputStream output = new ByteArrayOutputStream()) {
-            if (input == null) {
-                throw new IOException("Could not read rendition stream");
-            }
-            Layer foreground = new Layer(input);
-            Layer background = new Layer(foreground.getWidth(), foreground.getHeight(), Color.WHITE);
-            background.merge(foreground);
-            background.write(MIME_TYPE_PNG, 1.0d, output);
-            return output.toByteArray();
+        response.setHeader(HttpHeaders.CACHE_CONTROL, HEADER_PRIVATE_CACHE);
+        if (HttpCacheUtil.checkNotModified(request, response, selection.getETag(), selection.getLastModified())) {
+            return;
         }
-    }
 
-    private static Rendition getFitRendition(Asset asset, BoundariesPredicate predicate) {
-        if (asset == null) {
-            return null;
+        RenditionService.EncodedRendition encodedRendition;
+        try {
+            encodedRendition = renditionService.render(selection);
+        } catch (RejectedExecutionException e) {
+            log.warn("Could not process asset {} in time: {}", resource.getPath(), e.getMessage());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(renditionService.getRetryAfter()));
+            response.setStatus(HttpStatus.SC_SERVICE_UNAVAILABLE);
+            return;
+        } catch (IOException e) {
+            log.error("Could not create on-the-fly rendition for asset {}", resource.getPath(), e);
+            response.setStatus(HttpStatus.SC_NOT_FOUND);
+            return;
         }
-        List<Rendition> matchingRenditions = asset.getRenditions()
-                .stream()
-                .filter(rendition -> SUPPORTED_MIME_TYPES.contains(rendition.getMimeType()))
-                .filter(predicate)
-                .collect(Collectors.toList());
-        if (matchingRenditions.isEmpty()) {
-            matchingRenditions = asset.getRenditions()
-                    .stream()
-                    .filter(rendition -> SUPPORTED_MIME_TYPES.contains(rendition.getMimeType()))
-                    .collect(Collectors.toList());
+        try (RenditionService.EncodedRendition rendition = encodedRendition) {
+            writeTo(response, selection.getRendition().getName(), rendition);
         }
-        return matchingRenditions
-                .stream()
-                .min((first, second) -> {
-                    long size1 = first.getSize();
-                    long size2 = second.getSize();
-                    return Long.compare(size1, size2);
-                })
-                .orElse(asset.getOriginal());
     }
 
-    private static byte[] createFitRendition(Rendition rendition, BoundariesPredicate predicate) throws IOException {
-        try (InputStream input = rendition.getStream(); ByteArrayOutputStream output = new ByteArrayOutputStream()) {
-            if (input == null) {
-                throw new IOException("Could not read rendition stream");
-            }
-            Layer foreground = new Layer(input);
-            float scale = getScale(foreground, predicate.getBoundaries());
-            int targetWidth = (int) (foreground.getWidth() * scale);
-            int targetHeight = (int) (foreground.getHeight() * scale);
-            foreground.resize(targetWidth, targetHeight);
+    private static void writeTo(
+            SlingHttpServletResponse response,
+            String renditionName,
+            RenditionService.EncodedRendition rendition) throws IOException {
 
-            Layer background = new Layer(targetWidth, targetHeight, Color.WHITE);
-            background.merge(foreground);
-
-            background.write(MIME_TYPE_PNG,  1.0d, output);
-            return output.toByteArray();
-        }
-    }
-
-    private static float getScale(Layer layer, BoundariesPredicate.Boundaries boundaries) {
-        int targetWidth = layer.getWidth();
-        int targetHeight = layer.getHeight();
-        int greaterTargetDimension = Math.max(targetWidth, targetHeight);
-        float scale = 1.0f;
-        if (greaterTargetDimension == targetWidth) {
-            if (greaterTargetDimension > boundaries.getMaxWidth()) {
-                scale = (float) greaterTargetDimension / boundaries.getMaxWidth();
-            } else if (greaterTargetDimension < boundaries.getMinWidth()) {
-                scale = (float) boundaries.getMinWidth() / greaterTargetDimension;
-            }
-        } else {
-            if (greaterTargetDimension > boundaries.getMaxHeight()) {
-                scale = (float) greaterTargetDimension / boundaries.getMaxHeight();
-            } else if (greaterTargetDimension < boundaries.getMinHeight()) {
-                scale = (float) boundaries.getMinHeight() / greaterTargetDimension;
-            }
+        response.setContentType("text/plain");
+        response.setHeader("X-Rendition", renditionName);
+        OutputStream output = response.getOutputStream();
+        output.write(("data:" + rendition.getMimeType() + ";base64,").getBytes(StandardCharsets.US_ASCII));
+        // The payload is encoded on the fly so that neither the binary nor the base64 content is held in memory as
+        // a whole. The shield keeps the response stream open when the encoder is closed to write the final padding
+        try (OutputStream encodingOutput = Base64.getEncoder().wrap(new CloseShieldOutputStream(output))) {
+            rendition.writeTo(encodingOutput);
         }
-        return scale;
+        output.flush();
     }
-}
+}
\ No newline at end of file
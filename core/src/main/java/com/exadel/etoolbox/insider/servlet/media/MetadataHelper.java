@@ -0,0 +1,203 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.insider.servlet.media;
+
+import com.day.cq.dam.api.Asset;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import org.apache.commons.collections4.MapUtils;
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.api.resource.ModifiableValueMap;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.api.wrappers.ValueMapDecorator;
+import org.jetbrains.annotations.Nullable;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reads and writes the metadata of image assets for the {@link ImageMetadataServlet}, the {@link BulkMetadataServlet},
+ * and the {@link MetadataWriteQueue}. If specific keys are requested, only the matching values are read, so that large
+ * values, such as XMP arrays, are not copied and serialized in vain
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+class MetadataHelper {
+
+    static final String PARAM_KEYS = "keys";
+
+    static final String PROP_SIMILAR_CAPTION = "eai.similarCaption";
+
+    private static final String PATH_METADATA = "jcr:content/metadata";
+    private static final String SEPARATOR_COMMA = ",";
+
+    /**
+     * Retrieves the metadata keys requested via the {@code keys} parameter. The parameter may be repeated and may
+     * contain a comma-separated list
+     * @param request The {@link SlingHttpServletRequest} object
+     * @return A set of keys. An empty set means that all the metadata is requested
+     */
+    static Set<String> getKeys(SlingHttpServletRequest request) {
+        Set<String> result = new LinkedHashSet<>();
+        for (String value : ArrayUtils.nullToEmpty(request.getParameterValues(PARAM_KEYS))) {
+            for (String key : StringUtils.split(value, SEPARATOR_COMMA)) {
+                if (StringUtils.isNotBlank(key)) {
+                    result.add(key.trim());
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Collects the metadata of the given asset. If the asset has no caption and the caption of a near-identical image
+     * is known, it is added as {@code eai.similarCaption}
+     * @param resource     The {@link Resource} representing an asset
+     * @param keys         The keys to collect. If empty, all the metadata is collected
+     * @param captionIndex The {@link CaptionIndex} to look up similar captions in. Can be {@code null}
+     * @param writeQueue   The {@link MetadataWriteQueue} which may hold the values not yet written. Can be {@code null}
+     * @return A map of metadata values, or {@code null} if the resource is not an asset
+     */
+    @Nullable
+    static Map<String, Object> getMetadata(
+            Resource resource,
+            Set<String> keys,
+            @Nullable CaptionIndex captionIndex,
+            @Nullable MetadataWriteQueue writeQueue) {
+
+        Asset asset = resource.adaptTo(Asset.class);
+        if (asset == null) {
+            return null;
+        }
+        Resource metadataResource = resource.getChild(PATH_METADATA);
+        ValueMap metadataValueMap = metadataResource != null ? metadataResource.getValueMap() : ValueMap.EMPTY;
+        Map<String, Object> pendingValues = writeQueue != null ? writeQueue.getPending(asset.getPath()) : null;
+        if (pendingValues != null) {
+            // The values that are queued for writing are served as if they were already stored
+            Map<String, Object> values = new HashMap<>(metadataValueMap);
+            values.putAll(pendingValues);
+            metadataValueMap = new ValueMapDecorator(values);
+        }
+        Map<String, Object> result;
+        if (keys.isEmpty()) {
+            result = new HashMap<>(MapUtils.emptyIfNull(asset.getMetadata()));
+            result.putAll(metadataValueMap);
+        } else {
+            result = new HashMap<>();
+            for (String key : keys) {
+                Object value = metadataValueMap.containsKey(key) ? metadataValueMap.get(key) : asset.getMetadata(key);
+                if (value != null) {
+                    result.put(key, value);
+                }
+            }
+        }
+        if (captionIndex != null
+                && (keys.isEmpty() || keys.contains(PROP_SIMILAR_CAPTION))
+                && StringUtils.isBlank(metadataValueMap.get(CaptionIndex.PROP_CAPTION, String.class))) {
+            String similarCaption = captionIndex.findSimilar(asset);
+            if (similarCaption != null) {
+                result.put(PROP_SIMILAR_CAPTION, similarCaption);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gets whether the user behind the given resolver is allowed to set the given metadata keys of an asset
+     * @param resolver  The {@link ResourceResolver} of the user
+     * @param assetPath The path to the asset
+     * @param keys      The metadata keys to set
+     * @return True or false. If permissions cannot be checked, {@code false} is returned
+     */
+    static boolean canWrite(ResourceResolver resolver, String assetPath, Set<String> keys) {
+        Session session = resolver.adaptTo(Session.class);
+        if (session == null) {
+            return false;
+        }
+        try {
+            for (String key : keys) {
+                String propertyPath = assetPath + "/" + PATH_METADATA + "/" + key;
+                if (!session.hasPermission(propertyPath, Session.ACTION_SET_PROPERTY)) {
+                    return false;
+                }
+            }
+        } catch (RepositoryException | IllegalArgumentException e) {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Gets whether the given metadata values can be stored. Only strings, numbers, booleans, and lists of them are
+     * accepted, so that a nested object does not fail the update when it is already acknowledged
+     * @param values The metadata values
+     * @return True or false
+     */
+    static boolean isWritable(Map<String, Object> values) {
+        return values.values().stream().allMatch(value -> isScalar(value)
+                || (value instanceof Collection && ((Collection<?>) value).stream().allMatch(MetadataHelper::isScalar)));
+    }
+
+    private static boolean isScalar(Object value) {
+        return value instanceof String || value instanceof Number || value instanceof Boolean;
+    }
+
+    /**
+     * Sets the given metadata values of an asset without committing the resolver. If the values contain a caption,
+     * the caption is added to the {@link CaptionIndex}. If the perceptual hash of the image is known, it is stored
+     * alongside the caption. Otherwise, the hash is computed and stored in the background, so that the image is not
+     * processed while the author waits
+     * @param resource     The {@link Resource} representing an asset
+     * @param values       The metadata values
+     * @param captionIndex The {@link CaptionIndex} to store the caption in. Can be {@code null}
+     * @return True if the values were set; false if the asset has no modifiable metadata
+     */
+    static boolean setMetadata(Resource resource, Map<String, Object> values, @Nullable CaptionIndex captionIndex) {
+        Resource metadataResource = resource.getChild(PATH_METADATA);
+        ModifiableValueMap metadata = metadataResource != null
+                ? metadataResource.adaptTo(ModifiableValueMap.class)
+                : null;
+        if (metadata == null) {
+            return false;
+        }
+        metadata.putAll(values);
+        Object caption = values.get(CaptionIndex.PROP_CAPTION);
+        if (captionIndex == null
+                || !captionIndex.isEnabled()
+                || !(caption instanceof String)
+                || StringUtils.isBlank((String) caption)) {
+            return true;
+        }
+        Asset asset = resource.adaptTo(Asset.class);
+        if (asset == null) {
+            return true;
+        }
+        Long hash = captionIndex.getKnownHash(asset);
+        if (hash != null) {
+            metadata.put(CaptionIndex.PROP_HASH, ImageHash.toString(hash));
+            captionIndex.put(asset.getPath(), hash, (String) caption);
+        } else {
+            captionIndex.putLater(asset.getPath(), (String) caption);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,266 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.insider.servlet.media;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.jetbrains.annotations.Nullable;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Modified;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.annotations.ReferenceCardinality;
+import org.osgi.service.component.annotations.ReferencePolicy;
+import org.osgi.service.metatype.annotations.Designate;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Defers the metadata updates of single assets and writes them in batches. The updates collected within a configurable
+ * delay are written with a single commit, and repeated updates of the same asset are merged, so that DAM observers
+ * and the indexing run once per batch rather than once per request. The values that are not yet written are served
+ * by the metadata servlets as if they were already stored. If a batch cannot be committed, the assets are written one
+ * by one, and the updates that still fail are put back into the queue for a limited number of attempts. Note that the
+ * values are written on behalf of a service user, so the modification is not attributed to the author who made it
+ */
+@Component(service = MetadataWriteQueue.class)
+@Designate(ocd = MetadataWriteQueueConfig.class)
+@Slf4j
+public class MetadataWriteQueue {
+
+    private static final String SUBSERVICE = "metadata";
+    private static final String THREAD_NAME = "eai-metadata-writer";
+    private static final int MAX_ATTEMPTS = 5;
+
+    @Reference
+    private ResourceResolverFactory resolverFactory;
+
+    @Reference(cardinality = ReferenceCardinality.OPTIONAL, policy = ReferencePolicy.DYNAMIC)
+    private volatile CaptionIndex captionIndex;
+
+    private final Map<String, Map<String, Object>> pending = new LinkedHashMap<>();
+    // The values that are being written. They are still served until the commit succeeds
+    private final Map<String, Map<String, Object>> writing = new HashMap<>();
+    private final Map<String, Integer> attempts = new HashMap<>();
+    private final Object flushLock = new Object();
+
+    private ScheduledExecutorService scheduler;
+    private boolean scheduled;
+    private int delay;
+    private int capacity;
+
+    @Activate
+    @Modified
+    private void activate(MetadataWriteQueueConfig config) {
+        deactivate();
+        if (!config.enabled()) {
+            return;
+        }
+        synchronized (this) {
+            delay = Math.max(config.delay(), 0);
+            capacity = Math.max(config.capacity(), 1);
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, THREAD_NAME);
+                thread.setDaemon(true);
+                return thread;
+            });
+            // The updates that failed before a reconfiguration are retried
+            if (!pending.isEmpty()) {
+                scheduled = true;
+                scheduler.schedule(this::flush, delay, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    @Deactivate
+    private void deactivate() {
+        ScheduledExecutorService effectiveScheduler;
+        synchronized (this) {
+            effectiveScheduler = scheduler;
+            scheduler = null;
+            scheduled = false;
+        }
+        if (effectiveScheduler != null) {
+            effectiveScheduler.shutdownNow();
+        }
+        // The updates that have been accepted must not be lost
+        flush();
+        synchronized (this) {
+            if (!pending.isEmpty()) {
+                log.warn("Metadata updates of {} assets could not be written yet", pending.size());
+            }
+        }
+    }
+
+    /**
+     * Gets whether the queue is enabled
+     * @return True or false
+     */
+    public synchronized boolean isEnabled() {
+        return scheduler != null;
+    }
+
+    /**
+     * Adds the metadata values of an asset to the queue. The values are merged with the pending values of the same
+     * asset, if any. The caller is responsible for checking that the values may be written on behalf of the user
+     * @param path   The path to the asset
+     * @param values The metadata values
+     * @return True if the values have been queued; false if the queue is disabled or the values cannot be stored (see
+     * {@link MetadataHelper#isWritable(Map)})
+     */
+    public synchronized boolean offer(String path, Map<String, Object> values) {
+        if (scheduler == null || !MetadataHelper.isWritable(values)) {
+            return false;
+        }
+        pending.computeIfAbsent(path, key -> new LinkedHashMap<>()).putAll(values);
+        if (pending.size() >= capacity) {
+            scheduler.execute(this::flush);
+        } else if (!scheduled) {
+            scheduled = true;
+            scheduler.schedule(this::flush, delay, TimeUnit.MILLISECONDS);
+        }
+        return true;
+    }
+
+    /**
+     * Retrieves the metadata values of an asset that are not yet written
+     * @param path The path to the asset
+     * @return A map of values, or {@code null} if there are no pending values for the asset
+     */
+    @Nullable
+    public synchronized Map<String, Object> getPending(String path) {
+        Map<String, Object> writingValues = writing.get(path);
+        Map<String, Object> pendingValues = pending.get(path);
+        if (writingValues == null && pendingValues == null) {
+            return null;
+        }
+        Map<String, Object> result = writingValues != null ? new HashMap<>(writingValues) : new HashMap<>();
+        if (pendingValues != null) {
+            result.putAll(pendingValues);
+        }
+        return result;
+    }
+
+    /**
+     * Writes the pending metadata values with a single commit. If the commit fails, the assets are written one by one.
+     * The updates that could not be written are put back into the queue
+     */
+    void flush() {
+        synchronized (flushLock) {
+            Map<String, Map<String, Object>> batch;
+            synchronized (this) {
+                scheduled = false;
+                if (pending.isEmpty()) {
+                    return;
+                }
+                batch = new LinkedHashMap<>(pending);
+                pending.clear();
+                writing.putAll(batch);
+            }
+            // The batch is completed in any case, so that its values are neither lost nor served forever
+            Set<String> completed = Collections.emptySet();
+            try (ResourceResolver resolver = resolverFactory.getServiceResourceResolver(
+                    Collections.singletonMap(ResourceResolverFactory.SUBSERVICE, SUBSERVICE))) {
+                completed = write(resolver, batch);
+            } catch (LoginException | RuntimeException e) {
+                log.error("Could not update metadata of {} assets", batch.size(), e);
+            } finally {
+                complete(batch, completed);
+            }
+        }
+    }
+
+    private Set<String> write(ResourceResolver resolver, Map<String, Map<String, Object>> batch) {
+        try {
+            for (Map.Entry<String, Map<String, Object>> entry : batch.entrySet()) {
+                setMetadata(resolver, entry.getKey(), entry.getValue());
+            }
+            resolver.commit();
+            log.debug("Updated metadata of {} assets", batch.size());
+            return batch.keySet();
+        } catch (PersistenceException | RuntimeException e) {
+            log.warn("Could not update metadata of {} assets at once, writing them one by one", batch.size(), e);
+            resolver.revert();
+        }
+        // A single faulty asset or value must not fail the updates of other assets
+        Set<String> result = new HashSet<>();
+        for (Map.Entry<String, Map<String, Object>> entry : batch.entrySet()) {
+            try {
+                setMetadata(resolver, entry.getKey(), entry.getValue());
+                resolver.commit();
+                result.add(entry.getKey());
+            } catch (PersistenceException e) {
+                log.error("Could not update metadata of {}", entry.getKey(), e);
+                resolver.revert();
+            } catch (RuntimeException e) {
+                // Such an update cannot succeed on retry, so it is dropped
+                log.error("Could not update metadata of {}, the update is dropped", entry.getKey(), e);
+                resolver.revert();
+                result.add(entry.getKey());
+            }
+        }
+        return result;
+    }
+
+    private void setMetadata(ResourceResolver resolver, String path, Map<String, Object> values) {
+        Resource resource = resolver.getResource(path);
+        if (resource == null || !MetadataHelper.setMetadata(resource, values, captionIndex)) {
+            // Such an update cannot succeed on retry, so it is dropped
+            log.warn("Could not update metadata of {}", path);
+        }
+    }
+
+    private synchronized void complete(Map<String, Map<String, Object>> batch, Set<String> completed) {
+        boolean hasRetries = false;
+        for (Map.Entry<String, Map<String, Object>> entry : batch.entrySet()) {
+            String path = entry.getKey();
+            writing.remove(path);
+            if (completed.contains(path)) {
+                attempts.remove(path);
+                continue;
+            }
+            int attempt = attempts.merge(path, 1, Integer::sum);
+            if (attempt >= MAX_ATTEMPTS) {
+                log.error("Gave up updating metadata of {} after {} attempts", path, attempt);
+                attempts.remove(path);
+                continue;
+            }
+            // The values queued in the meantime are newer, so they take precedence
+            Map<String, Object> values = new LinkedHashMap<>(entry.getValue());
+            Map<String, Object> newerValues = pending.get(path);
+            if (newerValues != null) {
+                values.putAll(newerValues);
+            }
+            pending.put(path, values);
+            hasRetries = true;
+        }
+        if (hasRetries && scheduler != null && !scheduled) {
+            scheduled = true;
+            scheduler.schedule(this::flush, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+}
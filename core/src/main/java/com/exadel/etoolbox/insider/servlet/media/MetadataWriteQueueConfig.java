@@ -0,0 +1,51 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.insider.servlet.media;
+
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.AttributeType;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+
+/**
+ * Defines the configuration for the {@link MetadataWriteQueue}
+ */
+@ObjectClassDefinition(name="EToolbox Authoring Insider - Metadata Write Queue Config")
+public @interface MetadataWriteQueueConfig {
+
+    int DEFAULT_DELAY = 2000;
+    int DEFAULT_CAPACITY = 500;
+
+    @AttributeDefinition(
+            name = "Enabled",
+            description = "Check to defer the metadata updates of single assets and write them in batches",
+            type = AttributeType.BOOLEAN
+    )
+    boolean enabled() default false;
+
+    @AttributeDefinition(
+            name = "Delay (ms)",
+            description = "Specify how long to collect metadata updates before they are written in a single commit. "
+                    + "Repeated updates of the same asset within this time are merged",
+            type = AttributeType.INTEGER
+    )
+    int delay() default DEFAULT_DELAY;
+
+    @AttributeDefinition(
+            name = "Capacity",
+            description = "Specify the number of assets with pending updates that triggers writing before the delay "
+                    + "elapses",
+            type = AttributeType.INTEGER
+    )
+    int capacity() default DEFAULT_CAPACITY;
+}
@@ -0,0 +1,260 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.insider.servlet.media;
+
+import com.day.cq.dam.api.Asset;
+import com.day.cq.wcm.api.NameConstants;
+import com.exadel.etoolbox.insider.util.Constants;
+import com.exadel.etoolbox.insider.util.JsonUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpStatus;
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.api.SlingHttpServletResponse;
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.api.servlets.ServletResolverConstants;
+import org.apache.sling.api.servlets.SlingSafeMethodsServlet;
+import org.jetbrains.annotations.NotNull;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.annotations.ReferenceCardinality;
+import org.osgi.service.component.annotations.ReferencePolicy;
+
+import javax.servlet.Servlet;
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A Sling Servlet implementation that prepares the images referenced by a page or a component for captioning. The
+ * servlet walks the resource specified with the {@code path} parameter, together with its descendants, and collects
+ * the DAM assets referenced in properties such as {@code fileReference}. For every image, the response contains the
+ * metadata limited to the {@code keys} parameter (the caption by default) and an asset reference that a service
+ * provider inlines on the server side. The renditions matching the {@code size} parameter are produced in the
+ * background, so they are already cached when the images are requested
+ */
+@Component(
+        service = Servlet.class,
+        property = {
+                ServletResolverConstants.SLING_SERVLET_METHODS + "=GET",
+                ServletResolverConstants.SLING_SERVLET_RESOURCE_TYPES + "=/bin/etoolbox/authoring-insider/prefetch",
+                ServletResolverConstants.SLING_SERVLET_EXTENSIONS + "=json"
+        }
+)
+@Slf4j
+public class PrefetchServlet extends SlingSafeMethodsServlet {
+
+    private static final String PARAM_PATH = "path";
+    private static final String PARAM_SIZE = "size";
+
+    private static final String PREFIX_CONTENT = "/content/";
+    private static final String PREFIX_DAM = "/content/dam/";
+
+    private static final String PROP_METADATA = "metadata";
+    private static final String PROP_REFERENCE = "reference";
+
+    private static final String SUBSERVICE = "renditions";
+    private static final String THREAD_NAME_PREFIX = "eai-rendition-prefetch-";
+
+    private static final int MAX_ASSETS = 100;
+    private static final int MAX_RESOURCES = 1000;
+    // The images are processed in the ImageProcessingPool which limits the memory in use, so these threads only need
+    // to keep the pool busy
+    private static final int WARMING_THREADS = 4;
+    private static final int WARMING_QUEUE_SIZE = 50;
+
+    @Reference
+    private transient RenditionService renditionService;
+
+    @Reference
+    private transient ResourceResolverFactory resolverFactory;
+
+    @Reference(cardinality = ReferenceCardinality.OPTIONAL, policy = ReferencePolicy.DYNAMIC)
+    private transient volatile CaptionIndex captionIndex;
+
+    @Reference(cardinality = ReferenceCardinality.OPTIONAL, policy = ReferencePolicy.DYNAMIC)
+    private transient volatile MetadataWriteQueue writeQueue;
+
+    private final transient Set<String> warmingRenditions = ConcurrentHashMap.newKeySet();
+
+    private transient ExecutorService executor;
+
+    @Activate
+    private void activate() {
+        AtomicInteger counter = new AtomicInteger();
+        // The queue is bounded so that a burst of prefetch requests does not pile up renditions. Those that do not fit
+        // are skipped and will be produced on demand
+        executor = new ThreadPoolExecutor(
+                WARMING_THREADS,
+                WARMING_THREADS,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(WARMING_QUEUE_SIZE),
+                runnable -> {
+                    Thread thread = new Thread(runnable, THREAD_NAME_PREFIX + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @Deactivate
+    private void deactivate() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Processes a GET request targeted at a resource with the {@code /bin/etoolbox/authoring-insider/prefetch}
+     * resource type
+     * @param request  The {@link SlingHttpServletRequest} object
+     * @param response The {@link SlingHttpServletResponse} object
+     * @throws IOException If an I/O error occurs
+     */
+    @Override
+    protected void doGet(
+            @NotNull SlingHttpServletRequest request,
+            @NotNull SlingHttpServletResponse response) throws IOException {
+
+        response.setHeader(HttpHeaders.CACHE_CONTROL, Constants.HEADER_NO_CACHE);
+        String path = request.getParameter(PARAM_PATH);
+        if (!StringUtils.startsWith(path, PREFIX_CONTENT)) {
+            JsonUtil.writeTo(response, HttpStatus.SC_BAD_REQUEST, Constants.PROP_ERROR, "Path is missing");
+            return;
+        }
+        ResourceResolver resolver = request.getResourceResolver();
+        Resource resource = resolver.getResource(path);
+        if (resource == null) {
+            JsonUtil.writeTo(response, HttpStatus.SC_NOT_FOUND, Constants.PROP_ERROR, "Resource not found");
+            return;
+        }
+
+        String size = StringUtils.defaultString(request.getParameter(PARAM_SIZE));
+        Set<String> keys = MetadataHelper.getKeys(request);
+        if (keys.isEmpty()) {
+            keys = Collections.singleton(CaptionIndex.PROP_CAPTION);
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (String assetPath : getReferences(resource)) {
+            Resource assetResource = resolver.getResource(assetPath);
+            Asset asset = assetResource != null ? assetResource.adaptTo(Asset.class) : null;
+            if (asset == null || renditionService.select(asset, size) == null) {
+                continue;
+            }
+            warm(asset.getPath(), size);
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put(PROP_METADATA, MetadataHelper.getMetadata(assetResource, keys, captionIndex, writeQueue));
+            entry.put(PROP_REFERENCE, getReference(asset.getPath(), size));
+            result.put(asset.getPath(), entry);
+        }
+        JsonUtil.writeTo(response, result);
+    }
+
+    /**
+     * Collects the paths of DAM assets referenced by the given resource and its descendants
+     * @param resource The {@link Resource} to start from
+     * @return An ordered set of paths. The number of paths and visited resources is limited
+     */
+    private static Set<String> getReferences(Resource resource) {
+        Set<String> result = new LinkedHashSet<>();
+        Resource start = resource.isResourceType(NameConstants.NT_PAGE)
+                ? resource.getChild(NameConstants.NN_CONTENT)
+                : resource;
+        if (start == null) {
+            return result;
+        }
+        Deque<Resource> queue = new ArrayDeque<>();
+        queue.add(start);
+        int visited = 0;
+        while (!queue.isEmpty() && visited++ < MAX_RESOURCES && result.size() < MAX_ASSETS) {
+            Resource current = queue.poll();
+            for (Object value : current.getValueMap().values()) {
+                if (value instanceof String) {
+                    addReference((String) value, result);
+                } else if (value instanceof String[]) {
+                    for (String item : (String[]) value) {
+                        addReference(item, result);
+                    }
+                }
+            }
+            current.getChildren().forEach(queue::add);
+        }
+        return result;
+    }
+
+    private static void addReference(String value, Set<String> result) {
+        if (StringUtils.startsWith(value, PREFIX_DAM) && result.size() < MAX_ASSETS) {
+            result.add(value);
+        }
+    }
+
+    private static String getReference(String path, String size) throws IOException {
+        return path + "?" + PARAM_SIZE + "=" + URLEncoder.encode(size, StandardCharsets.UTF_8.name());
+    }
+
+    /**
+     * Produces the rendition of the given asset in the background so that it is cached by the time it is requested.
+     * The rendition is produced with a service resolver since the request is completed by then. Only the assets the
+     * current user has been able to read are passed here. The rendering only takes the free part of the image
+     * processing budget and is skipped otherwise
+     * @param path The path to the asset
+     * @param size A string representing the size constraints
+     */
+    private void warm(String path, String size) {
+        String key = path + "|" + size;
+        ExecutorService effectiveExecutor = executor;
+        if (effectiveExecutor == null || !warmingRenditions.add(key)) {
+            return;
+        }
+        try {
+            effectiveExecutor.execute(() -> {
+                try (ResourceResolver resolver = resolverFactory.getServiceResourceResolver(
+                        Collections.singletonMap(ResourceResolverFactory.SUBSERVICE, SUBSERVICE))) {
+                    Resource resource = resolver.getResource(path);
+                    Asset asset = resource != null ? resource.adaptTo(Asset.class) : null;
+                    RenditionService.Selection selection = asset != null ? renditionService.select(asset, size) : null;
+                    if (selection != null) {
+                        renditionService.render(selection, true).close();
+                    }
+                } catch (LoginException | IOException | RejectedExecutionException e) {
+                    log.debug("Could not prefetch rendition of {}: {}", path, e.getMessage());
+                } finally {
+                    warmingRenditions.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            warmingRenditions.remove(key);
+        }
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.insider.servlet.media;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.osgi.framework.BundleContext;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Modified;
+import org.osgi.service.metatype.annotations.Designate;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Stores image renditions created on the fly in a bounded least-recently-used cache in the bundle data area so that
+ * repeated requests for the same asset do not need to decode and encode the image again. Entries are addressed by keys
+ * that include everything the rendition depends on (such as the asset path and modification date), therefore an
+ * outdated entry is never hit and is eventually evicted. A retrieved entry is opened for reading before it can be
+ * evicted, so that it stays readable until it is closed
+ */
+@Component(service = RenditionCache.class)
+@Designate(ocd = RenditionCacheConfig.class)
+@Slf4j
+public class RenditionCache {
+
+    private static final String DIRECTORY = "renditions";
+    private static final String MIME_TYPE_PREFIX = "image/";
+    private static final String SEPARATOR_DOT = ".";
+    private static final String SUFFIX_TEMP = ".tmp";
+
+    private static final long MEGABYTE = 1024L * 1024L;
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private File directory;
+    private long maxSize;
+    private long totalSize;
+
+    @Activate
+    @Modified
+    private synchronized void activate(BundleContext bundleContext, RenditionCacheConfig config) {
+        maxSize = Math.max(config.maxSize(), 0) * MEGABYTE;
+        directory = bundleContext.getDataFile(DIRECTORY);
+        entries.clear();
+        totalSize = 0;
+        if (directory == null || (!directory.isDirectory() && !directory.mkdirs())) {
+            log.warn("Could not access the rendition cache directory. Caching is disabled");
+            directory = null;
+            return;
+        }
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        // The files that were used most recently go last to restore the access order of a previous session
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (File file : files) {
+            String key = StringUtils.substringBefore(file.getName(), SEPARATOR_DOT);
+            String subtype = StringUtils.substringAfter(file.getName(), SEPARATOR_DOT);
+            if (StringUtils.isAnyEmpty(key, subtype) || file.getName().endsWith(SUFFIX_TEMP)) {
+                deleteQuietly(file);
+                continue;
+            }
+            entries.put(key, new Entry(file, MIME_TYPE_PREFIX + subtype, file.length()));
+            totalSize += file.length();
+        }
+        evict(null);
+    }
+
+    /**
+     * Creates a cache key out of the given values that the cached rendition depends upon
+     * @param values A sequence of string values
+     * @return A non-null string
+     */
+    @NotNull
+    public static String getKey(String... values) {
+        return DigestUtils.sha256Hex(StringUtils.join(values, '|'));
+    }
+
+    /**
+     * Retrieves a cached rendition by its key. The content is opened for reading right away, so the returned object
+     * must be closed
+     * @param key The cache key
+     * @return A {@link CachedRendition} object, or {@code null} if there is no such entry
+     */
+    @Nullable
+    public synchronized CachedRendition get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (!entry.file.setLastModified(System.currentTimeMillis())) {
+            // The file has been removed from outside
+            remove(key);
+            return null;
+        }
+        return open(key, entry);
+    }
+
+    /**
+     * Stores a rendition produced by the given writer in the cache. The stored content is opened for reading right
+     * away, so the returned object must be closed
+     * @param key    The cache key
+     * @param writer A routine that writes the rendition content to the provided stream and returns its MIME type
+     * @return A {@link CachedRendition} object, or {@code null} if caching is disabled or has failed, or the rendition
+     * is larger than the cache. In this case the content must be produced without the cache
+     */
+    @Nullable
+    public CachedRendition put(String key, RenditionWriter writer) {
+        File targetDirectory;
+        synchronized (this) {
+            targetDirectory = maxSize > 0 ? directory : null;
+        }
+        if (targetDirectory == null) {
+            return null;
+        }
+        File tempFile = null;
+        try {
+            tempFile = File.createTempFile(key, SUFFIX_TEMP, targetDirectory);
+            String mimeType;
+            try (OutputStream output = new FileOutputStream(tempFile)) {
+                mimeType = writer.write(output);
+            }
+            File file = new File(targetDirectory, key + SEPARATOR_DOT + StringUtils.substringAfter(mimeType, MIME_TYPE_PREFIX));
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Entry entry = new Entry(file, mimeType, file.length());
+            synchronized (this) {
+                if (entry.size > maxSize) {
+                    remove(key);
+                    deleteQuietly(file);
+                    return null;
+                }
+                Entry previous = entries.put(key, entry);
+                if (previous != null) {
+                    totalSize -= previous.size;
+                }
+                totalSize += entry.size;
+                // The entry being stored is not evicted, so that it can be read right away
+                evict(key);
+                return open(key, entry);
+            }
+        } catch (IOException e) {
+            log.error("Could not cache rendition {}", key, e);
+            if (tempFile != null) {
+                deleteQuietly(tempFile);
+            }
+            return null;
+        }
+    }
+
+    private CachedRendition open(String key, Entry entry) {
+        try {
+            return new CachedRendition(entry.mimeType, entry.size, new FileInputStream(entry.file));
+        } catch (FileNotFoundException e) {
+            log.debug("Could not read cached rendition {}", key, e);
+            remove(key);
+            return null;
+        }
+    }
+
+    private void remove(String key) {
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            totalSize -= entry.size;
+        }
+    }
+
+    private void evict(@Nullable String retainedKey) {
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (totalSize > maxSize && iterator.hasNext()) {
+            Map.Entry<String, Entry> eldest = iterator.next();
+            if (eldest.getKey().equals(retainedKey)) {
+                continue;
+            }
+            iterator.remove();
+            totalSize -= eldest.getValue().size;
+            deleteQuietly(eldest.getValue().file);
+        }
+    }
+
+    private static void deleteQuietly(File file) {
+        try {
+            Files.deleteIfExists(file.toPath());
+        } catch (IOException e) {
+            log.debug("Could not delete {}", file, e);
+        }
+    }
+
+    /**
+     * Represents a routine that writes rendition content to a stream
+     */
+    @FunctionalInterface
+    public interface RenditionWriter {
+        /**
+         * Writes the rendition content
+         * @param output The {@link OutputStream} to write to
+         * @return The MIME type of the written content
+         * @throws IOException If an I/O error occurs
+         */
+        String write(OutputStream output) throws IOException;
+    }
+
+    /**
+     * Represents a rendition stored in the cache and opened for reading. The content remains readable even if the
+     * entry is evicted in the meantime
+     */
+    @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+    @Getter
+    public static class CachedRendition implements Closeable {
+        private final String mimeType;
+        private final long size;
+        private final InputStream stream;
+
+        /**
+         * Closes the stored content
+         * @throws IOException If an I/O error occurs
+         */
+        @Override
+        public void close() throws IOException {
+            stream.close();
+        }
+    }
+
+    @RequiredArgsConstructor
+    private static class Entry {
+        private final File file;
+        private final String mimeType;
+        private final long size;
+    }
+}
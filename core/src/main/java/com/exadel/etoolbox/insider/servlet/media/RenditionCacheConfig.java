@@ -0,0 +1,34 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.insider.servlet.media;
+
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.AttributeType;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+
+/**
+ * Defines the configuration for the {@link RenditionCache}
+ */
+@ObjectClassDefinition(name="EToolbox Authoring Insider - Rendition Cache Config")
+public @interface RenditionCacheConfig {
+
+    int DEFAULT_MAX_SIZE = 256;
+
+    @AttributeDefinition(
+            name = "Max Size (MB)",
+            description = "Specify the maximal size of on-the-fly renditions stored on disk. Set to 0 to disable caching",
+            type = AttributeType.INTEGER
+    )
+    int maxSize() default DEFAULT_MAX_SIZE;
+}
@@ -0,0 +1,152 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.insider.servlet.media;
+
+import com.day.image.Layer;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Encodes on-the-fly image renditions according to the {@link ImageRenditionConfig} policy. Chooses the output format
+ * and, if the encoded image exceeds the byte budget, lowers the quality and then the scale until the image fits
+ */
+class RenditionEncoder {
+
+    static final String MIME_TYPE_PNG = "image/png";
+    static final String MIME_TYPE_JPEG = "image/jpeg";
+
+    private static final double MIN_QUALITY = 0.4d;
+    private static final double QUALITY_STEP = 0.15d;
+    private static final double MIN_SCALE_STEP = 0.5d;
+    private static final double MAX_SCALE_STEP = 0.9d;
+    private static final int MIN_DIMENSION = 64;
+    private static final int MAX_ATTEMPTS = 10;
+
+    private static final int SAMPLE_GRID = 64;
+    // Photos have many distinct colors even in a coarse sample, while line art, diagrams, and screenshots reuse a few
+    private static final double PHOTO_COLOR_RATIO = 0.25d;
+
+    private final String format;
+    private final long maxSize;
+    private final double quality;
+
+    /**
+     * Creates a new instance of the {@link RenditionEncoder} class
+     * @param config The {@link ImageRenditionConfig} object
+     */
+    RenditionEncoder(ImageRenditionConfig config) {
+        format = StringUtils.defaultIfBlank(config.outputFormat(), ImageRenditionConfig.FORMAT_AUTO).toLowerCase();
+        maxSize = Math.max(config.maxSize(), 0) * 1024L;
+        quality = Math.min(Math.max(config.quality(), 1), 100) / 100d;
+    }
+
+    /**
+     * Checks whether an existing image of the given size can be passed through without re-encoding
+     * @param size The size of the image in bytes
+     * @return True or false
+     */
+    boolean fits(long size) {
+        return maxSize == 0 || size <= maxSize;
+    }
+
+    /**
+     * Retrieves the MIME type the given image will be encoded to
+     * @param layer The {@link Layer} object
+     * @return A MIME type string
+     */
+    String getMimeType(Layer layer) {
+        if (ImageRenditionConfig.FORMAT_JPEG.equals(format)) {
+            return MIME_TYPE_JPEG;
+        }
+        if (ImageRenditionConfig.FORMAT_PNG.equals(format)) {
+            return MIME_TYPE_PNG;
+        }
+        return isPhoto(layer) ? MIME_TYPE_JPEG : MIME_TYPE_PNG;
+    }
+
+    /**
+     * Encodes the given image to the given output stream. If the byte budget is set, the image is encoded to a buffer
+     * first, and the quality and scale are lowered step by step until the result fits. If the image cannot be fit,
+     * the smallest variant is written
+     * @param layer    The {@link Layer} object
+     * @param mimeType The MIME type to encode to
+     * @param output   The {@link OutputStream} to write to
+     * @throws IOException If an I/O error occurs
+     */
+    void write(Layer layer, String mimeType, OutputStream output) throws IOException {
+        if (maxSize == 0) {
+            layer.write(mimeType, quality, output);
+            return;
+        }
+        boolean isJpeg = MIME_TYPE_JPEG.equals(mimeType);
+        Layer current = layer;
+        double currentQuality = quality;
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            buffer.reset();
+            current.write(mimeType, currentQuality, buffer);
+            if (buffer.size() <= maxSize) {
+                break;
+            }
+            if (isJpeg && currentQuality > MIN_QUALITY) {
+                currentQuality = Math.max(currentQuality - QUALITY_STEP, MIN_QUALITY);
+                continue;
+            }
+            // The encoded size is roughly proportional to the number of pixels
+            double scale = Math.sqrt((double) maxSize / buffer.size());
+            scale = Math.min(Math.max(scale, MIN_SCALE_STEP), MAX_SCALE_STEP);
+            int targetWidth = (int) (current.getWidth() * scale);
+            int targetHeight = (int) (current.getHeight() * scale);
+            if (Math.min(targetWidth, targetHeight) < MIN_DIMENSION) {
+                break;
+            }
+            current = new Layer(current);
+            current.resize(targetWidth, targetHeight);
+        }
+        buffer.writeTo(output);
+    }
+
+    /**
+     * Retrieves a string that identifies the encoding policy. Used as part of the cache keys of encoded renditions
+     * @return A string value
+     */
+    @Override
+    public String toString() {
+        return format + ":" + maxSize + ":" + quality;
+    }
+
+    private static boolean isPhoto(Layer layer) {
+        int stepX = Math.max(layer.getWidth() / SAMPLE_GRID, 1);
+        int stepY = Math.max(layer.getHeight() / SAMPLE_GRID, 1);
+        Set<Integer> colors = new HashSet<>();
+        int samples = 0;
+        for (int y = 0; y < layer.getHeight(); y += stepY) {
+            for (int x = 0; x < layer.getWidth(); x += stepX) {
+                int pixel = layer.getPixel(x, y);
+                if ((pixel >>> 24) < 0xFF) {
+                    // JPEG does not support transparency
+                    return false;
+                }
+                colors.add(pixel);
+                samples++;
+            }
+        }
+        return samples > 0 && colors.size() > samples * PHOTO_COLOR_RATIO;
+    }
+}
@@ -0,0 +1,401 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.insider.servlet.media;
+
+import com.day.cq.dam.api.Asset;
+import com.day.cq.dam.api.Rendition;
+import com.day.crx.JcrConstants;
+import com.day.image.Layer;
+import com.exadel.etoolbox.insider.util.HttpCacheUtil;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Modified;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.metatype.annotations.Designate;
+
+import java.awt.Color;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Collectors;
+
+/**
+ * Produces image renditions of assets that fit the requested boundaries and are encoded according to the
+ * {@link ImageRenditionConfig} policy. Used by the {@link ImageRenditionServlet} to serve renditions to the browser
+ * and by service providers to inline asset references into upstream requests
+ */
+@Component(service = RenditionService.class)
+@Designate(ocd = ImageRenditionConfig.class)
+public class RenditionService {
+
+    private static final String MIME_TYPE_PNG = "image/png";
+    private static final String MIME_TYPE_JPEG = "image/jpeg";
+
+    // A small rendition is enough to compute a perceptual hash; a larger one is decoded with subsampling
+    private static final String HASH_SIZE = "32x32-256x256";
+
+    private static final int BYTES_PER_PIXEL = 4;
+    // Used to estimate the decoded size of an image with unknown dimensions from the size of its binary. Matches a
+    // moderate compression ratio so that the estimate errs on the safe side for most formats
+    private static final int UNKNOWN_SIZE_RATIO = 10;
+
+    private static final List<String> SUPPORTED_MIME_TYPES = Arrays.asList(
+            MIME_TYPE_PNG,
+            MIME_TYPE_JPEG,
+            "image/webp",
+            "image/gif");
+
+    @Reference
+    private RenditionCache renditionCache;
+
+    @Reference
+    private ImageProcessingPool processingPool;
+
+    private RenditionEncoder encoder;
+
+    private final RenditionSizeIndex sizeIndex = new RenditionSizeIndex();
+
+    @Activate
+    @Modified
+    private void activate(ImageRenditionConfig config) {
+        encoder = new RenditionEncoder(config);
+    }
+
+    /**
+     * Selects the rendition of the given asset that fits the given size constraints best
+     * @param asset The {@link Asset} object
+     * @param size  A string representing the size constraints, such as {@code 100x100-600x600}. If not specified,
+     *              the default constraints apply
+     * @return A {@link Selection} object, or {@code null} if the asset has no suitable renditions
+     */
+    @Nullable
+    public Selection select(Asset asset, String size) {
+        BoundariesPredicate boundaries = new BoundariesPredicate(size);
+        Rendition rendition = getFitRendition(asset, boundaries.getBoundaries());
+        if (rendition == null) {
+            return null;
+        }
+        return new Selection(asset, rendition, boundaries, getLastModified(asset, rendition), encoder.toString());
+    }
+
+    /**
+     * Produces the content of the selected rendition. A JPEG rendition that fits the boundaries and the byte budget is
+     * passed through as is. Other renditions are decoded, resized, and encoded in the {@link ImageProcessingPool}, or
+     * else are taken from the {@link RenditionCache}
+     * @param selection The {@link Selection} object
+     * @return An {@link EncodedRendition} object
+     * @throws IOException                If the rendition cannot be read or processed
+     * @throws RejectedExecutionException If the image processing pool is overloaded
+     */
+    @NotNull
+    public EncodedRendition render(Selection selection) throws IOException {
+        return render(selection, false);
+    }
+
+    /**
+     * Produces the content of the selected rendition as {@link RenditionService#render(Selection)} does. A background
+     * rendering, such as prefetching, only takes the part of the {@link ImageProcessingPool} budget that is free, so
+     * that it does not delay the requests of authors
+     * @param selection  The {@link Selection} object
+     * @param background True if the rendition is produced in the background
+     * @return An {@link EncodedRendition} object
+     * @throws IOException                If the rendition cannot be read or processed
+     * @throws RejectedExecutionException If the image processing pool is overloaded
+     */
+    @NotNull
+    public EncodedRendition render(Selection selection, boolean background) throws IOException {
+        Asset asset = selection.getAsset();
+        Rendition rendition = selection.getRendition();
+        BoundariesPredicate boundaries = selection.getBoundaries();
+
+        // A rendition that already fits the boundaries is only flattened onto an opaque background. Any other one,
+        // including a rendition of unknown size, is decoded with subsampling and resized to the boundaries
+        BoundariesPredicate.Size size = sizeIndex.getSize(asset, rendition);
+        boolean isFitRendition = SUPPORTED_MIME_TYPES.contains(rendition.getMimeType())
+                && !size.isEmpty()
+                && boundaries.getBoundaries().contains(size);
+
+        // A fitting JPEG rendition is already compact, so it is passed through unless it exceeds the byte budget
+        boolean isJpegRendition = MIME_TYPE_JPEG.equals(rendition.getMimeType());
+        if (isFitRendition && isJpegRendition && encoder.fits(rendition.getSize())) {
+            return new EncodedRendition(MIME_TYPE_JPEG, output -> {
+                writeRendition(rendition, output);
+                return MIME_TYPE_JPEG;
+            });
+        }
+
+        String cacheKey = RenditionCache.getKey(
+                asset.getPath(),
+                String.valueOf(asset.getLastModified()),
+                rendition.getName(),
+                isFitRendition ? StringUtils.EMPTY : boundaries.getBoundaries().toString(),
+                selection.getPolicy());
+        RenditionCache.CachedRendition cachedRendition = renditionCache.get(cacheKey);
+        if (cachedRendition != null) {
+            return new EncodedRendition(cachedRendition);
+        }
+
+        // The image is decoded, processed, and encoded before anything is written so that a failure can still be
+        // reported with a proper status. The work is done in the pool that limits the memory taken by the images
+        // being processed at the same time
+        long memory = getEstimatedMemory(asset, rendition, isFitRendition, boundaries.getBoundaries());
+        Callable<EncodedRendition> task = () -> encode(rendition, isFitRendition, boundaries, cacheKey);
+        return background ? processingPool.executeInBackground(memory, task) : processingPool.execute(memory, task);
+    }
+
+    /**
+     * Computes the perceptual hash of the image of the given asset (see {@link ImageHash}). The hash is computed from
+     * a small rendition in the background share of the {@link ImageProcessingPool}, since no author is waiting for it
+     * @param asset The {@link Asset} object
+     * @return A 64-bit hash value
+     * @throws IOException                If the asset has no suitable rendition or the rendition cannot be processed
+     * @throws RejectedExecutionException If the image processing pool is overloaded
+     */
+    public long getHash(Asset asset) throws IOException {
+        Selection selection = select(asset, HASH_SIZE);
+        if (selection == null) {
+            throw new IOException("Could not find a rendition for asset " + (asset != null ? asset.getPath() : null));
+        }
+        Rendition rendition = selection.getRendition();
+        BoundariesPredicate.Boundaries boundaries = selection.getBoundaries().getBoundaries();
+        return processingPool.executeInBackground(
+                getEstimatedMemory(asset, rendition, false, boundaries),
+                () -> ImageHash.compute(DecodingHelper.decode(rendition, boundaries).getImage()));
+    }
+
+    /**
+     * Retrieves the number of seconds after which a request rejected due to overload may be retried
+     * @return A positive integer value
+     */
+    public int getRetryAfter() {
+        return processingPool.getRetryAfter();
+    }
+
+    private EncodedRendition encode(
+            Rendition rendition,
+            boolean isFitRendition,
+            BoundariesPredicate boundaries,
+            String cacheKey) throws IOException {
+
+        Layer payload = isFitRendition ? getOpaqueRendition(rendition) : createFitRendition(rendition, boundaries);
+        String mimeType = encoder.getMimeType(payload);
+        RenditionCache.RenditionWriter payloadWriter = output -> {
+            encoder.write(payload, mimeType, output);
+            return mimeType;
+        };
+        RenditionCache.CachedRendition cachedRendition = renditionCache.put(cacheKey, payloadWriter);
+        if (cachedRendition != null) {
+            return new EncodedRendition(cachedRendition);
+        }
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        payloadWriter.write(buffer);
+        return new EncodedRendition(mimeType, output -> {
+            buffer.writeTo(output);
+            return mimeType;
+        });
+    }
+
+    private long getEstimatedMemory(
+            Asset asset,
+            Rendition rendition,
+            boolean isFitRendition,
+            BoundariesPredicate.Boundaries boundaries) {
+
+        BoundariesPredicate.Size size = sizeIndex.getSize(asset, rendition);
+        if (size.isEmpty()) {
+            return rendition.getSize() * UNKNOWN_SIZE_RATIO;
+        }
+        // An image that is going to be scaled down is decoded with subsampling which reduces the raster in both
+        // dimensions
+        int subsampling = !isFitRendition ? DecodingHelper.getSubsampling(size, boundaries) : 1;
+        return (long) size.getWidth() * size.getHeight() * BYTES_PER_PIXEL / ((long) subsampling * subsampling);
+    }
+
+    private static long getLastModified(Asset asset, Rendition rendition) {
+        Calendar renditionLastModified = rendition.getProperties().get(JcrConstants.JCR_LASTMODIFIED, Calendar.class);
+        long result = asset.getLastModified();
+        if (renditionLastModified != null) {
+            result = Math.max(result, renditionLastModified.getTimeInMillis());
+        }
+        return result;
+    }
+
+    private static void writeRendition(Rendition rendition, OutputStream output) throws IOException {
+        try (InputStream input = rendition.getStream()) {
+            if (input == null) {
+                throw new IOException("Could not read rendition stream");
+            }
+            IOUtils.copy(input, output);
+        }
+    }
+
+    private static Layer getOpaqueRendition(Rendition rendition) throws IOException {
+        try (InputStream input = rendition.getStream()) {
+            if (input == null) {
+                throw new IOException("Could not read rendition stream");
+            }
+            Layer foreground = new Layer(input);
+            Layer background = new Layer(foreground.getWidth(), foreground.getHeight(), Color.WHITE);
+            background.merge(foreground);
+            return background;
+        }
+    }
+
+    private Rendition getFitRendition(Asset asset, BoundariesPredicate.Boundaries boundaries) {
+        if (asset == null) {
+            return null;
+        }
+        List<Rendition> renditions = asset.getRenditions()
+                .stream()
+                .filter(rendition -> SUPPORTED_MIME_TYPES.contains(rendition.getMimeType()))
+                .collect(Collectors.toList());
+        if (renditions.isEmpty()) {
+            return asset.getOriginal();
+        }
+        // Renditions that fit the boundaries come first, the smallest of them being preferred. Then go the renditions
+        // of unknown size, then the ones that need the least downscaling, and finally the ones that need upscaling
+        Map<String, BoundariesPredicate.Size> sizes = sizeIndex.getSizes(asset, renditions);
+        Comparator<Rendition> comparator = Comparator
+                .comparingInt((Rendition rendition) -> getFitRank(sizes.get(rendition.getName()), boundaries))
+                .thenComparingDouble(rendition -> getFitCost(sizes.get(rendition.getName()), boundaries))
+                .thenComparingLong(Rendition::getSize);
+        return renditions.stream().min(comparator).orElse(asset.getOriginal());
+    }
+
+    private static int getFitRank(BoundariesPredicate.Size size, BoundariesPredicate.Boundaries boundaries) {
+        if (size == null || size.isEmpty()) {
+            return 1;
+        }
+        if (boundaries.contains(size)) {
+            return 0;
+        }
+        return boundaries.getScale(size) < 1.0f ? 2 : 3;
+    }
+
+    private static double getFitCost(BoundariesPredicate.Size size, BoundariesPredicate.Boundaries boundaries) {
+        if (size == null || size.isEmpty()) {
+            return 0;
+        }
+        if (boundaries.contains(size)) {
+            return (double) size.getWidth() * size.getHeight();
+        }
+        float scale = boundaries.getScale(size);
+        return scale < 1.0f ? 1 / scale : scale;
+    }
+
+    private static Layer createFitRendition(Rendition rendition, BoundariesPredicate predicate) throws IOException {
+        // A large image is decoded with subsampling, so the scale is calculated against the decoded size
+        Layer foreground = DecodingHelper.decode(rendition, predicate.getBoundaries());
+        float scale = predicate.getBoundaries().getScale(
+                new BoundariesPredicate.Size(foreground.getWidth(), foreground.getHeight()));
+        int targetWidth = Math.max((int) (foreground.getWidth() * scale), 1);
+        int targetHeight = Math.max((int) (foreground.getHeight() * scale), 1);
+        if (scale != 1.0f) {
+            foreground.resize(targetWidth, targetHeight);
+        }
+
+        Layer background = new Layer(targetWidth, targetHeight, Color.WHITE);
+        background.merge(foreground);
+        return background;
+    }
+
+    /**
+     * Represents a rendition selected for an asset together with the data the rendition content depends upon
+     */
+    @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+    @Getter
+    public static class Selection {
+        @Getter(AccessLevel.PACKAGE)
+        private final Asset asset;
+        private final Rendition rendition;
+        @Getter(AccessLevel.PACKAGE)
+        private final BoundariesPredicate boundaries;
+        private final long lastModified;
+        @Getter(AccessLevel.PACKAGE)
+        private final String policy;
+
+        /**
+         * Retrieves the entity tag that changes whenever the content of the rendition may change
+         * @return A quoted string value
+         */
+        public String getETag() {
+            return HttpCacheUtil.getETag(StringUtils.join(
+                    new Object[] {rendition.getPath(), lastModified, boundaries.getBoundaries(), policy},
+                    '|'));
+        }
+    }
+
+    /**
+     * Represents the content of a rendition that is ready to be written. The content can be written once. The object
+     * must be closed, since it may hold an open {@link RenditionCache} entry
+     */
+    @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+    @Getter
+    public static class EncodedRendition implements Closeable {
+        private final String mimeType;
+        private final RenditionCache.RenditionWriter writer;
+        @Getter(AccessLevel.NONE)
+        private final Closeable resource;
+
+        private EncodedRendition(String mimeType, RenditionCache.RenditionWriter writer) {
+            this(mimeType, writer, null);
+        }
+
+        private EncodedRendition(RenditionCache.CachedRendition cachedRendition) {
+            this(
+                    cachedRendition.getMimeType(),
+                    output -> {
+                        IOUtils.copy(cachedRendition.getStream(), output);
+                        return cachedRendition.getMimeType();
+                    },
+                    cachedRendition);
+        }
+
+        /**
+         * Writes the content to the given stream
+         * @param output The {@link OutputStream} to write to
+         * @throws IOException If an I/O error occurs
+         */
+        public void writeTo(OutputStream output) throws IOException {
+            writer.write(output);
+        }
+
+        /**
+         * Releases the resources held by the content
+         * @throws IOException If an I/O error occurs
+         */
+        @Override
+        public void close() throws IOException {
+            if (resource != null) {
+                resource.close();
+            }
+        }
+    }
+}
\ No newline at end of file
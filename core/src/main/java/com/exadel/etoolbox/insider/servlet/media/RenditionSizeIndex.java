@@ -0,0 +1,107 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.insider.servlet.media;
+
+import com.day.cq.dam.api.Asset;
+import com.day.cq.dam.api.Rendition;
+import lombok.RequiredArgsConstructor;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ValueMap;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the dimensions of asset renditions so that a rendition can be chosen without reading its metadata on every
+ * request. The dimensions of an asset are re-read when the asset is modified or its set of renditions changes
+ */
+class RenditionSizeIndex {
+
+    private static final int CACHE_SIZE = 1000;
+
+    private static final String NAME_ORIGINAL = "original";
+    private static final String PATH_METADATA = "/jcr:content/metadata";
+    private static final String PROP_WIDTH = "tiff:ImageWidth";
+    private static final String PROP_HEIGHT = "tiff:ImageLength";
+
+    private final Map<String, Entry> entries = Collections.synchronizedMap(
+            new LinkedHashMap<String, Entry>(CACHE_SIZE, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            });
+
+    /**
+     * Retrieves the dimensions of the given renditions of an asset
+     * @param asset      The {@link Asset} object
+     * @param renditions The list of {@link Rendition} objects belonging to the asset
+     * @return A non-null map of rendition names to their sizes. A size is {@link BoundariesPredicate.Size#EMPTY} if
+     * the dimensions are unknown
+     */
+    Map<String, BoundariesPredicate.Size> getSizes(Asset asset, List<Rendition> renditions) {
+        long lastModified = asset.getLastModified();
+        Entry entry = entries.get(asset.getPath());
+        if (entry != null && entry.lastModified == lastModified && entry.covers(renditions)) {
+            return entry.sizes;
+        }
+        Map<String, BoundariesPredicate.Size> sizes = new HashMap<>();
+        for (Rendition rendition : renditions) {
+            sizes.put(rendition.getName(), readSize(asset, rendition));
+        }
+        entry = new Entry(lastModified, Collections.unmodifiableMap(sizes));
+        entries.put(asset.getPath(), entry);
+        return entry.sizes;
+    }
+
+    /**
+     * Retrieves the dimensions of a single rendition of an asset. Uses the indexed value if present
+     * @param asset     The {@link Asset} object
+     * @param rendition The {@link Rendition} object
+     * @return A non-null {@link BoundariesPredicate.Size} object
+     */
+    BoundariesPredicate.Size getSize(Asset asset, Rendition rendition) {
+        Entry entry = entries.get(asset.getPath());
+        if (entry != null && entry.lastModified == asset.getLastModified()
+                && entry.sizes.containsKey(rendition.getName())) {
+            return entry.sizes.get(rendition.getName());
+        }
+        return readSize(asset, rendition);
+    }
+
+    private static BoundariesPredicate.Size readSize(Asset asset, Rendition rendition) {
+        BoundariesPredicate.Size size = BoundariesPredicate.getSize(rendition, rendition.getResourceResolver());
+        if (!size.isEmpty() || !NAME_ORIGINAL.equals(rendition.getName())) {
+            return size;
+        }
+        // The dimensions of the original binary are stored in the metadata of the asset itself
+        Resource metadataResource = rendition.getResourceResolver().getResource(asset.getPath() + PATH_METADATA);
+        ValueMap metadata = metadataResource != null ? metadataResource.getValueMap() : ValueMap.EMPTY;
+        return new BoundariesPredicate.Size(metadata.get(PROP_WIDTH, 0), metadata.get(PROP_HEIGHT, 0));
+    }
+
+    @RequiredArgsConstructor
+    private static class Entry {
+        private final long lastModified;
+        private final Map<String, BoundariesPredicate.Size> sizes;
+
+        boolean covers(List<Rendition> renditions) {
+            return renditions.size() == sizes.size()
+                    && renditions.stream().allMatch(rendition -> sizes.containsKey(rendition.getName()));
+        }
+    }
+}
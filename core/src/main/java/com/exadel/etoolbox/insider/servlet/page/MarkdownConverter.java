@@ -0,0 +1,533 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.insider.servlet.page;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Converts the rendered HTML of a page into markdown that is passed to a service provider as the page content. The
+ * conversion follows the client-side logic of the page tools: only the {@code main} element (or else the
+ * {@code body}) is converted; non-content elements, such as scripts, forms, or embedded objects, are skipped together
+ * with internal anchors; headings, paragraphs, lists, links, and images with alternative text are converted to their
+ * markdown counterparts, and the rest is reduced to text. Nested lists are indented. The parser is tolerant to
+ * unclosed and misplaced tags: like a browser, it closes a paragraph before a block element and closes list items,
+ * definitions, table rows, and cells that are followed by their siblings
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+class MarkdownConverter {
+
+    private static final Set<String> EMBARGOED_ELEMENTS = new HashSet<>(Arrays.asList(
+            "button",
+            "canvas",
+            "embed",
+            "form",
+            "iframe",
+            "input",
+            "link",
+            "meta",
+            "noscript",
+            "object",
+            "script",
+            "style",
+            "template",
+            "svg"));
+
+    private static final Set<String> VOID_ELEMENTS = new HashSet<>(Arrays.asList(
+            "area", "base", "br", "col", "embed", "hr", "img", "input", "link", "meta", "param", "source", "track",
+            "wbr"));
+
+    private static final Set<String> RAW_TEXT_ELEMENTS = new HashSet<>(Arrays.asList("script", "style"));
+
+    private static final Set<String> BLOCK_ELEMENTS = new HashSet<>(Arrays.asList(
+            "address", "article", "aside", "blockquote", "dd", "div", "dl", "dt", "figcaption", "figure", "footer",
+            "header", "hr", "main", "nav", "pre", "section", "table", "td", "th", "tr"));
+
+    private static final Set<String> PARAGRAPH_CLOSING_ELEMENTS = new HashSet<>(Arrays.asList(
+            "address", "article", "aside", "blockquote", "dd", "div", "dl", "dt", "fieldset", "figcaption", "figure",
+            "footer", "form", "h1", "h2", "h3", "h4", "h5", "h6", "header", "hr", "li", "main", "nav", "ol", "p", "pre",
+            "section", "table", "ul"));
+
+    private static final Set<String> PARAGRAPH_SCOPE = new HashSet<>(Arrays.asList(
+            "button", "caption", "object", "table", "td", "template", "th"));
+
+    private static final Map<String, Set<String>> SIBLING_ELEMENTS = new HashMap<>();
+    private static final Map<String, Set<String>> SIBLING_SCOPES = new HashMap<>();
+    static {
+        addSiblings(Arrays.asList("li"), Arrays.asList("ol", "ul"));
+        addSiblings(Arrays.asList("dd", "dt"), Arrays.asList("dl"));
+        addSiblings(Arrays.asList("td", "th"), Arrays.asList("table", "tr"));
+        addSiblings(Arrays.asList("tr"), Arrays.asList("table"));
+    }
+
+    private static final Map<String, String> ENTITIES = new HashMap<>();
+    static {
+        ENTITIES.put("amp", "&");
+        ENTITIES.put("apos", "'");
+        ENTITIES.put("copy", "\u00A9");
+        ENTITIES.put("gt", ">");
+        ENTITIES.put("hellip", "\u2026");
+        ENTITIES.put("laquo", "\u00AB");
+        ENTITIES.put("ldquo", "\u201C");
+        ENTITIES.put("lsquo", "\u2018");
+        ENTITIES.put("lt", "<");
+        ENTITIES.put("mdash", "\u2014");
+        ENTITIES.put("nbsp", " ");
+        ENTITIES.put("ndash", "\u2013");
+        ENTITIES.put("quot", "\"");
+        ENTITIES.put("raquo", "\u00BB");
+        ENTITIES.put("rdquo", "\u201D");
+        ENTITIES.put("reg", "\u00AE");
+        ENTITIES.put("rsquo", "\u2019");
+    }
+
+    private static final int MAX_ENTITY_LENGTH = 10;
+
+    private static final String ATTR_HREF = "href";
+    private static final String ATTR_TITLE = "title";
+
+    private static final String TAG_ROOT = "#root";
+
+    // Marks the indentation of nested list items, so that it is not collapsed together with the other whitespace
+    private static final char INDENT = '\u0000';
+
+    private static final Pattern EDGE_NON_WORD = Pattern.compile("^\\W+|\\W+$", Pattern.UNICODE_CHARACTER_CLASS);
+    private static final Pattern SPACES = Pattern.compile("[\\s\\u00A0]+");
+    private static final Pattern LINE_BREAKS = Pattern.compile("\\s*\\n\\s*");
+
+    /**
+     * Converts the given HTML into markdown
+     * @param html             The HTML string
+     * @param excludedElements Additional elements to skip, specified as simple selectors such as {@code aside},
+     *                         {@code .cmp-breadcrumb}, or {@code nav#main}. Selectors of other kinds are ignored
+     * @return A markdown string. Lines are separated by single line feeds
+     */
+    static String convert(String html, Collection<String> excludedElements) {
+        Element root = parse(StringUtils.defaultString(html));
+        Element content = root.find("main");
+        if (content == null) {
+            content = root.find("body");
+        }
+        List<Selector> selectors = EMBARGOED_ELEMENTS.stream().map(Selector::parse).collect(Collectors.toList());
+        excludedElements.stream().map(Selector::parse).filter(Selector::isValid).forEach(selectors::add);
+        StringBuilder builder = new StringBuilder();
+        render(content != null ? content : root, selectors, builder);
+        return builder.toString()
+                .replaceAll("[ \\t]+", " ")
+                .replaceAll(" *\\n *", "\n")
+                .replaceAll("\\n+", "\n")
+                .trim()
+                .replace(INDENT, ' ');
+    }
+
+    /* -------
+       Parsing
+       ------- */
+
+    private static Element parse(String html) {
+        Element root = new Element(TAG_ROOT, new HashMap<>());
+        Deque<Element> stack = new ArrayDeque<>();
+        stack.push(root);
+        int position = 0;
+        int length = html.length();
+        while (position < length) {
+            int start = html.indexOf('<', position);
+            if (start < 0 || start == length - 1) {
+                stack.peek().children.add(decode(html.substring(position)));
+                break;
+            }
+            if (start > position) {
+                stack.peek().children.add(decode(html.substring(position, start)));
+            }
+            char next = html.charAt(start + 1);
+            if (html.startsWith("<!--", start)) {
+                position = skipTo(html, "-->", start + 4);
+            } else if (next == '!' || next == '?') {
+                position = skipTo(html, ">", start + 2);
+            } else if (next == '/') {
+                int end = skipTo(html, ">", start + 2);
+                String name = StringUtils.substringBefore(
+                        html.substring(start + 2, Math.max(end - 1, start + 2)).trim(),
+                        " ");
+                close(stack, name.toLowerCase(Locale.ROOT));
+                position = end;
+            } else if (Character.isLetter(next)) {
+                position = parseStartTag(html, start + 1, stack);
+            } else {
+                stack.peek().children.add("<");
+                position = start + 1;
+            }
+        }
+        return root;
+    }
+
+    private static int parseStartTag(String html, int position, Deque<Element> stack) {
+        int length = html.length();
+        int cursor = position;
+        while (cursor < length && !isDelimiter(html.charAt(cursor), "/>")) {
+            cursor++;
+        }
+        String name = html.substring(position, cursor).toLowerCase(Locale.ROOT);
+        Map<String, String> attributes = new HashMap<>();
+        boolean selfClosing = false;
+        while (cursor < length) {
+            char current = html.charAt(cursor);
+            if (current == '>') {
+                cursor++;
+                break;
+            }
+            if (current == '/' || Character.isWhitespace(current)) {
+                selfClosing = current == '/';
+                cursor++;
+                continue;
+            }
+            int nameStart = cursor;
+            while (cursor < length && !isDelimiter(html.charAt(cursor), "=/>")) {
+                cursor++;
+            }
+            String attributeName = html.substring(nameStart, cursor).toLowerCase(Locale.ROOT);
+            while (cursor < length && Character.isWhitespace(html.charAt(cursor))) {
+                cursor++;
+            }
+            String value = StringUtils.EMPTY;
+            if (cursor < length && html.charAt(cursor) == '=') {
+                cursor++;
+                while (cursor < length && Character.isWhitespace(html.charAt(cursor))) {
+                    cursor++;
+                }
+                int valueStart = cursor;
+                if (cursor < length && (html.charAt(cursor) == '"' || html.charAt(cursor) == '\'')) {
+                    int valueEnd = html.indexOf(html.charAt(cursor), cursor + 1);
+                    valueEnd = valueEnd < 0 ? length : valueEnd;
+                    value = html.substring(valueStart + 1, valueEnd);
+                    cursor = Math.min(valueEnd + 1, length);
+                } else {
+                    while (cursor < length && !isDelimiter(html.charAt(cursor), ">")) {
+                        cursor++;
+                    }
+                    value = html.substring(valueStart, cursor);
+                }
+            }
+            attributes.put(attributeName, decode(value));
+            selfClosing = false;
+        }
+
+        if (PARAGRAPH_CLOSING_ELEMENTS.contains(name)) {
+            closeInScope(stack, Collections.singleton("p"), PARAGRAPH_SCOPE);
+        }
+        if (SIBLING_ELEMENTS.containsKey(name)) {
+            closeInScope(stack, SIBLING_ELEMENTS.get(name), SIBLING_SCOPES.get(name));
+        }
+        Element element = new Element(name, attributes);
+        stack.peek().children.add(element);
+        if (RAW_TEXT_ELEMENTS.contains(name)) {
+            int end = StringUtils.indexOfIgnoreCase(html, "</" + name, cursor);
+            end = end < 0 ? length : end;
+            element.children.add(html.substring(cursor, end));
+            return end < length ? skipTo(html, ">", end) : length;
+        }
+        if (!selfClosing && !VOID_ELEMENTS.contains(name)) {
+            stack.push(element);
+        }
+        return cursor;
+    }
+
+    private static void close(Deque<Element> stack, String name) {
+        boolean isOpen = stack.stream().anyMatch(element -> element.tag.equals(name));
+        if (!isOpen) {
+            return;
+        }
+        while (stack.size() > 1) {
+            if (stack.pop().tag.equals(name)) {
+                return;
+            }
+        }
+    }
+
+    private static void closeInScope(Deque<Element> stack, Set<String> names, Set<String> scope) {
+        for (Element element : stack) {
+            if (names.contains(element.tag)) {
+                close(stack, element.tag);
+                return;
+            }
+            if (scope.contains(element.tag)) {
+                return;
+            }
+        }
+    }
+
+    private static void addSiblings(List<String> names, List<String> scope) {
+        for (String name : names) {
+            SIBLING_ELEMENTS.put(name, new HashSet<>(names));
+            SIBLING_SCOPES.put(name, new HashSet<>(scope));
+        }
+    }
+
+    private static boolean isDelimiter(char value, String delimiters) {
+        return Character.isWhitespace(value) || delimiters.indexOf(value) >= 0;
+    }
+
+    private static int skipTo(String html, String token, int position) {
+        int index = html.indexOf(token, position);
+        return index < 0 ? html.length() : index + token.length();
+    }
+
+    private static String decode(String value) {
+        if (value.indexOf('&') < 0) {
+            return value;
+        }
+        StringBuilder result = new StringBuilder(value.length());
+        int position = 0;
+        while (position < value.length()) {
+            int start = value.indexOf('&', position);
+            if (start < 0) {
+                result.append(value, position, value.length());
+                break;
+            }
+            result.append(value, position, start);
+            int end = value.indexOf(';', start);
+            String replacement = end > start && end - start <= MAX_ENTITY_LENGTH
+                    ? decodeEntity(value.substring(start + 1, end))
+                    : null;
+            if (replacement == null) {
+                // A standalone ampersand is kept as is, and the rest of the value is still decoded
+                result.append('&');
+                position = start + 1;
+            } else {
+                result.append(replacement);
+                position = end + 1;
+            }
+        }
+        return result.toString();
+    }
+
+    private static String decodeEntity(String entity) {
+        String result = ENTITIES.get(entity);
+        if (result != null || !entity.startsWith("#")) {
+            return result;
+        }
+        try {
+            int codePoint = entity.length() > 1 && Character.toLowerCase(entity.charAt(1)) == 'x'
+                    ? Integer.parseInt(entity.substring(2), 16)
+                    : Integer.parseInt(entity.substring(1));
+            return new String(Character.toChars(codePoint));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /* ---------
+       Rendering
+       --------- */
+
+    private static void render(Element element, List<Selector> selectors, StringBuilder builder) {
+        for (Object child : element.children) {
+            if (child instanceof String) {
+                builder.append(SPACES.matcher((String) child).replaceAll(" "));
+            } else if (!isExcluded((Element) child, selectors)) {
+                renderElement((Element) child, selectors, builder);
+            }
+        }
+    }
+
+    private static void renderElement(Element element, List<Selector> selectors, StringBuilder builder) {
+        String tag = element.tag;
+        if ("a".equals(tag) && element.attributes.containsKey(ATTR_HREF)) {
+            String title = strip(StringUtils.defaultIfBlank(
+                    element.attributes.get(ATTR_TITLE),
+                    getText(element, selectors)));
+            if (!title.isEmpty()) {
+                builder.append(" [").append(title).append("](").append(element.attributes.get(ATTR_HREF)).append(") ");
+            }
+        } else if ("img".equals(tag)) {
+            String alt = strip(StringUtils.defaultString(element.attributes.get("alt")));
+            if (!alt.isEmpty()) {
+                builder.append("\n![").append(alt).append("](").append(element.attributes.get("src")).append(")\n");
+            }
+        } else if (tag.length() == 2 && tag.charAt(0) == 'h' && tag.charAt(1) >= '1' && tag.charAt(1) <= '6') {
+            builder.append("\n\n").append(StringUtils.repeat('#', tag.charAt(1) - '0')).append(' ')
+                    .append(renderInner(element, selectors)).append('\n');
+        } else if ("p".equals(tag)) {
+            String content = renderInner(element, selectors);
+            if (!content.isEmpty()) {
+                builder.append('\n').append(content).append('\n');
+            }
+        } else if ("br".equals(tag)) {
+            builder.append('\n');
+        } else if ("ul".equals(tag) || "ol".equals(tag)) {
+            renderList(element, selectors, builder);
+        } else if ("span".equals(tag)) {
+            builder.append(' ');
+            render(element, selectors, builder);
+            builder.append(' ');
+        } else if (BLOCK_ELEMENTS.contains(tag)) {
+            builder.append('\n');
+            render(element, selectors, builder);
+            builder.append('\n');
+        } else {
+            render(element, selectors, builder);
+        }
+    }
+
+    private static void renderList(Element list, List<Selector> selectors, StringBuilder builder) {
+        StringBuilder items = new StringBuilder();
+        int index = 0;
+        for (Object child : list.children) {
+            if (!(child instanceof Element) || !"li".equals(((Element) child).tag)) {
+                continue;
+            }
+            index++;
+            String item = renderInner((Element) child, selectors);
+            if (item.isEmpty()) {
+                continue;
+            }
+            String marker = item.startsWith("#") ? StringUtils.EMPTY : ("ul".equals(list.tag) ? "- " : index + ". ");
+            // The lines that follow the first one, such as the items of a nested list, are aligned with its content
+            String indent = StringUtils.repeat(INDENT, marker.length());
+            items.append(marker).append(LINE_BREAKS.matcher(item).replaceAll("\n" + indent)).append('\n');
+        }
+        if (items.length() > 0) {
+            builder.append('\n').append(items).append('\n');
+        }
+    }
+
+    private static String renderInner(Element element, List<Selector> selectors) {
+        StringBuilder builder = new StringBuilder();
+        render(element, selectors, builder);
+        return builder.toString().replaceAll("[ \\t]+", " ").trim();
+    }
+
+    private static String getText(Element element, List<Selector> selectors) {
+        StringBuilder builder = new StringBuilder();
+        collectText(element, selectors, builder);
+        return SPACES.matcher(builder).replaceAll(" ").trim();
+    }
+
+    private static void collectText(Element element, List<Selector> selectors, StringBuilder builder) {
+        for (Object child : element.children) {
+            if (child instanceof String) {
+                builder.append((String) child);
+            } else if (!isExcluded((Element) child, selectors)) {
+                collectText((Element) child, selectors, builder);
+            }
+        }
+    }
+
+    private static String strip(String value) {
+        return EDGE_NON_WORD.matcher(value).replaceAll(StringUtils.EMPTY);
+    }
+
+    private static boolean isExcluded(Element element, List<Selector> selectors) {
+        if ("a".equals(element.tag) && StringUtils.startsWith(element.attributes.get(ATTR_HREF), "#")) {
+            return true;
+        }
+        return selectors.stream().anyMatch(selector -> selector.matches(element));
+    }
+
+    /**
+     * Represents an element of the parsed HTML
+     */
+    @RequiredArgsConstructor
+    private static class Element {
+        private final String tag;
+        private final Map<String, String> attributes;
+        private final List<Object> children = new ArrayList<>();
+
+        Element find(String name) {
+            for (Object child : children) {
+                if (!(child instanceof Element)) {
+                    continue;
+                }
+                Element element = (Element) child;
+                Element result = element.tag.equals(name) ? element : element.find(name);
+                if (result != null) {
+                    return result;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Represents a simple selector consisting of an optional tag name, an optional ID, and optional class names
+     */
+    @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+    private static class Selector {
+        private static final Pattern SIMPLE_SELECTOR = Pattern.compile("[\\w-]*(?:[#.][\\w-]+)*");
+
+        private final String tag;
+        private final String id;
+        private final Set<String> classes;
+
+        static Selector parse(String value) {
+            String selector = StringUtils.trimToEmpty(value);
+            if (selector.isEmpty() || !SIMPLE_SELECTOR.matcher(selector).matches()) {
+                return new Selector(null, null, null);
+            }
+            String[] parts = selector.split("(?=[#.])");
+            String tag = null;
+            String id = null;
+            Set<String> classes = new HashSet<>();
+            for (String part : parts) {
+                if (part.startsWith("#")) {
+                    id = part.substring(1);
+                } else if (part.startsWith(".")) {
+                    classes.add(part.substring(1));
+                } else if (!part.isEmpty()) {
+                    tag = part.toLowerCase(Locale.ROOT);
+                }
+            }
+            return new Selector(tag, id, classes);
+        }
+
+        boolean isValid() {
+            return classes != null;
+        }
+
+        boolean matches(Element element) {
+            if (!isValid()) {
+                return false;
+            }
+            if (tag != null && !tag.equals(element.tag)) {
+                return false;
+            }
+            if (id != null && !id.equals(element.attributes.get("id"))) {
+                return false;
+            }
+            if (classes.isEmpty()) {
+                return true;
+            }
+            Set<String> elementClasses = new HashSet<>(Arrays.asList(
+                    StringUtils.split(StringUtils.defaultString(element.attributes.get("class")))));
+            return elementClasses.containsAll(classes);
+        }
+    }
+}
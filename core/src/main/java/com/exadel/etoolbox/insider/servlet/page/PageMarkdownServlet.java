@@ -0,0 +1,179 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.insider.servlet.page;
+
+import com.day.cq.contentsync.handler.util.RequestResponseFactory;
+import com.day.cq.wcm.api.Page;
+import com.day.cq.wcm.api.PageManager;
+import com.day.cq.wcm.api.WCMMode;
+import com.exadel.etoolbox.insider.util.Constants;
+import com.exadel.etoolbox.insider.util.HttpCacheUtil;
+import com.exadel.etoolbox.insider.util.JsonUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpStatus;
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.api.SlingHttpServletResponse;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.servlets.HttpConstants;
+import org.apache.sling.api.servlets.ServletResolverConstants;
+import org.apache.sling.api.servlets.SlingSafeMethodsServlet;
+import org.apache.sling.engine.SlingRequestProcessor;
+import org.jetbrains.annotations.NotNull;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+
+import javax.servlet.Servlet;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A Sling Servlet implementation that produces the markdown content of a page for the page-level tools. The page
+ * specified with the {@code path} parameter is rendered on the server with the {@code disabled} WCM mode and converted
+ * to markdown (see {@link MarkdownConverter}). The {@code exclude} parameter lists additional elements to skip. The
+ * page is rendered on behalf of the current user, whose permissions may affect the output, so the result is cached by
+ * the user ID together with the page path and the {@code cq:lastModified} value. Repeated requests of a user for an
+ * unchanged page do not render it again
+ */
+@Component(
+        service = Servlet.class,
+        property = {
+                ServletResolverConstants.SLING_SERVLET_METHODS + "=GET",
+                ServletResolverConstants.SLING_SERVLET_RESOURCE_TYPES + "=/bin/etoolbox/authoring-insider/markdown",
+                ServletResolverConstants.SLING_SERVLET_EXTENSIONS + "=json"
+        }
+)
+@Slf4j
+public class PageMarkdownServlet extends SlingSafeMethodsServlet {
+
+    private static final String PARAM_EXCLUDE = "exclude";
+    private static final String PARAM_PATH = "path";
+
+    private static final String PREFIX_CONTENT = "/content/";
+    private static final String PROP_MARKDOWN = "markdown";
+
+    // The markdown is produced for authors only, so it must not be stored in shared caches
+    private static final String HEADER_PRIVATE_CACHE = "private, no-cache";
+
+    private static final int MAX_PAGES = 100;
+
+    @Reference
+    private transient RequestResponseFactory requestResponseFactory;
+
+    @Reference
+    private transient SlingRequestProcessor requestProcessor;
+
+    private final transient Map<String, String> cache = new LinkedHashMap<String, String>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > MAX_PAGES;
+        }
+    };
+
+    /**
+     * Processes a GET request targeted at a resource with the {@code /bin/etoolbox/authoring-insider/markdown}
+     * resource type
+     * @param request  The {@link SlingHttpServletRequest} object
+     * @param response The {@link SlingHttpServletResponse} object
+     * @throws IOException If an I/O error occurs
+     */
+    @Override
+    protected void doGet(
+            @NotNull SlingHttpServletRequest request,
+            @NotNull SlingHttpServletResponse response) throws IOException {
+
+        String path = request.getParameter(PARAM_PATH);
+        PageManager pageManager = request.getResourceResolver().adaptTo(PageManager.class);
+        Page page = StringUtils.startsWith(path, PREFIX_CONTENT) && pageManager != null
+                ? pageManager.getPage(path)
+                : null;
+        if (page == null) {
+            JsonUtil.writeTo(response, HttpStatus.SC_NOT_FOUND, Constants.PROP_ERROR, "Page not found");
+            return;
+        }
+
+        List<String> excludedElements = Arrays.asList(
+                ArrayUtils.nullToEmpty(request.getParameterValues(PARAM_EXCLUDE)));
+        Calendar lastModified = page.getLastModified();
+        String key = lastModified != null
+                ? StringUtils.join(
+                        new Object[] {
+                                request.getResourceResolver().getUserID(),
+                                page.getPath(),
+                                lastModified.getTimeInMillis(),
+                                excludedElements
+                        },
+                        '|')
+                : null;
+        response.setHeader(HttpHeaders.CACHE_CONTROL, HEADER_PRIVATE_CACHE);
+        if (key != null && HttpCacheUtil.checkNotModified(
+                request,
+                response,
+                HttpCacheUtil.getETag(key),
+                lastModified.getTimeInMillis())) {
+            return;
+        }
+
+        String markdown = key != null ? getCached(key) : null;
+        if (markdown == null) {
+            String html;
+            try {
+                html = render(page.getPath(), request.getResourceResolver());
+            } catch (ServletException | IOException e) {
+                log.error("Could not render page {}", page.getPath(), e);
+                JsonUtil.writeTo(response, HttpStatus.SC_BAD_GATEWAY, Constants.PROP_ERROR, "Could not render page");
+                return;
+            }
+            markdown = MarkdownConverter.convert(html, excludedElements);
+            if (key != null) {
+                putCached(key, markdown);
+            }
+        }
+        JsonUtil.writeTo(response, Collections.singletonMap(PROP_MARKDOWN, markdown));
+    }
+
+    private String render(String path, ResourceResolver resolver) throws ServletException, IOException {
+        HttpServletRequest pageRequest = requestResponseFactory.createRequest(HttpConstants.METHOD_GET, path + ".html");
+        WCMMode.DISABLED.toRequest(pageRequest);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        HttpServletResponse pageResponse = requestResponseFactory.createResponse(output);
+        // The page is rendered on behalf of the current user
+        requestProcessor.processRequest(pageRequest, pageResponse, resolver);
+        pageResponse.flushBuffer();
+        if (pageResponse.getStatus() >= HttpStatus.SC_BAD_REQUEST) {
+            throw new IOException("Rendering failed with status " + pageResponse.getStatus());
+        }
+        return new String(output.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private synchronized String getCached(String key) {
+        return cache.get(key);
+    }
+
+    private synchronized void putCached(String key, String value) {
+        cache.put(key, value);
+    }
+}
@@ -26,6 +26,8 @@ public class Constants {
 
     public static final String HEADER_NO_CACHE = "no-cache";
 
+    public static final String PATH_CONFIG = "/conf/etoolbox/authoring-insider";
+
     public static final String PROP_DETAILS = "details";
     public static final String PROP_ERROR = "error";
     public static final String PROP_FIELDS = "fields";
@@ -0,0 +1,133 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.insider.util;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpStatus;
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.api.SlingHttpServletResponse;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Contains utility methods for HTTP caching with use of validators such as {@code ETag}
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class HttpCacheUtil {
+
+    private static final String WEAK_PREFIX = "W/";
+    private static final String WILDCARD = "*";
+
+    /**
+     * Creates a strong entity tag for the given content
+     * @param content A string representing the response body
+     * @return A quoted string value
+     */
+    @NotNull
+    public static String getETag(@NotNull String content) {
+        return getETag(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Creates a strong entity tag for the given content
+     * @param content A byte array representing the response body
+     * @return A quoted string value
+     */
+    @NotNull
+    public static String getETag(@NotNull byte[] content) {
+        return "\"" + DigestUtils.sha256Hex(content) + "\"";
+    }
+
+    /**
+     * Checks whether the {@code If-None-Match} header of the request matches the given entity tag. If so, the
+     * {@code 304 Not Modified} status is set to the response. Either way, the {@code ETag} header is added to the
+     * response
+     * @param request  The {@link SlingHttpServletRequest} object
+     * @param response The {@link SlingHttpServletResponse} object
+     * @param eTag     The current entity tag of the requested content
+     * @return True if the client already has the current content, and no response body must be sent; otherwise,
+     * false
+     */
+    public static boolean checkNotModified(
+            @NotNull SlingHttpServletRequest request,
+            @NotNull SlingHttpServletResponse response,
+            @NotNull String eTag) {
+
+        response.setHeader(HttpHeaders.ETAG, eTag);
+        if (!matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), eTag)) {
+            return false;
+        }
+        response.setStatus(HttpStatus.SC_NOT_MODIFIED);
+        return true;
+    }
+
+    /**
+     * Checks whether the client already has the current content judging by the {@code If-None-Match} header, or by the
+     * {@code If-Modified-Since} header if the former is missing. If so, the {@code 304 Not Modified} status is set to
+     * the response. Either way, the {@code ETag} and {@code Last-Modified} headers are added to the response
+     * @param request      The {@link SlingHttpServletRequest} object
+     * @param response     The {@link SlingHttpServletResponse} object
+     * @param eTag         The current entity tag of the requested content
+     * @param lastModified The time of the last modification of the requested content in milliseconds. A non-positive
+     *                     value means that the time is unknown
+     * @return True if no response body must be sent; otherwise, false
+     */
+    public static boolean checkNotModified(
+            @NotNull SlingHttpServletRequest request,
+            @NotNull SlingHttpServletResponse response,
+            @NotNull String eTag,
+            long lastModified) {
+
+        if (lastModified > 0) {
+            response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+        }
+        if (StringUtils.isNotBlank(request.getHeader(HttpHeaders.IF_NONE_MATCH)) || lastModified <= 0) {
+            return checkNotModified(request, response, eTag);
+        }
+        response.setHeader(HttpHeaders.ETAG, eTag);
+        long ifModifiedSince = getDateHeader(request, HttpHeaders.IF_MODIFIED_SINCE);
+        // HTTP dates have a precision of one second
+        if (ifModifiedSince < 0 || lastModified / 1000 > ifModifiedSince / 1000) {
+            return false;
+        }
+        response.setStatus(HttpStatus.SC_NOT_MODIFIED);
+        return true;
+    }
+
+    private static long getDateHeader(SlingHttpServletRequest request, String name) {
+        try {
+            return request.getDateHeader(name);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    private static boolean matches(String header, String eTag) {
+        if (StringUtils.isBlank(header)) {
+            return false;
+        }
+        for (String candidate : StringUtils.split(header, ',')) {
+            String value = StringUtils.removeStart(candidate.trim(), WEAK_PREFIX);
+            if (WILDCARD.equals(value) || eTag.equals(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
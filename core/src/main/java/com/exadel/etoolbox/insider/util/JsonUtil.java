@@ -14,8 +14,10 @@
 package com.exadel.etoolbox.insider.util;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonParseException;
 import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonWriter;
 import lombok.NoArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
@@ -26,7 +28,6 @@ import org.jetbrains.annotations.NotNull;
 import java.io.IOException;
 import java.lang.reflect.Type;
 import java.util.Collections;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -63,6 +64,25 @@ public class JsonUtil {
         }
     }
 
+    /**
+     * Deserializes a JSON string into an object of the given type
+     * @param json A JSON string
+     * @param type A class reference matching the object
+     * @return An object of the given type, or {@code null} if the string is blank or cannot be parsed
+     * @param <T> The type of the object
+     */
+    public static <T> T getObject(String json, Class<T> type) {
+        if (StringUtils.isBlank(json)) {
+            return null;
+        }
+        try {
+            return GSON.fromJson(json, type);
+        } catch (Exception e) {
+            log.error(EXCEPTION_PARSE, json, e);
+            return null;
+        }
+    }
+
     /**
      * Deserializes a JSON string into a list of typed objects
      * @param json A JSON string
@@ -115,19 +135,26 @@ public class JsonUtil {
      * Writes a JSON-formatted message to the response with the specified HTTP status
      * @param response A {@link SlingHttpServletResponse} object
      * @param status The HTTP status code
-     * @param values A sequence of key-value pairs that will build up to the JSON structure in the response
+     * @param values A sequence of key-value pairs that will build up to the JSON structure in the response. The pairs
+     *               are streamed to the response writer one by one
      * @throws IOException If an I/O error occurs
      */
     public static void writeTo(@NotNull SlingHttpServletResponse response, int status, @NotNull String... values) throws IOException {
-        Map<String, String> map = new LinkedHashMap<>();
-        for (int i = 0; i < values.length; i += 2) {
-            map.put(values[i], values[i + 1]);
+        response.setStatus(status);
+        response.setContentType(CONTENT_TYPE_JSON);
+        JsonWriter jsonWriter = GSON.newJsonWriter(response.getWriter());
+        jsonWriter.beginObject();
+        for (int i = 0; i + 1 < values.length; i += 2) {
+            jsonWriter.name(values[i]).value(values[i + 1]);
         }
-        writeTo(response, status, map);
+        jsonWriter.endObject();
+        jsonWriter.flush();
     }
 
     /**
-     * Writes a JSON-formatted message to the response with the specified HTTP status
+     * Writes a JSON-formatted message to the response with the specified HTTP status. A string value is considered
+     * to be JSON already and is passed through as is. Other values are converted to a JSON tree which is then streamed
+     * to the response writer. If the value cannot be serialized, an empty JSON object is written
      * @param response A {@link SlingHttpServletResponse} object
      * @param status The HTTP status code
      * @param value The message to write
@@ -136,6 +163,26 @@ public class JsonUtil {
     public static void writeTo(@NotNull SlingHttpServletResponse response, int status, Object value) throws IOException {
         response.setStatus(status);
         response.setContentType(CONTENT_TYPE_JSON);
-        response.getWriter().write(value instanceof String ? (String) value : toJson(value));
+        if (value instanceof String) {
+            response.getWriter().write((String) value);
+            return;
+        }
+        if (value == null) {
+            response.getWriter().write(Constants.EMPTY_JSON);
+            return;
+        }
+        // The tree is built before anything is written, so that a failure does not leave an incomplete JSON in the
+        // response. No intermediate string is built
+        JsonElement tree;
+        try {
+            tree = GSON.toJsonTree(value, value.getClass());
+        } catch (JsonParseException e) {
+            log.error(EXCEPTION_SERIALIZE, value, e);
+            response.getWriter().write(Constants.EMPTY_JSON);
+            return;
+        }
+        JsonWriter jsonWriter = GSON.newJsonWriter(response.getWriter());
+        GSON.toJson(tree, jsonWriter);
+        jsonWriter.flush();
     }
 }
@@ -0,0 +1,148 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.insider.config;
+
+import com.exadel.etoolbox.insider.util.Constants;
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+import org.apache.sling.api.resource.ModifiableValueMap;
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.util.Collections;
+import java.util.List;
+
+@ExtendWith({AemContextExtension.class})
+public class ConfigIndexTest {
+
+    private final AemContext context = new AemContext();
+
+    private ConfigIndex index;
+
+    @BeforeEach
+    public void init() {
+        context.load().json(
+                "/com/exadel/etoolbox/insider/servlet/config/conf.json",
+                Constants.PATH_CONFIG);
+        index = new ConfigIndex();
+        index.rebuild(context.resourceResolver().getResource(Constants.PATH_CONFIG));
+    }
+
+    @Test
+    public void shouldPatchChangedItem() {
+        ConfigSnapshot initial = index.getSnapshot();
+        getProperties("/tools/item1").put("title", "Modified tool");
+
+        index.apply(changes(ResourceChange.ChangeType.CHANGED, "/tools/item1"), context.resourceResolver());
+
+        List<ItemConfig> tools = index.getSnapshot().getTools();
+        Assertions.assertEquals(4, tools.size());
+        Assertions.assertEquals("Modified tool", tools.get(1).getTitle());
+        Assertions.assertFalse(tools.get(1).isEnabled());
+        Assertions.assertSame(initial.getTools().get(0), tools.get(0));
+        Assertions.assertSame(initial.getTools().get(2), tools.get(2));
+        Assertions.assertSame(initial.getProviders(), index.getSnapshot().getProviders());
+        Assertions.assertNotEquals(initial.getETag(), index.getSnapshot().getETag());
+    }
+
+    @Test
+    public void shouldShiftOrdinalsOnRemoval() throws PersistenceException {
+        context.resourceResolver().delete(context.resourceResolver().getResource(Constants.PATH_CONFIG + "/tools/item0"));
+
+        index.apply(changes(ResourceChange.ChangeType.REMOVED, "/tools/item0"), context.resourceResolver());
+
+        List<ItemConfig> tools = index.getSnapshot().getTools();
+        Assertions.assertEquals(3, tools.size());
+        Assertions.assertEquals("tools/item1", tools.get(0).getPath());
+        Assertions.assertEquals(0, tools.get(0).getOrdinal());
+        Assertions.assertEquals("tools/item2", tools.get(1).getPath());
+        Assertions.assertEquals(1, tools.get(1).getOrdinal());
+        Assertions.assertEquals("command.3", tools.get(2).getType());
+        Assertions.assertEquals(2, tools.get(2).getOrdinal());
+    }
+
+    @Test
+    public void shouldAppendAddedItem() {
+        context.create().resource(
+                Constants.PATH_CONFIG + "/providers/item3",
+                "type", "llm.other",
+                "title", "Provider 3",
+                Constants.PROP_DETAILS, "{\"url\": \"http://localhost:10002\"}");
+
+        index.apply(changes(ResourceChange.ChangeType.ADDED, "/providers/item3"), context.resourceResolver());
+
+        List<ItemConfig> providers = index.getSnapshot().getProviders();
+        Assertions.assertEquals(4, providers.size());
+        Assertions.assertEquals("providers/item3", providers.get(3).getPath());
+        Assertions.assertEquals(3, providers.get(3).getOrdinal());
+        Assertions.assertEquals("http://localhost:10002", providers.get(3).getDetails().getExposedValues().get("url"));
+    }
+
+    @Test
+    public void shouldRecomputeDisabledTypes() {
+        getProperties("").put("disabledTools", "command.1");
+
+        index.apply(changes(ResourceChange.ChangeType.CHANGED, ""), context.resourceResolver());
+
+        List<ItemConfig> tools = index.getSnapshot().getTools();
+        Assertions.assertEquals(3, tools.size());
+        Assertions.assertFalse(tools.get(0).isEnabled());
+        Assertions.assertTrue(tools.get(1).isEnabled());
+        Assertions.assertTrue(tools.get(2).isEnabled());
+    }
+
+    @Test
+    public void shouldMatchFullRebuild() {
+        getProperties("/tools/item2").put("type", "command.4");
+        context.create().resource(Constants.PATH_CONFIG + "/tools/item3", "type", "command.5");
+        getProperties("").put("disabledProviders", "llm.own;llm.external");
+
+        index.apply(changes(ResourceChange.ChangeType.CHANGED, "/tools/item2"), context.resourceResolver());
+        index.apply(changes(ResourceChange.ChangeType.ADDED, "/tools/item3"), context.resourceResolver());
+        index.apply(changes(ResourceChange.ChangeType.CHANGED, ""), context.resourceResolver());
+
+        ConfigSnapshot rebuilt = ConfigSnapshot.from(context.resourceResolver().getResource(Constants.PATH_CONFIG));
+        Assertions.assertEquals(rebuilt.getJson(), index.getSnapshot().getJson());
+    }
+
+    @Test
+    public void shouldNotListDisabledTypesWithoutCollection() throws PersistenceException {
+        getProperties("").put("disabledProviders", "llm.own;llm.external");
+        context.resourceResolver().delete(context.resourceResolver().getResource(Constants.PATH_CONFIG + "/providers"));
+        index.rebuild(context.resourceResolver().getResource(Constants.PATH_CONFIG));
+
+        Assertions.assertTrue(index.getSnapshot().getProviders().isEmpty());
+        Assertions.assertFalse(index.getSnapshot().getTools().isEmpty());
+
+        getProperties("").put("disabledProviders", "llm.own");
+        index.apply(changes(ResourceChange.ChangeType.CHANGED, ""), context.resourceResolver());
+
+        Assertions.assertTrue(index.getSnapshot().getProviders().isEmpty());
+    }
+
+    private ModifiableValueMap getProperties(String relativePath) {
+        Resource resource = context.resourceResolver().getResource(Constants.PATH_CONFIG + relativePath);
+        Assertions.assertNotNull(resource);
+        return resource.adaptTo(ModifiableValueMap.class);
+    }
+
+    private static List<ResourceChange> changes(ResourceChange.ChangeType type, String relativePath) {
+        return Collections.singletonList(new ResourceChange(type, Constants.PATH_CONFIG + relativePath, false));
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.insider.config;
+
+import com.exadel.etoolbox.insider.util.JsonUtil;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Map;
+
+public class ItemDetailsTest {
+
+    private static final String DETAILS = "{\"prompt\": \"Create a new page\", \"selectors\": [\"input\", \".cq-RichText\"], "
+            + "\"_token\": \"enc_ZW5jcnlwdGVk\", \"streaming\": \"{Boolean}true\", \"vision\": \"false\", "
+            + "\"maxTokens\": \"{Long}1024\", \"temperature\": \"{Double}0.7\", \"count\": 3}";
+
+    @Test
+    public void shouldParseOncePerRevision() {
+        ItemDetails first = ItemDetails.parse(DETAILS);
+        ItemDetails second = ItemDetails.parse(new String(DETAILS.toCharArray()));
+
+        Assertions.assertSame(first, second);
+        Assertions.assertNotSame(first, ItemDetails.parse(DETAILS.replace("new page", "new component")));
+    }
+
+    @Test
+    public void shouldExposeTypedValues() {
+        Map<String, Object> values = ItemDetails.parse(DETAILS).getExposedValues();
+
+        Assertions.assertEquals("Create a new page", values.get("prompt"));
+        Assertions.assertEquals(Arrays.asList("input", ".cq-RichText"), values.get("selectors"));
+        Assertions.assertEquals(Boolean.TRUE, values.get("streaming"));
+        Assertions.assertEquals(Boolean.FALSE, values.get("vision"));
+        Assertions.assertEquals(1024L, values.get("maxTokens"));
+        Assertions.assertEquals(0.7, values.get("temperature"));
+        Assertions.assertEquals(3.0, values.get("count"));
+        Assertions.assertFalse(values.containsKey("_token"));
+    }
+
+    @Test
+    public void shouldKeepRawValues() {
+        ItemDetails details = ItemDetails.parse(DETAILS);
+
+        Assertions.assertEquals("enc_ZW5jcnlwdGVk", details.getString("_token"));
+        Assertions.assertEquals("{Long}1024", details.getString("maxTokens"));
+        Assertions.assertNull(details.getString("selectors"));
+        Assertions.assertNull(details.getString("missing"));
+    }
+
+    @Test
+    public void shouldCreateModifiedCopy() {
+        ItemDetails details = ItemDetails.parse(DETAILS);
+        ItemDetails modified = details.with("_token", "enc_bW9kaWZpZWQ=");
+
+        Assertions.assertEquals("enc_ZW5jcnlwdGVk", details.getString("_token"));
+        Assertions.assertEquals("enc_bW9kaWZpZWQ=", modified.getString("_token"));
+
+        Map<String, Object> serialized = JsonUtil.getMap(modified.toJson());
+        Assertions.assertEquals("enc_bW9kaWZpZWQ=", serialized.get("_token"));
+        Assertions.assertEquals("{Double}0.7", serialized.get("temperature"));
+        Assertions.assertEquals(Arrays.asList("input", ".cq-RichText"), serialized.get("selectors"));
+    }
+
+    @Test
+    public void shouldReturnEmptyForInvalidJson() {
+        Assertions.assertSame(ItemDetails.EMPTY, ItemDetails.parse(null));
+        Assertions.assertSame(ItemDetails.EMPTY, ItemDetails.parse("  "));
+        Assertions.assertSame(ItemDetails.EMPTY, ItemDetails.parse("{invalid json"));
+        Assertions.assertTrue(ItemDetails.parse("[1, 2]").isEmpty());
+    }
+
+    @Test
+    public void shouldKeepMalformedTypedValues() {
+        ItemDetails details = ItemDetails.parse("{\"maxTokens\": \"{Long}abc\", \"temperature\": \"{Double}\", \"_token\": \"secret\"}");
+
+        Assertions.assertFalse(details.isEmpty());
+        Assertions.assertEquals("{Long}abc", details.getExposedValues().get("maxTokens"));
+        Assertions.assertEquals("{Double}", details.getExposedValues().get("temperature"));
+        Assertions.assertEquals("secret", details.getString("_token"));
+    }
+
+    @Test
+    public void shouldNotCacheUncachedParsing() {
+        String json = "{\"_token\": \"plain\"}";
+
+        Assertions.assertNotSame(ItemDetails.parseUncached(json), ItemDetails.parseUncached(json));
+        Assertions.assertSame(ItemDetails.EMPTY, ItemDetails.parseUncached("{invalid json"));
+    }
+}
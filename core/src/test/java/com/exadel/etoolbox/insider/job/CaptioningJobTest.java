@@ -0,0 +1,240 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.insider.job;
+
+import com.exadel.etoolbox.insider.LoggerExtension;
+import com.exadel.etoolbox.insider.service.ServiceException;
+import com.exadel.etoolbox.insider.service.ServiceProvider;
+import com.exadel.etoolbox.insider.servlet.media.CaptionIndex;
+import com.exadel.etoolbox.insider.servlet.media.ImageProcessingPool;
+import com.exadel.etoolbox.insider.servlet.media.RenditionCache;
+import com.exadel.etoolbox.insider.servlet.media.RenditionService;
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.ModifiableValueMap;
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.event.jobs.Job;
+import org.apache.sling.event.jobs.consumer.JobExecutionContext;
+import org.apache.sling.event.jobs.consumer.JobExecutionResult;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.osgi.framework.Constants;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@ExtendWith({AemContextExtension.class})
+public class CaptioningJobTest {
+
+    private static final String FOLDER = "/content/dam/folder";
+    private static final String JOB_ID = "2024/1/15/10/0/captioning_1";
+
+    @RegisterExtension
+    public final LoggerExtension loggerExtension = new LoggerExtension();
+
+    private final AemContext context = new AemContext();
+
+    private ServiceProvider serviceProvider;
+    private CaptioningJob captioningJob;
+
+    private JobExecutionContext.ResultBuilder resultBuilder;
+    private JobExecutionResult succeededResult;
+
+    @BeforeEach
+    public void init() throws ServiceException {
+        context.load().json("/com/exadel/etoolbox/insider/servlet/media/content.json", FOLDER);
+
+        serviceProvider = Mockito.mock(ServiceProvider.class);
+        Mockito.when(serviceProvider.getId()).thenReturn("mock");
+        Mockito.when(serviceProvider.getResponse(Mockito.anyString(), Mockito.any(ResourceResolver.class), Mockito.any()))
+                .thenReturn("{\"message\":\" Lorem ipsum \"}");
+        context.registerService(ServiceProvider.class, serviceProvider);
+
+        context.registerInjectActivateService(new RenditionCache());
+        context.registerInjectActivateService(new ImageProcessingPool());
+        context.registerInjectActivateService(new RenditionService());
+        context.registerInjectActivateService(new CaptionIndex());
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("threads", 2);
+        properties.put("batchSize", 2);
+        properties.put("rateLimit", 0);
+        captioningJob = context.registerInjectActivateService(new CaptioningJob(), properties);
+
+        resultBuilder = Mockito.mock(JobExecutionContext.ResultBuilder.class);
+        succeededResult = Mockito.mock(JobExecutionResult.class);
+        Mockito.when(resultBuilder.message(Mockito.anyString())).thenReturn(resultBuilder);
+        Mockito.when(resultBuilder.succeeded()).thenReturn(succeededResult);
+    }
+
+    @Test
+    public void shouldCaptionAssets() throws ServiceException, PersistenceException {
+        setCaption("image.bmp", "Existing");
+
+        JobExecutionResult result = captioningJob.process(createJob("100x100-600x600"), createContext());
+
+        Assertions.assertSame(succeededResult, result);
+        Assertions.assertEquals("Lorem ipsum", getCaption("image.png"));
+        Assertions.assertEquals("Lorem ipsum", getCaption("photo.png"));
+        Assertions.assertEquals("Existing", getCaption("image.bmp"));
+
+        ArgumentCaptor<String> payloads = ArgumentCaptor.forClass(String.class);
+        Mockito.verify(serviceProvider, Mockito.times(2))
+                .getResponse(payloads.capture(), Mockito.any(ResourceResolver.class), Mockito.any());
+        Assertions.assertTrue(payloads.getAllValues()
+                .stream()
+                .anyMatch(payload -> payload.contains(FOLDER + "/image.png?size")));
+        Assertions.assertFalse(context.resourceResolver().getResource(CaptioningCheckpoint.PATH_ROOT).hasChildren());
+    }
+
+    @Test
+    public void shouldResumeFromCheckpoint() throws ServiceException, PersistenceException {
+        ResourceResolver resolver = context.resourceResolver();
+        CaptioningCheckpoint.load(resolver, JOB_ID).update(resolver, FOLDER + "/image.png", 2, 0);
+        resolver.commit();
+
+        captioningJob.process(createJob(null), createContext());
+
+        Assertions.assertNull(getCaption("image.bmp"));
+        Assertions.assertNull(getCaption("image.png"));
+        Assertions.assertEquals("Lorem ipsum", getCaption("photo.png"));
+        Mockito.verify(serviceProvider, Mockito.times(1))
+                .getResponse(Mockito.anyString(), Mockito.any(ResourceResolver.class), Mockito.any());
+        Mockito.verify(resultBuilder).message(Mockito.startsWith("Captioned 3 assets"));
+    }
+
+    @Test
+    public void shouldCountFailedAssets() throws ServiceException {
+        Mockito.when(serviceProvider.getResponse(Mockito.contains("photo.png"), Mockito.any(), Mockito.any()))
+                .thenThrow(new ServiceException("Request failed"));
+
+        captioningJob.process(createJob(null), createContext());
+
+        Assertions.assertEquals("Lorem ipsum", getCaption("image.png"));
+        Assertions.assertNull(getCaption("photo.png"));
+        Mockito.verify(resultBuilder).message(Mockito.endsWith("1 failed"));
+    }
+
+    @Test
+    public void shouldCaptionListedAssets() throws ServiceException {
+        Job job = createJob(null);
+        Mockito.when(job.getProperty(CaptioningJob.PROP_FOLDER, String.class)).thenReturn(null);
+        Mockito.when(job.getProperty(CaptioningJob.PROP_ASSETS, String[].class))
+                .thenReturn(new String[] {FOLDER + "/photo.png", FOLDER + "/missing.png"});
+
+        JobExecutionResult result = captioningJob.process(job, createContext());
+
+        Assertions.assertSame(succeededResult, result);
+        Assertions.assertEquals("Lorem ipsum", getCaption("photo.png"));
+        Assertions.assertNull(getCaption("image.png"));
+        Mockito.verify(serviceProvider, Mockito.times(1))
+                .getResponse(Mockito.anyString(), Mockito.any(ResourceResolver.class), Mockito.any());
+    }
+
+    @Test
+    public void shouldReuseCaptionOfSimilarImage() throws ServiceException, PersistenceException {
+        setCaption("image.bmp", "Existing");
+        for (String asset : new String[] {"image.png", "photo.png"}) {
+            context.load().binaryFile(
+                    "/com/exadel/etoolbox/insider/servlet/media/image.png",
+                    FOLDER + "/" + asset + "/jcr:content/renditions/original");
+        }
+        CaptioningJob sequentialJob = context.registerInjectActivateService(
+                new CaptioningJob(),
+                "threads", 1,
+                "rateLimit", 0);
+
+        sequentialJob.process(createJob(null), createContext());
+
+        Assertions.assertEquals("Lorem ipsum", getCaption("image.png"));
+        Assertions.assertEquals("Lorem ipsum", getCaption("photo.png"));
+        Mockito.verify(serviceProvider, Mockito.times(1))
+                .getResponse(Mockito.anyString(), Mockito.any(ResourceResolver.class), Mockito.any());
+        Assertions.assertNotNull(context.resourceResolver()
+                .getResource(FOLDER + "/photo.png/jcr:content/metadata")
+                .getValueMap()
+                .get(CaptionIndex.PROP_HASH, String.class));
+    }
+
+    @Test
+    public void shouldStopAfterBatchCouldNotBeStored() throws ServiceException, LoginException {
+        ResourceResolverFactory resolverFactory = context.getService(ResourceResolverFactory.class);
+        AtomicInteger logins = new AtomicInteger();
+        ResourceResolverFactory failingFactory = Mockito.mock(ResourceResolverFactory.class);
+        Mockito.when(failingFactory.getServiceResourceResolver(Mockito.anyMap())).thenAnswer(invocation -> {
+            // The job itself logs in first, and then every batch does
+            if (logins.incrementAndGet() > 1) {
+                throw new LoginException("Failed");
+            }
+            return resolverFactory.getServiceResourceResolver(invocation.getArgument(0));
+        });
+        context.registerService(ResourceResolverFactory.class, failingFactory, Constants.SERVICE_RANKING, 1000);
+        CaptioningJob sequentialJob = context.registerInjectActivateService(
+                new CaptioningJob(),
+                "threads", 1,
+                "batchSize", 1,
+                "rateLimit", 0);
+
+        sequentialJob.process(createJob(null), createContext());
+
+        Assertions.assertEquals(2, logins.get());
+        Mockito.verify(serviceProvider, Mockito.never())
+                .getResponse(Mockito.anyString(), Mockito.any(ResourceResolver.class), Mockito.any());
+        Mockito.verify(resultBuilder).message(Mockito.endsWith("has been stopped"));
+    }
+
+    private Job createJob(String size) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put(CaptioningJob.PROP_FOLDER, FOLDER);
+        properties.put(CaptioningJob.PROP_PROVIDER, "mock");
+        properties.put(CaptioningJob.PROP_SIZE, size);
+        Job job = Mockito.mock(Job.class);
+        Mockito.when(job.getId()).thenReturn(JOB_ID);
+        Mockito.when(job.getProperty(Mockito.anyString(), Mockito.eq(String.class)))
+                .thenAnswer(invocation -> properties.get(invocation.<String>getArgument(0)));
+        return job;
+    }
+
+    private JobExecutionContext createContext() {
+        JobExecutionContext jobContext = Mockito.mock(JobExecutionContext.class);
+        Mockito.when(jobContext.result()).thenReturn(resultBuilder);
+        return jobContext;
+    }
+
+    private void setCaption(String asset, String caption) throws PersistenceException {
+        context.resourceResolver()
+                .getResource(FOLDER + "/" + asset + "/jcr:content/metadata")
+                .adaptTo(ModifiableValueMap.class)
+                .put(CaptioningJob.PROP_CAPTION, caption);
+        context.resourceResolver().commit();
+    }
+
+    private String getCaption(String asset) {
+        context.resourceResolver().refresh();
+        ValueMap metadata = context.resourceResolver()
+                .getResource(FOLDER + "/" + asset + "/jcr:content/metadata")
+                .getValueMap();
+        return metadata.get(CaptioningJob.PROP_CAPTION, String.class);
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.insider.job;
+
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChangeListener;
+import org.apache.sling.event.jobs.Job;
+import org.apache.sling.event.jobs.JobManager;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+@ExtendWith({AemContextExtension.class})
+public class PreCaptioningListenerTest {
+
+    private static final String FOLDER = "/content/dam/folder";
+
+    private final AemContext context = new AemContext();
+
+    private JobManager jobManager;
+
+    @BeforeEach
+    public void init() {
+        context.load().json("/com/exadel/etoolbox/insider/servlet/media/content.json", FOLDER);
+        Job job = Mockito.mock(Job.class);
+        Mockito.when(job.getId()).thenReturn("job1");
+        Mockito.when(job.getJobState()).thenReturn(Job.JobState.QUEUED);
+        jobManager = Mockito.mock(JobManager.class);
+        Mockito.when(jobManager.addJob(Mockito.anyString(), Mockito.anyMap())).thenReturn(job);
+        Mockito.when(jobManager.getJobById("job1")).thenReturn(job);
+        context.registerService(JobManager.class, jobManager);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldQueueChangedImages() {
+        PreCaptioningListener listener = registerListener(true);
+
+        listener.onChange(Arrays.asList(
+                new ResourceChange(ResourceChange.ChangeType.ADDED, FOLDER + "/image.png/jcr:content/metadata", false),
+                new ResourceChange(ResourceChange.ChangeType.CHANGED, FOLDER + "/image.png/jcr:content/metadata", false),
+                new ResourceChange(ResourceChange.ChangeType.CHANGED, FOLDER + "/photo.png/jcr:content", false),
+                new ResourceChange(ResourceChange.ChangeType.ADDED, FOLDER + "/missing.png/jcr:content/metadata", false)));
+
+        ArgumentCaptor<Map<String, Object>> properties = ArgumentCaptor.forClass(Map.class);
+        Mockito.verify(jobManager, Mockito.timeout(2000)).addJob(Mockito.eq(CaptioningJob.TOPIC), properties.capture());
+        Assertions.assertArrayEquals(
+                new String[] {FOLDER + "/image.png"},
+                (String[]) properties.getValue().get(CaptioningJob.PROP_ASSETS));
+        Assertions.assertEquals("mock", properties.getValue().get(CaptioningJob.PROP_PROVIDER));
+        Assertions.assertFalse(properties.getValue().containsKey(CaptioningJob.PROP_MODEL));
+    }
+
+    @Test
+    public void shouldNotQueueAssetTwice() throws InterruptedException {
+        PreCaptioningListener listener = registerListener(true);
+        ResourceChange change = new ResourceChange(
+                ResourceChange.ChangeType.CHANGED,
+                FOLDER + "/image.png/jcr:content/metadata",
+                false);
+
+        listener.onChange(Arrays.asList(change));
+        Mockito.verify(jobManager, Mockito.timeout(2000)).addJob(Mockito.eq(CaptioningJob.TOPIC), Mockito.anyMap());
+
+        listener.onChange(Arrays.asList(change));
+        Thread.sleep(200);
+        Mockito.verify(jobManager, Mockito.times(1)).addJob(Mockito.eq(CaptioningJob.TOPIC), Mockito.anyMap());
+    }
+
+    @Test
+    public void shouldIgnoreChangesWhenDisabled() throws InterruptedException {
+        PreCaptioningListener listener = registerListener(false);
+
+        listener.onChange(Arrays.asList(
+                new ResourceChange(ResourceChange.ChangeType.ADDED, FOLDER + "/image.png/jcr:content/metadata", false)));
+
+        Thread.sleep(200);
+        Mockito.verifyNoInteractions(jobManager);
+    }
+
+    @Test
+    public void shouldRegisterListenerWhenEnabledOnly() {
+        PreCaptioningListener disabledListener = registerListener(false);
+        Assertions.assertFalse(Arrays.asList(context.getServices(ResourceChangeListener.class, null))
+                .contains(disabledListener));
+
+        PreCaptioningListener enabledListener = registerListener(true);
+        Assertions.assertTrue(Arrays.asList(context.getServices(ResourceChangeListener.class, null))
+                .contains(enabledListener));
+    }
+
+    private PreCaptioningListener registerListener(boolean enabled) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("enabled", enabled);
+        properties.put("provider", "mock");
+        properties.put("delay", 0);
+        return context.registerInjectActivateService(new PreCaptioningListener(), properties);
+    }
+}
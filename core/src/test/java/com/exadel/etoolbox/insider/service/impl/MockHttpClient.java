@@ -16,6 +16,7 @@ package com.exadel.etoolbox.insider.service.impl;
 import lombok.Getter;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.http.Header;
+import org.apache.http.HttpEntityEnclosingRequest;
 import org.apache.http.HttpHost;
 import org.apache.http.HttpRequest;
 import org.apache.http.client.methods.CloseableHttpResponse;
@@ -23,6 +24,7 @@ import org.apache.http.conn.ClientConnectionManager;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.params.HttpParams;
 import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
 
 import java.io.IOException;
 import java.util.LinkedList;
@@ -43,6 +45,9 @@ class MockHttpClient extends CloseableHttpClient {
     @Getter
     private Header[] requestHeaders;
 
+    @Getter
+    private String requestBody;
+
     @Override
     protected CloseableHttpResponse doExecute(
             HttpHost httpHost,
@@ -53,6 +58,9 @@ class MockHttpClient extends CloseableHttpClient {
             throw exceptions.remove();
         }
         requestHeaders = httpRequest.getAllHeaders();
+        if (httpRequest instanceof HttpEntityEnclosingRequest) {
+            requestBody = EntityUtils.toString(((HttpEntityEnclosingRequest) httpRequest).getEntity());
+        }
         return response;
     }
 
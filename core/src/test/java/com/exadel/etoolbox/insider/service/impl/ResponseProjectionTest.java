@@ -0,0 +1,127 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.insider.service.impl;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+@ExtendWith({AemContextExtension.class})
+public class ResponseProjectionTest {
+
+    private static final String COMPLETION = "{\"id\":\"chatcmpl-1\",\"object\":\"chat.completion\",\"model\":\"gpt-4o-mini\","
+            + "\"choices\":["
+            + "{\"index\":0,\"message\":{\"role\":\"assistant\",\"content\":\"Lorem ipsum\"},"
+            + "\"logprobs\":{\"content\":[{\"token\":\"Lorem\",\"logprob\":-0.1,\"bytes\":[76,111]}]},\"finish_reason\":\"stop\"},"
+            + "{\"index\":1,\"message\":{\"role\":\"assistant\",\"content\":\"Dolor sit amet\"},\"finish_reason\":\"stop\"}"
+            + "],"
+            + "\"usage\":{\"prompt_tokens\":10,\"completion_tokens\":4,\"total_tokens\":14}}";
+
+    private final AemContext context = new AemContext();
+
+    @Test
+    public void shouldNotProjectByDefault() {
+        Assertions.assertNull(ResponseProjection.from(context.request()));
+
+        context.request().addRequestParameter(ResponseProjection.PARAM_PROJECTION, "usage");
+        Assertions.assertNull(ResponseProjection.from(context.request()));
+    }
+
+    @Test
+    public void shouldExtractText() throws IOException {
+        JsonObject result = project("text", COMPLETION);
+
+        Assertions.assertEquals(1, result.size());
+        Assertions.assertEquals("Lorem ipsum", result.get("message").getAsString());
+    }
+
+    @Test
+    public void shouldExtractTextAndUsage() throws IOException {
+        JsonObject result = project("text,usage", COMPLETION);
+
+        Assertions.assertEquals(2, result.size());
+        Assertions.assertEquals("Lorem ipsum", result.get("message").getAsString());
+        Assertions.assertEquals(14, result.getAsJsonObject("usage").get("total_tokens").getAsInt());
+    }
+
+    @Test
+    public void shouldExtractContentParts() throws IOException {
+        JsonObject result = project(
+                "text",
+                "{\"choices\":[{\"message\":{\"content\":[{\"type\":\"text\",\"text\":\"Lorem \"},{\"type\":\"text\",\"text\":\"ipsum\"}]}}]}");
+
+        Assertions.assertEquals("Lorem ipsum", result.get("message").getAsString());
+    }
+
+    @Test
+    public void shouldExtractStreamedText() throws IOException {
+        String stream = "data: {\"choices\":[{\"index\":0,\"delta\":{\"role\":\"assistant\",\"content\":\"Lorem\"}}]}\n\n"
+                + "data: {\"choices\":[{\"index\":0,\"delta\":{\"content\":\" ipsum\"}}]}\n\n"
+                + "data: {\"choices\":[],\"usage\":{\"total_tokens\":14}}\n\n"
+                + "data: [DONE]\n\n";
+
+        JsonObject result = project("text, usage", stream);
+
+        Assertions.assertEquals("Lorem ipsum", result.get("message").getAsString());
+        Assertions.assertEquals(14, result.getAsJsonObject("usage").get("total_tokens").getAsInt());
+    }
+
+    @Test
+    public void shouldDetectStreamStartingWithOtherFields() throws IOException {
+        String chunk = "data: {\"choices\":[{\"index\":0,\"delta\":{\"content\":\"Lorem\"}}]}\n\n";
+
+        Assertions.assertEquals("Lorem", project("text", ": keep-alive\n\n" + chunk).get("message").getAsString());
+        Assertions.assertEquals("Lorem", project("text", "event: message\n" + chunk).get("message").getAsString());
+        Assertions.assertEquals("Lorem", project("text", "id: 1\n" + chunk).get("message").getAsString());
+        Assertions.assertEquals("Lorem", project("text", "retry: 1000\n\n" + chunk).get("message").getAsString());
+    }
+
+    @Test
+    public void shouldDetectStreamByContentType() throws IOException {
+        String stream = "\n\nevent: message\ndata: {\"choices\":[{\"index\":0,\"delta\":{\"content\":\"Lorem\"}}]}\n\n";
+
+        String result = ResponseProjection.text().apply(new StringReader(stream), "text/event-stream; charset=utf-8");
+
+        Assertions.assertEquals("Lorem", JsonParser.parseString(result).getAsJsonObject().get("message").getAsString());
+    }
+
+    @Test
+    public void shouldPassError() throws IOException {
+        JsonObject result = project("text", "{\"error\":{\"message\":\"Invalid API key\",\"type\":\"invalid_request_error\"}}");
+
+        Assertions.assertFalse(result.has("message"));
+        Assertions.assertEquals("Invalid API key", result.getAsJsonObject("error").get("message").getAsString());
+    }
+
+    @Test
+    public void shouldReportInvalidResponse() throws IOException {
+        JsonObject result = project("text", "<html>Bad gateway</html>");
+
+        Assertions.assertEquals("Invalid response", result.get("error").getAsString());
+    }
+
+    private JsonObject project(String projection, String response) throws IOException {
+        context.request().addRequestParameter(ResponseProjection.PARAM_PROJECTION, projection);
+        ResponseProjection responseProjection = ResponseProjection.from(context.request());
+        Assertions.assertNotNull(responseProjection);
+        return JsonParser.parseString(responseProjection.apply(new StringReader(response))).getAsJsonObject();
+    }
+}
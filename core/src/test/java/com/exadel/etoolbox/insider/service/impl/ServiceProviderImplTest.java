@@ -17,6 +17,9 @@ import com.adobe.granite.crypto.CryptoException;
 import com.adobe.granite.crypto.CryptoSupport;
 import com.exadel.etoolbox.insider.LoggerExtension;
 import com.exadel.etoolbox.insider.service.ServiceException;
+import com.exadel.etoolbox.insider.servlet.media.ImageProcessingPool;
+import com.exadel.etoolbox.insider.servlet.media.RenditionCache;
+import com.exadel.etoolbox.insider.servlet.media.RenditionService;
 import com.exadel.etoolbox.insider.util.Constants;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonParser;
@@ -24,8 +27,11 @@ import io.wcm.testing.mock.aem.junit5.AemContext;
 import io.wcm.testing.mock.aem.junit5.AemContextExtension;
 import org.apache.http.Header;
 import org.apache.http.HttpHeaders;
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.entity.StringEntity;
+import org.apache.http.message.BasicStatusLine;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -51,6 +57,10 @@ public class ServiceProviderImplTest {
 
     private final AemContext context = new AemContext();
 
+    private static final String PAYLOAD_WITH_IMAGE = "{\"messages\":[{\"role\":\"user\",\"content\":["
+            + "{\"type\":\"text\",\"text\":\"Describe\"},"
+            + "{\"type\":\"image_url\",\"image_url\":{\"url\":\"%s\",\"detail\":\"low\"}}]}]}";
+
     private ServiceProviderImpl serviceProvider;
 
     @BeforeEach
@@ -111,6 +121,58 @@ public class ServiceProviderImplTest {
         }
     }
 
+    @Test
+    public void shouldProjectResult() throws ServiceException {
+        context.request().addRequestParameter("projection", "text");
+        context.request().setContent(Constants.EMPTY_JSON.getBytes());
+        HttpClientFactory.Builder builder = prepareHttpClientBuilder(
+                "{\"choices\": [{\"message\": {\"content\": \"Lorem ipsum\"}}], \"usage\": {\"total_tokens\": 14}}");
+        try (MockedStatic<HttpClientFactory> ignored = prepareHttpClientFactory(builder)) {
+            String result = serviceProvider.getResponse(context.request());
+            Assertions.assertEquals("{\"message\":\"Lorem ipsum\"}", result);
+        }
+    }
+
+    @Test
+    public void shouldInlineAssetReference() throws ServiceException {
+        registerRenditionService();
+        context.request().setContent(String.format(PAYLOAD_WITH_IMAGE, "/content/dam/image.png?size=100x100-600x600")
+                .getBytes(StandardCharsets.UTF_8));
+        HttpClientFactory.Builder builder = prepareHttpClientBuilder(Constants.EMPTY_JSON);
+        try (MockedStatic<HttpClientFactory> ignored = prepareHttpClientFactory(builder)) {
+            serviceProvider.getResponse(context.request());
+            String requestBody = ((MockHttpClient) builder.get()).getRequestBody();
+            String url = JsonParser.parseString(requestBody)
+                    .getAsJsonObject()
+                    .getAsJsonArray("messages").get(0).getAsJsonObject()
+                    .getAsJsonArray("content").get(1).getAsJsonObject()
+                    .getAsJsonObject("image_url")
+                    .get("url").getAsString();
+            Assertions.assertTrue(url.startsWith("data:image/png;base64,"));
+        }
+    }
+
+    @Test
+    public void shouldProcessServerSideRequest() throws ServiceException {
+        registerRenditionService();
+        String payload = String.format(PAYLOAD_WITH_IMAGE, "/content/dam/image.png");
+        HttpClientFactory.Builder builder = prepareHttpClientBuilder(
+                "{\"choices\": [{\"message\": {\"content\": \"Lorem ipsum\"}}], \"usage\": {\"total_tokens\": 14}}");
+        try (MockedStatic<HttpClientFactory> ignored = prepareHttpClientFactory(builder)) {
+            String result = serviceProvider.getResponse(payload, context.resourceResolver(), null);
+            Assertions.assertEquals("{\"message\":\"Lorem ipsum\"}", result);
+            Assertions.assertTrue(((MockHttpClient) builder.get()).getRequestBody().contains("data:image/png;base64,"));
+        }
+    }
+
+    @Test
+    public void shouldReportMissingAsset() {
+        registerRenditionService();
+        context.request().setContent(String.format(PAYLOAD_WITH_IMAGE, "/content/dam/missing.png")
+                .getBytes(StandardCharsets.UTF_8));
+        Assertions.assertThrows(ServiceException.class, () -> serviceProvider.getResponse(context.request()));
+    }
+
     @Test
     public void shouldRetryRequestOnException() throws ServiceException {
         context.request().setContent(Constants.EMPTY_JSON.getBytes());
@@ -142,13 +204,47 @@ public class ServiceProviderImplTest {
         Assertions.assertEquals(2, messages.stream().filter(m -> m.contains("Request to http://localhost:4502 failed")).count());
     }
 
+    @Test
+    public void shouldReportErrorStatus() {
+        context.request().setContent(Constants.EMPTY_JSON.getBytes());
+        HttpClientFactory.Builder builder = prepareHttpClientBuilder(
+                "{\"error\": \"Rate limit exceeded\"}",
+                HttpStatus.SC_TOO_MANY_REQUESTS,
+                Collections.emptyList());
+        try (MockedStatic<HttpClientFactory> ignored = prepareHttpClientFactory(builder)) {
+            ServiceException exception = Assertions.assertThrows(
+                    ServiceException.class,
+                    () -> serviceProvider.getResponse(context.request()));
+            Assertions.assertTrue(exception.getMessage().endsWith("failed with status 429"));
+        }
+    }
+
+    private void registerRenditionService() {
+        context.load().json("/com/exadel/etoolbox/insider/servlet/media/content.json", "/content/dam");
+        context.load().binaryFile(
+                "/com/exadel/etoolbox/insider/servlet/media/image.png",
+                "/content/dam/image.png/jcr:content/renditions/original");
+        context.registerInjectActivateService(new RenditionCache());
+        context.registerInjectActivateService(new ImageProcessingPool());
+        context.registerInjectActivateService(new RenditionService());
+    }
+
     private static HttpClientFactory.Builder prepareHttpClientBuilder(String response) {
         return prepareHttpClientBuilder(response, Collections.emptyList());
     }
 
     private static HttpClientFactory.Builder prepareHttpClientBuilder(String response, List<IOException> exceptions) {
+        return prepareHttpClientBuilder(response, HttpStatus.SC_OK, exceptions);
+    }
+
+    private static HttpClientFactory.Builder prepareHttpClientBuilder(
+            String response,
+            int status,
+            List<IOException> exceptions) {
+
         CloseableHttpResponse mockHttpResponse = Mockito.mock(CloseableHttpResponse.class);
         Mockito.when(mockHttpResponse.getEntity()).thenReturn(new StringEntity(response, StandardCharsets.UTF_8));
+        Mockito.when(mockHttpResponse.getStatusLine()).thenReturn(new BasicStatusLine(HttpVersion.HTTP_1_1, status, null));
 
         HttpClientFactory.Builder mockHttpClientBuilder = Mockito.mock(HttpClientFactory.Builder.class);
         Mockito.when(mockHttpClientBuilder.proxy(Mockito.any())).thenReturn(mockHttpClientBuilder);
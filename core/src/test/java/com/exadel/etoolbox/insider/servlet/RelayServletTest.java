@@ -13,6 +13,7 @@
  */
 package com.exadel.etoolbox.insider.servlet;
 
+import com.exadel.etoolbox.insider.service.ServiceStatusTracker;
 import io.wcm.testing.mock.aem.junit5.AemContext;
 import io.wcm.testing.mock.aem.junit5.AemContextExtension;
 import org.apache.commons.lang.StringUtils;
@@ -47,6 +48,7 @@ public class RelayServletTest {
 
         context.registerService(new MockServiceProvider());
         context.registerService(new MockFailingServiceProvider());
+        context.registerInjectActivateService(new ServiceStatusTracker());
 
         Map<String, Object> relayServletProperties = new HashMap<>();
         relayServletProperties.put("waitTimeout", 100);
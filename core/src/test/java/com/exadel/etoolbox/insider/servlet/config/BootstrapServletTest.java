@@ -0,0 +1,110 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.insider.servlet.config;
+
+import com.exadel.etoolbox.insider.config.ConfigSnapshotCache;
+import com.exadel.etoolbox.insider.service.ServiceProvider;
+import com.exadel.etoolbox.insider.service.ServiceStatusTracker;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpStatus;
+import org.apache.sling.testing.mock.sling.servlet.MockSlingHttpServletRequest;
+import org.apache.sling.testing.mock.sling.servlet.MockSlingHttpServletResponse;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+
+@ExtendWith({AemContextExtension.class})
+public class BootstrapServletTest {
+
+    private final AemContext context = new AemContext();
+
+    private BootstrapServlet servlet;
+    private ServiceStatusTracker statusTracker;
+
+    @BeforeEach
+    public void init() {
+        context.load().json(
+                "/com/exadel/etoolbox/insider/servlet/config/conf.json",
+                "/conf/etoolbox/authoring-insider");
+        context.registerService(ServiceProvider.class, mockProvider("beta"));
+        context.registerService(ServiceProvider.class, mockProvider("alpha"));
+        statusTracker = context.registerInjectActivateService(new ServiceStatusTracker());
+        context.registerInjectActivateService(new ConfigSnapshotCache());
+        servlet = context.registerInjectActivateService(new BootstrapServlet());
+    }
+
+    @Test
+    public void shouldOutputBootstrapData() throws IOException {
+        for (int i = 0; i < 3; i++) {
+            statusTracker.record("beta", false);
+        }
+        servlet.doGet(context.request(), context.response());
+        Assertions.assertEquals(HttpStatus.SC_OK, context.response().getStatus());
+        Assertions.assertTrue(context.response().getHeader(HttpHeaders.CACHE_CONTROL).contains("no-cache"));
+
+        JsonObject json = JsonParser.parseString(context.response().getOutputAsString()).getAsJsonObject();
+
+        JsonObject config = json.getAsJsonObject("config");
+        Assertions.assertEquals(4, config.getAsJsonArray("tools").size());
+        Assertions.assertEquals(3, config.getAsJsonArray("providers").size());
+
+        JsonArray services = json.getAsJsonArray("services");
+        Assertions.assertEquals(2, services.size());
+        Assertions.assertEquals("alpha", services.get(0).getAsJsonObject().get("id").getAsString());
+        Assertions.assertEquals("unknown", services.get(0).getAsJsonObject().get("status").getAsString());
+        Assertions.assertEquals("beta", services.get(1).getAsJsonObject().get("id").getAsString());
+        Assertions.assertEquals("unavailable", services.get(1).getAsJsonObject().get("status").getAsString());
+
+        JsonArray capabilities = json.getAsJsonArray("capabilities");
+        Assertions.assertEquals(BootstrapServlet.CAPABILITIES.size(), capabilities.size());
+        Assertions.assertTrue(capabilities.contains(new JsonPrimitive("config.etag")));
+    }
+
+    @Test
+    public void shouldReportNotModifiedUntilStatusChanges() throws IOException {
+        servlet.doGet(context.request(), context.response());
+        String eTag = context.response().getHeader(HttpHeaders.ETAG);
+        Assertions.assertNotNull(eTag);
+
+        MockSlingHttpServletRequest conditionalRequest = context.request();
+        conditionalRequest.setHeader(HttpHeaders.IF_NONE_MATCH, eTag);
+        MockSlingHttpServletResponse conditionalResponse = new MockSlingHttpServletResponse();
+        servlet.doGet(conditionalRequest, conditionalResponse);
+        Assertions.assertEquals(HttpStatus.SC_NOT_MODIFIED, conditionalResponse.getStatus());
+        Assertions.assertEquals(0, conditionalResponse.getOutput().length);
+
+        statusTracker.record("alpha", true);
+        MockSlingHttpServletResponse freshResponse = new MockSlingHttpServletResponse();
+        servlet.doGet(conditionalRequest, freshResponse);
+        Assertions.assertEquals(HttpStatus.SC_OK, freshResponse.getStatus());
+        Assertions.assertNotEquals(eTag, freshResponse.getHeader(HttpHeaders.ETAG));
+        Assertions.assertTrue(freshResponse.getOutputAsString().contains("\"available\""));
+    }
+
+    private static ServiceProvider mockProvider(String id) {
+        ServiceProvider provider = Mockito.mock(ServiceProvider.class);
+        Mockito.when(provider.getId()).thenReturn(id);
+        return provider;
+    }
+}
@@ -22,6 +22,7 @@ import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ValueMap;
 import org.apache.sling.jcr.resource.api.JcrResourceConstants;
 import org.apache.sling.testing.mock.sling.servlet.MockRequestPathInfo;
+import org.apache.sling.testing.mock.sling.servlet.MockSlingHttpServletRequest;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -175,4 +176,26 @@ public class ConfigDialogDatasourceTest {
         Assertions.assertEquals("true", dialogFieldProperties.get("value", String.class));
         Assertions.assertEquals("false", dialogFieldProperties.get("uncheckedValue", String.class));
     }
+
+    @Test
+    public void shouldReuseDialogStructure() {
+        context.request().setAttribute(Constants.PROP_FIELDS, FIELDS);
+        servlet.doGet(context.request(), context.response());
+        DataSource dataSource = (DataSource) context.request().getAttribute(DataSource.class.getName());
+        Resource first = dataSource.iterator().next();
+
+        MockSlingHttpServletRequest secondRequest = new MockSlingHttpServletRequest(context.resourceResolver(), context.bundleContext());
+        ((MockRequestPathInfo) secondRequest.getRequestPathInfo()).setResourcePath("/content/another/dialog");
+        secondRequest.setAttribute(Constants.PROP_FIELDS, FIELDS);
+        servlet.doGet(secondRequest, context.response());
+        dataSource = (DataSource) secondRequest.getAttribute(DataSource.class.getName());
+        Resource second = dataSource.iterator().next();
+
+        Assertions.assertNotSame(first, second);
+        Assertions.assertSame(first.getValueMap(), second.getValueMap());
+        Assertions.assertEquals("/content/another/dialog/items/titleAndIcon", second.getPath());
+        Resource items = Objects.requireNonNull(second.getChild("items"));
+        Assertions.assertEquals("/content/another/dialog/items/title", items.listChildren().next().getPath());
+        Assertions.assertSame(context.resourceResolver(), second.getResourceResolver());
+    }
 }
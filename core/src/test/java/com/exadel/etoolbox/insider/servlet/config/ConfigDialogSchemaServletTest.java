@@ -0,0 +1,91 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.insider.servlet.config;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+import org.apache.sling.testing.mock.sling.servlet.MockRequestPathInfo;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.io.IOException;
+
+@ExtendWith({AemContextExtension.class})
+public class ConfigDialogSchemaServletTest {
+
+    private final AemContext context = new AemContext();
+
+    private ConfigDialogSchemaServlet servlet;
+
+    @BeforeEach
+    public void init() {
+        context.load().json(
+                "/com/exadel/etoolbox/insider/servlet/config/conf.json",
+                "/conf/etoolbox/authoring-insider");
+        servlet = context.registerInjectActivateService(new ConfigDialogSchemaServlet());
+    }
+
+    @Test
+    public void shouldOutputSchemaAndValues() throws IOException {
+        MockRequestPathInfo requestPathInfo = (MockRequestPathInfo) context.request().getRequestPathInfo();
+        requestPathInfo.setSuffix("/conf/etoolbox/authoring-insider/tools/item0");
+        context.request().setContent(ConfigDialogDatasourceTest.FIELDS.getBytes());
+
+        servlet.doPost(context.request(), context.response());
+        Assertions.assertEquals(200, context.response().getStatus());
+
+        JsonObject json = JsonParser.parseString(context.response().getOutputAsString()).getAsJsonObject();
+        Assertions.assertEquals(
+                "/conf/etoolbox/authoring-insider/tools/item0.eai.store.html",
+                json.get("action").getAsString());
+
+        JsonArray fields = json.getAsJsonArray("fields");
+        Assertions.assertEquals(7, fields.size());
+        Assertions.assertEquals("title", fields.get(0).getAsJsonObject().get("name").getAsString());
+        Assertions.assertTrue(fields.get(0).getAsJsonObject().get("required").getAsBoolean());
+        Assertions.assertTrue(fields.get(2).getAsJsonObject().get("disabled").getAsBoolean());
+        Assertions.assertEquals("url", fields.get(3).getAsJsonObject().get("name").getAsString());
+        Assertions.assertTrue(fields.get(4).getAsJsonObject().get("multi").getAsBoolean());
+
+        JsonArray options = fields.get(5).getAsJsonObject().getAsJsonArray("options");
+        Assertions.assertEquals(3, options.size());
+        Assertions.assertEquals("Medium", options.get(1).getAsJsonObject().get("text").getAsString());
+        Assertions.assertEquals("medium", options.get(1).getAsJsonObject().get("value").getAsString());
+        Assertions.assertEquals("high", options.get(2).getAsJsonObject().get("value").getAsString());
+
+        Assertions.assertEquals("checkbox", fields.get(6).getAsJsonObject().get("type").getAsString());
+        Assertions.assertEquals("true", fields.get(6).getAsJsonObject().get("defaultValue").getAsString());
+
+        JsonObject values = json.getAsJsonObject("values");
+        Assertions.assertEquals("Tool 0", values.get("title").getAsString());
+        Assertions.assertEquals("command.1", values.get("type").getAsString());
+        Assertions.assertEquals("Create a new page", values.get("prompt").getAsString());
+        Assertions.assertEquals(2, values.getAsJsonArray("selectors").size());
+        Assertions.assertEquals("enc_ZW5jcnlwdGVk", values.get("_token").getAsString());
+    }
+
+    @Test
+    public void shouldOutputDefaultFieldsOnly() throws IOException {
+        servlet.doPost(context.request(), context.response());
+
+        JsonObject json = JsonParser.parseString(context.response().getOutputAsString()).getAsJsonObject();
+        Assertions.assertEquals(3, json.getAsJsonArray("fields").size());
+        Assertions.assertEquals(0, json.getAsJsonObject("values").size());
+    }
+}
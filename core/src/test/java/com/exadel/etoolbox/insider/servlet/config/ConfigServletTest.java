@@ -13,6 +13,7 @@
  */
 package com.exadel.etoolbox.insider.servlet.config;
 
+import com.exadel.etoolbox.insider.config.ConfigSnapshotCache;
 import com.exadel.etoolbox.insider.util.Constants;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
@@ -20,12 +21,19 @@ import com.google.gson.JsonParser;
 import io.wcm.testing.mock.aem.junit5.AemContext;
 import io.wcm.testing.mock.aem.junit5.AemContextExtension;
 import org.apache.http.HttpHeaders;
+import org.apache.http.HttpStatus;
+import org.apache.sling.api.resource.ModifiableValueMap;
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.testing.mock.sling.servlet.MockSlingHttpServletRequest;
+import org.apache.sling.testing.mock.sling.servlet.MockSlingHttpServletResponse;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 
 import java.io.IOException;
+import java.util.Collections;
 
 @ExtendWith({AemContextExtension.class})
 public class ConfigServletTest {
@@ -36,6 +44,7 @@ public class ConfigServletTest {
 
     @BeforeEach
     public void init() {
+        context.registerInjectActivateService(new ConfigSnapshotCache());
         servlet = context.registerInjectActivateService(new ConfigServlet());
     }
 
@@ -128,4 +137,52 @@ public class ConfigServletTest {
         Assertions.assertTrue(json.has("providers"));
         Assertions.assertEquals(0, json.get("providers").getAsJsonArray().size());
     }
+
+    @Test
+    public void shouldReportNotModified() throws IOException {
+        context.load().json(
+                "/com/exadel/etoolbox/insider/servlet/config/conf.json",
+                "/conf/etoolbox/authoring-insider");
+        servlet.doGet(context.request(), context.response());
+        String eTag = context.response().getHeader(HttpHeaders.ETAG);
+        Assertions.assertNotNull(eTag);
+        Assertions.assertTrue(eTag.startsWith("\""));
+
+        MockSlingHttpServletRequest conditionalRequest = context.request();
+        conditionalRequest.setHeader(HttpHeaders.IF_NONE_MATCH, "\"outdated\", " + eTag);
+        MockSlingHttpServletResponse conditionalResponse = new MockSlingHttpServletResponse();
+        servlet.doGet(conditionalRequest, conditionalResponse);
+
+        Assertions.assertEquals(HttpStatus.SC_NOT_MODIFIED, conditionalResponse.getStatus());
+        Assertions.assertEquals(eTag, conditionalResponse.getHeader(HttpHeaders.ETAG));
+        Assertions.assertEquals(0, conditionalResponse.getOutput().length);
+    }
+
+    @Test
+    public void shouldRefreshSnapshotOnChange() throws IOException, PersistenceException {
+        context.load().json(
+                "/com/exadel/etoolbox/insider/servlet/config/conf.json",
+                "/conf/etoolbox/authoring-insider");
+        servlet.doGet(context.request(), context.response());
+        String eTag = context.response().getHeader(HttpHeaders.ETAG);
+
+        context.resourceResolver()
+                .getResource("/conf/etoolbox/authoring-insider/tools/item0")
+                .adaptTo(ModifiableValueMap.class)
+                .put("title", "Modified tool");
+        context.resourceResolver().commit();
+        MockSlingHttpServletResponse staleResponse = new MockSlingHttpServletResponse();
+        servlet.doGet(context.request(), staleResponse);
+        Assertions.assertEquals(eTag, staleResponse.getHeader(HttpHeaders.ETAG));
+
+        context.getService(ConfigSnapshotCache.class).onChange(Collections.singletonList(new ResourceChange(
+                ResourceChange.ChangeType.CHANGED,
+                "/conf/etoolbox/authoring-insider/tools/item0",
+                false)));
+        MockSlingHttpServletResponse freshResponse = new MockSlingHttpServletResponse();
+        servlet.doGet(context.request(), freshResponse);
+
+        Assertions.assertNotEquals(eTag, freshResponse.getHeader(HttpHeaders.ETAG));
+        Assertions.assertTrue(freshResponse.getOutputAsString().contains("Modified tool"));
+    }
 }
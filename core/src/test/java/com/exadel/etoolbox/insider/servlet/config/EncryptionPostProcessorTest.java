@@ -77,4 +77,22 @@ public class EncryptionPostProcessorTest {
         ValueMap valueMap = context.request().getResource().getValueMap();
         Assertions.assertTrue(StringUtils.contains(valueMap.get(Constants.PROP_DETAILS, String.class), "\"_token\":\"enc_"));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldEncryptDespiteMalformedTypedValue() {
+        MockRequestPathInfo requestPathInfo = (MockRequestPathInfo) context.request().getRequestPathInfo();
+        requestPathInfo.setSelectorString("eai.store");
+        context.request().addRequestParameter("_token@encrypt", null);
+        context.request().addRequestParameter(Constants.PROP_DETAILS, "{\"_token\":\"dolorSitAmet\", \"maxTokens\":\"{Long}abc\"}");
+        context.request().setResource(context.resourceResolver().getResource("/conf/etoolbox/authoring-insider/tools/item0"));
+        List<Modification> modifications = new ArrayList<>();
+
+        encryptor.process(context.request(), modifications);
+
+        Assertions.assertEquals(1, modifications.size());
+        String details = context.request().getResource().getValueMap().get(Constants.PROP_DETAILS, String.class);
+        Assertions.assertTrue(StringUtils.contains(details, "\"_token\":\"enc_"));
+        Assertions.assertFalse(StringUtils.contains(details, "dolorSitAmet"));
+        Assertions.assertTrue(StringUtils.contains(details, "{Long}abc"));
+    }
+}
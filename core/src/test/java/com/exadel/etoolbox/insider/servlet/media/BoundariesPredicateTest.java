@@ -116,6 +116,16 @@ class BoundariesPredicateTest {
         Assertions.assertFalse(predicate.test(getMockRendition(100, 100)));
     }
 
+    @Test
+    public void shouldCalculateScale() {
+        BoundariesPredicate.Boundaries boundaries = new BoundariesPredicate("100x100-600x600").getBoundaries();
+        Assertions.assertEquals(1.0f, boundaries.getScale(new BoundariesPredicate.Size(300, 200)));
+        Assertions.assertEquals(0.5f, boundaries.getScale(new BoundariesPredicate.Size(1200, 800)));
+        Assertions.assertEquals(0.5f, boundaries.getScale(new BoundariesPredicate.Size(800, 1200)));
+        Assertions.assertEquals(2.5f, boundaries.getScale(new BoundariesPredicate.Size(50, 40)));
+        Assertions.assertEquals(1.0f, boundaries.getScale(BoundariesPredicate.Size.EMPTY));
+    }
+
     private static Rendition getMockRendition(int width, int height) {
         Rendition result = Mockito.mock(Rendition.class);
         Mockito.when(result.getName()).thenReturn(String.format("cq5dam.thumbnail.%d.%d.png", width, height));
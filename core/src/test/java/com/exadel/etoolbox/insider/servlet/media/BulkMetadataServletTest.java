@@ -0,0 +1,104 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.insider.servlet.media;
+
+import com.exadel.etoolbox.insider.util.JsonUtil;
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+import org.apache.http.HttpStatus;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+@ExtendWith({AemContextExtension.class})
+public class BulkMetadataServletTest {
+
+    private final AemContext context = new AemContext();
+
+    private BulkMetadataServlet servlet;
+
+    @BeforeEach
+    public void setUp() {
+        context.load().json(
+                "/com/exadel/etoolbox/insider/servlet/media/content.json",
+                "/content/dam");
+        servlet = context.registerInjectActivateService(new BulkMetadataServlet());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldReturnMetadataOfSeveralAssets() throws IOException {
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("path", new String[]{"/content/dam/image.png", "/content/dam/image.bmp", "/content/dam/missing.png"});
+        parameters.put("keys", new String[]{"dc:format"});
+        context.request().setParameterMap(parameters);
+
+        servlet.doGet(context.request(), context.response());
+
+        Assertions.assertEquals(HttpStatus.SC_OK, context.response().getStatus());
+        Map<String, Object> result = JsonUtil.getMap(context.response().getOutputAsString());
+        Assertions.assertEquals(2, result.size());
+        Map<String, Object> metadata = (Map<String, Object>) result.get("/content/dam/image.bmp");
+        Assertions.assertEquals(1, metadata.size());
+        Assertions.assertEquals("image/bmp", metadata.get("dc:format"));
+        Assertions.assertFalse(result.containsKey("/content/dam/missing.png"));
+    }
+
+    @Test
+    public void shouldRejectRequestWithoutKeys() throws IOException {
+        context.request().setParameterMap(
+                Collections.singletonMap("path", new String[]{"/content/dam/image.png"}));
+
+        servlet.doGet(context.request(), context.response());
+
+        Assertions.assertEquals(HttpStatus.SC_BAD_REQUEST, context.response().getStatus());
+        Map<String, Object> result = JsonUtil.getMap(context.response().getOutputAsString());
+        Assertions.assertEquals("Paths or keys are missing", result.get("error"));
+    }
+
+    @Test
+    public void shouldUpdateSeveralAssets() throws IOException {
+        String payload = "{\"/content/dam/image.png\":{\"eai.caption\":\"Lorem\"},"
+                + "\"/content/dam/photo.png\":{\"eai.caption\":\"Ipsum\"},"
+                + "\"/content/dam/missing.png\":{\"eai.caption\":\"Dolor\"}}";
+        context.request().setContent(payload.getBytes());
+
+        servlet.doPost(context.request(), context.response());
+
+        Assertions.assertEquals(HttpStatus.SC_OK, context.response().getStatus());
+        Map<String, Object> result = JsonUtil.getMap(context.response().getOutputAsString());
+        Assertions.assertEquals(2, ((Number) result.get("updated")).intValue());
+        Assertions.assertEquals(Collections.singletonList("/content/dam/missing.png"), result.get("missing"));
+        Assertions.assertFalse(context.resourceResolver().hasChanges());
+        Assertions.assertEquals("Ipsum", context.resourceResolver()
+                .getResource("/content/dam/photo.png/jcr:content/metadata")
+                .getValueMap()
+                .get("eai.caption", String.class));
+    }
+
+    @Test
+    public void shouldRejectInvalidPayload() throws IOException {
+        context.request().setContent("{\"/content/dam/image.png\":\"Lorem\"}".getBytes());
+
+        servlet.doPost(context.request(), context.response());
+
+        Assertions.assertEquals(HttpStatus.SC_BAD_REQUEST, context.response().getStatus());
+    }
+}
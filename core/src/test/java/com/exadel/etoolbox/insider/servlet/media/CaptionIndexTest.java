@@ -0,0 +1,77 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.insider.servlet.media;
+
+import com.day.cq.dam.api.Asset;
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith({AemContextExtension.class})
+class CaptionIndexTest {
+
+    private final AemContext context = new AemContext();
+
+    private CaptionIndex captionIndex;
+
+    @BeforeEach
+    public void init() {
+        context.registerInjectActivateService(new RenditionCache());
+        context.registerInjectActivateService(new ImageProcessingPool());
+        context.registerInjectActivateService(new RenditionService());
+        captionIndex = context.registerInjectActivateService(new CaptionIndex(), "capacity", 2, "maxDistance", 4);
+    }
+
+    @Test
+    public void shouldFindNearestCaption() {
+        captionIndex.put("/content/dam/first.png", 0b1111L, "First");
+        captionIndex.put("/content/dam/second.png", 0b0011L, "Second");
+
+        Assertions.assertEquals("Second", captionIndex.find("/content/dam/third.png", 0b0001L));
+        Assertions.assertEquals("First", captionIndex.find("/content/dam/third.png", 0b1111L));
+        Assertions.assertEquals("Second", captionIndex.find("/content/dam/first.png", 0b1111L));
+        Assertions.assertNull(captionIndex.find("/content/dam/third.png", 0xFF00L));
+    }
+
+    @Test
+    public void shouldEvictEldestEntries() {
+        captionIndex.put("/content/dam/first.png", 0L, "First");
+        captionIndex.put("/content/dam/second.png", 0xFFFFL, "Second");
+        captionIndex.put("/content/dam/third.png", 0xFFFF0000L, "Third");
+
+        Assertions.assertNull(captionIndex.find("/content/dam/other.png", 0L));
+        Assertions.assertEquals("Third", captionIndex.find("/content/dam/other.png", 0xFFFF0000L));
+    }
+
+    @Test
+    public void shouldNotHashWhenDisabledOrEmpty() {
+        Asset asset = context.create().asset("/content/dam/sample.png", 100, 100, "image/png");
+
+        Assertions.assertTrue(captionIndex.isEmpty());
+        Assertions.assertNull(captionIndex.findSimilar(asset));
+        Assertions.assertNull(captionIndex.getKnownHash(asset));
+        Long hash = captionIndex.getHash(asset);
+        Assertions.assertNotNull(hash);
+        Assertions.assertEquals(hash, captionIndex.getHash(asset));
+        Assertions.assertEquals(hash, captionIndex.getKnownHash(asset));
+
+        CaptionIndex disabledIndex = context.registerInjectActivateService(new CaptionIndex(), "enabled", false);
+        Assertions.assertNull(disabledIndex.getHash(asset));
+        disabledIndex.put("/content/dam/first.png", hash, "First");
+        Assertions.assertNull(disabledIndex.findSimilar(asset));
+    }
+}
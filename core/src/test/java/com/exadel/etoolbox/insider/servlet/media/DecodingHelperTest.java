@@ -0,0 +1,69 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.insider.servlet.media;
+
+import com.day.cq.dam.api.Rendition;
+import com.day.image.Layer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+class DecodingHelperTest {
+
+    @Test
+    public void shouldDecodeWithSubsampling() throws IOException {
+        Rendition rendition = getMockRendition(2400, 1200, "png");
+        BoundariesPredicate.Boundaries boundaries = new BoundariesPredicate("100x100-600x600").getBoundaries();
+
+        Layer layer = DecodingHelper.decode(rendition, boundaries);
+
+        Assertions.assertEquals(1200, layer.getWidth());
+        Assertions.assertEquals(600, layer.getHeight());
+    }
+
+    @Test
+    public void shouldDecodeAtFullResolution() throws IOException {
+        Rendition rendition = getMockRendition(800, 400, "bmp");
+        BoundariesPredicate.Boundaries boundaries = new BoundariesPredicate("100x100-600x600").getBoundaries();
+
+        Layer layer = DecodingHelper.decode(rendition, boundaries);
+
+        Assertions.assertEquals(800, layer.getWidth());
+        Assertions.assertEquals(400, layer.getHeight());
+    }
+
+    @Test
+    public void shouldCalculateSubsampling() {
+        BoundariesPredicate.Boundaries boundaries = new BoundariesPredicate("100x100-600x600").getBoundaries();
+        Assertions.assertEquals(1, DecodingHelper.getSubsampling(new BoundariesPredicate.Size(300, 300), boundaries));
+        Assertions.assertEquals(1, DecodingHelper.getSubsampling(new BoundariesPredicate.Size(1000, 500), boundaries));
+        Assertions.assertEquals(5, DecodingHelper.getSubsampling(new BoundariesPredicate.Size(6000, 4000), boundaries));
+        Assertions.assertEquals(1, DecodingHelper.getSubsampling(BoundariesPredicate.Size.EMPTY, boundaries));
+    }
+
+    private static Rendition getMockRendition(int width, int height, String format) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), format, output);
+        byte[] bytes = output.toByteArray();
+        Rendition result = Mockito.mock(Rendition.class);
+        Mockito.when(result.getStream()).thenAnswer(invocation -> new ByteArrayInputStream(bytes));
+        return result;
+    }
+}
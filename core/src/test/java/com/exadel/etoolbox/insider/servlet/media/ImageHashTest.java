@@ -0,0 +1,67 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.insider.servlet.media;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+
+class ImageHashTest {
+
+    @Test
+    public void shouldMatchResizedImage() {
+        BufferedImage image = createImage(false);
+        BufferedImage resized = new BufferedImage(160, 120, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = resized.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        graphics.drawImage(image, 0, 0, 160, 120, null);
+        graphics.dispose();
+
+        Assertions.assertTrue(ImageHash.distance(ImageHash.compute(image), ImageHash.compute(resized)) <= 2);
+    }
+
+    @Test
+    public void shouldDistinguishDifferentImages() {
+        long hash = ImageHash.compute(createImage(false));
+        long mirroredHash = ImageHash.compute(createImage(true));
+
+        Assertions.assertTrue(ImageHash.distance(hash, mirroredHash) > 16);
+    }
+
+    @Test
+    public void shouldConvertToString() {
+        long hash = ImageHash.compute(createImage(false));
+
+        Assertions.assertEquals(16, ImageHash.toString(hash).length());
+        Assertions.assertEquals(hash, ImageHash.parse(ImageHash.toString(hash)));
+        Assertions.assertEquals(-1L, ImageHash.parse("ffffffffffffffff"));
+        Assertions.assertNull(ImageHash.parse("lorem"));
+        Assertions.assertNull(ImageHash.parse(null));
+    }
+
+    private static BufferedImage createImage(boolean mirrored) {
+        BufferedImage result = new BufferedImage(640, 480, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < result.getHeight(); y++) {
+            for (int x = 0; x < result.getWidth(); x++) {
+                int effectiveX = mirrored ? result.getWidth() - 1 - x : x;
+                int value = (int) (127 + 120 * Math.sin(effectiveX / 61.0) * Math.cos(y / 43.0 + effectiveX / 200.0));
+                result.setRGB(x, y, value << 16 | value << 8 | (255 - value));
+            }
+        }
+        return result;
+    }
+}
@@ -10,8 +10,10 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.testing.mock.sling.servlet.MockSlingHttpServletResponse;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.Map;
 
 @ExtendWith({AemContextExtension.class})
@@ -45,6 +47,19 @@ public class ImageMetadataServletTest {
         Assertions.assertEquals("image/png", metadata.get("dc:format"));
     }
 
+    @Test
+    public void shouldReturnRequestedKeys() throws IOException {
+        context.request().setResource(context.resourceResolver().getResource("/content/dam/image.png"));
+        context.request().setParameterMap(Collections.singletonMap("keys", new String[]{"dc:format,dc:title"}));
+
+        servlet.doGet(context.request(), context.response());
+
+        Assertions.assertEquals(HttpStatus.SC_OK, context.response().getStatus());
+        Map<String, Object> metadata = JsonUtil.getMap(context.response().getOutputAsString());
+        Assertions.assertEquals(1, metadata.size());
+        Assertions.assertEquals("image/png", metadata.get("dc:format"));
+    }
+
     @Test
     public void shouldUpdateMetadata() throws IOException {
         context.request().setResource(context.resourceResolver().getResource("/content/dam/image.png"));
@@ -74,4 +89,49 @@ public class ImageMetadataServletTest {
         Map<String, Object> responseJson = JsonUtil.getMap(context.response().getOutputAsString());
         Assertions.assertEquals("Invalid payload", responseJson.get("error"));
     }
-} 
\ No newline at end of file
+
+    @Test
+    public void shouldReturnBadRequestForNestedValues() throws IOException {
+        context.request().setResource(context.resourceResolver().getResource("/content/dam/image.png"));
+        context.request().setContent("{\"dc:title\":{\"en\":\"Title\"}}".getBytes());
+
+        servlet.doPost(context.request(), context.response());
+
+        Assertions.assertEquals(HttpStatus.SC_BAD_REQUEST, context.response().getStatus());
+    }
+
+    @Test
+    public void shouldSuggestCaptionOfSimilarImage() throws IOException, InterruptedException {
+        for (String asset : new String[] {"image.png", "photo.png"}) {
+            context.load().binaryFile(
+                    "/com/exadel/etoolbox/insider/servlet/media/image.png",
+                    "/content/dam/" + asset + "/jcr:content/renditions/original");
+        }
+        context.registerInjectActivateService(new RenditionCache());
+        context.registerInjectActivateService(new ImageProcessingPool());
+        context.registerInjectActivateService(new RenditionService());
+        CaptionIndex captionIndex = context.registerInjectActivateService(new CaptionIndex());
+        servlet = context.registerInjectActivateService(new ImageMetadataServlet());
+
+        context.request().setResource(context.resourceResolver().getResource("/content/dam/image.png"));
+        context.request().setContent("{\"eai.caption\":\"Lorem ipsum\"}".getBytes());
+        servlet.doPost(context.request(), new MockSlingHttpServletResponse());
+
+        // The hash of the captioned image is computed in the background
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (captionIndex.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        context.resourceResolver().refresh();
+        Assertions.assertNotNull(context.resourceResolver()
+                .getResource("/content/dam/image.png/jcr:content/metadata")
+                .getValueMap()
+                .get(CaptionIndex.PROP_HASH, String.class));
+
+        context.request().setResource(context.resourceResolver().getResource("/content/dam/photo.png"));
+        servlet.doGet(context.request(), context.response());
+
+        Map<String, Object> metadata = JsonUtil.getMap(context.response().getOutputAsString());
+        Assertions.assertEquals("Lorem ipsum", metadata.get("eai.similarCaption"));
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.insider.servlet.media;
+
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+@ExtendWith({AemContextExtension.class})
+public class ImageProcessingPoolTest {
+
+    private static final long MEGABYTE = 1024L * 1024L;
+
+    private final AemContext context = new AemContext();
+
+    @Test
+    public void shouldRunTask() throws IOException {
+        ImageProcessingPool pool = context.registerInjectActivateService(new ImageProcessingPool());
+        String threadName = pool.execute(MEGABYTE, () -> Thread.currentThread().getName());
+        Assertions.assertTrue(threadName.startsWith("eai-image-processing-"));
+
+        // A task that exceeds the whole budget is still admitted when the pool is idle
+        Assertions.assertEquals(42, (int) pool.execute(Long.MAX_VALUE, () -> 42));
+    }
+
+    @Test
+    public void shouldRejectOverBudgetTask() throws Exception {
+        ImageProcessingPool pool = context.registerInjectActivateService(
+                new ImageProcessingPool(),
+                "memoryBudget", 10,
+                "maxWait", 100);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Boolean> running = CompletableFuture.supplyAsync(() -> {
+            try {
+                return pool.execute(8 * MEGABYTE, () -> {
+                    started.countDown();
+                    return release.await(5, TimeUnit.SECONDS);
+                });
+            } catch (IOException e) {
+                return false;
+            }
+        });
+        started.await();
+
+        Assertions.assertThrows(RejectedExecutionException.class, () -> pool.execute(4 * MEGABYTE, () -> true));
+        Assertions.assertTrue(pool.execute(MEGABYTE, () -> true));
+        Assertions.assertEquals(1, pool.getRetryAfter());
+
+        release.countDown();
+        Assertions.assertTrue(running.get());
+        Assertions.assertTrue(pool.execute(4 * MEGABYTE, () -> true));
+    }
+
+    @Test
+    public void shouldKeepBudgetUntilInterruptedTaskEnds() throws Exception {
+        ImageProcessingPool pool = context.registerInjectActivateService(
+                new ImageProcessingPool(),
+                "memoryBudget", 10,
+                "maxWait", 100);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Throwable> failure = new CompletableFuture<>();
+        Thread caller = new Thread(() -> {
+            try {
+                pool.execute(8 * MEGABYTE, () -> {
+                    started.countDown();
+                    // Imitates a decoder that does not respond to interruption
+                    while (true) {
+                        try {
+                            return release.await(5, TimeUnit.SECONDS);
+                        } catch (InterruptedException e) {
+                            // Ignored
+                        }
+                    }
+                });
+                failure.complete(null);
+            } catch (IOException e) {
+                failure.complete(e);
+            }
+        });
+        caller.start();
+        started.await();
+        caller.interrupt();
+
+        Assertions.assertInstanceOf(IOException.class, failure.get(5, TimeUnit.SECONDS));
+        Assertions.assertThrows(RejectedExecutionException.class, () -> pool.execute(4 * MEGABYTE, () -> true));
+
+        release.countDown();
+        Assertions.assertTrue(pool.execute(4 * MEGABYTE, () -> true));
+    }
+
+    @Test
+    public void shouldRunBackgroundTaskOnFreeBudgetOnly() throws Exception {
+        ImageProcessingPool pool = context.registerInjectActivateService(
+                new ImageProcessingPool(),
+                "memoryBudget", 10,
+                "maxWait", 300,
+                "backgroundShare", 50);
+
+        // A background task never takes more than its share of the budget
+        Assertions.assertThrows(
+                RejectedExecutionException.class,
+                () -> pool.executeInBackground(6 * MEGABYTE, () -> true));
+        Assertions.assertTrue(pool.executeInBackground(4 * MEGABYTE, () -> true));
+
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Boolean> running = CompletableFuture.supplyAsync(() -> {
+            try {
+                return pool.execute(8 * MEGABYTE, () -> {
+                    started.countDown();
+                    return release.await(5, TimeUnit.SECONDS);
+                });
+            } catch (IOException e) {
+                return false;
+            }
+        });
+        started.await();
+
+        // A background task only takes the budget that is free
+        Assertions.assertThrows(
+                RejectedExecutionException.class,
+                () -> pool.executeInBackground(4 * MEGABYTE, () -> true));
+        Assertions.assertTrue(pool.executeInBackground(MEGABYTE, () -> true));
+
+        // A waiting background task is admitted once the budget is released
+        CompletableFuture<Boolean> waiting = CompletableFuture.supplyAsync(() -> {
+            try {
+                return pool.executeInBackground(4 * MEGABYTE, () -> true);
+            } catch (IOException e) {
+                return false;
+            }
+        });
+        release.countDown();
+        Assertions.assertTrue(running.get());
+        Assertions.assertTrue(waiting.get());
+    }
+}
@@ -16,18 +16,29 @@ package com.exadel.etoolbox.insider.servlet.media;
 import io.wcm.testing.mock.aem.junit5.AemContext;
 import io.wcm.testing.mock.aem.junit5.AemContextExtension;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpStatus;
+import org.apache.sling.api.resource.ModifiableValueMap;
+import org.apache.sling.testing.mock.sling.servlet.MockSlingHttpServletRequest;
+import org.apache.sling.testing.mock.sling.servlet.MockSlingHttpServletResponse;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.osgi.framework.Constants;
 
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.Base64;
 import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 @ExtendWith({AemContextExtension.class})
 public class ImageRenditionServletTest {
@@ -48,6 +59,9 @@ public class ImageRenditionServletTest {
                 "/com/exadel/etoolbox/insider/servlet/media/image.bmp",
                 "/content/dam/image.bmp/jcr:content/renditions/original");
 
+        context.registerInjectActivateService(new RenditionCache());
+        context.registerInjectActivateService(new ImageProcessingPool(), "maxWait", 0);
+        context.registerInjectActivateService(new RenditionService());
         servlet = context.registerInjectActivateService(new ImageRenditionServlet());
     }
 
@@ -133,6 +147,174 @@ public class ImageRenditionServletTest {
         Assertions.assertTrue(output.contains("data:image/png;base64"));
     }
 
+    @Test
+    public void shouldPreferClosestRenditionWhenNoneFits() throws IOException {
+        Arrays.asList("cq5dam.thumbnail.48.48.png", "cq5dam.thumbnail.1280.1280.png")
+                .forEach(rendition -> context.load().binaryFile(
+                        "/com/exadel/etoolbox/insider/servlet/media/thumbnail.png",
+                        "/content/dam/image.png/jcr:content/renditions/" + rendition));
+        ModifiableValueMap metadata = context.resourceResolver()
+                .getResource("/content/dam/image.png/jcr:content/metadata")
+                .adaptTo(ModifiableValueMap.class);
+        metadata.put("tiff:ImageWidth", 2000);
+        metadata.put("tiff:ImageLength", 2000);
+        context.request().setResource(context.resourceResolver().getResource("/content/dam/image.png"));
+
+        servlet.doGet(context.request(), context.response());
+
+        Assertions.assertEquals("cq5dam.thumbnail.1280.1280.png", context.response().getHeader("X-Rendition"));
+    }
+
+    @Test
+    public void shouldResizeClosestRenditionToBoundaries() throws IOException {
+        ByteArrayOutputStream pngOutput = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(1280, 1280, BufferedImage.TYPE_INT_RGB), "png", pngOutput);
+        context.load().binaryFile(
+                new ByteArrayInputStream(pngOutput.toByteArray()),
+                "/content/dam/image.png/jcr:content/renditions/cq5dam.thumbnail.1280.1280.png",
+                "image/png");
+        ModifiableValueMap metadata = context.resourceResolver()
+                .getResource("/content/dam/image.png/jcr:content/metadata")
+                .adaptTo(ModifiableValueMap.class);
+        metadata.put("tiff:ImageWidth", 2000);
+        metadata.put("tiff:ImageLength", 2000);
+        context.request().setResource(context.resourceResolver().getResource("/content/dam/image.png"));
+
+        servlet.doGet(context.request(), context.response());
+
+        Assertions.assertEquals("cq5dam.thumbnail.1280.1280.png", context.response().getHeader("X-Rendition"));
+        byte[] bytes = Base64.getDecoder().decode(
+                StringUtils.substringAfter(context.response().getOutputAsString(), "base64,"));
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(bytes));
+        Assertions.assertNotNull(image);
+        Assertions.assertTrue(image.getWidth() <= 600 && image.getHeight() <= 600);
+    }
+
+    @Test
+    public void shouldRejectWhenOverloaded() throws Exception {
+        ImageProcessingPool pool = context.getService(ImageProcessingPool.class);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Boolean> running = CompletableFuture.supplyAsync(() -> {
+            try {
+                return pool.execute(Long.MAX_VALUE, () -> {
+                    started.countDown();
+                    return release.await(5, TimeUnit.SECONDS);
+                });
+            } catch (IOException e) {
+                return false;
+            }
+        });
+        started.await();
+        context.request().setResource(context.resourceResolver().getResource("/content/dam/image.bmp"));
+
+        servlet.doGet(context.request(), context.response());
+        release.countDown();
+
+        Assertions.assertEquals(HttpStatus.SC_SERVICE_UNAVAILABLE, context.response().getStatus());
+        Assertions.assertEquals("1", context.response().getHeader(HttpHeaders.RETRY_AFTER));
+        Assertions.assertTrue(running.get());
+    }
+
+    @Test
+    public void shouldPassThroughJpegRendition() throws IOException {
+        BufferedImage source = new BufferedImage(300, 300, BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream jpegOutput = new ByteArrayOutputStream();
+        ImageIO.write(source, "jpeg", jpegOutput);
+        byte[] jpegBytes = jpegOutput.toByteArray();
+        context.load().binaryFile(
+                new ByteArrayInputStream(jpegBytes),
+                "/content/dam/image.png/jcr:content/renditions/cq5dam.thumbnail.300.300.jpeg",
+                "image/jpeg");
+        context.request().setResource(context.resourceResolver().getResource("/content/dam/image.png"));
+
+        servlet.doGet(context.request(), context.response());
+        String output = context.response().getOutputAsString();
+
+        Assertions.assertEquals("cq5dam.thumbnail.300.300.jpeg", context.response().getHeader("X-Rendition"));
+        Assertions.assertTrue(output.startsWith("data:image/jpeg;base64,"));
+        Assertions.assertArrayEquals(jpegBytes, Base64.getDecoder().decode(StringUtils.substringAfter(output, "base64,")));
+    }
+
+    @Test
+    public void shouldFitPhotoIntoByteBudget() throws IOException {
+        context.registerInjectActivateService(new RenditionService(), "maxSize", 20, Constants.SERVICE_RANKING, 100);
+        servlet = context.registerInjectActivateService(new ImageRenditionServlet());
+        loadPhoto();
+        context.request().setResource(context.resourceResolver().getResource("/content/dam/photo.png"));
+
+        servlet.doGet(context.request(), context.response());
+        String output = context.response().getOutputAsString();
+
+        Assertions.assertTrue(output.startsWith("data:image/jpeg;base64,"));
+        byte[] bytes = Base64.getDecoder().decode(StringUtils.substringAfter(output, "base64,"));
+        Assertions.assertTrue(bytes.length <= 20 * 1024);
+        Assertions.assertNotNull(ImageIO.read(new ByteArrayInputStream(bytes)));
+    }
+
+    @Test
+    public void shouldRespectOutputFormat() throws IOException {
+        context.registerInjectActivateService(new RenditionService(), "outputFormat", "png", Constants.SERVICE_RANKING, 100);
+        servlet = context.registerInjectActivateService(new ImageRenditionServlet());
+        loadPhoto();
+        context.request().setResource(context.resourceResolver().getResource("/content/dam/photo.png"));
+
+        servlet.doGet(context.request(), context.response());
+
+        Assertions.assertTrue(context.response().getOutputAsString().startsWith("data:image/png;base64,"));
+    }
+
+    @Test
+    public void shouldReportNotModified() throws IOException {
+        loadRenditions();
+        context.request().setResource(context.resourceResolver().getResource("/content/dam/image.png"));
+
+        servlet.doGet(context.request(), context.response());
+        String eTag = context.response().getHeader(HttpHeaders.ETAG);
+        Assertions.assertNotNull(eTag);
+        Assertions.assertEquals("private, no-cache", context.response().getHeader(HttpHeaders.CACHE_CONTROL));
+
+        MockSlingHttpServletRequest conditionalRequest = context.request();
+        conditionalRequest.setHeader(HttpHeaders.IF_NONE_MATCH, eTag);
+        MockSlingHttpServletResponse conditionalResponse = new MockSlingHttpServletResponse();
+        servlet.doGet(conditionalRequest, conditionalResponse);
+        Assertions.assertEquals(HttpStatus.SC_NOT_MODIFIED, conditionalResponse.getStatus());
+        Assertions.assertEquals(0, conditionalResponse.getOutput().length);
+
+        conditionalRequest.setParameterMap(Collections.singletonMap("size", new String[]{"200x200"}));
+        MockSlingHttpServletResponse otherSizeResponse = new MockSlingHttpServletResponse();
+        servlet.doGet(conditionalRequest, otherSizeResponse);
+        Assertions.assertEquals(HttpStatus.SC_OK, otherSizeResponse.getStatus());
+        Assertions.assertNotEquals(eTag, otherSizeResponse.getHeader(HttpHeaders.ETAG));
+    }
+
+    @Test
+    public void shouldReportNotModifiedSince() throws IOException {
+        context.request().setResource(context.resourceResolver().getResource("/content/dam/image.png"));
+        context.request().setHeader(HttpHeaders.IF_MODIFIED_SINCE, "Sun, 01 Jan 2090 00:00:00 GMT");
+
+        servlet.doGet(context.request(), context.response());
+
+        Assertions.assertNotNull(context.response().getHeader(HttpHeaders.LAST_MODIFIED));
+        Assertions.assertEquals(HttpStatus.SC_NOT_MODIFIED, context.response().getStatus());
+    }
+
+    private void loadPhoto() throws IOException {
+        BufferedImage source = new BufferedImage(400, 400, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(42);
+        for (int y = 0; y < source.getHeight(); y++) {
+            for (int x = 0; x < source.getWidth(); x++) {
+                source.setRGB(x, y, random.nextInt(0xFFFFFF));
+            }
+        }
+        ByteArrayOutputStream pngOutput = new ByteArrayOutputStream();
+        ImageIO.write(source, "png", pngOutput);
+        context.load().binaryFile(
+                new ByteArrayInputStream(pngOutput.toByteArray()),
+                "/content/dam/photo.png/jcr:content/renditions/original",
+                "image/png");
+    }
+
     private void loadRenditions() {
         Arrays.asList(
                         "cq5dam.thumbnail.48.48.png",
@@ -0,0 +1,133 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.insider.servlet.media;
+
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.api.resource.ValueMap;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mockito;
+import org.osgi.framework.Constants;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+@ExtendWith({AemContextExtension.class})
+public class MetadataWriteQueueTest {
+
+    private final AemContext context = new AemContext();
+
+    private MetadataWriteQueue writeQueue;
+
+    @BeforeEach
+    public void setUp() {
+        context.load().json(
+                "/com/exadel/etoolbox/insider/servlet/media/content.json",
+                "/content/dam");
+        Map<String, Object> config = new HashMap<>();
+        config.put("enabled", true);
+        config.put("delay", 60_000);
+        writeQueue = context.registerInjectActivateService(new MetadataWriteQueue(), config);
+    }
+
+    @Test
+    public void shouldMergeUpdatesOfSameAsset() {
+        Assertions.assertTrue(writeQueue.offer("/content/dam/image.png", Collections.singletonMap("eai.caption", "Lorem")));
+        Assertions.assertTrue(writeQueue.offer("/content/dam/image.png", Collections.singletonMap("eai.caption", "Ipsum")));
+        Assertions.assertTrue(writeQueue.offer("/content/dam/image.png", Collections.singletonMap("dc:title", "Title")));
+        Assertions.assertEquals("Ipsum", writeQueue.getPending("/content/dam/image.png").get("eai.caption"));
+
+        writeQueue.flush();
+
+        Assertions.assertNull(writeQueue.getPending("/content/dam/image.png"));
+        ValueMap metadata = context.resourceResolver()
+                .getResource("/content/dam/image.png/jcr:content/metadata")
+                .getValueMap();
+        Assertions.assertEquals("Ipsum", metadata.get("eai.caption", String.class));
+        Assertions.assertEquals("Title", metadata.get("dc:title", String.class));
+    }
+
+    @Test
+    public void shouldServePendingValues() {
+        writeQueue.offer("/content/dam/image.png", Collections.singletonMap("eai.caption", "Lorem"));
+
+        Map<String, Object> metadata = MetadataHelper.getMetadata(
+                context.resourceResolver().getResource("/content/dam/image.png"),
+                Collections.singleton("eai.caption"),
+                null,
+                writeQueue);
+
+        Assertions.assertNotNull(metadata);
+        Assertions.assertEquals("Lorem", metadata.get("eai.caption"));
+    }
+
+    @Test
+    public void shouldKeepUpdatesThatCouldNotBeWritten() throws LoginException {
+        ResourceResolverFactory failingFactory = Mockito.mock(ResourceResolverFactory.class);
+        Mockito.when(failingFactory.getServiceResourceResolver(Mockito.anyMap())).thenThrow(new LoginException("Failed"));
+        context.registerService(ResourceResolverFactory.class, failingFactory, Constants.SERVICE_RANKING, 1000);
+        Map<String, Object> config = new HashMap<>();
+        config.put("enabled", true);
+        config.put("delay", 60_000);
+        MetadataWriteQueue failingQueue = context.registerInjectActivateService(new MetadataWriteQueue(), config);
+
+        failingQueue.offer("/content/dam/image.png", Collections.singletonMap("eai.caption", "Lorem"));
+        failingQueue.flush();
+
+        Assertions.assertEquals("Lorem", failingQueue.getPending("/content/dam/image.png").get("eai.caption"));
+
+        failingQueue.offer("/content/dam/image.png", Collections.singletonMap("eai.caption", "Ipsum"));
+        Assertions.assertEquals("Ipsum", failingQueue.getPending("/content/dam/image.png").get("eai.caption"));
+    }
+
+    @Test
+    public void shouldRejectNestedValues() {
+        Assertions.assertFalse(writeQueue.offer(
+                "/content/dam/image.png",
+                Collections.singletonMap("dc:title", Collections.singletonMap("en", "Title"))));
+        Assertions.assertTrue(writeQueue.offer(
+                "/content/dam/image.png",
+                Collections.singletonMap("dc:subject", Arrays.asList("Lorem", "Ipsum"))));
+    }
+
+    @Test
+    public void shouldCompleteBatchWhenUpdateFails() {
+        CaptionIndex failingIndex = Mockito.mock(CaptionIndex.class);
+        Mockito.when(failingIndex.isEnabled()).thenThrow(new IllegalStateException("Failed"));
+        context.registerService(CaptionIndex.class, failingIndex);
+        Map<String, Object> config = new HashMap<>();
+        config.put("enabled", true);
+        config.put("delay", 60_000);
+        MetadataWriteQueue failingQueue = context.registerInjectActivateService(new MetadataWriteQueue(), config);
+
+        failingQueue.offer("/content/dam/image.png", Collections.singletonMap("eai.caption", "Lorem"));
+        failingQueue.offer("/content/dam/photo.png", Collections.singletonMap("dc:title", "Title"));
+        failingQueue.flush();
+
+        Assertions.assertNull(failingQueue.getPending("/content/dam/image.png"));
+        Assertions.assertNull(failingQueue.getPending("/content/dam/photo.png"));
+        context.resourceResolver().refresh();
+        Assertions.assertEquals("Title", context.resourceResolver()
+                .getResource("/content/dam/photo.png/jcr:content/metadata")
+                .getValueMap()
+                .get("dc:title", String.class));
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.insider.servlet.media;
+
+import com.exadel.etoolbox.insider.util.JsonUtil;
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+import org.apache.http.HttpStatus;
+import org.apache.sling.api.resource.ModifiableValueMap;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+@ExtendWith({AemContextExtension.class})
+public class PrefetchServletTest {
+
+    private final AemContext context = new AemContext();
+
+    private PrefetchServlet servlet;
+
+    @BeforeEach
+    public void setUp() {
+        context.load().json(
+                "/com/exadel/etoolbox/insider/servlet/media/content.json",
+                "/content/dam");
+        for (String asset : new String[] {"image.png", "photo.png"}) {
+            context.load().binaryFile(
+                    "/com/exadel/etoolbox/insider/servlet/media/image.png",
+                    "/content/dam/" + asset + "/jcr:content/renditions/original");
+        }
+        context.resourceResolver()
+                .getResource("/content/dam/image.png/jcr:content/metadata")
+                .adaptTo(ModifiableValueMap.class)
+                .put("eai.caption", "Lorem ipsum");
+        context.create().page("/content/site/page");
+        context.create().resource(
+                "/content/site/page/jcr:content/image",
+                "fileReference", "/content/dam/image.png",
+                "linkURL", "/content/site/other");
+        context.create().resource(
+                "/content/site/page/jcr:content/gallery",
+                "images", new String[] {"/content/dam/photo.png", "/content/dam/missing.png"});
+
+        context.registerInjectActivateService(new RenditionCache());
+        context.registerInjectActivateService(new ImageProcessingPool());
+        context.registerInjectActivateService(new RenditionService());
+        servlet = context.registerInjectActivateService(new PrefetchServlet());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldReturnReferencedImages() throws IOException {
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("path", "/content/site/page");
+        parameters.put("size", "100x100-600x600");
+        context.request().setParameterMap(parameters);
+
+        servlet.doGet(context.request(), context.response());
+
+        Assertions.assertEquals(HttpStatus.SC_OK, context.response().getStatus());
+        Map<String, Object> result = JsonUtil.getMap(context.response().getOutputAsString());
+        Assertions.assertEquals(Arrays.asList("/content/dam/image.png", "/content/dam/photo.png"),
+                Arrays.asList(result.keySet().toArray()));
+
+        Map<String, Object> image = (Map<String, Object>) result.get("/content/dam/image.png");
+        Assertions.assertEquals("/content/dam/image.png?size=100x100-600x600", image.get("reference"));
+        Assertions.assertEquals(
+                Collections.singletonMap("eai.caption", "Lorem ipsum"),
+                image.get("metadata"));
+        Map<String, Object> photo = (Map<String, Object>) result.get("/content/dam/photo.png");
+        Assertions.assertEquals(Collections.emptyMap(), photo.get("metadata"));
+    }
+
+    @Test
+    public void shouldReturnImagesOfComponent() throws IOException {
+        context.request().setParameterMap(Collections.singletonMap("path", "/content/site/page/jcr:content/gallery"));
+
+        servlet.doGet(context.request(), context.response());
+
+        Map<String, Object> result = JsonUtil.getMap(context.response().getOutputAsString());
+        Assertions.assertEquals(Collections.singleton("/content/dam/photo.png"), result.keySet());
+    }
+
+    @Test
+    public void shouldRejectMissingPath() throws IOException {
+        servlet.doGet(context.request(), context.response());
+
+        Assertions.assertEquals(HttpStatus.SC_BAD_REQUEST, context.response().getStatus());
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.insider.servlet.media;
+
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+
+@ExtendWith({AemContextExtension.class})
+public class RenditionCacheTest {
+
+    private static final int ENTRY_SIZE = 600 * 1024;
+
+    private final AemContext context = new AemContext();
+
+    @Test
+    public void shouldStoreAndRetrieveRendition() throws IOException {
+        RenditionCache cache = context.registerInjectActivateService(new RenditionCache());
+        String key = RenditionCache.getKey("/content/dam/image.png", "1000", "original", "image/png");
+        Assertions.assertNull(cache.get(key));
+
+        try (RenditionCache.CachedRendition stored = cache.put(key, output -> {
+            output.write(new byte[]{1, 2, 3});
+            return "image/png";
+        })) {
+            Assertions.assertNotNull(stored);
+        }
+
+        try (RenditionCache.CachedRendition retrieved = cache.get(key)) {
+            Assertions.assertNotNull(retrieved);
+            Assertions.assertEquals("image/png", retrieved.getMimeType());
+            Assertions.assertEquals(3, retrieved.getSize());
+            Assertions.assertArrayEquals(new byte[]{1, 2, 3}, IOUtils.toByteArray(retrieved.getStream()));
+        }
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsed() throws IOException {
+        RenditionCache cache = context.registerInjectActivateService(
+                new RenditionCache(),
+                Collections.singletonMap("maxSize", 1));
+        try (RenditionCache.CachedRendition first = cache.put("first", RenditionCacheTest::writeEntry)) {
+            cache.put("second", RenditionCacheTest::writeEntry).close();
+
+            // An entry that is already open stays readable after eviction
+            Assertions.assertEquals(ENTRY_SIZE, IOUtils.toByteArray(first.getStream()).length);
+        }
+
+        Assertions.assertNull(cache.get("first"));
+        try (RenditionCache.CachedRendition second = cache.get("second")) {
+            Assertions.assertNotNull(second);
+        }
+    }
+
+    @Test
+    public void shouldNotStoreRenditionLargerThanCache() {
+        RenditionCache cache = context.registerInjectActivateService(
+                new RenditionCache(),
+                Collections.singletonMap("maxSize", 1));
+        Assertions.assertNull(cache.put("large", output -> {
+            output.write(new byte[3 * ENTRY_SIZE]);
+            return "image/jpeg";
+        }));
+        Assertions.assertNull(cache.get("large"));
+    }
+
+    @Test
+    public void shouldRestoreEntriesOnActivation() throws IOException {
+        RenditionCache cache = context.registerInjectActivateService(new RenditionCache());
+        cache.put("persistent", RenditionCacheTest::writeEntry).close();
+
+        RenditionCache restoredCache = context.registerInjectActivateService(new RenditionCache());
+        try (RenditionCache.CachedRendition restored = restoredCache.get("persistent")) {
+            Assertions.assertNotNull(restored);
+            Assertions.assertEquals("image/jpeg", restored.getMimeType());
+            Assertions.assertEquals(ENTRY_SIZE, restored.getSize());
+        }
+    }
+
+    @Test
+    public void shouldNotStoreWhenDisabled() {
+        RenditionCache cache = context.registerInjectActivateService(
+                new RenditionCache(),
+                Collections.singletonMap("maxSize", 0));
+        Assertions.assertNull(cache.put("disabled", RenditionCacheTest::writeEntry));
+    }
+
+    private static String writeEntry(OutputStream output) throws IOException {
+        output.write(new byte[ENTRY_SIZE]);
+        return "image/jpeg";
+    }
+}
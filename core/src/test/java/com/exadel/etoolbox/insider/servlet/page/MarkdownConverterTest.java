@@ -0,0 +1,136 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.insider.servlet.page;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+public class MarkdownConverterTest {
+
+    @Test
+    public void shouldConvertContent() {
+        String html = "<!DOCTYPE html><html><head><title>Page</title><script>var a = '<p>';</script></head>"
+                + "<body><header>Header</header><main>"
+                + "<h1>Title &amp; subtitle</h1>"
+                + "<p>First <b>bold</b> paragraph<br>with a <a href=\"/content/site/other.html\">link</a></p>"
+                + "<p>Second paragraph"
+                + "<ul><li>One<li>Two</ul>"
+                + "<ol><li>Alpha</li><li>Beta</li></ol>"
+                + "<img src=\"/content/dam/image.png\" alt=\"An image\"><img src=\"/content/dam/icon.png\">"
+                + "<a href=\"#top\">Top</a><form><input name=\"q\"><button>Search</button></form>"
+                + "<!-- comment --></main><footer>Footer</footer></body></html>";
+
+        String markdown = MarkdownConverter.convert(html, Collections.emptyList());
+
+        Assertions.assertEquals(
+                "# Title & subtitle\n"
+                        + "First bold paragraph\n"
+                        + "with a [link](/content/site/other.html)\n"
+                        + "Second paragraph\n"
+                        + "- One\n"
+                        + "- Two\n"
+                        + "1. Alpha\n"
+                        + "2. Beta\n"
+                        + "![An image](/content/dam/image.png)",
+                markdown);
+    }
+
+    @Test
+    public void shouldSkipExcludedElements() {
+        String html = "<body><nav class=\"cmp-breadcrumb\">Home</nav><div id=\"content\">"
+                + "<aside>Aside</aside><span>Text</span><span>content</span></div></body>";
+
+        String markdown = MarkdownConverter.convert(html, Arrays.asList(".cmp-breadcrumb", "aside", "a > b"));
+
+        Assertions.assertEquals("Text content", markdown);
+    }
+
+    @Test
+    public void shouldCloseParagraphBeforeBlockElement() {
+        String html = "<main><p>Intro<div>Block</div>Tail</p>"
+                + "<p><b>Bold<p>Next"
+                + "<p>Text<h2>Heading</h2>"
+                + "<p>Last<ul><li>Item</ul>"
+                + "<table><tr><td>One<td>Two<tr><th>Three</table></main>";
+
+        String markdown = MarkdownConverter.convert(html, Collections.emptyList());
+
+        Assertions.assertEquals(
+                "Intro\n"
+                        + "Block\n"
+                        + "Tail\n"
+                        + "Bold\n"
+                        + "Next\n"
+                        + "Text\n"
+                        + "## Heading\n"
+                        + "Last\n"
+                        + "- Item\n"
+                        + "One\n"
+                        + "Two\n"
+                        + "Three",
+                markdown);
+    }
+
+    @Test
+    public void shouldConvertNestedLists() {
+        String html = "<main><ul>"
+                + "<li>One<ul><li>Two<ol><li>Three<li>Four</ol></ul>"
+                + "<li><b>Five<li><p>Six</p><p>More</p>"
+                + "</ul></main>";
+
+        String markdown = MarkdownConverter.convert(html, Collections.emptyList());
+
+        Assertions.assertEquals(
+                "- One\n"
+                        + "  - Two\n"
+                        + "    1. Three\n"
+                        + "    2. Four\n"
+                        + "- Five\n"
+                        + "- Six\n"
+                        + "  More",
+                markdown);
+    }
+
+    @Test
+    public void shouldDecodeEntities() {
+        String html = "<main>"
+                + "<a href=\"/content/site/page.html?a=1&amp;b=2\" title=\"Tom &amp; Jerry\">Page</a>"
+                + "<img src=\"/content/dam/image&#46;png\" alt=\"Fish &#38; chips &gt; fries\">"
+                + "<a href='/content/site/other.html' title='a > b'>Other</a>"
+                + "Tom & Jerry &amp; co &unknown; &#x263A;"
+                + "</main>";
+
+        String markdown = MarkdownConverter.convert(html, Collections.emptyList());
+
+        Assertions.assertEquals(
+                "[Tom & Jerry](/content/site/page.html?a=1&b=2)\n"
+                        + "![Fish & chips > fries](/content/dam/image.png)\n"
+                        + "[a > b](/content/site/other.html) Tom & Jerry & co &unknown; \u263A",
+                markdown);
+    }
+
+    @Test
+    public void shouldTolerateMalformedMarkup() {
+        String html = "<body><p>Before<!-- <div>Hidden</div> -->after</p>"
+                + "<p>Stray</span> closing</p></div>"
+                + "<p>Less < more<p>Unclosed <b>tag";
+
+        String markdown = MarkdownConverter.convert(html, Collections.emptyList());
+
+        Assertions.assertEquals("Beforeafter\nStray closing\nLess < more\nUnclosed tag", markdown);
+    }
+}
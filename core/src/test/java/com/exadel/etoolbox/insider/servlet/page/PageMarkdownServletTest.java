@@ -0,0 +1,133 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.insider.servlet.page;
+
+import com.day.cq.contentsync.handler.util.RequestResponseFactory;
+import com.day.cq.wcm.api.NameConstants;
+import com.exadel.etoolbox.insider.util.JsonUtil;
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+import org.apache.http.HttpStatus;
+import org.apache.sling.api.resource.ModifiableValueMap;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.engine.SlingRequestProcessor;
+import org.apache.sling.testing.mock.sling.servlet.MockSlingHttpServletRequest;
+import org.apache.sling.testing.mock.sling.servlet.MockSlingHttpServletResponse;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mockito;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+@ExtendWith({AemContextExtension.class})
+public class PageMarkdownServletTest {
+
+    private static final String PAGE_PATH = "/content/site/page";
+
+    private final AemContext context = new AemContext();
+
+    private SlingRequestProcessor requestProcessor;
+
+    private PageMarkdownServlet servlet;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        context.create().page(PAGE_PATH);
+        setLastModified(1_000L);
+
+        AtomicReference<OutputStream> output = new AtomicReference<>();
+        RequestResponseFactory requestResponseFactory = Mockito.mock(RequestResponseFactory.class);
+        Mockito.when(requestResponseFactory.createRequest(Mockito.anyString(), Mockito.anyString()))
+                .thenAnswer(invocation -> new MockSlingHttpServletRequest(
+                        context.resourceResolver(),
+                        context.bundleContext()));
+        Mockito.when(requestResponseFactory.createResponse(Mockito.any(OutputStream.class)))
+                .thenAnswer(invocation -> {
+                    output.set(invocation.getArgument(0));
+                    return Mockito.mock(HttpServletResponse.class);
+                });
+        requestProcessor = Mockito.mock(SlingRequestProcessor.class);
+        Mockito.doAnswer(invocation -> {
+            output.get().write("<main><h2>Heading</h2><p>Text</p></main>".getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(requestProcessor).processRequest(Mockito.any(), Mockito.any(), Mockito.any());
+
+        context.registerService(RequestResponseFactory.class, requestResponseFactory);
+        context.registerService(SlingRequestProcessor.class, requestProcessor);
+        servlet = context.registerInjectActivateService(new PageMarkdownServlet());
+    }
+
+    @Test
+    public void shouldReturnCachedMarkdown() throws Exception {
+        Assertions.assertEquals("## Heading\nText", getMarkdown());
+        Assertions.assertEquals("## Heading\nText", getMarkdown());
+        Mockito.verify(requestProcessor, Mockito.times(1)).processRequest(Mockito.any(), Mockito.any(), Mockito.any());
+
+        setLastModified(2_000L);
+        Assertions.assertEquals("## Heading\nText", getMarkdown());
+        Mockito.verify(requestProcessor, Mockito.times(2)).processRequest(Mockito.any(), Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    public void shouldNotShareMarkdownBetweenUsers() throws Exception {
+        ResourceResolver otherResolver = Mockito.spy(context.resourceResolver());
+        Mockito.when(otherResolver.getUserID()).thenReturn("other-user");
+
+        Assertions.assertEquals("## Heading\nText", getMarkdown());
+        Assertions.assertEquals("## Heading\nText", getMarkdown(otherResolver));
+        Mockito.verify(requestProcessor, Mockito.times(2)).processRequest(Mockito.any(), Mockito.any(), Mockito.any());
+        Mockito.verify(requestProcessor).processRequest(Mockito.any(), Mockito.any(), Mockito.same(otherResolver));
+    }
+
+    @Test
+    public void shouldReturnNotFoundForMissingPage() throws IOException {
+        context.request().setParameterMap(Collections.singletonMap("path", "/content/site/missing"));
+
+        servlet.doGet(context.request(), context.response());
+
+        Assertions.assertEquals(HttpStatus.SC_NOT_FOUND, context.response().getStatus());
+    }
+
+    private String getMarkdown() throws IOException {
+        return getMarkdown(context.resourceResolver());
+    }
+
+    private String getMarkdown(ResourceResolver resolver) throws IOException {
+        MockSlingHttpServletRequest request = new MockSlingHttpServletRequest(resolver, context.bundleContext());
+        request.setParameterMap(Collections.singletonMap("path", PAGE_PATH));
+        MockSlingHttpServletResponse response = new MockSlingHttpServletResponse();
+        servlet.doGet(request, response);
+        Assertions.assertEquals(HttpStatus.SC_OK, response.getStatus());
+        Map<String, Object> result = JsonUtil.getMap(response.getOutputAsString());
+        return (String) result.get("markdown");
+    }
+
+    private void setLastModified(long time) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(time);
+        context.resourceResolver()
+                .getResource(PAGE_PATH + "/" + NameConstants.NN_CONTENT)
+                .adaptTo(ModifiableValueMap.class)
+                .put(NameConstants.PN_PAGE_LAST_MOD, calendar);
+    }
+}
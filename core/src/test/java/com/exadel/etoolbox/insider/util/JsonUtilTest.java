@@ -1,5 +1,10 @@
 package com.exadel.etoolbox.insider.util;
 
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 import io.wcm.testing.mock.aem.junit5.AemContext;
 import io.wcm.testing.mock.aem.junit5.AemContextExtension;
 import org.apache.http.HttpStatus;
@@ -12,6 +17,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -105,4 +111,50 @@ public class JsonUtilTest {
         Map<String, Object> result = JsonUtil.getMap(context.response().getOutputAsString());
         Assertions.assertEquals("Something went wrong", result.get(Constants.PROP_ERROR));
     }
-} 
\ No newline at end of file
+
+    @Test
+    public void shouldStreamKeyValuePairs() throws IOException {
+        JsonUtil.writeTo(response, HttpStatus.SC_OK, "status", "ok", "message", "Quote \" and <tag>");
+
+        Assertions.assertEquals(
+                "{\"status\":\"ok\",\"message\":\"Quote \\\" and \\u003ctag\\u003e\"}",
+                response.getOutputAsString());
+    }
+
+    @Test
+    public void shouldPassRawStringThrough() throws IOException {
+        String raw = "{\"choices\":[{\"message\":{\"content\":\"Lorem ipsum\"}}]}";
+
+        JsonUtil.writeTo(response, HttpStatus.SC_OK, raw);
+
+        Assertions.assertEquals(raw, response.getOutputAsString());
+    }
+
+    @Test
+    public void shouldWriteEmptyJsonWhenSerializationFails() throws IOException {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("status", "ok");
+        payload.put("value", new Unserializable());
+
+        JsonUtil.writeTo(response, HttpStatus.SC_OK, payload);
+
+        Assertions.assertEquals(Constants.EMPTY_JSON, response.getOutputAsString());
+    }
+
+    @JsonAdapter(UnserializableAdapter.class)
+    private static class Unserializable {
+    }
+
+    private static class UnserializableAdapter extends TypeAdapter<Unserializable> {
+
+        @Override
+        public void write(JsonWriter out, Unserializable value) {
+            throw new JsonParseException("Not serializable");
+        }
+
+        @Override
+        public Unserializable read(JsonReader in) {
+            throw new JsonParseException("Not deserializable");
+        }
+    }
+}
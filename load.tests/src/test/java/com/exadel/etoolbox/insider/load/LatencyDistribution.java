@@ -0,0 +1,101 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.insider.load;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Produces artificial response latencies for the {@link StubLlmServer}. A distribution is defined by a string in
+ * the format {@code <kind>:<arg>[:<arg>]}, e.g. {@code fixed:500}, {@code uniform:200:1500}, or
+ * {@code lognormal:800:0.4} (median in milliseconds and the shape parameter). Log-normal latencies resemble
+ * those of real-world LLM endpoints with a long tail of slow completions
+ */
+abstract class LatencyDistribution {
+
+    /**
+     * Retrieves the next latency value in milliseconds
+     * @return A non-negative long value
+     */
+    abstract long next();
+
+    /**
+     * Creates a distribution from the given definition string
+     * @param value A string such as {@code fixed:500} or {@code lognormal:800:0.4}
+     * @return {@code LatencyDistribution} instance
+     * @throws IllegalArgumentException If the definition string cannot be parsed
+     */
+    static LatencyDistribution parse(String value) {
+        String[] parts = StringUtils.split(StringUtils.defaultIfBlank(value, "fixed:0"), ':');
+        try {
+            switch (parts[0].toLowerCase()) {
+                case "fixed":
+                    return fixed(Long.parseLong(parts[1]));
+                case "uniform":
+                    return uniform(Long.parseLong(parts[1]), Long.parseLong(parts[2]));
+                case "lognormal":
+                    return logNormal(Long.parseLong(parts[1]), Double.parseDouble(parts[2]));
+                default:
+                    break;
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid latency definition: " + value, e);
+        }
+        throw new IllegalArgumentException("Unknown latency distribution: " + value);
+    }
+
+    static LatencyDistribution fixed(long millis) {
+        return new LatencyDistribution() {
+            @Override
+            long next() {
+                return Math.max(millis, 0);
+            }
+
+            @Override
+            public String toString() {
+                return "fixed:" + millis;
+            }
+        };
+    }
+
+    static LatencyDistribution uniform(long min, long max) {
+        return new LatencyDistribution() {
+            @Override
+            long next() {
+                return min >= max ? min : ThreadLocalRandom.current().nextLong(min, max + 1);
+            }
+
+            @Override
+            public String toString() {
+                return "uniform:" + min + ":" + max;
+            }
+        };
+    }
+
+    static LatencyDistribution logNormal(long median, double sigma) {
+        return new LatencyDistribution() {
+            @Override
+            long next() {
+                double gaussian = ThreadLocalRandom.current().nextGaussian();
+                return Math.max(0, Math.round(median * Math.exp(sigma * gaussian)));
+            }
+
+            @Override
+            public String toString() {
+                return "lognormal:" + median + ":" + sigma;
+            }
+        };
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.insider.load;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import lombok.Getter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Summarizes the outcome of a load run: throughput, latency percentiles, the distribution of HTTP statuses, and the
+ * resource footprint (live threads and heap) observed while the run was in progress
+ */
+@Getter
+class LoadReport {
+
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    private final String scenario;
+    private final int authors;
+    private final int totalRequests;
+    private final long durationMs;
+    private final double throughput;
+    private final Map<String, Long> latencyMs = new TreeMap<>();
+    private final Map<Integer, Integer> statuses = new TreeMap<>();
+    private final int deferred;
+    private final int threadsBefore;
+    private final int threadsPeak;
+    private final long heapPeakMb;
+    private final long upstreamRequests;
+    private final int upstreamPeakInFlight;
+
+    LoadReport(String scenario, int authors, RelayLoadDriver.Result result, long upstreamRequests, int upstreamPeakInFlight) {
+        this.scenario = scenario;
+        this.authors = authors;
+        this.totalRequests = result.getSamples().size();
+        this.durationMs = result.getDurationMs();
+        this.throughput = durationMs > 0 ? Math.round(totalRequests * 100_000.0 / durationMs) / 100.0 : 0;
+        long[] latencies = result.getSamples().stream().mapToLong(RelayLoadDriver.Sample::getLatencyMs).sorted().toArray();
+        latencyMs.put("p50", percentile(latencies, 50));
+        latencyMs.put("p95", percentile(latencies, 95));
+        latencyMs.put("p99", percentile(latencies, 99));
+        latencyMs.put("max", latencies.length > 0 ? latencies[latencies.length - 1] : 0);
+        result.getSamples().forEach(sample -> statuses.merge(sample.getStatus(), 1, Integer::sum));
+        this.deferred = (int) result.getSamples().stream().filter(RelayLoadDriver.Sample::isDeferred).count();
+        this.threadsBefore = result.getThreadsBefore();
+        this.threadsPeak = result.getThreadsPeak();
+        this.heapPeakMb = result.getHeapPeakBytes() / (1024 * 1024);
+        this.upstreamRequests = upstreamRequests;
+        this.upstreamPeakInFlight = upstreamPeakInFlight;
+    }
+
+    /**
+     * Stores the report as a JSON file in the given directory
+     * @param directory {@code File} object representing the target directory
+     * @return The created file
+     * @throws IOException If the file cannot be written
+     */
+    File writeTo(File directory) throws IOException {
+        Files.createDirectories(directory.toPath());
+        File file = new File(directory, scenario + "-" + System.currentTimeMillis() + ".json");
+        try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            GSON.toJson(this, writer);
+        }
+        return file;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "%s: %d requests by %d authors in %d ms (%.2f req/s); latency %s; statuses %s; deferred %d; "
+                        + "threads %d -> %d; heap peak %d MB; upstream calls %d, peak in-flight %d",
+                scenario,
+                totalRequests,
+                authors,
+                durationMs,
+                throughput,
+                latencyMs,
+                statuses,
+                deferred,
+                threadsBefore,
+                threadsPeak,
+                heapPeakMb,
+                upstreamRequests,
+                upstreamPeakInFlight);
+    }
+
+    private static long percentile(long[] sorted, int percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+}
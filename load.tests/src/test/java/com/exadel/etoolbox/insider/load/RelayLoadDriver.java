@@ -0,0 +1,201 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.insider.load;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.HttpStatus;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.testing.mock.sling.servlet.MockRequestPathInfo;
+import org.apache.sling.testing.mock.sling.servlet.MockSlingHttpServletRequest;
+import org.apache.sling.testing.mock.sling.servlet.MockSlingHttpServletResponse;
+import org.osgi.framework.BundleContext;
+
+import javax.servlet.Servlet;
+import javax.servlet.ServletException;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Simulates a number of authors that concurrently call the relay servlet. Every author is a dedicated thread that
+ * sends a series of POST requests and, whenever the servlet answers with {@code 202 Accepted}, keeps polling the
+ * {@code /task/<id>} suffix until the deferred result is available. The end-to-end latency of every call is recorded
+ * along with the live thread count and heap usage sampled while the run is in progress
+ */
+@Slf4j
+@Builder
+class RelayLoadDriver {
+
+    private static final long SAMPLING_INTERVAL = 50;
+    private static final long POLL_TIMEOUT = TimeUnit.MINUTES.toMillis(2);
+
+    private final Servlet servlet;
+    private final ResourceResolver resourceResolver;
+    private final BundleContext bundleContext;
+    private final String providerId;
+    private final String payload;
+    private final int authors;
+    private final int requestsPerAuthor;
+    private final long thinkTime;
+    @Builder.Default
+    private final long pollInterval = 250;
+
+    /**
+     * Performs the load run and blocks until all the simulated authors have finished
+     * @return {@link Result} object
+     * @throws InterruptedException If the calling thread is interrupted while waiting
+     */
+    Result run() throws InterruptedException {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        MemoryMXBean memoryBean = ManagementFactory.getMemoryMXBean();
+        int threadsBefore = threadBean.getThreadCount();
+        AtomicInteger threadsPeak = new AtomicInteger(threadsBefore);
+        AtomicLong heapPeak = new AtomicLong(memoryBean.getHeapMemoryUsage().getUsed());
+
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+        sampler.scheduleAtFixedRate(
+                () -> {
+                    threadsPeak.accumulateAndGet(threadBean.getThreadCount(), Math::max);
+                    heapPeak.accumulateAndGet(memoryBean.getHeapMemoryUsage().getUsed(), Math::max);
+                },
+                0,
+                SAMPLING_INTERVAL,
+                TimeUnit.MILLISECONDS);
+
+        Queue<Sample> samples = new ConcurrentLinkedQueue<>();
+        CountDownLatch startSignal = new CountDownLatch(1);
+        ExecutorService authorPool = Executors.newFixedThreadPool(authors);
+        for (int i = 0; i < authors; i++) {
+            authorPool.submit(() -> {
+                startSignal.await();
+                for (int request = 0; request < requestsPerAuthor; request++) {
+                    samples.add(call());
+                    if (thinkTime > 0) {
+                        Thread.sleep(thinkTime);
+                    }
+                }
+                return null;
+            });
+        }
+
+        long start = System.nanoTime();
+        startSignal.countDown();
+        authorPool.shutdown();
+        authorPool.awaitTermination(1, TimeUnit.HOURS);
+        long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        sampler.shutdownNow();
+
+        return new Result(
+                Collections.unmodifiableList(new ArrayList<>(samples)),
+                duration,
+                threadsBefore,
+                threadsPeak.get(),
+                heapPeak.get());
+    }
+
+    private Sample call() {
+        long start = System.nanoTime();
+        boolean deferred = false;
+        try {
+            MockSlingHttpServletResponse response = perform("POST", "/" + providerId, payload);
+            while (response.getStatus() == HttpStatus.SC_ACCEPTED
+                    || isPending(response)) {
+                deferred = true;
+                if (TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) > POLL_TIMEOUT) {
+                    return new Sample(elapsed(start), HttpStatus.SC_GATEWAY_TIMEOUT, true);
+                }
+                String taskId = StringUtils.substringBetween(response.getOutputAsString(), "\"task\":\"", "\"");
+                Thread.sleep(pollInterval);
+                response = perform("GET", "/task/" + taskId, null);
+            }
+            return new Sample(elapsed(start), response.getStatus(), deferred);
+        } catch (ServletException | IOException e) {
+            log.error("Relay call failed", e);
+            return new Sample(elapsed(start), HttpStatus.SC_INTERNAL_SERVER_ERROR, deferred);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new Sample(elapsed(start), HttpStatus.SC_SERVICE_UNAVAILABLE, deferred);
+        }
+    }
+
+    private MockSlingHttpServletResponse perform(String method, String suffix, String content)
+            throws ServletException, IOException {
+
+        MockSlingHttpServletRequest request = new MockSlingHttpServletRequest(resourceResolver, bundleContext);
+        request.setMethod(method);
+        request.setResource(resourceResolver.getResource(RelayLoadTest.RELAY_PATH));
+        MockRequestPathInfo pathInfo = (MockRequestPathInfo) request.getRequestPathInfo();
+        pathInfo.setResourcePath(RelayLoadTest.RELAY_PATH);
+        pathInfo.setExtension("json");
+        pathInfo.setSuffix(suffix);
+        if (content != null) {
+            request.setContent(content.getBytes(StandardCharsets.UTF_8));
+        }
+        MockSlingHttpServletResponse response = new MockSlingHttpServletResponse();
+        servlet.service(request, response);
+        return response;
+    }
+
+    private static boolean isPending(MockSlingHttpServletResponse response) {
+        // A polled task that is not yet complete is reported with HTTP 200 and the task id in the body
+        return response.getStatus() == HttpStatus.SC_OK
+                && StringUtils.startsWith(response.getOutputAsString(), "{\"task\":");
+    }
+
+    private static long elapsed(long start) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    /**
+     * Represents a single relay call made by a simulated author
+     */
+    @RequiredArgsConstructor
+    @Getter
+    static class Sample {
+        private final long latencyMs;
+        private final int status;
+        private final boolean deferred;
+    }
+
+    /**
+     * Represents the outcome of a load run
+     */
+    @RequiredArgsConstructor
+    @Getter
+    static class Result {
+        private final List<Sample> samples;
+        private final long durationMs;
+        private final int threadsBefore;
+        private final int threadsPeak;
+        private final long heapPeakBytes;
+    }
+}
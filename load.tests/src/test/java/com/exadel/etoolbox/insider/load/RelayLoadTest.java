@@ -0,0 +1,128 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.insider.load;
+
+import com.adobe.granite.crypto.CryptoSupport;
+import com.exadel.etoolbox.insider.service.ServiceStatusTracker;
+import com.exadel.etoolbox.insider.service.impl.ServiceProviderImpl;
+import com.exadel.etoolbox.insider.servlet.RelayServlet;
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.HttpStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mockito;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Drives the relay servlet with a number of concurrent simulated authors against the {@link StubLlmServer}. The run
+ * is parameterized with system properties ({@code load.authors}, {@code load.requests}, {@code load.thinkTime},
+ * {@code load.latency}, {@code load.errorRate}, {@code load.responseSize}, {@code load.waitTimeout}) and produces a
+ * JSON report per scenario in the {@code load.report} directory. Run with {@code mvn test -P load-tests}
+ */
+@ExtendWith({AemContextExtension.class})
+@Slf4j
+public class RelayLoadTest {
+
+    static final String RELAY_PATH = "/content/etoolbox/authoring-insider/servlet/relay";
+
+    private static final String PROVIDER_ID = "stub";
+    private static final String PAYLOAD = "{\"model\":\"stub-llm\",\"messages\":[{\"role\":\"user\",\"content\":\"%s\"}]%s}";
+
+    private final AemContext context = new AemContext();
+
+    private StubLlmServer stubServer;
+    private RelayServlet servlet;
+
+    @BeforeEach
+    public void init() throws IOException {
+        context.create().resource(
+                RELAY_PATH,
+                Collections.singletonMap("sling:resourceType", "/bin/etoolbox/authoring-insider/relay"));
+        context.registerService(CryptoSupport.class, Mockito.mock(CryptoSupport.class));
+
+        stubServer = StubLlmServer.builder()
+                .latency(LatencyDistribution.parse(System.getProperty("load.latency", "lognormal:800:0.4")))
+                .errorRate(Double.parseDouble(System.getProperty("load.errorRate", "0.02")))
+                .responseSize(Integer.getInteger("load.responseSize", 1500))
+                .choices(1)
+                .build();
+
+        Map<String, Object> providerProperties = new HashMap<>();
+        providerProperties.put("id", PROVIDER_ID);
+        providerProperties.put("url", stubServer.getUrl());
+        providerProperties.put("connectionAttempts", 1);
+        context.registerInjectActivateService(new ServiceProviderImpl(), providerProperties);
+        context.registerInjectActivateService(new ServiceStatusTracker());
+
+        servlet = context.registerInjectActivateService(
+                new RelayServlet(),
+                Collections.singletonMap("waitTimeout", Integer.getInteger("load.waitTimeout", 20_000)));
+    }
+
+    @AfterEach
+    public void cleanUp() {
+        stubServer.close();
+    }
+
+    @Test
+    public void shouldRelayCompletions() throws InterruptedException, IOException {
+        runScenario("relay-completions", String.format(PAYLOAD, "Describe the image", ""));
+    }
+
+    @Test
+    public void shouldRelayStreamedCompletions() throws InterruptedException, IOException {
+        runScenario("relay-streamed-completions", String.format(PAYLOAD, "Describe the image", ",\"stream\":true"));
+    }
+
+    private void runScenario(String name, String payload) throws InterruptedException, IOException {
+        int authors = Integer.getInteger("load.authors", 20);
+        int requestsPerAuthor = Integer.getInteger("load.requests", 10);
+
+        RelayLoadDriver.Result result = RelayLoadDriver.builder()
+                .servlet(servlet)
+                .resourceResolver(context.resourceResolver())
+                .bundleContext(context.bundleContext())
+                .providerId(PROVIDER_ID)
+                .payload(payload)
+                .authors(authors)
+                .requestsPerAuthor(requestsPerAuthor)
+                .thinkTime(Long.getLong("load.thinkTime", 0L))
+                .build()
+                .run();
+
+        LoadReport report = new LoadReport(
+                name,
+                authors,
+                result,
+                stubServer.getRequestCount().get(),
+                stubServer.getPeakInFlight().get());
+        File reportFile = report.writeTo(new File(System.getProperty("load.report", "target/load-reports")));
+        log.info("{}. Report saved to {}", report, reportFile);
+
+        Assertions.assertEquals(authors * requestsPerAuthor, report.getTotalRequests());
+        Assertions.assertEquals(authors * requestsPerAuthor, report.getUpstreamRequests());
+        Assertions.assertFalse(report.getStatuses().containsKey(HttpStatus.SC_GATEWAY_TIMEOUT));
+        Assertions.assertFalse(report.getStatuses().containsKey(HttpStatus.SC_SERVICE_UNAVAILABLE));
+    }
+}
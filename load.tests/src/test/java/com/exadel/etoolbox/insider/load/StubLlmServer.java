@@ -0,0 +1,225 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.exadel.etoolbox.insider.load;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonSyntaxException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An embedded HTTP server that mimics an OpenAI-compatible {@code chat/completions} endpoint. Responses are delayed
+ * according to a {@link LatencyDistribution}, a configurable share of them fails with HTTP 500, and the length of
+ * the generated answer is adjustable. If the incoming payload contains {@code "stream": true}, the answer is sent
+ * as a sequence of server-sent events terminated with {@code data: [DONE]}
+ */
+@Slf4j
+class StubLlmServer implements AutoCloseable {
+
+    static final String PATH = "/v1/chat/completions";
+
+    private static final String CONTENT_TYPE_JSON = "application/json";
+    private static final String CONTENT_TYPE_EVENT_STREAM = "text/event-stream";
+    private static final String LOREM = "Lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do eiusmod tempor "
+            + "incididunt ut labore et dolore magna aliqua. ";
+    private static final int STREAM_CHUNK_SIZE = 24;
+
+    private final LatencyDistribution latency;
+    private final double errorRate;
+    private final int responseSize;
+    private final int choices;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    @Getter
+    private final AtomicLong requestCount = new AtomicLong();
+    @Getter
+    private final AtomicLong errorCount = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    @Getter
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+
+    @Builder
+    private StubLlmServer(LatencyDistribution latency, double errorRate, int responseSize, int choices) throws IOException {
+        this.latency = latency != null ? latency : LatencyDistribution.fixed(0);
+        this.errorRate = Math.max(0, Math.min(errorRate, 1));
+        this.responseSize = Math.max(responseSize, 1);
+        this.choices = Math.max(choices, 1);
+        this.executor = Executors.newCachedThreadPool();
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        this.server.createContext(PATH, this::handle);
+        this.server.setExecutor(executor);
+        this.server.start();
+    }
+
+    /**
+     * Retrieves the address of the completions endpoint
+     * @return String value
+     */
+    String getUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + PATH;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requestCount.incrementAndGet();
+        peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        try {
+            String payload = IOUtils.toString(exchange.getRequestBody(), StandardCharsets.UTF_8);
+            sleep(latency.next());
+            if (ThreadLocalRandom.current().nextDouble() < errorRate) {
+                errorCount.incrementAndGet();
+                send(exchange, 500, CONTENT_TYPE_JSON, getErrorJson("Simulated upstream failure"));
+            } else if (isStreaming(payload)) {
+                sendStream(exchange);
+            } else {
+                send(exchange, 200, CONTENT_TYPE_JSON, getCompletionJson());
+            }
+        } finally {
+            inFlight.decrementAndGet();
+            exchange.close();
+        }
+    }
+
+    private void sendStream(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE_EVENT_STREAM);
+        exchange.sendResponseHeaders(200, 0);
+        String id = "chatcmpl-" + UUID.randomUUID();
+        String text = getText();
+        try (OutputStream output = exchange.getResponseBody()) {
+            for (int i = 0; i < text.length(); i += STREAM_CHUNK_SIZE) {
+                JsonObject delta = new JsonObject();
+                delta.addProperty("content", text.substring(i, Math.min(i + STREAM_CHUNK_SIZE, text.length())));
+                JsonObject choice = new JsonObject();
+                choice.addProperty("index", 0);
+                choice.add("delta", delta);
+                JsonObject chunk = newEnvelope(id, "chat.completion.chunk");
+                chunk.add("choices", singleton(choice));
+                output.write(("data: " + chunk + "\n\n").getBytes(StandardCharsets.UTF_8));
+                output.flush();
+            }
+            output.write("data: [DONE]\n\n".getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private String getCompletionJson() {
+        JsonArray choiceArray = new JsonArray();
+        for (int i = 0; i < choices; i++) {
+            JsonObject message = new JsonObject();
+            message.addProperty("role", "assistant");
+            message.addProperty("content", getText());
+            JsonObject choice = new JsonObject();
+            choice.addProperty("index", i);
+            choice.add("message", message);
+            choice.addProperty("finish_reason", "stop");
+            choiceArray.add(choice);
+        }
+        JsonObject usage = new JsonObject();
+        usage.addProperty("prompt_tokens", 42);
+        usage.addProperty("completion_tokens", responseSize * choices / 4);
+        usage.addProperty("total_tokens", 42 + responseSize * choices / 4);
+
+        JsonObject result = newEnvelope("chatcmpl-" + UUID.randomUUID(), "chat.completion");
+        result.add("choices", choiceArray);
+        result.add("usage", usage);
+        return result.toString();
+    }
+
+    private String getText() {
+        return StringUtils.left(StringUtils.repeat(LOREM, responseSize / LOREM.length() + 1), responseSize);
+    }
+
+    private static JsonObject newEnvelope(String id, String type) {
+        JsonObject result = new JsonObject();
+        result.addProperty("id", id);
+        result.addProperty("object", type);
+        result.addProperty("created", TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()));
+        result.addProperty("model", "stub-llm");
+        return result;
+    }
+
+    private static String getErrorJson(String message) {
+        JsonObject error = new JsonObject();
+        error.addProperty("message", message);
+        error.addProperty("type", "server_error");
+        JsonObject result = new JsonObject();
+        result.add("error", error);
+        return result.toString();
+    }
+
+    private static JsonArray singleton(JsonElement element) {
+        JsonArray result = new JsonArray();
+        result.add(element);
+        return result;
+    }
+
+    private static boolean isStreaming(String payload) {
+        try {
+            JsonElement element = JsonParser.parseString(payload);
+            return element.isJsonObject()
+                    && element.getAsJsonObject().has("stream")
+                    && element.getAsJsonObject().get("stream").getAsBoolean();
+        } catch (JsonSyntaxException | IllegalStateException | UnsupportedOperationException e) {
+            return false;
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(bytes);
+        }
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            log.debug("Stub response delay interrupted");
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+(function (document, ns) {
+    'use strict';
+
+    const CLS_FIELD = 'coral-Form-field';
+    const CLS_FIELD_LABEL = 'coral-Form-fieldlabel';
+    const CLS_FIELD_WRAPPER = 'coral-Form-fieldwrapper';
+
+    const TYPE_CHECKBOX = 'checkbox';
+    const TYPE_ENCRYPTED = 'encrypted';
+    const TYPE_SELECT = 'select';
+
+    /**
+     * Contains methods for rendering the properties dialog of a tool or a provider on the client side from the compact
+     * JSON schema produced by the server
+     */
+    ns.settingsDialog = {
+        /**
+         * Creates the markup of a dialog that contains a form built from the given schema. The markup of fields matches
+         * the one produced by the Granite rendering so that the same submission logic applies
+         * @param {Object} schema - The dialog schema containing the form action, fields and current values
+         * @param {string} id - The identifier of the dialog
+         * @returns {string}
+         */
+        getHtml: function (schema, id) {
+            const values = schema.values || {};
+            const fields = (schema.fields || []).map((field) => createField(field, values[field.name]));
+            return ns.ui.createElement({
+                tag: 'coral-dialog',
+                id,
+                children: [
+                    { tag: 'coral-dialog-header' },
+                    {
+                        tag: 'coral-dialog-content',
+                        children: {
+                            tag: 'form',
+                            id,
+                            class: 'coral-Form coral-Form--vertical foundation-form',
+                            method: 'POST',
+                            action: schema.action,
+                            children: { class: 'cq-dialog-content', children: fields }
+                        }
+                    },
+                    {
+                        tag: 'coral-dialog-footer',
+                        innerHTML: '<button is="coral-button" variant="secondary" coral-close>Cancel</button>' +
+                            '<button is="coral-button" variant="primary">OK</button>'
+                    }
+                ]
+            }).outerHTML;
+        }
+    };
+
+    function createField(field, value) {
+        const effectiveValue = value !== undefined ? value : field.defaultValue;
+        const children = [];
+        if (field.type !== TYPE_CHECKBOX || field.multi) {
+            children.push({ tag: 'label', class: CLS_FIELD_LABEL, innerText: field.title || field.name });
+        }
+        if (field.multi) {
+            children.push(createMultifield(field, effectiveValue));
+        } else {
+            children.push(...createInputs(field, effectiveValue));
+        }
+        if (field.type === TYPE_ENCRYPTED) {
+            children.push(createHidden(field.name + '@encrypt', 'true'));
+        }
+        return { class: CLS_FIELD_WRAPPER, children };
+    }
+
+    function createMultifield(field, value) {
+        const values = Array.isArray(value) ? value : [value].filter((item) => item !== undefined && item !== null);
+        const template = ns.ui.createElement({ tag: 'template', 'coral-multifield-template': 'true' });
+        createInputs(field).forEach((input) => template.content.appendChild(ns.ui.createElement(input)));
+        const items = values.map((item) => ({
+            tag: 'coral-multifield-item',
+            children: createInputs(field, item)
+        }));
+        return {
+            tag: 'coral-multifield',
+            class: CLS_FIELD,
+            children: [
+                template,
+                ...items,
+                { tag: 'button', type: 'button', is: 'coral-button', 'coral-multifield-add': 'true', innerText: 'Add' }
+            ]
+        };
+    }
+
+    function createInputs(field, value) {
+        const stringValue = value !== undefined && value !== null ? String(value) : '';
+        if (field.type === TYPE_CHECKBOX) {
+            return [
+                {
+                    tag: 'coral-checkbox',
+                    class: CLS_FIELD,
+                    name: field.name,
+                    value: 'true',
+                    checked: stringValue === 'true' ? 'checked' : '',
+                    innerText: field.title || field.name
+                },
+                createHidden(field.name + '@DefaultValue', 'false'),
+                createHidden(field.name + '@UseDefaultWhenMissing', 'true')
+            ];
+        }
+        if (field.type === TYPE_SELECT && Array.isArray(field.options)) {
+            return [{
+                tag: 'coral-select',
+                class: CLS_FIELD,
+                name: field.name,
+                required: field.required ? 'true' : '',
+                children: field.options.map((option) => ({
+                    tag: 'coral-select-item',
+                    value: option.value,
+                    selected: option.value === stringValue ? 'selected' : '',
+                    innerText: option.text
+                }))
+            }];
+        }
+        const isTextArea = field.type === 'text' || field.type === 'textarea';
+        return [{
+            tag: isTextArea ? 'textarea' : 'input',
+            is: isTextArea ? 'coral-textarea' : 'coral-textfield',
+            type: isTextArea ? '' : (field.type === TYPE_ENCRYPTED ? 'password' : 'text'),
+            class: CLS_FIELD,
+            name: field.name,
+            value: isTextArea ? '' : stringValue,
+            innerText: isTextArea ? stringValue : '',
+            placeholder: field.placeholder,
+            required: field.required ? 'true' : '',
+            disabled: field.disabled ? 'true' : ''
+        }];
+    }
+
+    function createHidden(name, value) {
+        return { tag: 'input', type: 'hidden', name, value };
+    }
+
+})(document, window.eai = window.eai || {});
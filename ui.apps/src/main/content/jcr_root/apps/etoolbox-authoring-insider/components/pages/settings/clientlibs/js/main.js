@@ -16,6 +16,7 @@
 
     const NAMESPACES = ['tools', 'providers'];
     const DEFAULT_PROPS = ['enabled', 'icon', 'title', 'type'];
+    const DIALOG_PATH = '/mnt/overlay/etoolbox-authoring-insider/components/pages/settings/properties';
 
     const DEBOUNCE_DELAY = 750;
     const onAutoSubmitDebounce = Utils.debounce(onAutoSubmit, DEBOUNCE_DELAY);
@@ -360,21 +361,8 @@
         }
 
         const nodePath = item.querySelector('.path').value;
-        const dialogSrc = '/mnt/overlay' +
-            '/etoolbox-authoring-insider/components/pages/settings/properties.eai.html' +
-            nodePath;
-
-        const sanitizeHtml = (Utils.XSS && Utils.XSS.sanitizeHtml) ?
-            Utils.XSS.sanitizeHtml :
-            Utils.sanitizeHtml;
-        let dialogContent;
-        try {
-            dialogContent = await ns.http.post(dialogSrc, { data: model.settings || [] });
-            if (ns.utils.isFunction(sanitizeHtml)) {
-                dialogContent = sanitizeHtml(dialogContent);
-            }
-        } catch (error) {
-            ns.ui.alert('Failed to load dialog', error.message, 'error');
+        const dialogContent = await loadDialogFromSchema(model, nodePath) || await loadDialogFromMarkup(model, nodePath);
+        if (!dialogContent) {
             return;
         }
 
@@ -391,6 +379,38 @@
         });
     }
 
+    async function loadDialogFromSchema(model, nodePath) {
+        const schemaSrc = DIALOG_PATH + '.eai.json' + nodePath;
+        try {
+            let schema = await ns.http.post(schemaSrc, { data: model.settings || [] });
+            if (ns.utils.isString(schema)) {
+                schema = JSON.parse(schema);
+            }
+            return ns.settingsDialog.getHtml(schema, 'item-properties');
+        } catch (error) {
+            console.warn('Failed to load dialog schema. Falling back to server-side rendering', error);
+            return null;
+        }
+    }
+
+    async function loadDialogFromMarkup(model, nodePath) {
+        const dialogSrc = DIALOG_PATH + '.eai.html' + nodePath;
+        const sanitizeHtml = (Utils.XSS && Utils.XSS.sanitizeHtml) ?
+            Utils.XSS.sanitizeHtml :
+            Utils.sanitizeHtml;
+        let dialogContent;
+        try {
+            dialogContent = await ns.http.post(dialogSrc, { data: model.settings || [] });
+            if (ns.utils.isFunction(sanitizeHtml)) {
+                dialogContent = sanitizeHtml(dialogContent);
+            }
+        } catch (error) {
+            ns.ui.alert('Failed to load dialog', error.message, 'error');
+            return null;
+        }
+        return dialogContent;
+    }
+
     function packDetails(formData) {
         const formDataObject = {};
         for (const entry of formData.entries()) {
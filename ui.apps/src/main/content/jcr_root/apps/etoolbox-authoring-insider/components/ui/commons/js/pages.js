@@ -14,6 +14,11 @@
 (function (document, ns) {
     'use strict';
 
+    const MARKDOWN_ENDPOINT = '/content/etoolbox/authoring-insider/servlet/markdown.json';
+
+    // The server-side extraction supports selectors such as "aside", ".cmp-breadcrumb", or "nav#main"
+    const SIMPLE_SELECTOR = /^[\w-]*(?:[#.][\w-]+)*$/;
+
     const EMBARGOED_ELEMENTS = [
         'button',
         'canvas',
@@ -46,6 +51,15 @@
 
     async function extractContent(url, options = {}) {
         try {
+            if (options && options.format === 'md') {
+                const markdown = await getPageMarkdown(url, options);
+                if (ns.utils.isString(markdown)) {
+                    return markdown.replace(/\n+/g, options.escapeNewLine ? '\\n' : '\n');
+                }
+                if (options.signal && options.signal.aborted) {
+                    return '';
+                }
+            }
             const content = await getPageContent(url, options ? options.signal : null);
             const dom = parseDom(content);
             return convertDom(dom, options);
@@ -59,16 +73,41 @@
        Content retrieval
        ----------------- */
 
+    async function getPageMarkdown(url, options) {
+        // The page is rendered and converted on the server, and the result is cached there until the page is modified
+        const path = getPageUrl(url).pathname.replace(/\.[^/]*$/, '');
+        const excludeElements = options.excludeElements || [];
+        if (!path.startsWith('/content/') || !excludeElements.every((selector) => SIMPLE_SELECTOR.test(selector))) {
+            return null;
+        }
+        const searchParams = new URLSearchParams({ path });
+        excludeElements.forEach((selector) => searchParams.append('exclude', selector));
+        try {
+            const response = await ns.http.getJson(
+                MARKDOWN_ENDPOINT + '?' + searchParams.toString(),
+                options.signal ? { signal: options.signal } : {});
+            return response ? response.markdown : null;
+        } catch (e) {
+            console.warn('Failed to extract page content on the server', e.message);
+            return null;
+        }
+    }
+
     async function getPageContent(url, signal) {
+        const urlObject = getPageUrl(url);
+        urlObject.searchParams.set('wcmmode', 'disabled');
+
+        return await ns.http.getText(urlObject.toString(), signal ? { signal } : {});
+    }
+
+    function getPageUrl(url) {
         const urlObject = new URL(url);
         urlObject.pathname = urlObject.pathname.replace('/editor.html', '');
         if (urlObject.pathname.startsWith('/mnt/overlay') && urlObject.searchParams.has('item')) {
             urlObject.pathname = urlObject.searchParams.get('item') + '.html';
             urlObject.searchParams.delete('item');
         }
-        urlObject.searchParams.set('wcmmode', 'disabled');
-
-        return await ns.http.getText(urlObject.toString(), signal ? { signal } : {});
+        return urlObject;
     }
 
     function parseDom(text) {
@@ -38,11 +38,17 @@
             { name: 'supports', title: 'Support constraints', multi: true }
         ],
 
+        acceptsImageReference,
         isValid,
         imageToText,
         textToText
     });
 
+    function acceptsImageReference() {
+        // Requests go through the relay which can replace an asset path with the image content
+        return true;
+    }
+
     function isValid() {
         return !!this.service;
     }
@@ -77,6 +83,8 @@
         let endpoint = RELAY_ENDPOINT + options.service;
         const searchParams = new URLSearchParams();
         searchParams.set('_path', options._path);
+        // Only the answer text is needed, so the relay is asked to strip the rest of the upstream response
+        searchParams.set('projection', 'text');
         if (options.dryRun) {
             searchParams.set('dryRun', 'true');
         }
@@ -21,6 +21,13 @@
 
     const TITLE = 'Image caption (alt text)';
 
+    const CAPABILITY_ASSET_REFERENCE = 'relay.asset-reference';
+
+    const METADATA_ENDPOINT = '/content/etoolbox/authoring-insider/servlet/metadata.json';
+    const PREFETCH_ENDPOINT = '/content/etoolbox/authoring-insider/servlet/prefetch.json';
+    const PROP_CAPTION = 'eai.caption';
+    const PROP_SIMILAR_CAPTION = 'eai.similarCaption';
+
     ns.tools.register({
         icon: 'imageText',
         id: ID,
@@ -64,14 +71,6 @@
             return ns.ui.alert(this.title, `Could not find a provider with ID ${providerId}`, 'error');
         }
 
-        // Initialization
-        let encodedImage;
-        try {
-            encodedImage = await ns.http.getText(sourceValue + '.base64?size=' + (this.imageSize || ''));
-        } catch (error) {
-            return ns.ui.alert(this.title, 'Cannot load the image. This may be due to an invalid path or an unsupported format', 'error');
-        }
-
         const prompt = this.prompt || DEFAULT_PROMPT;
         const repeatPrompt = this.repeatPrompt || DEFAULT_REPEAT_PROMPT;
 
@@ -104,14 +103,15 @@
             ],
 
             onStartup: async(context) => handleDialogContext(context.withData({
-                image: encodedImage,
+                image: { path: sourceValue, size: this.imageSize || '' },
                 imageAddress: this.save ? sourceValue : null,
+                form: field.closest('form'),
                 imageDetail: this.imageDetail,
                 prompt
             })),
 
             onInput: async(msg, context) => context.provider.imageToText({
-                image: context.data.image,
+                image: await getImage(context),
                 imageDetail: context.data.imageDetail,
                 messages: context.messages,
                 signal: context.signal
@@ -126,20 +126,27 @@
     async function handleDialogContext(context) {
         if (context.data.imageAddress) {
             try {
-                const metadata = await ns.http.getJson(context.data.imageAddress + '.metadata');
-                if (metadata && metadata['eai.caption']) {
+                const metadata = await getStoredMetadata(context.data.imageAddress, context.data.form, context.data.image.size);
+                if (metadata && metadata[PROP_CAPTION]) {
                     return {
                         type: 'text',
-                        text: metadata['eai.caption'],
+                        text: metadata[PROP_CAPTION],
                         note: '* Loaded from image metadata',
                     };
                 }
+                if (metadata && metadata[PROP_SIMILAR_CAPTION]) {
+                    return {
+                        type: 'text',
+                        text: metadata[PROP_SIMILAR_CAPTION],
+                        note: '* Suggested from a near-identical image',
+                    };
+                }
             } catch (error) {
                 console.error('Failed to load image metadata: ' + error.message);
             }
         }
         return context.provider.imageToText({
-            image: context.data.image,
+            image: await getImage(context),
             imageDetail: context.data.imageDetail,
             messages: [
                 { type: 'user', text: context.data.prompt }
@@ -148,6 +155,53 @@
         });
     }
 
+    async function getStoredMetadata(imageAddress, form, size) {
+        const prefetched = (form && await prefetch(form, size)) || {};
+        const metadata = prefetched[imageAddress] && prefetched[imageAddress].metadata;
+        if (metadata && metadata[PROP_CAPTION]) {
+            return metadata;
+        }
+        // A suggestion requires processing the image on the server, so it is requested for the current image only
+        const keys = metadata ? PROP_SIMILAR_CAPTION : PROP_CAPTION + ',' + PROP_SIMILAR_CAPTION;
+        return await ns.http.getJson(imageAddress + '.metadata?keys=' + encodeURIComponent(keys));
+    }
+
+    function prefetch(form, size) {
+        // The captions of all the images referenced by the component are requested at once, and the server prepares
+        // their renditions in the meantime. The result is kept while the dialog is open
+        if (!form.prefetched) {
+            const path = form.getAttribute('action') || '';
+            if (!path.startsWith('/content/')) {
+                return (form.prefetched = Promise.resolve({}));
+            }
+            const searchParams = new URLSearchParams({ path, keys: PROP_CAPTION, size });
+            form.prefetched = ns.http.getJson(PREFETCH_ENDPOINT + '?' + searchParams.toString()).catch((error) => {
+                console.error('Failed to prefetch image metadata: ' + error.message);
+                return {};
+            });
+        }
+        return form.prefetched;
+    }
+
+    async function getImage(context) {
+        const image = context.data.image;
+        const provider = context.provider;
+        if (ns.utils.isFunction(provider.acceptsImageReference)
+            && provider.acceptsImageReference()
+            && await ns.settings.hasCapability(CAPABILITY_ASSET_REFERENCE)) {
+            // The image is inlined on the server side, so it does not need to travel through the browser
+            return image.path + '?size=' + encodeURIComponent(image.size);
+        }
+        if (!image.encoded) {
+            try {
+                image.encoded = await ns.http.getText(image.path + '.base64?size=' + image.size);
+            } catch (error) {
+                throw new Error('Cannot load the image. This may be due to an invalid path or an unsupported format');
+            }
+        }
+        return image.encoded;
+    }
+
     function findImageSource(field, dir) {
         if (!field) {
             return ns.ui.alert(TITLE, 'Target field is invalid', 'error');
@@ -179,6 +233,8 @@
         const captionSources = $form.get(0).captionSources || ($form.get(0).captionSources = new Set());
         captionSources.add(field);
         $form.off('.eai').one('submit.eai', async function submitCaptions() {
+            // The captions of all the images are stored with a single request, and therefore a single commit
+            const captions = {};
             for (const captionSource of captionSources) {
                 const caption = ns.fields.getValue(captionSource);
                 if (ns.text.isBlank(caption)) {
@@ -189,11 +245,15 @@
                     console.error('Could not find image address for ', captionSource.name);
                     continue;
                 }
-                try {
-                    await ns.http.post(imageAddress + '.metadata', { data: { 'eai.caption': caption } });
-                } catch (error) {
-                    ns.ui.alert(TITLE, 'Could not save the caption to image metadata: ' + error.message, 'error');
-                }
+                captions[imageAddress] = { [PROP_CAPTION]: caption };
+            }
+            if (Object.keys(captions).length === 0) {
+                return;
+            }
+            try {
+                await ns.http.post(METADATA_ENDPOINT, { data: captions });
+            } catch (error) {
+                ns.ui.alert(TITLE, 'Could not save the caption to image metadata: ' + error.message, 'error');
             }
         });
     }
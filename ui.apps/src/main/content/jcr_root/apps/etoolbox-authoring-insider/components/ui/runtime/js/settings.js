@@ -17,6 +17,7 @@
     ns.TITLE = 'EToolbox Authoring Insider';
 
     let settings;
+    let capabilities;
 
     /**
      * Contains utility methods for working with user-authored settings
@@ -27,6 +28,7 @@
          */
         clearAll: function () {
             settings = undefined;
+            capabilities = undefined;
         },
 
         /**
@@ -46,6 +48,16 @@
          */
         getProviderSettings: async function (id) {
             return await extractSettings('providers', id);
+        },
+
+        /**
+         * Checks whether the server supports the given capability, such as 'relay.projection'
+         * @param {string} name - The capability name
+         * @returns {Promise<boolean>}
+         */
+        hasCapability: async function (name) {
+            await loadSettings();
+            return (capabilities || []).includes(name);
         }
     };
 
@@ -54,10 +66,13 @@
             return settings;
         }
         try {
-            settings = await ns.http.getJson('/content/etoolbox/authoring-insider/servlet/config.json');
+            const bootstrap = await ns.http.getJson('/content/etoolbox/authoring-insider/servlet/config.bootstrap.json');
+            settings = bootstrap.config || null;
+            capabilities = bootstrap.capabilities || [];
         } catch (error) {
             console.error(`Failed to load ${ns.TITLE} settings`);
             settings = null;
+            capabilities = [];
         }
         return settings;
     }
@@ -41,6 +41,15 @@ const SETTINGS = {
     }]
 };
 
+const BOOTSTRAP = {
+    config: SETTINGS,
+    services: [
+        { id: 'provider1', status: 'available' },
+        { id: 'provider2', status: 'unavailable' }
+    ],
+    capabilities: ['config.etag', 'relay.projection']
+};
+
 let cachedAjax;
 
 beforeAll(() => {
@@ -68,6 +77,13 @@ test('Should load settings', async () => {
     expect(toolSettings[0].title).toBe('First Tool');
 });
 
+test('Should expose capabilities', async () => {
+    global.Granite.$.ajax = successfulAjax;
+
+    expect(await ns.settings.hasCapability('relay.projection')).toBe(true);
+    expect(await ns.settings.hasCapability('media.base64')).toBe(false);
+});
+
 test('Should handle a failed settings loading', async () => {
     global.Granite.$.ajax = failedAjax;
     const consoleErrorMock = jest.spyOn(console, 'error').mockImplementation();
@@ -83,7 +99,7 @@ test('Should handle a failed settings loading', async () => {
 
 function successfulAjax(url, options) {
     const { success } = options;
-    success(SETTINGS);
+    success(BOOTSTRAP);
 }
 
 function failedAjax(url, options) {